@@ -0,0 +1,112 @@
+package org.my.automationtest.benchmark;
+
+import org.my.automationtest.locator.WebLocator;
+import org.my.automationtest.locator.helper.DivTableHelper;
+import org.my.automationtest.locator.helper.TableSnapshot;
+import org.my.automationtest.service.WebDriverFactory;
+import org.my.automationtest.service.WebSession;
+import org.my.automationtest.service.WebUI;
+import org.my.automationtest.service.fake.FakeWebDriver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of resolving cells of a div table of 10 to 10,000 rows with {@link DivTableHelper}, on a {@link FakeWebDriver} page answering instantly.<br/><br/>
+ * The numbers are the client-side cost plus the lookups in the in-memory DOM, which stand for the work of the browser:
+ * each script call in a real session adds one round trip to the browser on top.
+ * Run with: <code>mvn -Pint,benchmark test-compile exec:exec@jmh -Djmh.args=DivTableBenchmark</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DivTableBenchmark {
+
+    private static final int COLUMNS = 5;
+    private static final String LOOKUP_COLUMN = "Column 3";
+    private static final WebLocator CELL_CONTENT = new WebLocator().tag("span").freeze();
+
+    @Param({"10", "100", "1000", "10000"})
+    public int rows;
+
+    private WebLocator tableLocator;
+    private WebLocator columnLocator;
+    private WebLocator rowLocator;
+    private String lastRowName;
+
+    @Setup
+    public void setUp() {
+        // Header row then one row per key, all cells in one flat list as the child divs of the table
+        StringBuilder html = new StringBuilder("<html><body><div class=\"table\">");
+        for (int column = 0; column < COLUMNS; column++) {
+            html.append("<div>Column ").append(column).append("</div>");
+        }
+        for (int row = 1; row <= rows; row++) {
+            html.append("<div>Row ").append(row).append("</div>");
+            for (int column = 1; column < COLUMNS; column++) {
+                html.append("<div><span>Cell ").append(row).append('.').append(column).append("</span></div>");
+            }
+        }
+        html.append("</div></body></html>");
+        lastRowName = "Row " + rows;
+
+        FakeWebDriver webDriver = new FakeWebDriver().loadHtml(html.toString());
+        WebUI.bindSession(new WebSession(webDriver, WebDriverFactory.FAKE_BROWSER));
+        tableLocator = DivTableHelper.tableLocatorOf(LOOKUP_COLUMN);
+        columnLocator = new WebLocator().tag("div").innerText(LOOKUP_COLUMN).freeze();
+        rowLocator = new WebLocator().tag("div").innerText(lastRowName).freeze();
+        DivTableHelper.refresh(tableLocator, COLUMNS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        DivTableHelper.invalidateSnapshots();
+        WebUI.bindSession(null);
+    }
+
+    /**
+     * Index the table again: one wait and one script reading the header row and the row keys
+     */
+    @Benchmark
+    public TableSnapshot refresh() {
+        return DivTableHelper.refresh(tableLocator, COLUMNS);
+    }
+
+    /**
+     * Resolve the cell of the last row from the cached snapshot, no WebDriver call
+     */
+    @Benchmark
+    public WebLocator findByColumnAndRowNames() {
+        return DivTableHelper.findByColumnAndRowNames(LOOKUP_COLUMN, lastRowName, CELL_CONTENT, COLUMNS);
+    }
+
+    /**
+     * Resolve a cell from the column and row elements: two waits and one script reading every cell of the table
+     */
+    @Benchmark
+    public WebLocator findByColumnAndRows() {
+        return DivTableHelper.findByColumnAndRows(columnLocator, rowLocator, CELL_CONTENT, COLUMNS);
+    }
+
+    /**
+     * Read the text of every row, {@link TableSnapshot#rows()} reading 100 rows per script
+     */
+    @Benchmark
+    public long streamRows() {
+        return DivTableHelper.snapshotOf(tableLocator, COLUMNS).rows().count();
+    }
+}
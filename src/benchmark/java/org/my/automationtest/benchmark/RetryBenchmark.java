@@ -0,0 +1,80 @@
+package org.my.automationtest.benchmark;
+
+import ch.qos.logback.classic.Level;
+import org.my.automationtest.locator.WebLocator;
+import org.my.automationtest.service.RetryPolicy;
+import org.my.automationtest.service.WebDriverFactory;
+import org.my.automationtest.service.WebSession;
+import org.my.automationtest.service.WebUI;
+import org.my.automationtest.service.fake.FakeWebDriver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link WebUI#click(WebLocator, long, boolean)} and its retries, on a {@link FakeWebDriver} page answering instantly.<br/><br/>
+ * <code>failures</code> is the number of failed attempts injected before each click succeeds, 0 being the happy path:
+ * <code>clickAfterTimeout</code> fails the wait for the element (previous actions are replayed, see {@link WebUI#setRetryReplayDepth(int)}),
+ * <code>clickIntercepted</code> fails the click itself with {@link org.openqa.selenium.ElementClickInterceptedException}.
+ * The retry policy has no backoff, so only the cost of the retry machinery is measured. Logging of the library is turned off, as each failure logs a stack trace.
+ * Run with: <code>mvn -Pint,benchmark test-compile exec:exec@jmh -Djmh.args=RetryBenchmark</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RetryBenchmark {
+
+    private static final WebLocator BUTTON = new WebLocator().tag("button").className("btn-primary").alias("submitButton").freeze();
+
+    @Param({"0", "1", "3"})
+    public int failures;
+
+    private FakeWebDriver webDriver;
+    private RetryPolicy previousRetryPolicy;
+
+    @Setup
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("org.my.automationtest")).setLevel(Level.OFF);
+        previousRetryPolicy = WebUI.getRetryPolicy();
+        WebUI.setRetryPolicy(previousRetryPolicy.toBuilder().initialInterval(0).maxInterval(0).jitter(0).build());
+        webDriver = new FakeWebDriver().loadHtml("<html><body><form><button class=\"btn-primary\" type=\"button\">Submit</button></form></body></html>");
+        WebUI.bindSession(new WebSession(webDriver, WebDriverFactory.FAKE_BROWSER));
+        // Fill the action journal, so replays cost what they cost in a real test
+        for (int i = 0; i < WebUI.getRetryReplayDepth(); i++) {
+            WebUI.click(BUTTON, 0, true);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        WebUI.bindSession(null);
+        WebUI.setRetryPolicy(previousRetryPolicy);
+    }
+
+    @Benchmark
+    public void clickAfterTimeout() {
+        webDriver.failNextFinds(failures);
+        WebUI.click(BUTTON, 0, true);
+    }
+
+    @Benchmark
+    public void clickIntercepted() {
+        webDriver.interceptNextClicks(failures);
+        WebUI.click(BUTTON, 0, true);
+    }
+}
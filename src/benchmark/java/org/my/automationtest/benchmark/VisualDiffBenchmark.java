@@ -0,0 +1,149 @@
+package org.my.automationtest.benchmark;
+
+import org.my.automationtest.service.visual.VisualDiff;
+import org.my.automationtest.service.visual.VisualDiffResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link VisualDiff} on synthetic 1280x800 page screenshots, CPU only, with percentiles.<br/><br/>
+ * <code>identical</code> and <code>smallChange</code> screenshots match their baseline, <code>largeChange</code> does not:
+ * <code>compareEarlyExit</code> then stops at the allowed number of different pixels, <code>compareFull</code> locates them all,
+ * <code>writeDiffImage</code> counts them while encoding the diff image as a mismatching verification does.
+ * The diff is shared by all benchmark threads, add <code>-t 4</code> to measure several test threads comparing at the same time (as parallel suites do).
+ * Run with: <code>mvn -Pint,benchmark test-compile exec:exec@jmh -Djmh.args=VisualDiffBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VisualDiffBenchmark {
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 800;
+
+    @Param({"identical", "smallChange", "largeChange"})
+    public String change;
+
+    private VisualDiff visualDiff;
+    private BufferedImage baseline;
+    private BufferedImage actual;
+    private byte[] baselinePng;
+    private byte[] actualPng;
+    private List<Rectangle> ignoredRegions;
+
+    @Setup
+    public void setUp() throws IOException {
+        visualDiff = VisualDiff.builder().maxDiffRatio(0.005).build();
+        baseline = page(new Random(42));
+        actual = copy(baseline);
+        if ("smallChange".equals(change)) {
+            paint(actual, new Rectangle(600, 380, 80, 20), Color.ORANGE);
+        } else if ("largeChange".equals(change)) {
+            paint(actual, new Rectangle(0, 200, WIDTH, 300), Color.DARK_GRAY);
+        }
+        baselinePng = png(baseline);
+        actualPng = png(actual);
+        ignoredRegions = Collections.singletonList(new Rectangle(1100, 10, 160, 30));
+    }
+
+    @Benchmark
+    public VisualDiffResult compareEarlyExit() {
+        return visualDiff.compare(baseline, actual, ignoredRegions, true);
+    }
+
+    @Benchmark
+    public VisualDiffResult compareFull() {
+        return visualDiff.compare(baseline, actual, ignoredRegions, false);
+    }
+
+    @Benchmark
+    public VisualDiffResult decodeAndCompare() throws IOException {
+        return visualDiff.compare(ImageIO.read(new ByteArrayInputStream(baselinePng)), ImageIO.read(new ByteArrayInputStream(actualPng)), ignoredRegions, true);
+    }
+
+    @Benchmark
+    public VisualDiffResult writeDiffImage() throws IOException {
+        return visualDiff.writeDiffImage(baseline, actual, ignoredRegions, new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    // White page with a header, text-like lines and a few colored blocks
+    private static BufferedImage page(Random random) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, WIDTH, HEIGHT);
+            graphics.setColor(new Color(0x2b579a));
+            graphics.fillRect(0, 0, WIDTH, 60);
+            graphics.setColor(Color.BLACK);
+            for (int y = 90; y < HEIGHT - 20; y += 22) {
+                for (int x = 40; x < WIDTH - 80; x += 40 + random.nextInt(60)) {
+                    graphics.drawString(Integer.toHexString(random.nextInt()), x, y);
+                }
+            }
+            for (int i = 0; i < 6; i++) {
+                graphics.setColor(new Color(random.nextInt(0xffffff)));
+                graphics.fillRect(random.nextInt(WIDTH - 200), 80 + random.nextInt(HEIGHT - 200), 60 + random.nextInt(140), 30 + random.nextInt(90));
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        copy.setData(image.getData());
+        return copy;
+    }
+
+    private static void paint(BufferedImage image, Rectangle region, Color color) {
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(color);
+            graphics.fill(region);
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
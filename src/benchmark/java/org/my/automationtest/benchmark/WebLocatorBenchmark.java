@@ -0,0 +1,81 @@
+package org.my.automationtest.benchmark;
+
+import org.my.automationtest.locator.WebLocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a {@link WebLocator} into an XPath and a {@link By}, with 1 to 7 element attributes.<br/><br/>
+ * <code>compile</code> builds a new locator each time, as a page object creating its locators on the fly does,
+ * <code>cached</code> reuses one locator, as a frozen constant does.
+ * Run with: <code>mvn -Pint,benchmark test-compile exec:exec@jmh -Djmh.args=WebLocatorBenchmark</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebLocatorBenchmark {
+
+    @Param({"1", "2", "3", "4", "5", "6", "7"})
+    public int attributeCount;
+
+    private WebLocator cachedLocator;
+
+    @Setup
+    public void setUp() {
+        cachedLocator = newLocator().freeze();
+    }
+
+    @Benchmark
+    public String compileXpath() {
+        return newLocator().toXpath();
+    }
+
+    @Benchmark
+    public By compileBy() {
+        return newLocator().toBy();
+    }
+
+    @Benchmark
+    public String cachedXpath() {
+        return cachedLocator.toXpath();
+    }
+
+    private WebLocator newLocator() {
+        // Attributes in the order they are most often combined in page objects
+        WebLocator webLocator = new WebLocator().tag("input");
+        if (attributeCount >= 2) {
+            webLocator.className("form-control");
+        }
+        if (attributeCount >= 3) {
+            webLocator.name("user'name");
+        }
+        if (attributeCount >= 4) {
+            webLocator.type("text");
+        }
+        if (attributeCount >= 5) {
+            webLocator.id("login-user");
+        }
+        if (attributeCount >= 6) {
+            webLocator.href("/login?next=home");
+        }
+        if (attributeCount >= 7) {
+            webLocator.innerText("User \"name\"");
+        }
+        return webLocator;
+    }
+}
@@ -0,0 +1,184 @@
+package org.my.automationtest.service.probe;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import org.my.automationtest.locator.WebLocator;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Custom Java Flight Recorder events of {@link ActionProbe} operations, only loaded by name through {@link JfrSupport} when the JVM has <code>jdk.jfr</code>.<br/><br/>
+ * Built from <code>src/jfr/java</code> by the <code>compile-jfr</code> execution of the default build, so the rest of the library compiles against the Java 8 API.
+ * Events are only created while a recording is running, see {@link #register()}.
+ */
+final class JfrEvents implements JfrSupport.Events {
+
+    private static final ThreadLocal<Deque<OpenEvent>> OPEN_EVENTS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    JfrEvents() {
+    }
+
+    /**
+     * Keep {@link JfrSupport#isRecording()} up to date with the recordings of this JVM, without initializing the recorder if there is none
+     */
+    @Override
+    public void register() {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                updateRecording();
+            }
+        });
+        // For ex: recording started on the command line with -XX:StartFlightRecording
+        if (FlightRecorder.isInitialized()) {
+            updateRecording();
+        }
+    }
+
+    private void updateRecording() {
+        boolean running = false;
+        for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings()) {
+            running |= recording.getState() == RecordingState.RUNNING;
+        }
+        JfrSupport.setRecording(running);
+    }
+
+    @Override
+    public void begin(String operation, long startNanos) {
+        BaseEvent event;
+        if (ActionProbe.SLEEP.equals(operation)) {
+            event = new SleepEvent();
+        } else if (ActionProbe.RETRY.equals(operation)) {
+            event = new RetryEvent();
+        } else if (operation.startsWith("waitFor")) {
+            event = new WaitEvent();
+        } else {
+            event = new ActionEvent();
+        }
+        event.begin();
+        OPEN_EVENTS.get().push(new OpenEvent(event, startNanos));
+        JfrSupport.opened();
+    }
+
+    @Override
+    public void end(String operation, Object detail, long startNanos) {
+        Deque<OpenEvent> openEvents = OPEN_EVENTS.get();
+        OpenEvent openEvent = openEvents.peek();
+        // Not begun, for ex: the recording started in the middle of the operation
+        if (openEvent == null || openEvent.startNanos != startNanos) {
+            return;
+        }
+        openEvents.pop();
+        JfrSupport.closed();
+        BaseEvent event = openEvent.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(operation, detail);
+            ITestResult testResult = Reporter.getCurrentTestResult();
+            event.test = testResult == null ? null
+                    : testResult.getTestClass().getRealClass().getSimpleName() + "." + testResult.getMethod().getMethodName();
+            event.commit();
+        }
+    }
+
+    private static String describe(Object detail) {
+        if (detail instanceof WebLocator && ((WebLocator) detail).getAlias() != null) {
+            return ((WebLocator) detail).getAlias();
+        }
+        return detail == null ? null : detail.toString();
+    }
+
+    private static final class OpenEvent {
+        private final BaseEvent event;
+        private final long startNanos;
+
+        private OpenEvent(BaseEvent event, long startNanos) {
+            this.event = event;
+            this.startNanos = startNanos;
+        }
+    }
+
+    @StackTrace(false)
+    abstract static class BaseEvent extends Event {
+        @Label("Test")
+        @Description("TestNG method running the operation, as class.method")
+        String test;
+
+        abstract void set(String operation, Object detail);
+    }
+
+    @Name("org.my.automationtest.Action")
+    @Label("WebUI Action")
+    @Category({"Selenium", "WebUI"})
+    @Description("WebUI action, for ex: click, setText, takeScreenshot, including the waits and retries it made")
+    static final class ActionEvent extends BaseEvent {
+        @Label("Method")
+        String method;
+        @Label("Locator")
+        @Description("Alias of the located element, or its xpath")
+        String locator;
+
+        @Override
+        void set(String operation, Object detail) {
+            method = operation;
+            locator = describe(detail);
+        }
+    }
+
+    @Name("org.my.automationtest.Wait")
+    @Label("WebUI Wait")
+    @Category({"Selenium", "WebUI"})
+    @Description("Wait for an element to be visible, clickable or invisible")
+    static final class WaitEvent extends BaseEvent {
+        @Label("Method")
+        String method;
+        @Label("Locator")
+        @Description("Alias of the located element, or its xpath")
+        String locator;
+
+        @Override
+        void set(String operation, Object detail) {
+            method = operation;
+            locator = describe(detail);
+        }
+    }
+
+    @Name("org.my.automationtest.RetryAttempt")
+    @Label("Retry Attempt")
+    @Category({"Selenium", "WebUI"})
+    @Description("One attempt of a retried operation, for ex: replaying previous actions, clicking an element covered by another one")
+    static final class RetryEvent extends BaseEvent {
+        @Label("Operation")
+        String operation;
+
+        @Override
+        void set(String operation, Object detail) {
+            this.operation = describe(detail);
+        }
+    }
+
+    @Name("org.my.automationtest.Sleep")
+    @Label("Sleep")
+    @Category({"Selenium", "WebUI"})
+    @Description("Fixed sleep, for ex: retry backoff, fallback of a wait the driver cannot run in the page")
+    static final class SleepEvent extends BaseEvent {
+        @Label("Reason")
+        String reason;
+
+        @Override
+        void set(String operation, Object detail) {
+            reason = describe(detail);
+        }
+    }
+}
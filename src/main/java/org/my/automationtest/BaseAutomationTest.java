@@ -1,23 +1,47 @@
 package org.my.automationtest;
 
 import org.my.automationtest.constants.SeleniumConstants;
+import org.my.automationtest.locator.LocatorStrategy;
+import org.my.automationtest.locator.WebLocator;
 import org.my.automationtest.service.MyProperties;
+import org.my.automationtest.service.ObserverWait;
+import org.my.automationtest.service.RetryPolicy;
+import org.my.automationtest.service.StabilityWait;
+import org.my.automationtest.service.WaitMode;
+import org.my.automationtest.service.WebSession;
 import org.my.automationtest.service.WebUI;
+import org.my.automationtest.service.fake.FakeWebDriver;
+import org.my.automationtest.service.probe.ActionProbe;
+import org.my.automationtest.service.probe.CommandTracer;
+import org.my.automationtest.service.visual.VisualDiff;
 import org.my.automationtest.utils.FileUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.testng.ITestContext;
+import org.testng.ITestResult;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.AfterSuite;
 import org.testng.annotations.BeforeTest;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
 public class BaseAutomationTest {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(BaseAutomationTest.class);
+
     private MyProperties myProperties;
     private ITestContext testContext;
 
     @BeforeTest(groups = "3", dependsOnGroups = "2")
     protected void initializeAppParams() {
         Set<String> propertyKeys = myProperties.getAllPropertyKeys();
+        RetryPolicy.Builder retryPolicyBuilder = WebUI.getRetryPolicy().toBuilder();
+        VisualDiff.Builder visualDiffBuilder = WebUI.getVisualBaselines().getVisualDiff().toBuilder();
 
         for (String key : propertyKeys) {
             if (key.indexOf("webdriver") == 0) {
@@ -32,7 +56,111 @@ public class BaseAutomationTest {
             if (SeleniumConstants.DEFAULT_WAIT_UNTIL_TIMEOUT_KEY.equals(key)) {
                 WebUI.setDefaultWaitUntilTimeout(Long.parseLong(getProperty(SeleniumConstants.DEFAULT_WAIT_UNTIL_TIMEOUT_KEY)));
             }
+            if (SeleniumConstants.LOCATOR_STRATEGY_KEY.equals(key)) {
+                WebLocator.setStrategy(LocatorStrategy.valueOf(getProperty(SeleniumConstants.LOCATOR_STRATEGY_KEY).toUpperCase()));
+            }
+            if (SeleniumConstants.WAIT_MODE_KEY.equals(key)) {
+                WebUI.setWaitMode(WaitMode.valueOf(getProperty(SeleniumConstants.WAIT_MODE_KEY).toUpperCase()));
+            }
+            if (SeleniumConstants.RETRY_REPLAY_DEPTH_KEY.equals(key)) {
+                WebUI.setRetryReplayDepth(Integer.parseInt(getProperty(SeleniumConstants.RETRY_REPLAY_DEPTH_KEY)));
+            }
+            if (SeleniumConstants.FAST_TEXT_THRESHOLD_KEY.equals(key)) {
+                WebUI.setFastTextThreshold(Integer.parseInt(getProperty(SeleniumConstants.FAST_TEXT_THRESHOLD_KEY)));
+            }
+            if (SeleniumConstants.SESSION_POOL_ENABLED_KEY.equals(key)) {
+                WebUI.getSessionPool().setEnabled(Boolean.parseBoolean(getProperty(SeleniumConstants.SESSION_POOL_ENABLED_KEY)));
+            }
+            if (SeleniumConstants.SESSION_POOL_MAX_SIZE_KEY.equals(key)) {
+                WebUI.getSessionPool().setMaxSize(Integer.parseInt(getProperty(SeleniumConstants.SESSION_POOL_MAX_SIZE_KEY)));
+            }
+            if (SeleniumConstants.SESSION_POOL_MAX_USES_PER_SESSION_KEY.equals(key)) {
+                WebUI.getSessionPool().setMaxUsesPerSession(Integer.parseInt(getProperty(SeleniumConstants.SESSION_POOL_MAX_USES_PER_SESSION_KEY)));
+            }
+            if (SeleniumConstants.SESSION_POOL_WARM_UP_SIZE_KEY.equals(key)) {
+                WebUI.getSessionPool().setWarmUpSize(Integer.parseInt(getProperty(SeleniumConstants.SESSION_POOL_WARM_UP_SIZE_KEY)));
+            }
+            if (SeleniumConstants.SESSION_POOL_ACQUIRE_TIMEOUT_KEY.equals(key)) {
+                WebUI.getSessionPool().setAcquireTimeout(Long.parseLong(getProperty(SeleniumConstants.SESSION_POOL_ACQUIRE_TIMEOUT_KEY)));
+            }
+            if (SeleniumConstants.SCREENSHOT_QUEUE_CAPACITY_KEY.equals(key)) {
+                WebUI.getScreenshotWriter().setQueueCapacity(Integer.parseInt(getProperty(SeleniumConstants.SCREENSHOT_QUEUE_CAPACITY_KEY)));
+            }
+            if (SeleniumConstants.SCREENSHOT_WRITER_THREADS_KEY.equals(key)) {
+                WebUI.getScreenshotWriter().setWriterThreads(Integer.parseInt(getProperty(SeleniumConstants.SCREENSHOT_WRITER_THREADS_KEY)));
+            }
+            if (SeleniumConstants.SCREENSHOT_CONTENT_ADDRESSED_KEY.equals(key)) {
+                WebUI.getScreenshotWriter().setContentAddressed(Boolean.parseBoolean(getProperty(SeleniumConstants.SCREENSHOT_CONTENT_ADDRESSED_KEY)));
+            }
+            if (SeleniumConstants.SCREENSHOT_PERCEPTUAL_DEDUP_KEY.equals(key)) {
+                WebUI.getScreenshotWriter().setPerceptualDedup(Boolean.parseBoolean(getProperty(SeleniumConstants.SCREENSHOT_PERCEPTUAL_DEDUP_KEY)));
+            }
+            if (SeleniumConstants.SCREENSHOT_PERCEPTUAL_THRESHOLD_KEY.equals(key)) {
+                WebUI.getScreenshotWriter().setPerceptualThreshold(Integer.parseInt(getProperty(SeleniumConstants.SCREENSHOT_PERCEPTUAL_THRESHOLD_KEY)));
+            }
+            if (SeleniumConstants.SCREENSHOT_SCROLL_PAUSE_KEY.equals(key)) {
+                WebUI.setFullPageScrollPause(Long.parseLong(getProperty(SeleniumConstants.SCREENSHOT_SCROLL_PAUSE_KEY)));
+            }
+            if (SeleniumConstants.VISUAL_BASELINE_DIRECTORY_KEY.equals(key)) {
+                WebUI.getVisualBaselines().setDirectory(Paths.get(getProperty(SeleniumConstants.VISUAL_BASELINE_DIRECTORY_KEY)));
+            }
+            if (SeleniumConstants.VISUAL_UPDATE_BASELINES_KEY.equals(key)) {
+                WebUI.getVisualBaselines().setUpdateBaselines(Boolean.parseBoolean(getProperty(SeleniumConstants.VISUAL_UPDATE_BASELINES_KEY)));
+            }
+            if (SeleniumConstants.VISUAL_MAX_DIFF_RATIO_KEY.equals(key)) {
+                visualDiffBuilder.maxDiffRatio(Double.parseDouble(getProperty(SeleniumConstants.VISUAL_MAX_DIFF_RATIO_KEY)));
+            }
+            if (SeleniumConstants.VISUAL_CHANNEL_TOLERANCE_KEY.equals(key)) {
+                visualDiffBuilder.channelTolerance(Integer.parseInt(getProperty(SeleniumConstants.VISUAL_CHANNEL_TOLERANCE_KEY)));
+            }
+            if (SeleniumConstants.VISUAL_TILE_SIZE_KEY.equals(key)) {
+                visualDiffBuilder.tileSize(Integer.parseInt(getProperty(SeleniumConstants.VISUAL_TILE_SIZE_KEY)));
+            }
+            if (SeleniumConstants.VISUAL_PARALLELISM_KEY.equals(key)) {
+                visualDiffBuilder.parallelism(Integer.parseInt(getProperty(SeleniumConstants.VISUAL_PARALLELISM_KEY)));
+            }
+            if (SeleniumConstants.PROBE_ENABLED_KEY.equals(key)) {
+                ActionProbe.setEnabled(Boolean.parseBoolean(getProperty(SeleniumConstants.PROBE_ENABLED_KEY)));
+            }
+            if (SeleniumConstants.FLIGHT_RECORDER_CAPACITY_KEY.equals(key)) {
+                WebUI.setFlightRecorderCapacity(Integer.parseInt(getProperty(SeleniumConstants.FLIGHT_RECORDER_CAPACITY_KEY)));
+            }
+            if (SeleniumConstants.TRACE_COMMANDS_KEY.equals(key)) {
+                CommandTracer.setEnabled(Boolean.parseBoolean(getProperty(SeleniumConstants.TRACE_COMMANDS_KEY)));
+            }
+            if (SeleniumConstants.TRACE_ROUND_TRIP_BUDGET_KEY.equals(key)) {
+                CommandTracer.setRoundTripBudget(Integer.parseInt(getProperty(SeleniumConstants.TRACE_ROUND_TRIP_BUDGET_KEY)));
+            }
+            if (SeleniumConstants.TRACE_BUDGET_MODE_KEY.equals(key)) {
+                CommandTracer.setBudgetMode(CommandTracer.BudgetMode.valueOf(getProperty(SeleniumConstants.TRACE_BUDGET_MODE_KEY).toUpperCase()));
+            }
+            if (SeleniumConstants.RETRY_INITIAL_INTERVAL_KEY.equals(key)) {
+                retryPolicyBuilder.initialInterval(Long.parseLong(getProperty(SeleniumConstants.RETRY_INITIAL_INTERVAL_KEY)));
+            }
+            if (SeleniumConstants.RETRY_MAX_INTERVAL_KEY.equals(key)) {
+                retryPolicyBuilder.maxInterval(Long.parseLong(getProperty(SeleniumConstants.RETRY_MAX_INTERVAL_KEY)));
+            }
+            if (SeleniumConstants.RETRY_MULTIPLIER_KEY.equals(key)) {
+                retryPolicyBuilder.multiplier(Double.parseDouble(getProperty(SeleniumConstants.RETRY_MULTIPLIER_KEY)));
+            }
+            if (SeleniumConstants.RETRY_JITTER_KEY.equals(key)) {
+                retryPolicyBuilder.jitter(Double.parseDouble(getProperty(SeleniumConstants.RETRY_JITTER_KEY)));
+            }
+            if (SeleniumConstants.RETRY_TIME_BUDGET_KEY.equals(key)) {
+                retryPolicyBuilder.timeBudget(Long.parseLong(getProperty(SeleniumConstants.RETRY_TIME_BUDGET_KEY)) * 1000L);
+            }
+            if (SeleniumConstants.RETRY_WAIT_FOR_DOM_CHANGE_KEY.equals(key)) {
+                retryPolicyBuilder.waitForDomChange(Boolean.parseBoolean(getProperty(SeleniumConstants.RETRY_WAIT_FOR_DOM_CHANGE_KEY)));
+            }
+            if (SeleniumConstants.FAKE_COMMAND_LATENCY_KEY.equals(key)) {
+                FakeWebDriver.setDefaultCommandLatency(Long.parseLong(getProperty(SeleniumConstants.FAKE_COMMAND_LATENCY_KEY)));
+            }
+            if (SeleniumConstants.FAKE_FIXTURE_DIRECTORY_KEY.equals(key)) {
+                FakeWebDriver.setDefaultFixtureDirectory(Paths.get(getProperty(SeleniumConstants.FAKE_FIXTURE_DIRECTORY_KEY)));
+            }
         }
+        WebUI.setRetryPolicy(retryPolicyBuilder.build());
+        WebUI.getVisualBaselines().setVisualDiff(visualDiffBuilder.build());
 
 //        String sysSelectedWebBrowser = System.getProperty(SeleniumConstants.SELECTED_WEB_BROWSER_KEY);
 //        if (sysSelectedWebBrowser != null && !sysSelectedWebBrowser.isEmpty()) {
@@ -74,10 +202,88 @@ public class BaseAutomationTest {
         this.testContext = testContext;
     }
 
+    /**
+     * Hand the session of the thread back to {@link org.my.automationtest.service.WebSessionPool} after each test method.<br/><br/>
+     * A session which is not pooled is left open: it lives until the test quits it, so it can be shared by the methods of a class.<br/>
+     * A passed test is failed here if it went over its round trip budget (see {@link CommandTracer#checkBudget(ITestResult)}).
+     */
+    @AfterMethod(alwaysRun = true)
+    protected void releaseSession(ITestResult testResult) {
+        if (testResult.getStatus() == ITestResult.SUCCESS) {
+            try {
+                // The last action of the test may have gone over the round trip budget
+                CommandTracer.checkBudget(testResult);
+            } catch (RuntimeException e) {
+                testResult.setStatus(ITestResult.FAILURE);
+                testResult.setThrowable(e);
+            }
+        }
+        if (testResult.getStatus() == ITestResult.FAILURE) {
+            WebUI.dumpFlightRecorder(testResult, "failure");
+        }
+        WebSession session = WebUI.getCurrentSession();
+        if (session != null && session.isPooled()) {
+            WebUI.quitSession();
+        }
+    }
+
+    @AfterSuite(alwaysRun = true)
+    protected void reportStatistics() {
+        WebUI.getScreenshotWriter().flush(SeleniumConstants.SCREENSHOT_FLUSH_TIMEOUT * 1000L);
+        if (WebUI.getScreenshotWriter().getWrittenJobs() + WebUI.getScreenshotWriter().getFailedJobs() > 0) {
+            LOGGER.info("Screenshot writer statistics: {}", WebUI.getScreenshotWriter());
+            WebUI.getScreenshotWriter().getStores().forEach(store -> LOGGER.info("Screenshot store statistics: {}", store));
+        }
+        if (WebUI.getVisualBaselines().getComparisons() + WebUI.getVisualBaselines().getCreatedBaselines() > 0) {
+            LOGGER.info("Visual comparison statistics: {}", WebUI.getVisualBaselines());
+        }
+        if (WebUI.getSessionPool().isEnabled()) {
+            LOGGER.info("Session pool statistics: {}", WebUI.getSessionPool().getStatistics());
+            WebUI.getSessionPool().shutdown();
+        }
+        if (WebUI.getWaitMode() == WaitMode.OBSERVER) {
+            LOGGER.info("Observer waits: {} resolved in page, {} fell back to polling, ~{} ms saved compared to polling"
+                    , ObserverWait.getObservedWaits(), ObserverWait.getFallbackWaits(), ObserverWait.getSavedMillis());
+        }
+        if (StabilityWait.getSettledWaits() + StabilityWait.getUnsettledWaits() > 0) {
+            LOGGER.info("Stability waits: {} settled, {} waited the whole time, ~{} ms saved compared to sleeping"
+                    , StabilityWait.getSettledWaits(), StabilityWait.getUnsettledWaits(), StabilityWait.getSavedMillis());
+        }
+        WebUI.getRetryPolicy().getStatistics().forEach((operation, statistics) -> LOGGER.info("Retry statistics of {}: {}", operation, statistics));
+        if (ActionProbe.isEnabled() && getTestContext() != null) {
+            Path outputDirectory = Paths.get(getTestContext().getSuite().getOutputDirectory());
+            try {
+                ActionProbe.export(outputDirectory);
+                LOGGER.info("Action latencies written to {}", outputDirectory.resolve(ActionProbe.CSV_FILE));
+            } catch (IOException e) {
+                LOGGER.error("Cannot write action latencies to {}", outputDirectory, e);
+            }
+        }
+        if (CommandTracer.isEnabled() && getTestContext() != null) {
+            Path outputDirectory = Paths.get(getTestContext().getSuite().getOutputDirectory());
+            CommandTracer.getHistograms().getOrDefault(CommandTracer.BY_ACTION, Collections.emptyMap()).forEach((action, histogram) ->
+                    LOGGER.info("WebDriver round trips of {}: {}, {} ms", action, histogram.getCount(), Math.round(histogram.getTotalMillis())));
+            try {
+                CommandTracer.export(outputDirectory);
+                LOGGER.info("WebDriver round trips written to {}", outputDirectory.resolve(CommandTracer.CSV_FILE));
+            } catch (IOException e) {
+                LOGGER.error("Cannot write WebDriver round trips to {}", outputDirectory, e);
+            }
+        }
+    }
+
     protected void takeScreenshot() {
         WebUI.takeScreenshot(getTestContext(), getClass().getSimpleName());
     }
 
+    protected void takeFullPageScreenshot() {
+        WebUI.takeFullPageScreenshot(getTestContext(), getClass().getSimpleName());
+    }
+
+    protected void verifyScreenshot(String name, WebLocator... ignoredLocators) {
+        WebUI.verifyScreenshot(getTestContext(), getClass().getSimpleName() + "/" + name, ignoredLocators);
+    }
+
     protected String getProperty(String key) {
         String value = getProperty(key, null);
         if (value == null) {
@@ -11,8 +11,45 @@ public class SeleniumConstants {
 
 	public static final String NON_BREAKING_SPACE = "\u00A0";
 
-	public static final String JS_FIND_ELEMENT_BY_XPATH = "document.evaluate(\"%s\", document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue";
+	// xpath is passed as script argument, so it can contain any quote
+	public static final String JS_FIND_ELEMENT_BY_XPATH = "document.evaluate(arguments[0], document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue";
 
 	public static final String SELECTED_WEB_BROWSER_KEY = "selectedWebBrowser";
 	public static final String DEFAULT_WAIT_UNTIL_TIMEOUT_KEY = "defaultWaitUntilTimeout";
+	public static final String LOCATOR_STRATEGY_KEY = "locatorStrategy";
+	public static final String WAIT_MODE_KEY = "waitMode";
+	public static final String RETRY_REPLAY_DEPTH_KEY = "retryReplayDepth";
+	public static final String FAST_TEXT_THRESHOLD_KEY = "fastTextThreshold";
+	public static final String SCREENSHOT_QUEUE_CAPACITY_KEY = "screenshot.queueCapacity";
+	public static final String SCREENSHOT_WRITER_THREADS_KEY = "screenshot.writerThreads";
+	public static final String SCREENSHOT_CONTENT_ADDRESSED_KEY = "screenshot.contentAddressed";
+	public static final String SCREENSHOT_PERCEPTUAL_DEDUP_KEY = "screenshot.perceptualDedup";
+	public static final String SCREENSHOT_PERCEPTUAL_THRESHOLD_KEY = "screenshot.perceptualThreshold";
+	public static final String SCREENSHOT_SCROLL_PAUSE_KEY = "screenshot.scrollPause";
+	public static final int FULL_PAGE_SCREENSHOT_MAX_TILES = 50;
+	public static final String VISUAL_BASELINE_DIRECTORY_KEY = "visual.baselineDirectory";
+	public static final String VISUAL_UPDATE_BASELINES_KEY = "visual.updateBaselines";
+	public static final String VISUAL_MAX_DIFF_RATIO_KEY = "visual.maxDiffRatio";
+	public static final String VISUAL_CHANNEL_TOLERANCE_KEY = "visual.channelTolerance";
+	public static final String VISUAL_TILE_SIZE_KEY = "visual.tileSize";
+	public static final String VISUAL_PARALLELISM_KEY = "visual.parallelism";
+	public static final String PROBE_ENABLED_KEY = "probe.enabled";
+	public static final String FLIGHT_RECORDER_CAPACITY_KEY = "flightRecorder.capacity";
+	public static final String TRACE_COMMANDS_KEY = "trace.commands";
+	public static final String TRACE_ROUND_TRIP_BUDGET_KEY = "trace.roundTripBudget";
+	public static final String TRACE_BUDGET_MODE_KEY = "trace.budgetMode";
+	public static final long SCREENSHOT_FLUSH_TIMEOUT = 60; // in seconds
+	public static final String RETRY_INITIAL_INTERVAL_KEY = "retry.initialInterval";
+	public static final String RETRY_MAX_INTERVAL_KEY = "retry.maxInterval";
+	public static final String RETRY_MULTIPLIER_KEY = "retry.multiplier";
+	public static final String RETRY_JITTER_KEY = "retry.jitter";
+	public static final String RETRY_TIME_BUDGET_KEY = "retry.timeBudget";
+	public static final String RETRY_WAIT_FOR_DOM_CHANGE_KEY = "retry.waitForDomChange";
+	public static final String SESSION_POOL_ENABLED_KEY = "sessionPool.enabled";
+	public static final String SESSION_POOL_MAX_SIZE_KEY = "sessionPool.maxSize";
+	public static final String SESSION_POOL_MAX_USES_PER_SESSION_KEY = "sessionPool.maxUsesPerSession";
+	public static final String SESSION_POOL_WARM_UP_SIZE_KEY = "sessionPool.warmUpSize";
+	public static final String SESSION_POOL_ACQUIRE_TIMEOUT_KEY = "sessionPool.acquireTimeout";
+	public static final String FAKE_COMMAND_LATENCY_KEY = "fake.commandLatency";
+	public static final String FAKE_FIXTURE_DIRECTORY_KEY = "fake.fixtureDirectory";
 }
@@ -0,0 +1,63 @@
+package org.my.automationtest.locator;
+
+import org.openqa.selenium.By;
+
+/**
+ * Immutable form of {@link WebLocator}: the XPath, the CSS selector and the {@link By} are built and validated once by {@link WebLocator#compile()}.
+ */
+public final class CompiledLocator {
+
+    private final String xpath;
+    private final String cssSelector;
+    private final By fastestBy;
+    private final By xpathFirstBy;
+    private final By relativeFastestBy;
+    private final By relativeXpathFirstBy;
+    private final String description;
+
+    CompiledLocator(String xpath, String cssSelector, By fastestBy, By xpathFirstBy, By relativeFastestBy, By relativeXpathFirstBy, String description) {
+        this.xpath = xpath;
+        this.cssSelector = cssSelector;
+        this.fastestBy = fastestBy;
+        this.xpathFirstBy = xpathFirstBy;
+        this.relativeFastestBy = relativeFastestBy;
+        this.relativeXpathFirstBy = relativeXpathFirstBy;
+        this.description = description;
+    }
+
+    /**
+     * @return XPath expression from the whole document (or relative to the parent element for a locator scoped within a {@link org.openqa.selenium.WebElement}),
+     * <code>null</code> if the locator cannot be expressed in XPath (for ex: it is defined by a CSS selector only)
+     */
+    public String getXpath() {
+        return xpath;
+    }
+
+    /**
+     * @return CSS selector, <code>null</code> if the locator cannot be expressed in CSS (for ex: it checks inner text)
+     */
+    public String getCssSelector() {
+        return cssSelector;
+    }
+
+    /**
+     * @param strategy strategy to choose between the equivalent forms of this locator
+     * @return {@link By} to locate the web element, <code>null</code> if no checking condition is defined in the locator
+     */
+    public By getBy(LocatorStrategy strategy) {
+        return strategy == LocatorStrategy.XPATH_FIRST ? xpathFirstBy : fastestBy;
+    }
+
+    /**
+     * @param strategy strategy to choose between the equivalent forms of this locator
+     * @return {@link By} to locate the web element from inside its parent element, <code>null</code> if no checking condition is defined in the locator
+     */
+    public By getRelativeBy(LocatorStrategy strategy) {
+        return strategy == LocatorStrategy.XPATH_FIRST ? relativeXpathFirstBy : relativeFastestBy;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,15 @@
+package org.my.automationtest.locator;
+
+/**
+ * How {@link WebLocator#toBy()} chooses between the equivalent forms of a compiled locator
+ */
+public enum LocatorStrategy {
+    /**
+     * <code>By.id</code> for an id-only locator, CSS selector for attribute combinations, XPath only when inner text or a raw xpath needs it
+     */
+    FASTEST,
+    /**
+     * Always the generated XPath when there is one (behaviour before CSS compilation was introduced), kept for comparison
+     */
+    XPATH_FIRST
+}
@@ -1,9 +1,21 @@
 package org.my.automationtest.locator;
 
+import org.my.automationtest.utils.LocatorUtil;
 import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class WebLocator {
 
+    private static final ThreadLocal<XPath> XPATH_COMPILER = ThreadLocal.withInitial(() -> XPathFactory.newInstance().newXPath());
+    private static volatile LocatorStrategy strategy = LocatorStrategy.FASTEST;
+
     public WebLocator() {
         // Default constructor
     }
@@ -13,6 +25,7 @@ public class WebLocator {
     }
 
     private String alias;
+    private boolean keyEventsRequired;
 
     private String name;
     private String id;
@@ -25,24 +38,184 @@ public class WebLocator {
     private String xpath;
     private String cssSelector;
 
+    private WebLocator parentLocator;
+    private WebElement parentElement;
+
+    private boolean frozen;
+    private volatile CompiledLocator compiledLocator;
+
     public boolean isAnyElementAttributeProvided() {
         return getName() != null || getId() != null || getTag() != null || getHref() != null || getInnerText() != null || getClassName() != null || getType() != null;
     }
 
+    /**
+     * Build the XPath, the CSS selector and the {@link By} of this locator and validate them.<br/><br/>
+     * The result is cached until this locator is modified, so calling this method (or {@link #toBy()}, {@link #toXpath()}) repeatedly is cheap.
+     * @return compiled form of this locator
+     */
+    public CompiledLocator compile() {
+        CompiledLocator compiled = compiledLocator;
+        if (compiled == null) {
+            compiled = doCompile();
+            compiledLocator = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * Compile this locator and make it immutable, any later modification throws {@link RuntimeException}.<br/><br/>
+     * Intended for locators kept as constants in page objects, for ex: <code>static final WebLocator SEARCH_BOX = new WebLocator("search").freeze();</code>
+     * @return this locator
+     */
+    public WebLocator freeze() {
+        compile();
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * @return {@link By} chosen by {@link #getStrategy()} among the equivalent forms of this locator, to locate the web element from the whole document.
+     * For a locator scoped within a {@link WebElement}, this is the relative form which must be searched from that element
+     */
     public By toBy() {
-        By by;
-        String generatedXpath = toXpath();
-        if (generatedXpath != null) {
-            by = By.xpath(generatedXpath);
-        } else if (getCssSelector() != null) {
-            by = By.cssSelector(getCssSelector());
-        } else {
-            throw  new RuntimeException("There is no web element checking condition defined in Locator object");
+        By by = compile().getBy(strategy);
+        if (by == null) {
+            throw new RuntimeException(String.format("Locator %s cannot be searched from the whole document", this));
+        }
+        return by;
+    }
+
+    /**
+     * @return {@link By} chosen by {@link #getStrategy()} to locate the web element from inside its parent (see {@link #within(WebLocator)} and {@link #within(WebElement)})
+     */
+    public By toRelativeBy() {
+        By by = compile().getRelativeBy(strategy);
+        if (by == null) {
+            throw new RuntimeException("There is no web element checking condition defined in Locator object");
         }
         return by;
     }
 
     public String toXpath() {
+        return compile().getXpath();
+    }
+
+    public String toCssSelector() {
+        return compile().getCssSelector();
+    }
+
+    private CompiledLocator doCompile() {
+        String ownXpath = buildXpath();
+        String ownCssSelector = buildCssSelector();
+        if (ownXpath != null) {
+            validateXpath(ownXpath);
+        }
+        String relativeXpath = toRelativeXpath(ownXpath);
+        By relativeXpathFirstBy = chooseBy(relativeXpath, ownCssSelector, true);
+        By relativeFastestBy = isIdOnly() ? By.id(getId()) : chooseBy(relativeXpath, ownCssSelector, false);
+
+        if (getParentElement() != null) {
+            // Can only be located inside the parent element, the relative form is the only one
+            return new CompiledLocator(relativeXpath, ownCssSelector, relativeFastestBy, relativeXpathFirstBy, relativeFastestBy, relativeXpathFirstBy
+                    , String.format("%s within %s", relativeXpath != null ? relativeXpath : ownCssSelector, getParentElement()));
+        }
+        if (getParentLocator() != null) {
+            CompiledLocator parent = getParentLocator().compile();
+            String xpathInDocument = parent.getXpath() != null && relativeXpath != null ? joinXpath(parent.getXpath(), relativeXpath) : null;
+            if (xpathInDocument != null) {
+                validateXpath(xpathInDocument);
+            }
+            String cssSelectorInDocument = parent.getCssSelector() != null && ownCssSelector != null
+                    ? joinCssSelector(parent.getCssSelector(), ownCssSelector) : null;
+            String description = xpathInDocument != null ? xpathInDocument
+                    : cssSelectorInDocument != null ? cssSelectorInDocument
+                    : String.format("%s within %s", relativeXpath != null ? relativeXpath : ownCssSelector, parent);
+            return new CompiledLocator(xpathInDocument, cssSelectorInDocument
+                    , chooseBy(xpathInDocument, cssSelectorInDocument, false), chooseBy(xpathInDocument, cssSelectorInDocument, true)
+                    , relativeFastestBy, relativeXpathFirstBy, description);
+        }
+        By xpathFirstBy = chooseBy(ownXpath, ownCssSelector, true);
+        By fastestBy = isIdOnly() ? By.id(getId()) : chooseBy(ownXpath, ownCssSelector, false);
+        return new CompiledLocator(ownXpath, ownCssSelector, fastestBy, xpathFirstBy, relativeFastestBy, relativeXpathFirstBy
+                , ownXpath != null ? ownXpath : ownCssSelector);
+    }
+
+    private static By chooseBy(String xpathToUse, String cssSelectorToUse, boolean xpathFirst) {
+        if (xpathToUse != null && (xpathFirst || cssSelectorToUse == null)) {
+            return By.xpath(xpathToUse);
+        } else if (cssSelectorToUse != null) {
+            return By.cssSelector(cssSelectorToUse);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Turn a document xpath into one evaluated from a context element, for ex: <code>//input</code> becomes <code>.//input</code>
+     * and <code>div[2]</code> becomes <code>./div[2]</code>. Each branch of a union is turned on its own.
+     */
+    private static String toRelativeXpath(String xpathToConvert) {
+        if (xpathToConvert == null) {
+            return null;
+        }
+        List<String> branches = LocatorUtil.splitTopLevel(xpathToConvert, '|');
+        if (branches.size() > 1) {
+            return branches.stream().map(WebLocator::toRelativeXpath).collect(Collectors.joining(" | "));
+        }
+        if (xpathToConvert.startsWith(".") || xpathToConvert.startsWith("(.")) {
+            return xpathToConvert;
+        } else if (xpathToConvert.startsWith("/")) {
+            return "." + xpathToConvert;
+        } else if (xpathToConvert.startsWith("(/")) {
+            return "(." + xpathToConvert.substring(1);
+        } else {
+            return "./" + xpathToConvert;
+        }
+    }
+
+    /**
+     * Xpath of <code>relativeXpath</code> evaluated from the element of <code>parentXpath</code>, for ex: <code>//form</code> and <code>.//input</code>
+     * give <code>//form//input</code>. A parent union is wrapped in parentheses so the child steps apply to all its branches,
+     * for ex: <code>(//form | //dialog)//input</code>, and each branch of a child union is joined on its own.
+     * @return <code>null</code> if a branch of <code>relativeXpath</code> cannot be appended, for ex: <code>(.//input)[1]</code>
+     */
+    private static String joinXpath(String parentXpath, String relativeXpath) {
+        String context = LocatorUtil.splitTopLevel(parentXpath, '|').size() > 1 ? "(" + parentXpath + ")" : parentXpath;
+        StringBuilder sb = new StringBuilder();
+        for (String branch : LocatorUtil.splitTopLevel(relativeXpath, '|')) {
+            if (!branch.startsWith(".")) {
+                return null;
+            }
+            sb.append(sb.length() == 0 ? "" : " | ").append(context).append(branch.substring(1));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Css selector of <code>cssSelector</code> matched inside the element of <code>parentCssSelector</code>,
+     * each selector of a group being combined with each selector of the other, for ex: <code>form, dialog</code> and <code>input</code>
+     * give <code>form input, dialog input</code>
+     */
+    private static String joinCssSelector(String parentCssSelector, String cssSelector) {
+        List<String> selectors = new ArrayList<>();
+        for (String parent : LocatorUtil.splitTopLevel(parentCssSelector, ',')) {
+            for (String child : LocatorUtil.splitTopLevel(cssSelector, ',')) {
+                selectors.add(parent + " " + child);
+            }
+        }
+        return String.join(", ", selectors);
+    }
+
+    private boolean isIdOnly() {
+        return getId() != null && getXpath() == null && getCssSelector() == null
+                && getName() == null && getTag() == null && getHref() == null && getInnerText() == null && getClassName() == null && getType() == null;
+    }
+
+    private String buildXpath() {
         if (getXpath() != null) {
             return getXpath();
         } else if (isAnyElementAttributeProvided()) {
@@ -54,27 +227,27 @@ public class WebLocator {
             }
             String _and = "[";
             if (getId() != null) {
-                sb.append(_and).append("@id='").append(getId()).append("'");
+                sb.append(_and).append("@id=").append(LocatorUtil.toXpathLiteral(getId()));
                 _and = " and ";
             }
             if (getName() != null) {
-                sb.append(_and).append("@name='").append(getName()).append("'");
+                sb.append(_and).append("@name=").append(LocatorUtil.toXpathLiteral(getName()));
                 _and = " and ";
             }
             if (getHref() != null) {
-                sb.append(_and).append("@href='").append(getHref()).append("'");
+                sb.append(_and).append("@href=").append(LocatorUtil.toXpathLiteral(getHref()));
                 _and = " and ";
             }
             if (getClassName() != null) {
-                sb.append(_and).append("@class='").append(getClassName()).append("'");
+                sb.append(_and).append("@class=").append(LocatorUtil.toXpathLiteral(getClassName()));
                 _and = " and ";
             }
             if (getInnerText() != null) {
-                sb.append(_and).append("text()='").append(getInnerText()).append("'");
+                sb.append(_and).append("text()=").append(LocatorUtil.toXpathLiteral(getInnerText()));
                 _and = " and ";
             }
             if (getType() != null) {
-                sb.append(_and).append("@type='").append(getType()).append("'");
+                sb.append(_and).append("@type=").append(LocatorUtil.toXpathLiteral(getType()));
                 _and = " and ";
             }
             if (" and ".equals(_and)) {
@@ -86,20 +259,131 @@ public class WebLocator {
         }
     }
 
+    private String buildCssSelector() {
+        if (getXpath() != null) {
+            return null;
+        } else if (getCssSelector() != null) {
+            // The xpath is built from the element attributes alone and ignores the raw css selector, there is no css equivalent to it then
+            return isAnyElementAttributeProvided() ? null : getCssSelector();
+        } else if (isAnyElementAttributeProvided() && getInnerText() == null) {
+            // Attribute selectors match the whole attribute value, same as @attr='value' in the generated xpath
+            StringBuilder sb = new StringBuilder(getTag() == null ? "*" : getTag());
+            appendCssAttribute(sb, "id", getId());
+            appendCssAttribute(sb, "name", getName());
+            appendCssAttribute(sb, "href", getHref());
+            appendCssAttribute(sb, "class", getClassName());
+            appendCssAttribute(sb, "type", getType());
+            return sb.toString();
+        } else {
+            return null;
+        }
+    }
+
+    private static void appendCssAttribute(StringBuilder sb, String attribute, String value) {
+        if (value != null) {
+            sb.append('[').append(attribute).append('=').append(LocatorUtil.toCssStringLiteral(value)).append(']');
+        }
+    }
+
+    private static void validateXpath(String xpathToValidate) {
+        try {
+            XPATH_COMPILER.get().compile(xpathToValidate);
+        } catch (XPathExpressionException e) {
+            throw new RuntimeException(String.format("Invalid xpath: %s", xpathToValidate), e);
+        }
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new RuntimeException(String.format("Locator %s is frozen and cannot be modified", this));
+        }
+    }
+
+    private void beforeModified() {
+        checkNotFrozen();
+        compiledLocator = null;
+    }
+
+    public static LocatorStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @param strategy strategy used by {@link #toBy()} of all locators, {@link LocatorStrategy#XPATH_FIRST} restores the behaviour before CSS compilation was introduced
+     */
+    public static void setStrategy(LocatorStrategy strategy) {
+        WebLocator.strategy = strategy;
+    }
+
+    /**
+     * Locate the web element only inside the web element located by <code>parentLocator</code>, so waits and actions in {@link org.my.automationtest.service.WebUI}
+     * don't scan the whole document.<br/><br/>
+     * Conditions of this locator are evaluated relatively to the parent, for ex: <code>xpath("div[2]")</code> means the 2nd <code>div</code> child of the parent.
+     * The parent is captured when this locator is compiled, so it should not be modified afterwards.
+     * @param parentLocator locator of the container element
+     * @return this locator
+     */
+    public WebLocator within(WebLocator parentLocator) {
+        beforeModified();
+        this.parentLocator = parentLocator;
+        this.parentElement = null;
+        return this;
+    }
+
+    /**
+     * Locate the web element only inside the already resolved <code>parentElement</code>, see {@link #within(WebLocator)}
+     * @param parentElement container element
+     * @return this locator
+     */
+    public WebLocator within(WebElement parentElement) {
+        beforeModified();
+        this.parentElement = parentElement;
+        this.parentLocator = null;
+        return this;
+    }
+
+    public WebLocator getParentLocator() {
+        return parentLocator;
+    }
+
+    public WebElement getParentElement() {
+        return parentElement;
+    }
+
+    public boolean isScoped() {
+        return parentLocator != null || parentElement != null;
+    }
+
     public String getAlias() {
         return alias;
     }
 
     public WebLocator alias(String alias) {
+        checkNotFrozen();
         this.alias = alias;
         return this;
     }
 
+    public boolean isKeyEventsRequired() {
+        return keyEventsRequired;
+    }
+
+    /**
+     * @param keyEventsRequired true if the located field only reacts to real key events (for ex: it handles keydown),
+     *                          text is then always typed into it instead of being set by script
+     */
+    public WebLocator keyEventsRequired(boolean keyEventsRequired) {
+        checkNotFrozen();
+        this.keyEventsRequired = keyEventsRequired;
+        return this;
+    }
+
     public String getName() {
         return name;
     }
 
     public WebLocator name(String name) {
+        beforeModified();
         this.name = name;
         return this;
     }
@@ -109,6 +393,7 @@ public class WebLocator {
     }
 
     public WebLocator id(String id) {
+        beforeModified();
         this.id = id;
         return this;
     }
@@ -118,6 +403,7 @@ public class WebLocator {
     }
 
     public WebLocator tag(String tag) {
+        beforeModified();
         this.tag = tag;
         return this;
     }
@@ -127,6 +413,7 @@ public class WebLocator {
     }
 
     public WebLocator href(String href) {
+        beforeModified();
         this.href = href;
         return this;
     }
@@ -136,6 +423,7 @@ public class WebLocator {
     }
 
     public WebLocator className(String className) {
+        beforeModified();
         this.className = className;
         return this;
     }
@@ -145,6 +433,7 @@ public class WebLocator {
     }
 
     public WebLocator innerText(String innerText) {
+        beforeModified();
         this.innerText = innerText;
         return this;
     }
@@ -154,6 +443,7 @@ public class WebLocator {
     }
 
     public WebLocator type(String type) {
+        beforeModified();
         this.type = type;
         return this;
     }
@@ -163,6 +453,7 @@ public class WebLocator {
     }
 
     public WebLocator xpath(String xpath) {
+        beforeModified();
         this.xpath = xpath;
         return this;
     }
@@ -172,18 +463,20 @@ public class WebLocator {
     }
 
     public WebLocator cssSelector(String cssSelector) {
+        beforeModified();
         this.cssSelector = cssSelector;
         return this;
     }
 
     @Override
     public String toString() {
-        if (toXpath() != null) {
-            return toXpath();
-        } else if (getCssSelector() != null) {
-            return getCssSelector();
-        } else {
-            return super.toString();
+        String description;
+        try {
+            description = compile().toString();
+        } catch (RuntimeException e) {
+            // Invalid xpath, still describe the locator in log lines and error messages
+            description = getXpath();
         }
+        return description != null ? description : super.toString();
     }
 }
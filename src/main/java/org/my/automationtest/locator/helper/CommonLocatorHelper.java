@@ -1,9 +1,10 @@
 package org.my.automationtest.locator.helper;
 
 import org.my.automationtest.locator.WebLocator;
+import org.my.automationtest.utils.LocatorUtil;
 
 public class CommonLocatorHelper {
     public static WebLocator findByContainedText(String containedText) {
-        return new WebLocator().xpath(String.format("//*[text()[contains(., '%s')]]", containedText));
+        return new WebLocator().xpath(String.format("//*[text()[contains(., %s)]]", LocatorUtil.toXpathLiteral(containedText)));
     }
 }
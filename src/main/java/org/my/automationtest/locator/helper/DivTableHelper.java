@@ -1,99 +1,172 @@
 package org.my.automationtest.locator.helper;
 
 import org.my.automationtest.locator.WebLocator;
+import org.my.automationtest.service.PageScripts;
+import org.my.automationtest.service.WebSession;
 import org.my.automationtest.service.WebUI;
-import org.openqa.selenium.By;
-import org.openqa.selenium.WebDriver;
+import org.my.automationtest.utils.LocatorUtil;
 import org.openqa.selenium.WebElement;
 
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DivTableHelper {
+
+    // Snapshots of each session by table, a session is dropped with its snapshots once it is no longer referenced
+    private static final Map<WebSession, Map<String, TableSnapshot>> SNAPSHOTS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // arguments: table element, elements to be located in the table
+    // returns { cells: text of each child div of the table, indexes: for each element, index of the child div which is or contains it (or is at the same location), -1 if none }
+    public static final String JS_READ_DIV_TABLE = PageScripts.define(""
+            + "var table = arguments[0], targets = Array.prototype.slice.call(arguments, 1);"
+            + "var cells = [], divs = [];"
+            + "for (var c = table.firstElementChild; c; c = c.nextElementSibling) {"
+            + "  if (c.tagName === 'DIV') { divs.push(c); cells.push((c.innerText || '').trim()); }"
+            + "}"
+            + "var indexes = targets.map(function (target) {"
+            + "  for (var i = 0; i < divs.length; i++) { if (divs[i] === target || divs[i].contains(target)) { return i; } }"
+            + "  var rect = target.getBoundingClientRect();"
+            + "  for (var j = 0; j < divs.length; j++) { var r = divs[j].getBoundingClientRect(); if (r.left === rect.left && r.top === rect.top) { return j; } }"
+            + "  return -1;"
+            + "});"
+            + "return { cells: cells, indexes: indexes };");
+
+    /**
+     * Locate the div table whose header row contains a div with text <code>columnName</code>.<br/><br/>
+     * Cell locators returned by this helper are scoped within this table, so they don't scan the whole document.
+     * @param columnName text of one of the column header divs
+     * @return locator of the table container div
+     */
+    public static WebLocator tableLocatorOf(String columnName) {
+        return new WebLocator().xpath(String.format("//div[div/text()=%s]", LocatorUtil.toXpathLiteral(columnName)));
+    }
+
     public static WebLocator findByColumnAndRows(WebLocator colLocator, WebLocator rowLocator, WebLocator relativeElementLocator, int numberOfColumns) {
         WebElement colElement = WebUI.waitForElementVisible(colLocator);
         WebElement rowElement = WebUI.waitForElementVisible(rowLocator);
         String columnName = colElement.getText();
-        String rowName = rowElement.getText();
-        final int realNumOfCols = numberOfColumns; //real number of columns in DOM
 
-        WebDriver webDriver = WebUI.getWebDriver();
-        List<WebElement> allDivsInTable = webDriver.findElements(By.xpath(String.format("//div[div/text()='%s']/div", columnName)));
-        if (allDivsInTable == null || allDivsInTable.isEmpty() || allDivsInTable.size() < (realNumOfCols)) {
-            throw new RuntimeException(String.format("Cannot find cell in table with columnName = %s, rowName = %s, numberOfColumns = %d", columnName, rowName, realNumOfCols));
+        WebLocator tableLocator = tableLocatorOf(columnName);
+        Map<?, ?> table = readTable(tableLocator, colElement, rowElement);
+        List<?> cells = (List<?>) table.get("cells");
+        List<?> indexes = (List<?>) table.get("indexes");
+        if (cells.size() < numberOfColumns) {
+            throw new RuntimeException(String.format("Cannot find cell in table with columnName = %s, numberOfColumns = %d", columnName, numberOfColumns));
         }
 
-        List<WebElement> allColumnDivs = allDivsInTable.subList(0, realNumOfCols);
-        int indexOfFindingCol = -1;
-        boolean indexOfFindingColFound = false;
-        for (WebElement we : allColumnDivs) {
-            indexOfFindingCol++;
-            if (colElement.getLocation().equals(we.getLocation())) {
-                indexOfFindingColFound = true;
-                break;
-            }
-        }
-        if (!indexOfFindingColFound) {
+        int indexOfFindingCol = ((Number) indexes.get(0)).intValue();
+        if (indexOfFindingCol < 0 || indexOfFindingCol >= numberOfColumns) {
             throw new RuntimeException(String.format("Cannot find columnName: %s in table", columnName));
         }
-
-        List<WebElement> allFirstDivsOfRows = allDivsInTable.stream().filter(e -> (allDivsInTable.indexOf(e) % realNumOfCols) == 0).collect(Collectors.toList());
-        int indexOfFindingRow = -1;
-        boolean indexOfFindingRowFound = false;
-        for (WebElement we : allFirstDivsOfRows) {
-            indexOfFindingRow++;
-            if (rowElement.getLocation().equals(we.getLocation())) {
-                indexOfFindingRowFound = true;
-                break;
-            }
-        }
-        if (!indexOfFindingRowFound) {
-            throw new RuntimeException(String.format("Cannot find rowName: %s in table", rowName));
+        int indexOfRowDiv = ((Number) indexes.get(1)).intValue();
+        if (indexOfRowDiv < 0 || indexOfRowDiv % numberOfColumns != 0) {
+            throw new RuntimeException(String.format("Cannot find rowName: %s in table", rowElement.getText()));
         }
 
-        int indexOfFindingCell = indexOfFindingRow * numberOfColumns + indexOfFindingCol + 1; //xpath count start from 1, not 0
-        return new WebLocator().xpath(String.format("//div[div/text()='%s']/div[%d]%s", columnName, indexOfFindingCell, relativeElementLocator.toXpath()));
+        int indexOfFindingCell = indexOfRowDiv + indexOfFindingCol + 1; //xpath count start from 1, not 0
+        return new WebLocator().xpath(String.format("div[%d]%s", indexOfFindingCell, relativeElementLocator.toXpath())).within(tableLocator);
     }
 
+    /**
+     * Locate an element inside a cell of the div table, by the header of its column and the first cell of its row.<br/><br/>
+     * The table is indexed once (see {@link #snapshotOf(String, int)}), further lookups in the same table don't call WebDriver until it changes.
+     * @param columnName text of the column header div
+     * @param rowName text of the first cell of the row
+     * @param relativeElementLocator locator of the element inside the cell, relative to the cell div
+     * @param numberOfColumns real number of columns in DOM
+     * @return locator of the element inside the cell, scoped within the table
+     */
     public static WebLocator findByColumnAndRowNames(String columnName, String rowName, WebLocator relativeElementLocator, int numberOfColumns) {
-        WebUI.waitForElementVisible(new WebLocator().innerText(columnName));
-        final int realNumOfCols = numberOfColumns; //real number of columns in DOM
-
-        WebDriver webDriver = WebUI.getWebDriver();
-        List<WebElement> allDivsInTable = webDriver.findElements(By.xpath(String.format("//div[div/text()='%s']/div", columnName)));
-        if (allDivsInTable == null || allDivsInTable.isEmpty() || allDivsInTable.size() < (realNumOfCols)) {
-            throw new RuntimeException(String.format("Cannot find cell in table with columnName = %s, rowName = %s, numberOfColumns = %d", columnName, rowName, realNumOfCols));
+        TableSnapshot snapshot = snapshotOf(columnName, numberOfColumns);
+        if (snapshot.getRowCount() < 1) {
+            throw new RuntimeException(String.format("Cannot find cell in table with columnName = %s, rowName = %s, numberOfColumns = %d", columnName, rowName, numberOfColumns));
         }
-
-        List<WebElement> allColumnDivs = allDivsInTable.subList(0, realNumOfCols);
-        int indexOfFindingCol = -1;
-        boolean indexOfFindingColFound = false;
-        for (WebElement we : allColumnDivs) {
-            indexOfFindingCol++;
-            if (columnName.equals(we.getText())) {
-                indexOfFindingColFound = true;
-                break;
-            }
+        if (snapshot.columnIndexOf(columnName) < 0 || snapshot.rowIndexOf(rowName) < 0) {
+            // The page may have added the row on its own since the snapshot was taken
+            snapshot = refresh(snapshot.getTableLocator(), numberOfColumns);
         }
-        if (!indexOfFindingColFound) {
-            throw new RuntimeException(String.format("Cannot find columnName: %s in table", columnName));
+        return snapshot.cellLocator(columnName, rowName, relativeElementLocator);
+    }
+
+    /**
+     * Index of the div table having a column with header <code>columnName</code>, see {@link #snapshotOf(WebLocator, int)}
+     */
+    public static TableSnapshot snapshotOf(String columnName, int numberOfColumns) {
+        WebLocator tableLocator = tableLocatorOf(columnName);
+        TableSnapshot snapshot = cachedSnapshot(tableLocator, numberOfColumns);
+        if (snapshot != null) {
+            return snapshot;
         }
+        WebUI.waitForElementVisible(new WebLocator().innerText(columnName));
+        return refresh(tableLocator, numberOfColumns);
+    }
+
+    /**
+     * Index of the div table located by <code>tableLocator</code>, cached per session and table.<br/><br/>
+     * The cached snapshot is returned as long as it is not stale (see {@link TableSnapshot#isStale()}), otherwise the table is indexed again.
+     * @param tableLocator locator of the table container div
+     * @param numberOfColumns real number of columns in DOM
+     */
+    public static TableSnapshot snapshotOf(WebLocator tableLocator, int numberOfColumns) {
+        TableSnapshot snapshot = cachedSnapshot(tableLocator, numberOfColumns);
+        return snapshot != null ? snapshot : refresh(tableLocator, numberOfColumns);
+    }
 
-        List<WebElement> allFirstDivsOfRows = allDivsInTable.stream().filter(e -> (allDivsInTable.indexOf(e) % realNumOfCols) == 0).collect(Collectors.toList());
-        int indexOfFindingRow = -1;
-        boolean indexOfFindingRowFound = false;
-        for (WebElement we : allFirstDivsOfRows) {
-            indexOfFindingRow++;
-            if (rowName.equals(we.getText())) {
-                indexOfFindingRowFound = true;
-                break;
-            }
+    /**
+     * Index the div table located by <code>tableLocator</code> again and cache the new snapshot, for ex: after the page updated the table on its own
+     * @param tableLocator locator of the table container div
+     * @param numberOfColumns real number of columns in DOM
+     */
+    public static TableSnapshot refresh(WebLocator tableLocator, int numberOfColumns) {
+        TableSnapshot snapshot = TableSnapshot.take(tableLocator, numberOfColumns);
+        snapshotsOfCurrentSession().put(snapshotKey(tableLocator, numberOfColumns), snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Forget all table snapshots of the current session
+     */
+    public static void invalidateSnapshots() {
+        SNAPSHOTS.remove(WebUI.getCurrentSession());
+    }
+
+    private static TableSnapshot cachedSnapshot(WebLocator tableLocator, int numberOfColumns) {
+        Map<String, TableSnapshot> snapshots = snapshotsOfCurrentSession();
+        String key = snapshotKey(tableLocator, numberOfColumns);
+        TableSnapshot snapshot = snapshots.get(key);
+        if (snapshot != null && snapshot.isStale()) {
+            snapshots.remove(key);
+            return null;
         }
-        if (!indexOfFindingRowFound) {
-            throw new RuntimeException(String.format("Cannot find rowName: %s in table", rowName));
+        return snapshot;
+    }
+
+    private static Map<String, TableSnapshot> snapshotsOfCurrentSession() {
+        WebSession session = WebUI.getCurrentSession();
+        if (session == null) {
+            throw new RuntimeException("There is no session bound to current thread, call WebUI.initializeNewSession() first");
         }
+        return SNAPSHOTS.computeIfAbsent(session, key -> new ConcurrentHashMap<>());
+    }
+
+    private static String snapshotKey(WebLocator tableLocator, int numberOfColumns) {
+        return tableLocator.toString() + "#" + numberOfColumns;
+    }
 
-        int indexOfFindingCell = indexOfFindingRow * numberOfColumns + indexOfFindingCol + 1; //xpath count start from 1, not 0
-        return new WebLocator().xpath(String.format("//div[div/text()='%s']/div[%d]%s", columnName, indexOfFindingCell, relativeElementLocator.toXpath()));
+    /**
+     * Read the text of all cells of the table in one script
+     * @param tableLocator locator of the table container div
+     * @param elements elements whose cell index is wanted
+     * @return <code>cells</code>: text of each child div of the table (header row first),
+     * <code>indexes</code>: for each of <code>elements</code>, index of the child div containing it, -1 if none
+     */
+    private static Map<?, ?> readTable(WebLocator tableLocator, WebElement... elements) {
+        Object[] args = new Object[elements.length + 1];
+        args[0] = WebUI.waitForElementVisible(tableLocator);
+        System.arraycopy(elements, 0, args, 1, elements.length);
+        return (Map<?, ?>) WebUI.executeJavascript(JS_READ_DIV_TABLE, args);
     }
 }
@@ -0,0 +1,273 @@
+package org.my.automationtest.locator.helper;
+
+import org.my.automationtest.locator.WebLocator;
+import org.my.automationtest.service.PageScripts;
+import org.my.automationtest.service.WebSession;
+import org.my.automationtest.service.WebUI;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Index of a div table (see {@link DivTableHelper}): column header text to column index and row key (text of the first cell of the row) to row index.<br/><br/>
+ * Only the header row and the first cell of each row are read, cell locators are then resolved without any WebDriver call.
+ * Other cells are read on demand by {@link #rows(int)}, a chunk of rows at a time.<br/><br/>
+ * The table element counts its own mutations in the page. A snapshot is checked against this count (one script) only when {@link WebUI}
+ * performed an action since the last check, see {@link WebSession#getInteractionCount()}.
+ * Changes made by the page on its own (for ex: polling updates) are not noticed until the next action, use {@link DivTableHelper#refresh(WebLocator, int)} for those.
+ */
+public class TableSnapshot {
+
+    static final int DEFAULT_CHUNK_SIZE = 100;
+
+    // arguments: table element, number of columns
+    // returns { version, count: number of cell divs, headers: text of the header row, keys: text of the first cell of each row }
+    public static final String JS_READ_TABLE_INDEX = PageScripts.define(""
+            + "var table = arguments[0], columns = arguments[1];"
+            + "if (!table.__tableSnapshotObserver) {"
+            + "  table.__tableSnapshotVersion = 0;"
+            + "  table.__tableSnapshotObserver = new MutationObserver(function () { table.__tableSnapshotVersion++; });"
+            + "  table.__tableSnapshotObserver.observe(table, { childList: true, subtree: true, characterData: true });"
+            + "}"
+            + "var headers = [], keys = [], count = 0;"
+            + "for (var c = table.firstElementChild; c; c = c.nextElementSibling) {"
+            + "  if (c.tagName !== 'DIV') { continue; }"
+            + "  if (count < columns || count % columns === 0) {"
+            + "    var text = (c.innerText || '').trim();"
+            + "    if (count < columns) { headers.push(text); }"
+            + "    if (count % columns === 0) { keys.push(text); }"
+            + "  }"
+            + "  count++;"
+            + "}"
+            + "return { version: table.__tableSnapshotVersion, count: count, headers: headers, keys: keys };");
+
+    // arguments: table xpath
+    // returns mutation count of the table, -1 if it is no longer in the page or was re-rendered
+    public static final String JS_READ_TABLE_VERSION = PageScripts.define(""
+            + "var table = document.evaluate(arguments[0], document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;"
+            + "return table && table.__tableSnapshotObserver ? table.__tableSnapshotVersion : -1;");
+
+    // arguments: table xpath or element, number of columns, first row, number of rows
+    // returns text of the cells of the rows, one list per row, null if the table is no longer in the page
+    public static final String JS_READ_TABLE_ROWS = PageScripts.define(""
+            + "var table = typeof arguments[0] === 'string' ? document.evaluate(arguments[0], document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue : arguments[0];"
+            + "if (!table) { return null; }"
+            + "var columns = arguments[1], first = arguments[2] * columns, last = first + arguments[3] * columns;"
+            + "var rows = [], row = null, count = 0;"
+            + "for (var c = table.firstElementChild; c && count < last; c = c.nextElementSibling) {"
+            + "  if (c.tagName !== 'DIV') { continue; }"
+            + "  if (count >= first) {"
+            + "    if ((count - first) % columns === 0) { row = []; rows.push(row); }"
+            + "    row.push((c.innerText || '').trim());"
+            + "  }"
+            + "  count++;"
+            + "}"
+            + "return rows;");
+
+    private final WebSession session;
+    private final WebLocator tableLocator;
+    private final int numberOfColumns;
+    private final int rowCount;
+    private final long version;
+    private final List<String> columnNames;
+    private final Map<String, Integer> columnIndexes;
+    private final Map<String, Integer> rowIndexes;
+    private volatile long checkedInteractionCount;
+
+    private TableSnapshot(WebSession session, WebLocator tableLocator, int numberOfColumns, Map<?, ?> index) {
+        this.session = session;
+        this.tableLocator = tableLocator;
+        this.numberOfColumns = numberOfColumns;
+        this.checkedInteractionCount = session.getInteractionCount();
+        this.version = ((Number) index.get("version")).longValue();
+        int cellCount = ((Number) index.get("count")).intValue();
+        this.rowCount = (cellCount + numberOfColumns - 1) / numberOfColumns;
+
+        List<String> headers = new ArrayList<>();
+        Map<String, Integer> columns = new HashMap<>();
+        for (Object header : (List<?>) index.get("headers")) {
+            // The first column having this header wins, as it did when scanning the header row
+            columns.putIfAbsent((String) header, headers.size());
+            headers.add((String) header);
+        }
+        this.columnNames = Collections.unmodifiableList(headers);
+        this.columnIndexes = columns;
+
+        List<?> keys = (List<?>) index.get("keys");
+        Map<String, Integer> rows = new HashMap<>(keys.size() * 4 / 3 + 1);
+        for (int i = 0; i < keys.size(); i++) {
+            rows.putIfAbsent((String) keys.get(i), i);
+        }
+        this.rowIndexes = rows;
+    }
+
+    /**
+     * Read the header row and the row keys of the table located by <code>tableLocator</code>, in one script
+     * @param tableLocator locator of the table container div, must not be scoped within a {@link org.openqa.selenium.WebElement}
+     * @param numberOfColumns real number of columns in DOM
+     */
+    static TableSnapshot take(WebLocator tableLocator, int numberOfColumns) {
+        if (numberOfColumns <= 0) {
+            throw new RuntimeException(String.format("Invalid numberOfColumns = %d", numberOfColumns));
+        }
+        Map<?, ?> index = (Map<?, ?>) WebUI.executeJavascript(JS_READ_TABLE_INDEX, WebUI.waitForElementVisible(tableLocator), numberOfColumns);
+        return new TableSnapshot(WebUI.getCurrentSession(), tableLocator, numberOfColumns, index);
+    }
+
+    /**
+     * @return true if the table may have changed since this snapshot was taken.
+     * No WebDriver call is made unless {@link WebUI} performed an action in the session since the last check.
+     */
+    public boolean isStale() {
+        if (session != WebUI.getCurrentSession()) {
+            return true;
+        }
+        long interactionCount = session.getInteractionCount();
+        if (interactionCount == checkedInteractionCount) {
+            return false;
+        }
+        String xpath = tableLocator.getParentElement() == null ? tableLocator.toXpath() : null;
+        if (xpath == null) {
+            // A table scoped within an element cannot be found again from the document
+            return true;
+        }
+        Number currentVersion = (Number) WebUI.executeJavascript(JS_READ_TABLE_VERSION, xpath);
+        if (currentVersion == null || currentVersion.longValue() != version) {
+            return true;
+        }
+        checkedInteractionCount = interactionCount;
+        return false;
+    }
+
+    /**
+     * @param columnName text of a column header div
+     * @return index (from 0) of the first column with this header, -1 if there is none
+     */
+    public int columnIndexOf(String columnName) {
+        Integer index = columnIndexes.get(columnName);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param rowName text of the first cell of a row
+     * @return index (from 0, the header row being row 0) of the first row with this key, -1 if there is none
+     */
+    public int rowIndexOf(String rowName) {
+        Integer index = rowIndexes.get(rowName);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param columnName text of a column header div
+     * @param rowName text of the first cell of a row
+     * @param relativeElementLocator locator of the element inside the cell, relative to the cell div
+     * @return locator of the element inside the cell, scoped within the table
+     */
+    public WebLocator cellLocator(String columnName, String rowName, WebLocator relativeElementLocator) {
+        int columnIndex = columnIndexOf(columnName);
+        if (columnIndex < 0) {
+            throw new RuntimeException(String.format("Cannot find columnName: %s in table", columnName));
+        }
+        int rowIndex = rowIndexOf(rowName);
+        if (rowIndex < 0) {
+            throw new RuntimeException(String.format("Cannot find rowName: %s in table", rowName));
+        }
+        return cellLocator(rowIndex, columnIndex, relativeElementLocator);
+    }
+
+    /**
+     * @param rowIndex index of the row (from 0, the header row being row 0)
+     * @param columnIndex index of the column (from 0)
+     * @param relativeElementLocator locator of the element inside the cell, relative to the cell div
+     * @return locator of the element inside the cell, scoped within the table
+     */
+    public WebLocator cellLocator(int rowIndex, int columnIndex, WebLocator relativeElementLocator) {
+        int indexOfFindingCell = rowIndex * numberOfColumns + columnIndex + 1; //xpath count start from 1, not 0
+        return new WebLocator().xpath(String.format("div[%d]%s", indexOfFindingCell, relativeElementLocator.toXpath())).within(tableLocator);
+    }
+
+    /**
+     * Stream the text of the cells of each row after the header row, reading {@link #DEFAULT_CHUNK_SIZE} rows per script
+     */
+    public Stream<List<String>> rows() {
+        return rows(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Stream the text of the cells of each row after the header row.<br/><br/>
+     * Rows are read lazily, <code>chunkSize</code> rows per script, so a large table is never held in memory as a whole.
+     * The stream must be consumed by the thread the snapshot belongs to.
+     * @param chunkSize number of rows read per script
+     */
+    public Stream<List<String>> rows(int chunkSize) {
+        return StreamSupport.stream(new RowSpliterator(Math.max(1, chunkSize)), false);
+    }
+
+    public WebLocator getTableLocator() {
+        return tableLocator;
+    }
+
+    public int getNumberOfColumns() {
+        return numberOfColumns;
+    }
+
+    /**
+     * @return number of rows, including the header row
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TableSnapshot(%s, %d columns, %d rows)", tableLocator, numberOfColumns, rowCount);
+    }
+
+    private class RowSpliterator extends Spliterators.AbstractSpliterator<List<String>> {
+        private final int chunkSize;
+        private final Deque<List<String>> buffer = new ArrayDeque<>();
+        private int nextRow = 1;
+
+        private RowSpliterator(int chunkSize) {
+            super(Math.max(0, rowCount - 1), Spliterator.ORDERED | Spliterator.NONNULL);
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super List<String>> action) {
+            if (buffer.isEmpty() && nextRow < rowCount) {
+                String xpath = tableLocator.getParentElement() == null ? tableLocator.toXpath() : null;
+                Object table = xpath == null ? WebUI.waitForElementVisible(tableLocator) : xpath;
+                List<?> chunk = (List<?>) WebUI.executeJavascript(JS_READ_TABLE_ROWS, table, numberOfColumns, nextRow, chunkSize);
+                if (chunk == null) {
+                    throw new RuntimeException(String.format("Table located by %s is no longer in the page", tableLocator));
+                }
+                for (Object row : chunk) {
+                    buffer.add((List<String>) row);
+                }
+                nextRow = chunk.isEmpty() ? rowCount : nextRow + chunk.size();
+            }
+            List<String> row = buffer.poll();
+            if (row == null) {
+                return false;
+            }
+            action.accept(row);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package org.my.automationtest.service;
+
+import org.my.automationtest.locator.WebLocator;
+import org.my.automationtest.service.probe.ActionProbe;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.Actions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequence of {@link WebUI} steps run with as few WebDriver round trips as possible, created by {@link WebUI#batch()}.<br/><br/>
+ * Steps are grouped in segments: consecutive text steps, ended by at most one click (a click may change the page, so later steps cannot be prepared before it).
+ * For each segment, one script checks that all its elements are ready (visible, enabled, and for a click, not covered by another element),
+ * sets by script the texts {@link WebUI#setText(WebLocator, String, long, boolean)} would set by script (see {@link WebUI#setFastTextThreshold(int)}) and returns the elements.
+ * The remaining typing and the click are then performed by a single {@link Actions} chain.
+ * When the chain fails, which of its steps failed is unknown: all of them are reported failed, see {@link Result#getFailedSteps()}.<br/>
+ * When an element of the segment is not ready yet, the segment falls back to running each step with the equivalent {@link WebUI} method, which waits for it.
+ * Wait steps always run on their own.<br/><br/>
+ * Steps run with retryPreviousAction disabled. The batch stops at the first failing step, see {@link Result}.
+ */
+public class ActionBatch {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActionBatch.class);
+
+    private static final String READY = "ready";
+
+    // arguments: [xpath, css selector, context element] of each step, kind of each step, text of each step
+    // returns null if an element is not ready, otherwise { elements, typed: true for each step to be performed by the Actions chain }
+    public static final String JS_PREPARE_SEGMENT = PageScripts.define(""
+            + PageScripts.JS_FIND_FUNCTION
+            + PageScripts.JS_IS_VISIBLE_FUNCTION
+            + PageScripts.JS_SET_VALUE_FUNCTION
+            + "var specs = arguments[0], kinds = arguments[1], texts = arguments[2], elements = [];"
+            + "for (var i = 0; i < specs.length; i++) {"
+            + "  var e;"
+            + "  try { e = find(specs[i][0], specs[i][1], specs[i][2]); } catch (err) { e = null; }"
+            + "  if (!e || !isVisible(e) || e.disabled) { return null; }"
+            + "  if (kinds[i] === 'CLICK') {"
+            + "    e.scrollIntoView({ block: 'center', inline: 'center' });"
+            + "    var rect = e.getBoundingClientRect();"
+            + "    var hit = document.elementFromPoint(rect.left + rect.width / 2, rect.top + rect.height / 2);"
+            + "    if (!hit || !(hit === e || e.contains(hit))) { return null; }"
+            + "  } else if (e.readOnly) {"
+            + "    return null;"
+            + "  }"
+            + "  elements.push(e);"
+            + "}"
+            + "var typed = kinds.map(function (kind, i) {"
+            + "  if (kind === 'SET_TEXT' && setValue(elements[i], texts[i]) === 'set') { return false; }"
+            // Field to be typed into: clear it first, as WebElement.clear() would
+            + "  if (kind === 'SET_TEXT' || kind === 'SET_TEXT_KEYS') { setValue(elements[i], ''); }"
+            + "  return true;"
+            + "});"
+            + "return { elements: elements, typed: typed };");
+
+    enum Kind {
+        CLICK,
+        SET_TEXT,
+        SET_TEXT_KEYS,
+        SEND_KEYS,
+        WAIT_VISIBLE,
+        WAIT_INVISIBLE
+    }
+
+    public enum Status {
+        DONE,
+        FAILED,
+        SKIPPED
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+    private long timeout = WebUI.getDefaultWaitUntilTimeout();
+
+    ActionBatch() {
+        // Use WebUI.batch()
+    }
+
+    /**
+     * @param timeout maximum time allowed to wait for each element, in seconds, {@link WebUI#getDefaultWaitUntilTimeout()} by default
+     */
+    public ActionBatch timeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Queue a click on the element located by <code>webLocator</code>, as {@link WebUI#click(WebLocator, long, boolean)}
+     */
+    public ActionBatch click(WebLocator webLocator) {
+        return add(Kind.CLICK, webLocator, null);
+    }
+
+    /**
+     * Queue overwriting the text of the element located by <code>webLocator</code>, as {@link WebUI#setText(WebLocator, String, long, boolean)}:
+     * set by script if it is at least {@link WebUI#setFastTextThreshold(int)} characters long, typed otherwise
+     */
+    public ActionBatch setText(WebLocator webLocator, String text) {
+        return add(WebUI.isSetByScript(webLocator, text) ? Kind.SET_TEXT : Kind.SET_TEXT_KEYS, webLocator, text);
+    }
+
+    /**
+     * Queue appending <code>text</code> to the element located by <code>webLocator</code>, as {@link WebUI#sendKeys(WebLocator, String, long, boolean)}
+     */
+    public ActionBatch sendKeys(WebLocator webLocator, String text) {
+        return add(Kind.SEND_KEYS, webLocator, text);
+    }
+
+    /**
+     * Queue waiting for the element located by <code>webLocator</code> to be visible
+     */
+    public ActionBatch waitForVisible(WebLocator webLocator) {
+        return add(Kind.WAIT_VISIBLE, webLocator, null);
+    }
+
+    /**
+     * Queue waiting for the element located by <code>webLocator</code> to be invisible
+     */
+    public ActionBatch waitForInvisible(WebLocator webLocator) {
+        return add(Kind.WAIT_INVISIBLE, webLocator, null);
+    }
+
+    /**
+     * Run the queued steps in the session bound to the current thread
+     * @return result of each step, the batch stops at the first failing step. Use {@link Result#throwIfFailed()} to fail as a single action would.
+     */
+    public Result run() {
+        WebSession session = WebUI.getCurrentSession();
+        if (session == null) {
+            throw new RuntimeException("There is no session bound to current thread, call WebUI.initializeNewSession() first");
+        }
+        StepResult[] results = new StepResult[steps.size()];
+        int index = 0;
+        long probeStart = ActionProbe.begin("batch");
+        try {
+            while (index < steps.size()) {
+                int segmentEnd = segmentEndOf(index);
+                boolean succeeded = segmentEnd > index
+                        ? runSegment(session, index, segmentEnd, results)
+                        : runStep(index, results);
+                index = Math.max(segmentEnd, index + 1);
+                if (!succeeded) {
+                    break;
+                }
+            }
+        } finally {
+            ActionProbe.end("batch", probeStart);
+        }
+        for (int i = index; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = new StepResult(i, steps.get(i), Status.SKIPPED, false, 0, null);
+            }
+        }
+        return new Result(Arrays.asList(results));
+    }
+
+    private ActionBatch add(Kind kind, WebLocator webLocator, String text) {
+        steps.add(new Step(kind, webLocator, text));
+        return this;
+    }
+
+    /**
+     * @return index after the last step of the segment starting at <code>start</code>, <code>start</code> if the step cannot be part of a segment
+     */
+    private int segmentEndOf(int start) {
+        int end = start;
+        while (end < steps.size()) {
+            Kind kind = steps.get(end).kind;
+            if (kind == Kind.WAIT_VISIBLE || kind == Kind.WAIT_INVISIBLE || PageScripts.locatorArgsOf(steps.get(end).webLocator) == null) {
+                break;
+            }
+            end++;
+            if (kind == Kind.CLICK) {
+                break;
+            }
+        }
+        return end;
+    }
+
+    private boolean runSegment(WebSession session, int start, int end, StepResult[] results) {
+        long startTime = System.nanoTime();
+        List<Object> specs = new ArrayList<>();
+        List<String> kinds = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            Step step = steps.get(i);
+            specs.add(Arrays.asList(PageScripts.locatorArgsOf(step.webLocator)));
+            kinds.add(step.kind.name());
+            texts.add(step.text);
+        }
+        session.recordInteraction();
+        Map<?, ?> prepared;
+        try {
+            prepared = (Map<?, ?>) WebUI.executeJavascript(JS_PREPARE_SEGMENT, specs, kinds, texts);
+        } catch (RuntimeException e) {
+            LOGGER.debug("Cannot prepare steps {} to {} in one script, run them one by one", start, end - 1, e);
+            prepared = null;
+        }
+        if (prepared == null) {
+            for (int i = start; i < end; i++) {
+                if (!runStep(i, results)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        List<?> elements = (List<?>) prepared.get("elements");
+        List<?> typed = (List<?>) prepared.get("typed");
+        Actions actions = new Actions(session.getWebDriver());
+        // Steps performed by the chain, the others are done by the script already
+        boolean[] chained = new boolean[end - start];
+        boolean anyChained = false;
+        for (int i = start; i < end; i++) {
+            Step step = steps.get(i);
+            WebElement webElement = (WebElement) elements.get(i - start);
+            if (step.kind == Kind.CLICK) {
+                actions.click(webElement);
+                chained[i - start] = true;
+            } else if (Boolean.TRUE.equals(typed.get(i - start))) {
+                actions.sendKeys(webElement, step.text);
+                chained[i - start] = true;
+            }
+            anyChained |= chained[i - start];
+        }
+        try {
+            if (anyChained) {
+                actions.perform();
+            }
+        } catch (RuntimeException e) {
+            // Which action of the chain failed is unknown: every step of the chain is reported failed, the steps done by the script are done
+            long elapsedNanos = System.nanoTime() - startTime;
+            for (int i = start; i < end; i++) {
+                results[i] = new StepResult(i, steps.get(i), chained[i - start] ? Status.FAILED : Status.DONE, true, elapsedNanos, chained[i - start] ? e : null);
+            }
+            return false;
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        for (int i = start; i < end; i++) {
+            results[i] = new StepResult(i, steps.get(i), Status.DONE, true, elapsedNanos, null);
+        }
+        return true;
+    }
+
+    private boolean runStep(int index, StepResult[] results) {
+        Step step = steps.get(index);
+        long startTime = System.nanoTime();
+        try {
+            switch (step.kind) {
+                case CLICK:
+                    WebUI.click(step.webLocator, timeout, false);
+                    break;
+                case SET_TEXT:
+                case SET_TEXT_KEYS:
+                    WebUI.setText(step.webLocator, step.text, timeout, false);
+                    break;
+                case SEND_KEYS:
+                    WebUI.sendKeys(step.webLocator, step.text, timeout, false);
+                    break;
+                case WAIT_VISIBLE:
+                    WebUI.waitForElementVisible(step.webLocator, timeout);
+                    break;
+                case WAIT_INVISIBLE:
+                    WebUI.waitForElementInvisible(step.webLocator, timeout);
+                    break;
+                default:
+                    throw new RuntimeException(String.format("Step %s is not supported", step.kind));
+            }
+        } catch (RuntimeException e) {
+            results[index] = new StepResult(index, step, Status.FAILED, false, System.nanoTime() - startTime, e);
+            return false;
+        }
+        results[index] = new StepResult(index, step, Status.DONE, false, System.nanoTime() - startTime, null);
+        return true;
+    }
+
+    private static final class Step {
+        private final Kind kind;
+        private final WebLocator webLocator;
+        private final String text;
+
+        private Step(Kind kind, WebLocator webLocator, String text) {
+            this.kind = kind;
+            this.webLocator = webLocator;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            // text is not printed, it may be a decrypted password
+            return String.format("%s(%s)", kind, webLocator);
+        }
+    }
+
+    public static final class StepResult {
+        private final int index;
+        private final String description;
+        private final Status status;
+        private final boolean combined;
+        private final long elapsedNanos;
+        private final RuntimeException failure;
+
+        private StepResult(int index, Step step, Status status, boolean combined, long elapsedNanos, RuntimeException failure) {
+            this.index = index;
+            this.description = step.toString();
+            this.status = status;
+            this.combined = combined;
+            this.elapsedNanos = elapsedNanos;
+            this.failure = failure;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return true if the step ran within a combined segment (one script and one {@link Actions} chain), false if it ran on its own
+         */
+        public boolean isCombined() {
+            return combined;
+        }
+
+        /**
+         * @return time spent running the step, or the whole segment for a combined step, in milliseconds
+         */
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        /**
+         * @return failure of the step, <code>null</code> unless its status is {@link Status#FAILED}
+         */
+        public RuntimeException getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("#%d %s: %s%s in %d ms", index, description, status, combined ? " (combined)" : "", getElapsedMillis());
+        }
+    }
+
+    public static final class Result {
+        private final List<StepResult> stepResults;
+
+        private Result(List<StepResult> stepResults) {
+            this.stepResults = Collections.unmodifiableList(stepResults);
+        }
+
+        public List<StepResult> getStepResults() {
+            return stepResults;
+        }
+
+        public boolean isSuccess() {
+            return getFailedStep() == null;
+        }
+
+        /**
+         * @return result of the failed step, <code>null</code> if all steps are done.
+         * When an {@link Actions} chain failed, the step which failed within it is unknown and this is the first step of the chain, see {@link #getFailedSteps()}
+         */
+        public StepResult getFailedStep() {
+            List<StepResult> failedSteps = getFailedSteps();
+            return failedSteps.isEmpty() ? null : failedSteps.get(0);
+        }
+
+        /**
+         * @return results of the failed steps: none if all steps are done, one step,
+         * or every step performed by the {@link Actions} chain of a combined segment when the chain failed, as any of them may have failed
+         */
+        public List<StepResult> getFailedSteps() {
+            List<StepResult> failedSteps = new ArrayList<>();
+            for (StepResult stepResult : stepResults) {
+                if (stepResult.status == Status.FAILED) {
+                    failedSteps.add(stepResult);
+                }
+            }
+            return failedSteps;
+        }
+
+        /**
+         * Throw the failure of the failed step, or of the failed {@link Actions} chain, if any
+         */
+        public Result throwIfFailed() {
+            List<StepResult> failedSteps = getFailedSteps();
+            if (failedSteps.size() == 1) {
+                throw new RuntimeException(String.format("Batch failed at step %s", failedSteps.get(0)), failedSteps.get(0).failure);
+            }
+            if (!failedSteps.isEmpty()) {
+                throw new RuntimeException(String.format("Batch failed at one of the steps %s, performed in one Actions chain", failedSteps), failedSteps.get(0).failure);
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return stepResults.toString();
+        }
+    }
+}
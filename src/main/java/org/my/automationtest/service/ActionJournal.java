@@ -0,0 +1,49 @@
+package org.my.automationtest.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Bounded journal of the last completed retry enabled actions of one session, oldest first.
+ */
+public class ActionJournal {
+
+    private final ArrayDeque<JournaledAction> actions;
+    private final int capacity;
+
+    public ActionJournal(int capacity) {
+        this.capacity = capacity;
+        this.actions = new ArrayDeque<>(capacity);
+    }
+
+    public void record(JournaledAction action) {
+        if (actions.size() == capacity) {
+            actions.pollFirst();
+        }
+        actions.addLast(action);
+    }
+
+    /**
+     * @param count maximum number of actions to return
+     * @return the last <code>count</code> recorded actions, oldest first
+     */
+    public List<JournaledAction> lastActions(int count) {
+        int size = Math.min(count, actions.size());
+        List<JournaledAction> lastActions = new ArrayList<>(size);
+        Iterator<JournaledAction> iterator = actions.descendingIterator();
+        for (int i = 0; i < size; i++) {
+            lastActions.add(0, iterator.next());
+        }
+        return lastActions;
+    }
+
+    public void clear() {
+        actions.clear();
+    }
+
+    public int size() {
+        return actions.size();
+    }
+}
@@ -0,0 +1,67 @@
+package org.my.automationtest.service;
+
+import org.my.automationtest.service.probe.ActionProbe;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriverException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link RetrySignal} released as soon as the DOM of the page changes (after at least {@link #MIN_WAIT_MILLIS}), or after the backoff delay.<br/><br/>
+ * Falls back to a plain sleep when the session cannot run async scripts.
+ */
+public class DomChangeSignal implements RetrySignal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DomChangeSignal.class);
+
+    // Pages with a running spinner mutate all the time, don't retry more often than this
+    static final long MIN_WAIT_MILLIS = 50;
+    private static final long SCRIPT_TIMEOUT_MARGIN_MILLIS = 5000;
+
+    // arguments: min wait in ms, max wait in ms, callback
+    private static final String JS_WAIT_FOR_DOM_CHANGE = ""
+            + "var minWait = arguments[0], maxWait = arguments[1], done = arguments[arguments.length - 1];"
+            + "var start = Date.now(), finished = false, timer;"
+            + "function finish(changed) {"
+            + "  if (finished) { return; }"
+            + "  finished = true; observer.disconnect(); clearTimeout(timer); done(changed);"
+            + "}"
+            + "var observer = new MutationObserver(function () {"
+            + "  var waited = Date.now() - start;"
+            + "  if (waited >= minWait) { finish(true); } else { clearTimeout(timer); timer = setTimeout(function () { finish(true); }, minWait - waited); }"
+            + "});"
+            + "observer.observe(document, { childList: true, subtree: true, attributes: true, characterData: true });"
+            + "timer = setTimeout(function () { finish(false); }, maxWait);";
+
+    private final WebSession session;
+
+    public DomChangeSignal(WebSession session) {
+        this.session = session;
+    }
+
+    @Override
+    public void await(long maxWaitMillis) throws InterruptedException {
+        if (maxWaitMillis <= MIN_WAIT_MILLIS || session.isObserverWaitUnsupported() || !(session.getWebDriver() instanceof JavascriptExecutor)) {
+            ActionProbe.sleep("dom change fallback", maxWaitMillis);
+            return;
+        }
+        try {
+            session.ensureScriptTimeout(maxWaitMillis + SCRIPT_TIMEOUT_MARGIN_MILLIS);
+            ((JavascriptExecutor) session.getWebDriver()).executeAsyncScript(JS_WAIT_FOR_DOM_CHANGE, MIN_WAIT_MILLIS, maxWaitMillis);
+        } catch (UnsupportedCommandException e) {
+            LOGGER.warn("Driver cannot run async scripts, fall back to sleeping for this session", e);
+            session.setObserverWaitUnsupported(true);
+            ActionProbe.sleep("dom change fallback", maxWaitMillis);
+        } catch (WebDriverException e) {
+            // Most likely the page is navigating, which is a change as well
+            LOGGER.debug("Cannot wait for DOM change", e);
+            ActionProbe.sleep("dom change fallback", Math.min(maxWaitMillis, MIN_WAIT_MILLIS));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DomChangeSignal(%s)", session);
+    }
+}
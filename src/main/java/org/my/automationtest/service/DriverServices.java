@@ -0,0 +1,154 @@
+package org.my.automationtest.service;
+
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.edge.EdgeDriverService;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.remote.service.DriverService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Driver processes (chromedriver, geckodriver, msedgedriver) the browsers are launched through.<br/><br/>
+ * chromedriver serves any number of sessions, so one process per JVM is shared by all chrome sessions (see {@link #obtainDriverService(String)}).
+ * geckodriver and the legacy EdgeDriver accept only one session per process, so each firefox or edge session starts a process of its own
+ * (see {@link #startDedicatedDriverService(String)}), which is stopped when the session quits.<br/>
+ * The driver executable is resolved from the <code>webdriver.*.driver</code> system properties set by {@code BaseAutomationTest#initializeAppParams()},
+ * or looked up in the <code>PATH</code> by Selenium when the property is not set.
+ */
+public class DriverServices {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DriverServices.class);
+    private static final Map<String, DriverService> DRIVER_SERVICES = new ConcurrentHashMap<>();
+    private static final Set<DriverService> DEDICATED_DRIVER_SERVICES = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * @param webBrowser browser type
+     * @return true if the driver process of <code>webBrowser</code> accepts several sessions and is shared by them, only for <code>chrome</code>
+     */
+    public static boolean isShared(String webBrowser) {
+        return "chrome".equals(webBrowser);
+    }
+
+    /**
+     * @param webBrowser browser type whose driver process is shared, see {@link #isShared(String)}
+     * @return running driver service of <code>webBrowser</code>, started at the first call
+     */
+    public static DriverService obtainDriverService(String webBrowser) {
+        if (!isShared(webBrowser)) {
+            throw new RuntimeException(String.format("The %s driver process accepts only one session, create a dedicated driver service for each session", webBrowser));
+        }
+        DriverService driverService = DRIVER_SERVICES.computeIfAbsent(webBrowser, DriverServices::startDriverService);
+        if (!driverService.isRunning()) {
+            // The driver process died, start a new one
+            synchronized (DriverServices.class) {
+                driverService = DRIVER_SERVICES.get(webBrowser);
+                if (driverService == null || !driverService.isRunning()) {
+                    driverService = startDriverService(webBrowser);
+                    DRIVER_SERVICES.put(webBrowser, driverService);
+                }
+            }
+        }
+        return driverService;
+    }
+
+    /**
+     * Start a driver service for one session of <code>webBrowser</code>, to be run by a
+     * {@link org.openqa.selenium.remote.service.DriverCommandExecutor} which stops it when the session quits.
+     * Services of sessions which are never quit are stopped by {@link #stopAll()}.
+     * @param webBrowser browser type, one of <code>chrome</code>, <code>firefox</code> or <code>edge</code>
+     * @return running driver service
+     */
+    public static DriverService startDedicatedDriverService(String webBrowser) {
+        // Forget the services stopped by their session
+        DEDICATED_DRIVER_SERVICES.removeIf(driverService -> !driverService.isRunning());
+        DriverService driverService = startDriverService(webBrowser);
+        DEDICATED_DRIVER_SERVICES.add(driverService);
+        return driverService;
+    }
+
+    /**
+     * Stop all started driver services. Sessions running against them must be quit before.
+     */
+    public static void stopAll() {
+        for (Map.Entry<String, DriverService> entry : DRIVER_SERVICES.entrySet()) {
+            try {
+                entry.getValue().stop();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Cannot stop {} driver service", entry.getKey(), e);
+            }
+        }
+        DRIVER_SERVICES.clear();
+        for (DriverService driverService : DEDICATED_DRIVER_SERVICES) {
+            try {
+                driverService.stop();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Cannot stop driver service at {}", driverService.getUrl(), e);
+            }
+        }
+        DEDICATED_DRIVER_SERVICES.clear();
+    }
+
+    private static DriverService startDriverService(String webBrowser) {
+        DriverService driverService = createDriverService(webBrowser);
+        try {
+            driverService.start();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Cannot start %s driver service", webBrowser), e);
+        }
+        LOGGER.info("Started {} driver service at {}", webBrowser, driverService.getUrl());
+        return driverService;
+    }
+
+    private static DriverService createDriverService(String webBrowser) {
+        DriverService driverService;
+        switch (webBrowser) {
+            case "chrome": {
+                File driverExe = obtainDriverExecutable(ChromeDriverService.CHROME_DRIVER_EXE_PROPERTY);
+                driverService = driverExe == null
+                        ? ChromeDriverService.createDefaultService()
+                        : new ChromeDriverService.Builder().usingDriverExecutable(driverExe).usingAnyFreePort().build();
+                break;
+            }
+            case "firefox": {
+                File driverExe = obtainDriverExecutable(GeckoDriverService.GECKO_DRIVER_EXE_PROPERTY);
+                driverService = driverExe == null
+                        ? GeckoDriverService.createDefaultService()
+                        : new GeckoDriverService.Builder().usingDriverExecutable(driverExe).usingAnyFreePort().build();
+                break;
+            }
+            case "edge": {
+                File driverExe = obtainDriverExecutable(EdgeDriverService.EDGE_DRIVER_EXE_PROPERTY);
+                driverService = driverExe == null
+                        ? EdgeDriverService.createDefaultService()
+                        : new EdgeDriverService.Builder().usingDriverExecutable(driverExe).usingAnyFreePort().build();
+                break;
+            }
+            default:
+                throw new RuntimeException(String.format("Browser %s is not supported", webBrowser));
+        }
+        return driverService;
+    }
+
+    /**
+     * @return driver executable configured by <code>driverExePropertyKey</code>, <code>null</code> if the property is not set:
+     * the default service of the browser then looks for the executable in the <code>PATH</code>
+     */
+    private static File obtainDriverExecutable(String driverExePropertyKey) {
+        String driverExePath = System.getProperty(driverExePropertyKey);
+        if (driverExePath == null || driverExePath.isEmpty()) {
+            return null;
+        }
+        File driverExe = new File(driverExePath);
+        if (!driverExe.isFile()) {
+            throw new RuntimeException(String.format("Driver executable '%s' configured by '%s' does not exist", driverExePath, driverExePropertyKey));
+        }
+        return driverExe;
+    }
+}
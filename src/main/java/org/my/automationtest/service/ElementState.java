@@ -0,0 +1,56 @@
+package org.my.automationtest.service;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * State of one web element read by {@link WebUI#readElementStates(java.util.List, String...)}
+ */
+public final class ElementState {
+
+    static final ElementState ABSENT = new ElementState(false, false, null, Collections.emptyMap());
+
+    private final boolean exists;
+    private final boolean visible;
+    private final String text;
+    private final Map<String, String> attributes;
+
+    ElementState(boolean exists, boolean visible, String text, Map<String, String> attributes) {
+        this.exists = exists;
+        this.visible = visible;
+        this.text = text;
+        this.attributes = attributes;
+    }
+
+    public boolean exists() {
+        return exists;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * @return visible text of the element, empty if it is not visible (as {@link org.openqa.selenium.WebElement#getText()}), <code>null</code> if it doesn't exist
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @param attributeName name of one of the attributes requested when reading the states
+     * @return value of the attribute, <code>null</code> if the element doesn't exist or has no such attribute
+     */
+    public String getAttribute(String attributeName) {
+        return attributes.get(attributeName);
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public String toString() {
+        return exists ? String.format("ElementState(visible=%b, text=%s, attributes=%s)", visible, text, attributes) : "ElementState(absent)";
+    }
+}
@@ -0,0 +1,126 @@
+package org.my.automationtest.service;
+
+import org.my.automationtest.locator.WebLocator;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Retry enabled action performed by {@link WebUI}, recorded in the {@link ActionJournal} of its session so it can be replayed when a later action times out.
+ */
+public final class JournaledAction {
+
+    public enum Type {
+        SEND_KEYS("sendKeys"),
+        SET_TEXT("setText"),
+        FILL_FORM("fillForm"),
+        SLEEP_THEN_CLICK("sleepThenClick"),
+        CLICK("click");
+
+        private final String operation;
+
+        Type(String operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * @return name of the {@link WebUI} method performing this action
+         */
+        public String getOperation() {
+            return operation;
+        }
+    }
+
+    private final Type type;
+    private final WebLocator webLocator;
+    private final String text;
+    private final Map<WebLocator, String> fields;
+    private final long timeout;
+
+    private JournaledAction(Type type, WebLocator webLocator, String text, Map<WebLocator, String> fields, long timeout) {
+        this.type = type;
+        this.webLocator = webLocator;
+        this.text = text;
+        this.fields = fields;
+        this.timeout = timeout;
+    }
+
+    static JournaledAction sendKeys(WebLocator webLocator, String text, long timeout) {
+        return new JournaledAction(Type.SEND_KEYS, webLocator, text, null, timeout);
+    }
+
+    static JournaledAction setText(WebLocator webLocator, String text, long timeout) {
+        return new JournaledAction(Type.SET_TEXT, webLocator, text, null, timeout);
+    }
+
+    static JournaledAction fillForm(Map<WebLocator, String> fields, long timeout) {
+        return new JournaledAction(Type.FILL_FORM, null, null, Collections.unmodifiableMap(new LinkedHashMap<>(fields)), timeout);
+    }
+
+    static JournaledAction sleepThenClick(WebLocator webLocator, long timeout) {
+        return new JournaledAction(Type.SLEEP_THEN_CLICK, webLocator, null, null, timeout);
+    }
+
+    static JournaledAction click(WebLocator webLocator, long timeout) {
+        return new JournaledAction(Type.CLICK, webLocator, null, null, timeout);
+    }
+
+    /**
+     * Perform this action again, with retry disabled
+     */
+    void replay() {
+        switch (type) {
+            case SEND_KEYS:
+                WebUI.sendKeys(webLocator, text, timeout, false);
+                break;
+            case SET_TEXT:
+                WebUI.setText(webLocator, text, timeout, false);
+                break;
+            case FILL_FORM:
+                WebUI.fillForm(fields, timeout, false);
+                break;
+            case SLEEP_THEN_CLICK:
+                WebUI.sleepThenClick(webLocator, timeout, false);
+                break;
+            case CLICK:
+                WebUI.click(webLocator, timeout, false);
+                break;
+            default:
+                throw new RuntimeException(String.format("Action %s cannot be replayed", type));
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return locator of the element acted on, <code>null</code> for {@link Type#FILL_FORM} which acts on the locators of {@link #getFieldLocators()}
+     */
+    public WebLocator getWebLocator() {
+        return webLocator;
+    }
+
+    public Set<WebLocator> getFieldLocators() {
+        return fields == null ? Collections.emptySet() : fields.keySet();
+    }
+
+    /**
+     * @return text of each field of {@link Type#FILL_FORM}, in the order they are filled, <code>null</code> for other actions
+     */
+    Map<WebLocator, String> getFields() {
+        return fields;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public String toString() {
+        // text is not printed, it may be a decrypted password
+        return String.format("%s(%s, timeout=%d)", type, fields == null ? webLocator : fields.keySet(), timeout);
+    }
+}
@@ -0,0 +1,118 @@
+package org.my.automationtest.service;
+
+import org.my.automationtest.locator.WebLocator;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+
+/**
+ * {@link ExpectedCondition}s on a {@link WebLocator}.<br/><br/>
+ * A scoped locator (see {@link WebLocator#within(WebLocator)}) is searched inside its parent element only, instead of the whole document.
+ * The parent element is resolved once and kept between polls until it becomes stale.
+ * Conditions on a locator which is not scoped are the same as {@link ExpectedConditions}.
+ */
+public class LocatorConditions {
+
+    public static ExpectedCondition<WebElement> visibilityOf(WebLocator webLocator) {
+        if (!webLocator.isScoped()) {
+            return ExpectedConditions.visibilityOfElementLocated(webLocator.toBy());
+        }
+        return new ScopedCondition<WebElement>(webLocator, "visibility") {
+            @Override
+            WebElement check(WebElement element) {
+                return element.isDisplayed() ? element : null;
+            }
+        };
+    }
+
+    public static ExpectedCondition<WebElement> clickabilityOf(WebLocator webLocator) {
+        if (!webLocator.isScoped()) {
+            return ExpectedConditions.elementToBeClickable(webLocator.toBy());
+        }
+        return new ScopedCondition<WebElement>(webLocator, "clickability") {
+            @Override
+            WebElement check(WebElement element) {
+                return element.isDisplayed() && element.isEnabled() ? element : null;
+            }
+        };
+    }
+
+    public static ExpectedCondition<Boolean> invisibilityOf(WebLocator webLocator) {
+        if (!webLocator.isScoped()) {
+            return ExpectedConditions.invisibilityOfElementLocated(webLocator.toBy());
+        }
+        return new ScopedCondition<Boolean>(webLocator, "invisibility") {
+            @Override
+            Boolean check(WebElement element) {
+                return !element.isDisplayed();
+            }
+
+            @Override
+            Boolean whenAbsent() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Find the web element located by <code>webLocator</code>, inside its parent element if it is scoped
+     * @param webDriver driver of the session
+     * @param webLocator {@link WebLocator} instance to locate web element
+     * @return the found web element, throw {@link NoSuchElementException} otherwise
+     */
+    public static WebElement findElement(WebDriver webDriver, WebLocator webLocator) {
+        return findSearchContext(webDriver, webLocator).findElement(webLocator.isScoped() ? webLocator.toRelativeBy() : webLocator.toBy());
+    }
+
+    private static SearchContext findSearchContext(WebDriver webDriver, WebLocator webLocator) {
+        if (webLocator.getParentElement() != null) {
+            return webLocator.getParentElement();
+        } else if (webLocator.getParentLocator() != null) {
+            return findElement(webDriver, webLocator.getParentLocator());
+        } else {
+            return webDriver;
+        }
+    }
+
+    private abstract static class ScopedCondition<T> implements ExpectedCondition<T> {
+        private final WebLocator webLocator;
+        private final String conditionName;
+        private SearchContext searchContext;
+
+        private ScopedCondition(WebLocator webLocator, String conditionName) {
+            this.webLocator = webLocator;
+            this.conditionName = conditionName;
+        }
+
+        abstract T check(WebElement element);
+
+        T whenAbsent() {
+            return null;
+        }
+
+        @Override
+        public T apply(WebDriver webDriver) {
+            try {
+                if (searchContext == null) {
+                    searchContext = findSearchContext(webDriver, webLocator);
+                }
+                return check(searchContext.findElement(webLocator.toRelativeBy()));
+            } catch (NoSuchElementException e) {
+                return whenAbsent();
+            } catch (StaleElementReferenceException e) {
+                // Either the parent or the element was re-rendered, resolve the parent again on next poll
+                searchContext = null;
+                return whenAbsent();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s of element located by %s", conditionName, webLocator);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.my.automationtest.service;
+
+import org.my.automationtest.locator.WebLocator;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.WebDriverWait;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Element waits resolved inside the page: a MutationObserver re-checks the condition whenever the DOM changes, and the async script returns as soon as it holds,
+ * instead of polling <code>findElement</code> over the wire every {@link #POLLING_INTERVAL_MILLIS} ms.<br/><br/>
+ * Falls back to polling when the driver cannot run scripts, when the script fails (for ex: the page navigates during the wait)
+ * or when the locator cannot be evaluated in the page.
+ */
+public class ObserverWait {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObserverWait.class);
+
+    static final long POLLING_INTERVAL_MILLIS = 500; // default interval of WebDriverWait
+    private static final long SCRIPT_TIMEOUT_MARGIN_MILLIS = 5000;
+
+    public static final String CONDITION_VISIBLE = "visible";
+    public static final String CONDITION_CLICKABLE = "clickable";
+    public static final String CONDITION_INVISIBLE = "invisible";
+
+    // arguments: xpath, css selector, context element, condition, timeout in ms, callback
+    // returns [element or true, ms waited in page until the condition held], null on timeout
+    private static final String JS_WAIT_FOR_CONDITION = ""
+            + "var xpath = arguments[0], css = arguments[1], context = arguments[2], condition = arguments[3], timeout = arguments[4];"
+            + "var done = arguments[arguments.length - 1];"
+            + PageScripts.JS_FIND_FUNCTION
+            + PageScripts.JS_IS_VISIBLE_FUNCTION
+            + "function check() {"
+            + "  var e = find(xpath, css, context);"
+            + "  if (condition === 'invisible') { return (!e || !isVisible(e)) ? { value: true } : null; }"
+            + "  if (!e || !isVisible(e)) { return null; }"
+            + "  if (condition === 'clickable' && e.disabled) { return null; }"
+            + "  return { value: e };"
+            + "}"
+            + "var start = Date.now();"
+            + "var initial = check();"
+            + "if (initial) { done([initial.value, 0]); return; }"
+            + "var finished = false, observer, interval, timer;"
+            + "function finish(value) {"
+            + "  if (finished) { return; }"
+            + "  finished = true; observer.disconnect(); clearInterval(interval); clearTimeout(timer);"
+            + "  done(value === null ? null : [value, Date.now() - start]);"
+            + "}"
+            + "function recheck() { var result = check(); if (result) { finish(result.value); } }"
+            + "observer = new MutationObserver(recheck);"
+            + "observer.observe(document, { childList: true, subtree: true, attributes: true, characterData: true });"
+            // Style only changes (transitions, media queries) don't produce mutations, re-check them at a low in-page rate
+            + "interval = setInterval(recheck, 100);"
+            + "timer = setTimeout(function () { finish(null); }, timeout);";
+
+    private static final LongAdder OBSERVED_WAITS = new LongAdder();
+    private static final LongAdder FALLBACK_WAITS = new LongAdder();
+    private static final LongAdder SAVED_MILLIS = new LongAdder();
+
+    /**
+     * Wait for <code>condition</code> of the web element located by <code>webLocator</code>
+     * @param session session to wait in
+     * @param webLocator {@link WebLocator} instance to locate web element
+     * @param condition one of {@link #CONDITION_VISIBLE}, {@link #CONDITION_CLICKABLE}, {@link #CONDITION_INVISIBLE}
+     * @param pollingCondition equivalent condition evaluated over the wire, used to confirm the result and as fallback
+     * @param timeout maximum time allowed to wait, in seconds
+     * @return result of <code>pollingCondition</code>, throw {@link TimeoutException} if condition doesn't hold after <code>timeout</code>
+     */
+    public static <T> T waitFor(WebSession session, WebLocator webLocator, String condition, ExpectedCondition<T> pollingCondition, long timeout) {
+        WebDriver webDriver = session.getWebDriver();
+        long startTime = System.nanoTime();
+        Object[] scriptArgs = session.isObserverWaitUnsupported() || !(webDriver instanceof JavascriptExecutor) ? null : obtainScriptArgs(webLocator, condition, timeout);
+        if (scriptArgs == null) {
+            FALLBACK_WAITS.increment();
+            return pollFor(webDriver, pollingCondition, TimeUnit.SECONDS.toMillis(timeout));
+        }
+
+        List<?> observed;
+        try {
+            session.ensureScriptTimeout(TimeUnit.SECONDS.toMillis(timeout) + SCRIPT_TIMEOUT_MARGIN_MILLIS);
+            observed = (List<?>) ((JavascriptExecutor) webDriver).executeAsyncScript(JS_WAIT_FOR_CONDITION, scriptArgs);
+        } catch (UnsupportedCommandException e) {
+            LOGGER.warn("Driver cannot run async scripts, fall back to polling for this session", e);
+            session.setObserverWaitUnsupported(true);
+            observed = null;
+        } catch (WebDriverException e) {
+            LOGGER.debug("Observer wait for {} failed, fall back to polling", webLocator, e);
+            observed = null;
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        if (observed != null) {
+            // Confirm with WebDriver's own visibility rules, which the in-page check only approximates
+            T confirmed = applyQuietly(pollingCondition, webDriver);
+            if (confirmed != null && !Boolean.FALSE.equals(confirmed)) {
+                recordSavedTime(webLocator, condition, ((Number) observed.get(1)).longValue());
+                return confirmed;
+            }
+        }
+        FALLBACK_WAITS.increment();
+        long remainingMillis = Math.max(0, TimeUnit.SECONDS.toMillis(timeout) - elapsedMillis);
+        return pollFor(webDriver, pollingCondition, remainingMillis);
+    }
+
+    public static long getObservedWaits() {
+        return OBSERVED_WAITS.sum();
+    }
+
+    public static long getFallbackWaits() {
+        return FALLBACK_WAITS.sum();
+    }
+
+    /**
+     * @return estimated total time saved compared to polling every {@link #POLLING_INTERVAL_MILLIS} ms, in milliseconds
+     */
+    public static long getSavedMillis() {
+        return SAVED_MILLIS.sum();
+    }
+
+    private static <T> T applyQuietly(ExpectedCondition<T> pollingCondition, WebDriver webDriver) {
+        try {
+            return pollingCondition.apply(webDriver);
+        } catch (WebDriverException e) {
+            LOGGER.debug("Cannot confirm observed element", e);
+        }
+        return null;
+    }
+
+    private static Object[] obtainScriptArgs(WebLocator webLocator, String condition, long timeout) {
+        Object[] locatorArgs = PageScripts.locatorArgsOf(webLocator);
+        if (locatorArgs == null) {
+            return null;
+        }
+        return new Object[]{locatorArgs[0], locatorArgs[1], locatorArgs[2], condition, TimeUnit.SECONDS.toMillis(timeout)};
+    }
+
+    private static <T> T pollFor(WebDriver webDriver, ExpectedCondition<T> pollingCondition, long timeoutMillis) {
+        WebDriverWait wait = new WebDriverWait(webDriver, 0);
+        wait.withTimeout(Duration.ofMillis(timeoutMillis));
+        return wait.until(pollingCondition);
+    }
+
+    private static void recordSavedTime(WebLocator webLocator, String condition, long waitedMillis) {
+        OBSERVED_WAITS.increment();
+        // Polling would only have seen the change at its next tick
+        long savedMillis = (POLLING_INTERVAL_MILLIS - waitedMillis % POLLING_INTERVAL_MILLIS) % POLLING_INTERVAL_MILLIS;
+        SAVED_MILLIS.add(savedMillis);
+        LOGGER.debug("Element {} became {} after {} ms, ~{} ms sooner than polling", webLocator, condition, waitedMillis, savedMillis);
+    }
+}
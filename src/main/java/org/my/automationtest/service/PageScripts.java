@@ -0,0 +1,158 @@
+package org.my.automationtest.service;
+
+import org.my.automationtest.constants.SeleniumConstants;
+import org.my.automationtest.locator.CompiledLocator;
+import org.my.automationtest.locator.WebLocator;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Scripts {@link WebUI} injects in the page, the JavaScript functions they share, and the script form of a {@link WebLocator}.<br/><br/>
+ * Every script the library runs is declared with {@link #define(String)}, here or in the class running it,
+ * so {@link org.my.automationtest.service.fake.FakeWebDriver} can tell a script of the library from a script of the test.
+ */
+public final class PageScripts {
+
+    private static final Set<String> LIBRARY_SCRIPTS = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    // find(xpath, css, context): first element matching the css selector if any, the xpath otherwise, searched from context (or document)
+    static final String JS_FIND_FUNCTION = ""
+            + "function find(xpath, css, context) {"
+            + "  context = context || document;"
+            + "  if (css) { return context.querySelector(css); }"
+            + "  return document.evaluate(xpath, context, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;"
+            + "}";
+
+    // isVisible(e): approximation of WebDriver's displayed check
+    static final String JS_IS_VISIBLE_FUNCTION = ""
+            + "function isVisible(e) {"
+            + "  if (!e.isConnected) { return false; }"
+            + "  for (var n = e; n && n.nodeType === 1; n = n.parentElement) {"
+            + "    var style = window.getComputedStyle(n);"
+            + "    if (style.display === 'none' || parseFloat(style.opacity) === 0) { return false; }"
+            + "  }"
+            + "  var style = window.getComputedStyle(e);"
+            + "  if (style.visibility === 'hidden' || style.visibility === 'collapse') { return false; }"
+            + "  var rect = e.getBoundingClientRect();"
+            + "  return rect.width > 0 && rect.height > 0;"
+            + "}";
+
+    // setValue(e, value): set the value of an input, textarea or contenteditable element as typing would, returns 'set' or 'unsupported'
+    static final String JS_SET_VALUE_FUNCTION = ""
+            + "var UNSUPPORTED_TYPES = ['checkbox', 'radio', 'file', 'button', 'submit', 'reset', 'image', 'color', 'range'];"
+            + "function setValue(e, value) {"
+            + "  if (e.disabled || e.readOnly) { return 'unsupported'; }"
+            + "  var proto = e instanceof HTMLTextAreaElement ? HTMLTextAreaElement.prototype : e instanceof HTMLInputElement ? HTMLInputElement.prototype : null;"
+            + "  if (proto) {"
+            + "    if (UNSUPPORTED_TYPES.indexOf((e.type || '').toLowerCase()) >= 0) { return 'unsupported'; }"
+            // Typing stops at maxlength, setting the value doesn't
+            + "    if (e.maxLength > 0 && value.length > e.maxLength) { value = value.substring(0, e.maxLength); }"
+            + "    e.focus();"
+            // The native setter bypasses the value tracking of frameworks such as React, which would otherwise ignore the events
+            + "    Object.getOwnPropertyDescriptor(proto, 'value').set.call(e, value);"
+            + "    if (e.value !== value) { return 'unsupported'; }"
+            + "  } else if (e.isContentEditable) {"
+            + "    e.focus(); e.textContent = value;"
+            + "  } else {"
+            + "    return 'unsupported';"
+            + "  }"
+            + "  e.dispatchEvent(new Event('input', { bubbles: true }));"
+            + "  e.dispatchEvent(new Event('change', { bubbles: true }));"
+            + "  return 'set';"
+            + "}";
+
+    // arguments: [xpath, css selector, context element] or element of each field, value of each field
+    // returns for each field "set", "missing" if it is not found or not visible, "unsupported" if its value cannot be set by script
+    public static final String JS_SET_VALUES = define(""
+            + JS_FIND_FUNCTION
+            + JS_IS_VISIBLE_FUNCTION
+            + "var values = arguments[1];"
+            + JS_SET_VALUE_FUNCTION
+            + "return arguments[0].map(function (spec, i) {"
+            + "  var e;"
+            + "  try { e = Array.isArray(spec) ? find(spec[0], spec[1], spec[2]) : spec; } catch (err) { e = null; }"
+            + "  if (!e || !isVisible(e)) { return 'missing'; }"
+            + "  return setValue(e, values[i]);"
+            + "});");
+
+    // arguments: [xpath, css selector, context element] of each element, names of the attributes to read
+    // returns for each element [visible, visible text, attributes], null if it doesn't exist
+    public static final String JS_READ_ELEMENT_STATES = define(""
+            + JS_FIND_FUNCTION
+            + JS_IS_VISIBLE_FUNCTION
+            + "var attributeNames = arguments[1];"
+            + "return arguments[0].map(function (spec) {"
+            + "  var e;"
+            + "  try { e = find(spec[0], spec[1], spec[2]); } catch (err) { e = null; }"
+            + "  if (!e) { return null; }"
+            + "  var visible = isVisible(e), attributes = {};"
+            + "  attributeNames.forEach(function (name) { attributes[name] = e.getAttribute(name); });"
+            + "  return [visible, visible ? (e.innerText || '').trim() : '', attributes];"
+            + "});");
+
+    // arguments: [xpath, css, context] of each locator
+    // returns [x, y, width, height] in device pixels of each visible element located by any of the locators
+    public static final String JS_READ_REGIONS = define(""
+            + "var ratio = window.devicePixelRatio || 1, regions = [];"
+            + "arguments[0].forEach(function (spec) {"
+            + "  var elements = [];"
+            + "  try {"
+            + "    if (spec[1]) { elements = Array.prototype.slice.call((spec[2] || document).querySelectorAll(spec[1])); }"
+            + "    else {"
+            + "      var found = document.evaluate(spec[0], spec[2] || document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);"
+            + "      for (var i = 0; i < found.snapshotLength; i++) { elements.push(found.snapshotItem(i)); }"
+            + "    }"
+            + "  } catch (err) { elements = []; }"
+            + "  elements.forEach(function (e) {"
+            + "    var rect = e.getBoundingClientRect();"
+            + "    if (rect.width > 0 && rect.height > 0) {"
+            + "      regions.push([Math.floor(rect.left * ratio), Math.floor(rect.top * ratio), Math.ceil(rect.width * ratio), Math.ceil(rect.height * ratio)]);"
+            + "    }"
+            + "  });"
+            + "});"
+            + "return regions;");
+
+    public static final String JS_SCROLL_INTO_VIEW = define("arguments[0].scrollIntoView();");
+
+    // arguments: xpath of the element
+    public static final String JS_SCROLL_XPATH_INTO_VIEW = define(SeleniumConstants.JS_FIND_ELEMENT_BY_XPATH + ".scrollIntoView();");
+
+    // arguments: url
+    public static final String JS_OPEN_IN_NEW_TAB = define("window.open(arguments[0], '_blank');");
+
+    private PageScripts() {
+    }
+
+    /**
+     * Declare <code>script</code> as a script of the library, to be assigned to the constant it is run from
+     * @return <code>script</code>
+     */
+    public static String define(String script) {
+        LIBRARY_SCRIPTS.add(script);
+        return script;
+    }
+
+    /**
+     * @return true if <code>script</code> was declared with {@link #define(String)}
+     */
+    public static boolean isLibraryScript(String script) {
+        return LIBRARY_SCRIPTS.contains(script);
+    }
+
+    /**
+     * @param webLocator {@link WebLocator} instance to locate web element
+     * @return arguments of <code>find(xpath, css, context)</code> for <code>webLocator</code>, <code>null</code> if it cannot be evaluated in the page
+     */
+    static Object[] locatorArgsOf(WebLocator webLocator) {
+        CompiledLocator compiled = webLocator.compile();
+        String css = compiled.getCssSelector();
+        String xpath = compiled.getXpath();
+        if (css == null && xpath == null) {
+            return null;
+        }
+        // A locator scoped within an element is evaluated from that element, other locators from the document
+        return new Object[]{xpath, css, webLocator.getParentElement()};
+    }
+}
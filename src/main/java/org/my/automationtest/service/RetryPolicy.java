@@ -0,0 +1,328 @@
+package org.my.automationtest.service;
+
+import org.my.automationtest.service.probe.ActionProbe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retry with exponential backoff and jitter inside a total time budget, shared by {@link WebUI} retry paths
+ * (replaying previous actions after a timeout, re-clicking an element covered by another one).<br/><br/>
+ * Between two attempts the policy waits on a {@link RetrySignal}: either a plain sleep, or until the DOM changes (see {@link DomChangeSignal}),
+ * so an attempt is made as soon as the page had a chance to change instead of after a fixed interval.<br/>
+ * Exception rules decide per exception type whether a failure is retried or rethrown immediately, the first matching rule wins.
+ */
+public class RetryPolicy {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetryPolicy.class);
+
+    public enum Decision {
+        RETRY,
+        ABORT
+    }
+
+    private final long initialIntervalMillis;
+    private final long maxIntervalMillis;
+    private final double multiplier;
+    private final double jitter;
+    private final long timeBudgetMillis;
+    private final int maxAttempts;
+    private final boolean waitForDomChange;
+    private final Map<Class<? extends Throwable>, Decision> exceptionRules;
+
+    private final Map<String, Statistics> statistics = new ConcurrentHashMap<>();
+
+    private RetryPolicy(Builder builder) {
+        this.initialIntervalMillis = builder.initialIntervalMillis;
+        this.maxIntervalMillis = builder.maxIntervalMillis;
+        this.multiplier = builder.multiplier;
+        this.jitter = builder.jitter;
+        this.timeBudgetMillis = builder.timeBudgetMillis;
+        this.maxAttempts = builder.maxAttempts;
+        this.waitForDomChange = builder.waitForDomChange;
+        this.exceptionRules = Collections.unmodifiableMap(new LinkedHashMap<>(builder.exceptionRules));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a builder initialized with the settings and exception rules of this policy
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder()
+                .initialInterval(initialIntervalMillis)
+                .maxInterval(maxIntervalMillis)
+                .multiplier(multiplier)
+                .jitter(jitter)
+                .timeBudget(timeBudgetMillis)
+                .maxAttempts(maxAttempts)
+                .waitForDomChange(waitForDomChange);
+        builder.exceptionRules.putAll(exceptionRules);
+        return builder;
+    }
+
+    /**
+     * Retry <code>attempt</code> after it has failed once with <code>firstFailure</code>
+     * @param operation name of the retried operation, statistics are kept per operation
+     * @param retryOn only failures of this type are retried (subject to exception rules), others are rethrown immediately
+     * @param firstFailure failure of the first (not retried) attempt
+     * @param attempt the attempt to be retried
+     * @param signal what to wait on between two attempts
+     * @return result of the first successful attempt, throw {@link ExhaustedException} if no attempt succeeded within the time budget
+     */
+    public <T> T retry(String operation, Class<? extends Exception> retryOn, Exception firstFailure, Attempt<T> attempt, RetrySignal signal) {
+        Statistics operationStatistics = statistics.computeIfAbsent(operation, key -> new Statistics());
+        long startTime = System.nanoTime();
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        Exception lastFailure = firstFailure;
+        try {
+            for (int retryNum = 0; maxAttempts <= 0 || retryNum < maxAttempts; retryNum++) {
+                long delayMillis = delayBeforeRetry(retryNum);
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(budgetNanos - (System.nanoTime() - startTime));
+                if (remainingMillis <= 0) {
+                    break;
+                }
+                long waitStartTime = System.nanoTime();
+                signal.await(Math.min(delayMillis, remainingMillis));
+                operationStatistics.waitNanos.add(System.nanoTime() - waitStartTime);
+
+                operationStatistics.attempts.increment();
+                long probeStart = ActionProbe.start(ActionProbe.RETRY);
+                try {
+                    T result = attempt.attempt();
+                    operationStatistics.successes.increment();
+                    return result;
+                } catch (Exception e) {
+                    lastFailure = e;
+                    if (!retryOn.isInstance(e) || decide(e) == Decision.ABORT) {
+                        operationStatistics.aborts.increment();
+                        throw e;
+                    }
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Attempt {} of {} failed: {}", retryNum + 1, operation, e.toString());
+                    }
+                } finally {
+                    ActionProbe.stop(ActionProbe.RETRY, operation, probeStart);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            operationStatistics.aborts.increment();
+            throw new RuntimeException(String.format("Interrupted while retrying %s", operation), e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            operationStatistics.retryNanos.add(System.nanoTime() - startTime);
+        }
+        operationStatistics.exhausted.increment();
+        throw new ExhaustedException(String.format("%s still fails after retrying for %d ms", operation, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)), lastFailure);
+    }
+
+    /**
+     * @param exception failure of an attempt
+     * @return decision of the first exception rule matching <code>exception</code>, {@link Decision#RETRY} if none matches
+     */
+    public Decision decide(Throwable exception) {
+        for (Map.Entry<Class<? extends Throwable>, Decision> rule : exceptionRules.entrySet()) {
+            if (rule.getKey().isInstance(exception)) {
+                return rule.getValue();
+            }
+        }
+        return Decision.RETRY;
+    }
+
+    /**
+     * @param retryNum 0 for the first retry
+     * @return backoff delay before retry number <code>retryNum</code>, in milliseconds
+     */
+    long delayBeforeRetry(int retryNum) {
+        double delay = Math.min(maxIntervalMillis, initialIntervalMillis * Math.pow(multiplier, retryNum));
+        if (jitter > 0) {
+            delay *= 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        }
+        return Math.max(0, Math.round(delay));
+    }
+
+    public boolean isWaitForDomChange() {
+        return waitForDomChange;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    /**
+     * @return statistics per operation name, for ex: number of attempts and time spent retrying
+     */
+    public Map<String, Statistics> getStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RetryPolicy(initialInterval=%d ms, multiplier=%.1f, maxInterval=%d ms, jitter=%.2f, timeBudget=%d ms, maxAttempts=%d, waitForDomChange=%b)"
+                , initialIntervalMillis, multiplier, maxIntervalMillis, jitter, timeBudgetMillis, maxAttempts, waitForDomChange);
+    }
+
+    public interface Attempt<T> {
+        T attempt() throws Exception;
+    }
+
+    /**
+     * Thrown when no retry succeeded within the time budget, the cause is the failure of the last attempt
+     */
+    public static class ExhaustedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ExhaustedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    public static class Statistics {
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder aborts = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder retryNanos = new LongAdder();
+
+        public long getAttempts() {
+            return attempts.sum();
+        }
+
+        public long getSuccesses() {
+            return successes.sum();
+        }
+
+        public long getAborts() {
+            return aborts.sum();
+        }
+
+        public long getExhausted() {
+            return exhausted.sum();
+        }
+
+        /**
+         * @return time spent waiting between attempts, in milliseconds
+         */
+        public long getWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+        }
+
+        /**
+         * @return total time spent retrying (waiting and attempting), in milliseconds
+         */
+        public long getRetryMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(retryNanos.sum());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("attempts=%d, successes=%d, aborts=%d, exhausted=%d, waiting=%d ms, total=%d ms"
+                    , getAttempts(), getSuccesses(), getAborts(), getExhausted(), getWaitMillis(), getRetryMillis());
+        }
+    }
+
+    public static class Builder {
+        private long initialIntervalMillis = 250;
+        private long maxIntervalMillis = 2000;
+        private double multiplier = 2;
+        private double jitter = 0.2;
+        private long timeBudgetMillis = 20000;
+        private int maxAttempts = 0;
+        private boolean waitForDomChange = false;
+        private final Map<Class<? extends Throwable>, Decision> exceptionRules = new LinkedHashMap<>();
+
+        private Builder() {
+            // Use RetryPolicy.builder()
+        }
+
+        public Builder initialInterval(long initialIntervalMillis) {
+            this.initialIntervalMillis = initialIntervalMillis;
+            return this;
+        }
+
+        public Builder maxInterval(long maxIntervalMillis) {
+            this.maxIntervalMillis = maxIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param multiplier factor applied to the interval after each retry, 1 for a fixed interval
+         */
+        public Builder multiplier(double multiplier) {
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * @param jitter random variation of each interval, from 0 (none) to 1 (between 0 and twice the interval)
+         */
+        public Builder jitter(double jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        public Builder timeBudget(long timeBudgetMillis) {
+            this.timeBudgetMillis = timeBudgetMillis;
+            return this;
+        }
+
+        /**
+         * @param maxAttempts maximum number of retries, 0 for no limit other than the time budget
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param waitForDomChange retry as soon as the DOM changes instead of waiting for the whole interval
+         */
+        public Builder waitForDomChange(boolean waitForDomChange) {
+            this.waitForDomChange = waitForDomChange;
+            return this;
+        }
+
+        /**
+         * Add an exception rule, rules are evaluated in the order they are added
+         * @param exceptionType failures of this type (or its subtypes) are matched by this rule
+         * @param decision whether matched failures are retried or rethrown immediately
+         */
+        public Builder on(Class<? extends Throwable> exceptionType, Decision decision) {
+            this.exceptionRules.put(exceptionType, decision);
+            return this;
+        }
+
+        public RetryPolicy build() {
+            List<String> errors = new ArrayList<>();
+            if (initialIntervalMillis < 0 || maxIntervalMillis < initialIntervalMillis) {
+                errors.add("intervals must satisfy 0 <= initialInterval <= maxInterval");
+            }
+            if (multiplier < 1) {
+                errors.add("multiplier must be >= 1");
+            }
+            if (jitter < 0 || jitter > 1) {
+                errors.add("jitter must be between 0 and 1");
+            }
+            if (!errors.isEmpty()) {
+                throw new RuntimeException(String.format("Invalid retry policy: %s", errors));
+            }
+            return new RetryPolicy(this);
+        }
+    }
+}
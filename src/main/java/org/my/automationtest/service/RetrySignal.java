@@ -0,0 +1,20 @@
+package org.my.automationtest.service;
+
+import org.my.automationtest.service.probe.ActionProbe;
+
+/**
+ * What {@link RetryPolicy} waits on between two attempts
+ */
+public interface RetrySignal {
+
+    /**
+     * Plain sleep for the whole backoff delay
+     */
+    RetrySignal SLEEP = maxWaitMillis -> ActionProbe.sleep("retry backoff", maxWaitMillis);
+
+    /**
+     * Block until the next attempt should be made
+     * @param maxWaitMillis backoff delay, the maximum time to wait
+     */
+    void await(long maxWaitMillis) throws InterruptedException;
+}
@@ -0,0 +1,132 @@
+package org.my.automationtest.service;
+
+import org.my.automationtest.service.probe.ActionProbe;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wait for a web element to settle before acting on it, instead of sleeping for a fixed time.<br/><br/>
+ * The element is settled when, for {@link #STABLE_WINDOW_MILLIS} ms, its bounding box has not moved, no CSS transition or animation runs on it or its ancestors,
+ * and no mutation touched it, its subtree or the attributes of its ancestors.
+ * Falls back to sleeping for the whole maximum time when the driver cannot run async scripts.
+ */
+public class StabilityWait {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StabilityWait.class);
+
+    static final long STABLE_WINDOW_MILLIS = 100;
+    private static final long SCRIPT_TIMEOUT_MARGIN_MILLIS = 5000;
+
+    // arguments: element, stable window in ms, max wait in ms, callback
+    // returns [settled, ms waited in page]
+    private static final String JS_WAIT_FOR_STABLE = ""
+            + "var element = arguments[0], stableWindow = arguments[1], maxWait = arguments[2], done = arguments[arguments.length - 1];"
+            + "var start = Date.now(), lastChange = start, lastRect = null, finished = false, interval, timer;"
+            + "function finish(settled) {"
+            + "  if (finished) { return; }"
+            + "  finished = true; observer.disconnect(); clearInterval(interval); clearTimeout(timer);"
+            + "  done([settled, Date.now() - start]);"
+            + "}"
+            + "function isAnimating() {"
+            + "  for (var n = element; n && n.nodeType === 1; n = n.parentElement) {"
+            + "    if (typeof n.getAnimations !== 'function') { return false; }"
+            + "    var animations = n.getAnimations();"
+            + "    for (var i = 0; i < animations.length; i++) {"
+            // An infinite animation (for ex: a pulsing button) never ends, it doesn't prevent the element from settling
+            + "      if (animations[i].playState === 'running' && animations[i].effect && animations[i].effect.getComputedTiming().iterations !== Infinity) { return true; }"
+            + "    }"
+            + "  }"
+            + "  return false;"
+            + "}"
+            + "function check() {"
+            + "  if (!element.isConnected) { finish(true); return; }"
+            + "  var rect = element.getBoundingClientRect(), now = Date.now();"
+            + "  if (!lastRect || rect.top !== lastRect.top || rect.left !== lastRect.left || rect.width !== lastRect.width || rect.height !== lastRect.height) { lastRect = rect; lastChange = now; }"
+            + "  if (isAnimating()) { lastChange = now; }"
+            + "  if (now - lastChange >= stableWindow) { finish(true); }"
+            + "}"
+            + "var observer = new MutationObserver(function (mutations) {"
+            + "  for (var i = 0; i < mutations.length; i++) {"
+            + "    var target = mutations[i].target;"
+            + "    if (element.contains(target) || (mutations[i].type === 'attributes' && target.contains(element))) { lastChange = Date.now(); return; }"
+            + "  }"
+            + "});"
+            + "observer.observe(document, { childList: true, subtree: true, attributes: true, characterData: true });"
+            + "interval = setInterval(check, 20);"
+            + "timer = setTimeout(function () { finish(false); }, maxWait);"
+            + "check();";
+
+    private static final LongAdder SETTLED_WAITS = new LongAdder();
+    private static final LongAdder UNSETTLED_WAITS = new LongAdder();
+    private static final LongAdder SAVED_MILLIS = new LongAdder();
+
+    /**
+     * Wait until <code>webElement</code> is settled, at most <code>maxWaitMillis</code>
+     * @param session session to wait in
+     * @param webElement element about to be acted on
+     * @param maxWaitMillis maximum time allowed to wait, in milliseconds
+     * @return true if the element settled before <code>maxWaitMillis</code>, false otherwise
+     */
+    public static boolean waitForStable(WebSession session, WebElement webElement, long maxWaitMillis) {
+        WebDriver webDriver = session.getWebDriver();
+        long startTime = System.nanoTime();
+        if (!session.isObserverWaitUnsupported() && webDriver instanceof JavascriptExecutor) {
+            try {
+                session.ensureScriptTimeout(maxWaitMillis + SCRIPT_TIMEOUT_MARGIN_MILLIS);
+                List<?> result = (List<?>) ((JavascriptExecutor) webDriver).executeAsyncScript(JS_WAIT_FOR_STABLE, webElement, STABLE_WINDOW_MILLIS, maxWaitMillis);
+                long waitedMillis = ((Number) result.get(1)).longValue();
+                if (Boolean.TRUE.equals(result.get(0))) {
+                    SETTLED_WAITS.increment();
+                    SAVED_MILLIS.add(Math.max(0, maxWaitMillis - waitedMillis));
+                    LOGGER.debug("Element {} settled after {} ms", webElement, waitedMillis);
+                    return true;
+                }
+                UNSETTLED_WAITS.increment();
+                return false;
+            } catch (UnsupportedCommandException e) {
+                LOGGER.warn("Driver cannot run async scripts, fall back to sleeping for this session", e);
+                session.setObserverWaitUnsupported(true);
+            } catch (WebDriverException e) {
+                LOGGER.debug("Stability wait for {} failed, fall back to sleeping", webElement, e);
+            }
+        }
+        UNSETTLED_WAITS.increment();
+        long remainingMillis = maxWaitMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        if (remainingMillis > 0) {
+            try {
+                ActionProbe.sleep("stability fallback", remainingMillis);
+            } catch (InterruptedException e) {
+                LOGGER.error("InterruptedException", e);
+                Thread.currentThread().interrupt();
+            }
+        }
+        return false;
+    }
+
+    public static long getSettledWaits() {
+        return SETTLED_WAITS.sum();
+    }
+
+    /**
+     * @return number of waits which lasted the whole maximum time, either because the element never settled or because the script could not run
+     */
+    public static long getUnsettledWaits() {
+        return UNSETTLED_WAITS.sum();
+    }
+
+    /**
+     * @return total time saved compared to sleeping for the whole maximum time, in milliseconds
+     */
+    public static long getSavedMillis() {
+        return SAVED_MILLIS.sum();
+    }
+}
@@ -0,0 +1,15 @@
+package org.my.automationtest.service;
+
+/**
+ * How {@link WebUI} waits for an element condition
+ */
+public enum WaitMode {
+    /**
+     * Check the condition over the wire every 500 ms with {@link org.openqa.selenium.support.ui.WebDriverWait}
+     */
+    POLLING,
+    /**
+     * Check the condition inside the page on every DOM mutation, see {@link ObserverWait}
+     */
+    OBSERVER
+}
@@ -0,0 +1,56 @@
+package org.my.automationtest.service;
+
+import org.my.automationtest.service.fake.FakeWebDriver;
+import org.my.automationtest.service.probe.CommandTracer;
+import org.my.automationtest.service.probe.TracingCommandExecutor;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.edge.EdgeOptions;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.service.DriverCommandExecutor;
+
+public class WebDriverFactory {
+
+    public static final String FAKE_BROWSER = "fake";
+
+    /**
+     * Launch a new browser of type <code>webBrowser</code>.<br/><br/>
+     * A chrome browser is driven through the chromedriver process shared by all chrome sessions,
+     * a firefox or edge browser through a driver process of its own which stops when the browser quits, see {@link DriverServices}.
+     * When {@link CommandTracer} is enabled, its commands are traced by a {@link TracingCommandExecutor}.<br/><br/>
+     * <code>fake</code> starts no browser: it creates a {@link FakeWebDriver} serving HTML fixtures in memory, for offline runs and benchmarks.
+     * @param webBrowser browser type, one of <code>chrome</code>, <code>firefox</code>, <code>edge</code> or <code>fake</code>
+     * @return {@link WebDriver} instance of the launched browser
+     */
+    public static WebDriver createWebDriver(String webBrowser) {
+        if (FAKE_BROWSER.equals(webBrowser)) {
+            return new FakeWebDriver();
+        }
+        CommandExecutor executor = DriverServices.isShared(webBrowser)
+                ? new HttpCommandExecutor(DriverServices.obtainDriverService(webBrowser).getUrl())
+                : new DriverCommandExecutor(DriverServices.startDedicatedDriverService(webBrowser));
+        if (CommandTracer.isEnabled()) {
+            executor = new TracingCommandExecutor(executor);
+        }
+        return new RemoteWebDriver(executor, obtainCapabilities(webBrowser));
+    }
+
+    private static Capabilities obtainCapabilities(String webBrowser) {
+        switch (webBrowser) {
+            case "chrome":
+                return new ChromeOptions();
+            case "firefox":
+                return new FirefoxOptions();
+            case "edge":
+                return new EdgeOptions();
+//            case "safari":
+//                return new SafariOptions();
+            default:
+                throw new RuntimeException(String.format("Browser %s is not supported", webBrowser));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.my.automationtest.service;
+
+import org.my.automationtest.service.probe.FlightRecorder;
+import org.openqa.selenium.WebDriver;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State of one browser session driven by {@link WebUI}: the {@link WebDriver} itself and the journal of previous actions registered for retrying.<br/><br/>
+ * {@link WebUI} binds a session to the calling thread, so each TestNG worker thread drives its own browser.
+ * A session can also be handed to another thread explicitly with {@link WebUI#bindSession(WebSession)}.
+ */
+public class WebSession {
+
+    public static final int ACTION_JOURNAL_CAPACITY = 10;
+
+    private final WebDriver webDriver;
+    private final String webBrowser;
+    private final boolean pooled;
+    private int useCount;
+    private long scriptTimeoutMillis = -1;
+    private boolean observerWaitUnsupported;
+    private volatile long interactionCount;
+    private final Set<String> visitedOrigins = new LinkedHashSet<>();
+    private boolean redirectedAcrossOrigins;
+    private final ActionJournal actionJournal = new ActionJournal(ACTION_JOURNAL_CAPACITY);
+    private final FlightRecorder flightRecorder;
+
+    public WebSession(WebDriver webDriver, String webBrowser) {
+        this(webDriver, webBrowser, false);
+    }
+
+    WebSession(WebDriver webDriver, String webBrowser, boolean pooled) {
+        this.webDriver = webDriver;
+        this.webBrowser = webBrowser;
+        this.pooled = pooled;
+        this.flightRecorder = WebUI.getFlightRecorderCapacity() > 0 ? new FlightRecorder(WebUI.getFlightRecorderCapacity()) : null;
+    }
+
+    public WebDriver getWebDriver() {
+        return webDriver;
+    }
+
+    public String getWebBrowser() {
+        return webBrowser;
+    }
+
+    /**
+     * @return true if this session is handed out by {@link WebSessionPool} and must be released to it instead of being quit
+     */
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    /**
+     * @return number of times this session has been handed out, always 1 for a session which is not pooled
+     */
+    public int getUseCount() {
+        return pooled ? useCount : 1;
+    }
+
+    void incrementUseCount() {
+        useCount++;
+    }
+
+    /**
+     * Forget per-test state so the session can be handed out again
+     */
+    void reset() {
+        actionJournal.clear();
+        visitedOrigins.clear();
+        redirectedAcrossOrigins = false;
+        if (flightRecorder != null) {
+            flightRecorder.clear();
+        }
+    }
+
+    /**
+     * Raise the async script timeout of the driver if it is lower than <code>scriptTimeoutMillis</code>
+     */
+    void ensureScriptTimeout(long scriptTimeoutMillis) {
+        if (this.scriptTimeoutMillis < scriptTimeoutMillis) {
+            webDriver.manage().timeouts().setScriptTimeout(scriptTimeoutMillis, TimeUnit.MILLISECONDS);
+            this.scriptTimeoutMillis = scriptTimeoutMillis;
+        }
+    }
+
+    boolean isObserverWaitUnsupported() {
+        return observerWaitUnsupported;
+    }
+
+    void setObserverWaitUnsupported(boolean observerWaitUnsupported) {
+        this.observerWaitUnsupported = observerWaitUnsupported;
+    }
+
+    /**
+     * @return number of {@link WebUI} calls which may have changed the page (actions, navigation, frame or tab switches) since the session was created.
+     * Caches of page content compare it to know whether the page must be checked again.
+     */
+    public long getInteractionCount() {
+        return interactionCount;
+    }
+
+    void recordInteraction() {
+        interactionCount++;
+    }
+
+    /**
+     * Remember the origins of a page loaded by {@link WebUI#getUrl(String)}, so {@link WebSessionPool} can clear the cookies and storage of each of them.<br/>
+     * A redirect to another origin may have gone through origins which are not known, the session is then not reused.
+     * @param requestedUrl url given to the driver
+     * @param currentUrl url of the loaded page
+     */
+    void recordNavigation(String requestedUrl, String currentUrl) {
+        String requestedOrigin = originOf(requestedUrl);
+        String currentOrigin = originOf(currentUrl);
+        if (requestedOrigin != null) {
+            visitedOrigins.add(requestedOrigin);
+        }
+        if (currentOrigin != null) {
+            visitedOrigins.add(currentOrigin);
+        }
+        if (!Objects.equals(requestedOrigin, currentOrigin)) {
+            redirectedAcrossOrigins = true;
+        }
+    }
+
+    /**
+     * @return http(s) origins of the pages loaded by {@link WebUI#getUrl(String)} since the session was handed out
+     */
+    Set<String> getVisitedOrigins() {
+        return Collections.unmodifiableSet(visitedOrigins);
+    }
+
+    /**
+     * @return true if a page loaded by {@link WebUI#getUrl(String)} was redirected to another origin, which may have stored cookies on the way
+     */
+    boolean isRedirectedAcrossOrigins() {
+        return redirectedAcrossOrigins;
+    }
+
+    /**
+     * @return <code>scheme://host[:port]</code> of an http or https <code>url</code>, <code>null</code> for other urls (<code>about:blank</code>, <code>data:</code>...)
+     */
+    static String originOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            URI uri = new URI(url);
+            String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase();
+            if (!("http".equals(scheme) || "https".equals(scheme)) || uri.getHost() == null) {
+                return null;
+            }
+            return scheme + "://" + uri.getHost().toLowerCase() + (uri.getPort() < 0 ? "" : ":" + uri.getPort());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return recorder of the last actions of this session, <code>null</code> when {@link WebUI#getFlightRecorderCapacity()} was 0 at its creation
+     */
+    public FlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+
+    /**
+     * @return journal of the last completed retry enabled actions, replayed when the next action times out
+     */
+    public ActionJournal getActionJournal() {
+        return actionJournal;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WebSession(%s, %s)", webBrowser, webDriver);
+    }
+}
@@ -0,0 +1,410 @@
+package org.my.automationtest.service;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of launched browser sessions, one pool per browser type.<br/><br/>
+ * Instead of quitting the browser at the end of a test, the session is released to the pool: extra windows are closed, cookies and local/session storage
+ * are cleared for every origin loaded by {@link WebUI#getUrl(String)} and the remaining window is navigated to <code>about:blank</code>,
+ * so the next test can start without paying for a browser launch.<br/>
+ * A session is quit and replaced after it has been handed out {@link #getMaxUsesPerSession()} times, when it fails the health check or clean up,
+ * or when it may hold state of origins which are not known: a window left on another origin (reached by a link) or a redirect across origins.<br/>
+ * At most {@link #getMaxSize()} sessions per browser type are launched, warmed up sessions included.
+ */
+public class WebSessionPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebSessionPool.class);
+    private static final long WARM_UP_POLL_MILLIS = 200;
+    // Small resource loaded to reach an origin without running its application
+    private static final String CLEAN_UP_PATH = "/favicon.ico";
+    public static final String JS_CLEAR_STORAGE = PageScripts.define("try { window.localStorage.clear(); } catch (e) {} try { window.sessionStorage.clear(); } catch (e) {}");
+
+    private final Map<String, BrowserPool> browserPools = new ConcurrentHashMap<>();
+    private final ExecutorService warmUpExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "web-session-pool-warm-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean enabled = false;
+    private volatile int maxSize = 4; // per browser type
+    private volatile int maxUsesPerSession = 50;
+    private volatile int warmUpSize = 1; // per browser type
+    private volatile long acquireTimeout = 300; // in seconds
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder reuses = new LongAdder();
+    private final LongAdder launches = new LongAdder();
+    private final LongAdder recycles = new LongAdder();
+    private final LongAdder healthCheckFailures = new LongAdder();
+    private final LongAdder totalAcquireNanos = new LongAdder();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+
+    WebSessionPool() {
+        // Shut down by WebUI at JVM exit
+    }
+
+    /**
+     * Hand out an idle session of browser type <code>webBrowser</code>, or launch a new one if there is no idle session.<br/><br/>
+     * Blocks for at most {@link #getAcquireTimeout()} seconds if {@link #getMaxSize()} sessions of this browser type are already handed out.
+     * @param webBrowser browser type, one of <code>chrome</code>, <code>firefox</code> or <code>edge</code>
+     * @return session which must be given back with {@link #release(WebSession)}
+     */
+    public WebSession acquire(String webBrowser) {
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.SECONDS.toNanos(acquireTimeout);
+        BrowserPool browserPool = browserPools.computeIfAbsent(webBrowser, this::newBrowserPool);
+        WebSession session;
+        try {
+            if (!browserPool.permits.tryAcquire(acquireTimeout, TimeUnit.SECONDS)) {
+                throw new RuntimeException(String.format("Cannot acquire %s session from pool after waiting for %d seconds", webBrowser, acquireTimeout));
+            }
+            try {
+                session = takeOrLaunch(webBrowser, browserPool, deadline);
+            } catch (RuntimeException | InterruptedException e) {
+                browserPool.permits.release();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while acquiring session from pool", e);
+        }
+        session.incrementUseCount();
+
+        long acquireNanos = System.nanoTime() - startTime;
+        acquisitions.increment();
+        totalAcquireNanos.add(acquireNanos);
+        maxAcquireNanos.accumulateAndGet(acquireNanos, Math::max);
+        LOGGER.debug("Acquired {} (use {}) in {} ms", session, session.getUseCount(), TimeUnit.NANOSECONDS.toMillis(acquireNanos));
+        return session;
+    }
+
+    /**
+     * Give <code>session</code> back to the pool. The session is cleaned up to be reused, or quit if it reached {@link #getMaxUsesPerSession()} or cannot be cleaned up.
+     * @param session session handed out by {@link #acquire(String)}
+     */
+    public void release(WebSession session) {
+        BrowserPool browserPool = browserPools.get(session.getWebBrowser());
+        if (!session.isPooled() || browserPool == null) {
+            throw new RuntimeException(String.format("%s is not handed out by this pool", session));
+        }
+        try {
+            if (session.getUseCount() >= maxUsesPerSession || session.isRedirectedAcrossOrigins()) {
+                recycles.increment();
+                quit(browserPool, session);
+            } else if (cleanUp(session)) {
+                session.reset();
+                browserPool.idleSessions.offerFirst(session);
+            } else {
+                healthCheckFailures.increment();
+                quit(browserPool, session);
+            }
+        } finally {
+            browserPool.permits.release();
+        }
+    }
+
+    /**
+     * Quit all idle sessions. Sessions which are still handed out are quit when they are released.
+     */
+    public void shutdown() {
+        for (BrowserPool browserPool : browserPools.values()) {
+            List<WebSession> sessions = new ArrayList<>();
+            browserPool.idleSessions.drainTo(sessions);
+            sessions.forEach(session -> quit(browserPool, session));
+        }
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(acquisitions.sum(), reuses.sum(), launches.sum(), recycles.sum(), healthCheckFailures.sum()
+                , totalAcquireNanos.sum(), maxAcquireNanos.get());
+    }
+
+    private BrowserPool newBrowserPool(String webBrowser) {
+        BrowserPool browserPool = new BrowserPool(maxSize);
+        int sessionsToWarmUp = Math.min(warmUpSize, maxSize - 1); // spare sessions, the first session is launched by the acquiring thread
+        // Slots are reserved before the launches are submitted, so acquiring threads never launch more than maxSize sessions with them
+        for (int i = 0; i < sessionsToWarmUp && browserPool.reserveSlot(); i++) {
+            warmUpExecutor.submit(() -> {
+                try {
+                    browserPool.idleSessions.offerLast(launch(webBrowser));
+                } catch (RuntimeException e) {
+                    browserPool.releaseSlot();
+                    LOGGER.warn("Cannot warm up {} session", webBrowser, e);
+                }
+            });
+        }
+        return browserPool;
+    }
+
+    /**
+     * Take a healthy idle session, or launch one if a slot is free, or else wait for a session being warmed up.<br/>
+     * The caller holds a permit, so fewer than maxSize sessions are handed out and a slot is either free or taken by an idle or warming up session.
+     */
+    private WebSession takeOrLaunch(String webBrowser, BrowserPool browserPool, long deadline) throws InterruptedException {
+        while (true) {
+            WebSession session = takeHealthyIdleSession(browserPool);
+            if (session != null) {
+                reuses.increment();
+                return session;
+            }
+            if (browserPool.reserveSlot()) {
+                try {
+                    return launch(webBrowser);
+                } catch (RuntimeException e) {
+                    browserPool.releaseSlot();
+                    throw e;
+                }
+            }
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                throw new RuntimeException(String.format("Cannot acquire %s session from pool after waiting for %d seconds", webBrowser, acquireTimeout));
+            }
+            // Poll in short steps, a failed warm up frees its slot without offering a session
+            session = browserPool.idleSessions.pollFirst(Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(WARM_UP_POLL_MILLIS)), TimeUnit.NANOSECONDS);
+            if (session != null) {
+                browserPool.idleSessions.offerFirst(session);
+            }
+        }
+    }
+
+    private WebSession launch(String webBrowser) {
+        launches.increment();
+        return new WebSession(WebDriverFactory.createWebDriver(webBrowser), webBrowser, true);
+    }
+
+    private WebSession takeHealthyIdleSession(BrowserPool browserPool) {
+        WebSession session;
+        while ((session = browserPool.idleSessions.pollFirst()) != null) {
+            if (isHealthy(session)) {
+                return session;
+            }
+            healthCheckFailures.increment();
+            quit(browserPool, session);
+        }
+        return null;
+    }
+
+    private boolean isHealthy(WebSession session) {
+        try {
+            return session.getWebDriver().getWindowHandle() != null;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Health check failed for {}", session, e);
+            return false;
+        }
+    }
+
+    private boolean cleanUp(WebSession session) {
+        WebDriver webDriver = session.getWebDriver();
+        try {
+            Set<String> origins = new LinkedHashSet<>(session.getVisitedOrigins());
+            List<String> windows = new ArrayList<>(webDriver.getWindowHandles());
+            for (int i = windows.size() - 1; i >= 0; i--) {
+                webDriver.switchTo().window(windows.get(i));
+                String origin = WebSession.originOf(webDriver.getCurrentUrl());
+                if (origin != null && !origins.contains(origin)) {
+                    // Reached without WebUI.getUrl(), other origins may have been visited on the way
+                    LOGGER.debug("{} was left on {} which is not loaded by WebUI.getUrl(), it will be quit", session, origin);
+                    return false;
+                }
+                if (i > 0) {
+                    webDriver.close();
+                }
+            }
+            // Storage and cookies can only be cleared for the origin of the current page: clear the current one in place, then load each other origin
+            String currentOrigin = WebSession.originOf(webDriver.getCurrentUrl());
+            if (currentOrigin != null) {
+                clearState(webDriver);
+                origins.remove(currentOrigin);
+            }
+            for (String origin : origins) {
+                webDriver.get(origin + CLEAN_UP_PATH);
+                if (!origin.equals(WebSession.originOf(webDriver.getCurrentUrl()))) {
+                    LOGGER.debug("{} cannot load {} to clear its cookies and storage, it will be quit", session, origin);
+                    return false;
+                }
+                clearState(webDriver);
+            }
+            webDriver.get("about:blank");
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Cannot clean up {}, it will be quit", session, e);
+            return false;
+        }
+    }
+
+    private static void clearState(WebDriver webDriver) {
+        ((JavascriptExecutor) webDriver).executeScript(JS_CLEAR_STORAGE);
+        webDriver.manage().deleteAllCookies();
+    }
+
+    private void quit(BrowserPool browserPool, WebSession session) {
+        quitQuietly(session);
+        browserPool.releaseSlot();
+    }
+
+    private void quitQuietly(WebSession session) {
+        try {
+            session.getWebDriver().quit();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Cannot quit {}", session, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize maximum number of sessions per browser type which are handed out at the same time, applied to browser types which are not used yet
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxUsesPerSession() {
+        return maxUsesPerSession;
+    }
+
+    public void setMaxUsesPerSession(int maxUsesPerSession) {
+        this.maxUsesPerSession = maxUsesPerSession;
+    }
+
+    public int getWarmUpSize() {
+        return warmUpSize;
+    }
+
+    /**
+     * @param warmUpSize number of spare sessions launched in background when a browser type is acquired for the first time,
+     *                   besides the session launched by the acquiring thread (1 by default, 0 to launch sessions only on demand)
+     */
+    public void setWarmUpSize(int warmUpSize) {
+        this.warmUpSize = warmUpSize;
+    }
+
+    public long getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    public void setAcquireTimeout(long acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    private static class BrowserPool {
+        private final BlockingDeque<WebSession> idleSessions = new LinkedBlockingDeque<>();
+        private final Semaphore permits;
+        private final int maxSize;
+        private final AtomicInteger launchedSessions = new AtomicInteger(); // idle, handed out or being launched
+
+        private BrowserPool(int maxSize) {
+            this.permits = new Semaphore(maxSize, true);
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * @return true if a session may be launched, it must then be given back with {@link #releaseSlot()} if the launch fails or the session is quit
+         */
+        private boolean reserveSlot() {
+            int count;
+            do {
+                count = launchedSessions.get();
+                if (count >= maxSize) {
+                    return false;
+                }
+            } while (!launchedSessions.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        private void releaseSlot() {
+            launchedSessions.decrementAndGet();
+        }
+    }
+
+    public static class Statistics {
+        private final long acquisitions;
+        private final long reuses;
+        private final long launches;
+        private final long recycles;
+        private final long healthCheckFailures;
+        private final long totalAcquireNanos;
+        private final long maxAcquireNanos;
+
+        private Statistics(long acquisitions, long reuses, long launches, long recycles, long healthCheckFailures, long totalAcquireNanos, long maxAcquireNanos) {
+            this.acquisitions = acquisitions;
+            this.reuses = reuses;
+            this.launches = launches;
+            this.recycles = recycles;
+            this.healthCheckFailures = healthCheckFailures;
+            this.totalAcquireNanos = totalAcquireNanos;
+            this.maxAcquireNanos = maxAcquireNanos;
+        }
+
+        public long getAcquisitions() {
+            return acquisitions;
+        }
+
+        public long getReuses() {
+            return reuses;
+        }
+
+        public long getLaunches() {
+            return launches;
+        }
+
+        public long getRecycles() {
+            return recycles;
+        }
+
+        public long getHealthCheckFailures() {
+            return healthCheckFailures;
+        }
+
+        /**
+         * @return ratio of acquisitions served by an already launched session, from 0 to 1
+         */
+        public double getReuseRatio() {
+            return acquisitions == 0 ? 0 : (double) reuses / acquisitions;
+        }
+
+        public double getAverageAcquireMillis() {
+            return acquisitions == 0 ? 0 : totalAcquireNanos / 1_000_000.0 / acquisitions;
+        }
+
+        public double getMaxAcquireMillis() {
+            return maxAcquireNanos / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("acquisitions=%d, reuses=%d (%.1f%%), launches=%d, recycles=%d, healthCheckFailures=%d, avgAcquire=%.1f ms, maxAcquire=%.1f ms"
+                    , acquisitions, reuses, getReuseRatio() * 100, launches, recycles, healthCheckFailures, getAverageAcquireMillis(), getMaxAcquireMillis());
+        }
+    }
+}
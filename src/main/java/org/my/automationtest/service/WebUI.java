@@ -2,14 +2,15 @@ package org.my.automationtest.service;
 
 import org.my.automationtest.constants.SeleniumConstants;
 import org.my.automationtest.locator.WebLocator;
-import org.my.automationtest.utils.DateTimeUtil;
+import org.my.automationtest.service.probe.ActionProbe;
+import org.my.automationtest.service.screenshot.FullPageScreenshot;
+import org.my.automationtest.service.screenshot.ScreenshotStore;
+import org.my.automationtest.service.screenshot.ScreenshotWriter;
+import org.my.automationtest.service.visual.VisualBaselines;
+import org.my.automationtest.service.visual.VisualDiffResult;
 import org.my.automationtest.utils.FileUtil;
 import org.openqa.selenium.*;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.edge.EdgeDriver;
-import org.openqa.selenium.firefox.FirefoxDriver;
 import org.openqa.selenium.interactions.Actions;
-import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,12 +18,14 @@ import org.testng.IRetryAnalyzer;
 import org.testng.ITestContext;
 import org.testng.ITestResult;
 
-import java.io.File;
+import java.awt.Rectangle;
 import java.io.IOException;
-import java.lang.reflect.Method;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.my.automationtest.constants.SeleniumConstants.DEFAULT_SLEEP_THEN_ACTION_TIME;
@@ -30,20 +33,55 @@ import static org.my.automationtest.constants.SeleniumConstants.DEFAULT_SLEEP_TH
 public class WebUI {
 
 //    private static final WebUI WEB_UI_INSTANCE = new WebUI();
-    private static WebDriver webDriver;
-    private static Method previousAction;
-    private static Object[] previousActionParams;
-    private static String selectWebBrowser = "chrome";
-    private static long defaultWaitUntilTimeout = 20; // in seconds
+    private static final ThreadLocal<WebSession> CURRENT_SESSION = new ThreadLocal<>();
+    private static final WebSessionPool SESSION_POOL = new WebSessionPool();
+    private static final ScreenshotWriter SCREENSHOT_WRITER = new ScreenshotWriter();
+    private static final VisualBaselines VISUAL_BASELINES = new VisualBaselines();
+    private static volatile String selectWebBrowser = "chrome";
+    private static volatile long defaultWaitUntilTimeout = 20; // in seconds
+    private static volatile WaitMode waitMode = WaitMode.POLLING;
+    private static volatile int retryReplayDepth = 1;
+    private static volatile int fastTextThreshold = 0;
+    private static volatile long fullPageScrollPause = 100;
+    private static volatile int flightRecorderCapacity = 256;
+    private static final String FLIGHT_RECORDING_ATTRIBUTE = WebUI.class.getName() + ".flightRecording";
+    private static volatile RetryPolicy retryPolicy = RetryPolicy.builder()
+            .initialInterval(100)
+            .maxInterval(SeleniumConstants.DEFAULT_RETRY_ACTION_INTERVAL * 1000L)
+            .timeBudget(SeleniumConstants.DEFAULT_RETRY_ACTION_TIMEOUT * 1000L)
+            // Retrying cannot bring back a dead session or fix a wrong locator
+            .on(NoSuchSessionException.class, RetryPolicy.Decision.ABORT)
+            .on(InvalidSelectorException.class, RetryPolicy.Decision.ABORT)
+            .build();
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WebUI.class);
 
+    private static final String VALUE_SET = "set";
+
+    static {
+        // Pooled sessions must be quit before the driver services they run against are stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            SCREENSHOT_WRITER.flush(SeleniumConstants.SCREENSHOT_FLUSH_TIMEOUT * 1000L);
+            SESSION_POOL.shutdown();
+            DriverServices.stopAll();
+        }, "web-ui-shutdown"));
+    }
+
     public static void getUrl(String url) {
-        webDriver.get(url);
+        ActionProbe.run("getUrl", () -> {
+            WebSession session = currentSession();
+            session.recordInteraction();
+            session.getWebDriver().get(url);
+            if (session.isPooled()) {
+                session.recordNavigation(url, session.getWebDriver().getCurrentUrl());
+            }
+        });
     }
 
     public static void maximizeWindow() {
-        webDriver.manage().window().maximize();
+        ActionProbe.run("maximizeWindow", () -> {
+            currentWebDriver().manage().window().maximize();
+        });
     }
 
     /**
@@ -62,8 +100,13 @@ public class WebUI {
      * @return {@link WebElement} instance if the web element is found and visible, throw {@link TimeoutException} otherwise
      */
     public static WebElement waitForElementVisible(WebLocator webLocator, long timeout) {
-        WebDriverWait wait = new WebDriverWait(webDriver, timeout);
-        return wait.until(ExpectedConditions.visibilityOfElementLocated(webLocator.toBy()));
+        return ActionProbe.call("waitForElementVisible", webLocator, () -> {
+            if (waitMode == WaitMode.OBSERVER) {
+                return ObserverWait.waitFor(currentSession(), webLocator, ObserverWait.CONDITION_VISIBLE, LocatorConditions.visibilityOf(webLocator), timeout);
+            }
+            WebDriverWait wait = new WebDriverWait(currentWebDriver(), timeout);
+            return wait.until(LocatorConditions.visibilityOf(webLocator));
+        });
     }
 
     /**
@@ -82,8 +125,13 @@ public class WebUI {
      * @return {@link WebElement} instance if the web element is found and clickable, throw {@link TimeoutException} otherwise
      */
     public static WebElement waitForElementClickable(WebLocator webLocator, long timeout) {
-        WebDriverWait wait = new WebDriverWait(webDriver, timeout);
-        return wait.until(ExpectedConditions.elementToBeClickable(webLocator.toBy()));
+        return ActionProbe.call("waitForElementClickable", webLocator, () -> {
+            if (waitMode == WaitMode.OBSERVER) {
+                return ObserverWait.waitFor(currentSession(), webLocator, ObserverWait.CONDITION_CLICKABLE, LocatorConditions.clickabilityOf(webLocator), timeout);
+            }
+            WebDriverWait wait = new WebDriverWait(currentWebDriver(), timeout);
+            return wait.until(LocatorConditions.clickabilityOf(webLocator));
+        });
     }
 
     /**
@@ -102,11 +150,109 @@ public class WebUI {
      * @return {@link WebElement} instance if the web element is found and invisible, throw {@link TimeoutException} otherwise
      */
     public static void waitForElementInvisible(WebLocator webLocator, long timeout) {
-        WebDriverWait wait = new WebDriverWait(webDriver, timeout);
-        boolean isElementInvisible =  wait.until(ExpectedConditions.invisibilityOfElementLocated(webLocator.toBy()));
-        if (!isElementInvisible) {
-            throw new RuntimeException("Element is not invisible after waiting for " + timeout + " seconds");
-        }
+        ActionProbe.run("waitForElementInvisible", webLocator, () -> {
+            boolean isElementInvisible;
+            if (waitMode == WaitMode.OBSERVER) {
+                isElementInvisible = ObserverWait.waitFor(currentSession(), webLocator, ObserverWait.CONDITION_INVISIBLE, LocatorConditions.invisibilityOf(webLocator), timeout);
+            } else {
+                WebDriverWait wait = new WebDriverWait(currentWebDriver(), timeout);
+                isElementInvisible = wait.until(LocatorConditions.invisibilityOf(webLocator));
+            }
+            if (!isElementInvisible) {
+                throw new RuntimeException("Element is not invisible after waiting for " + timeout + " seconds");
+            }
+        });
+    }
+
+    /**
+     * Read existence, visibility, visible text and <code>attributeNames</code> of all web elements located by <code>webLocators</code> in one script call.<br/><br/>
+     * Elements are read as they are, there is no waiting for them to appear.
+     * @param webLocators {@link WebLocator} instances to locate web elements
+     * @param attributeNames names of the attributes to read from each element
+     * @return state of each web element keyed by {@link WebLocator#getAlias()} (or by {@link WebLocator#toString()} for a locator without alias), in the order of <code>webLocators</code>
+     * @throws RuntimeException if a locator has no condition, or if two locators have the same key
+     */
+    public static Map<String, ElementState> readElementStates(List<WebLocator> webLocators, String... attributeNames) {
+        return ActionProbe.call("readElementStates", () -> {
+            List<Object> specs = new ArrayList<>(webLocators.size());
+            Map<String, WebLocator> locatorsByKey = new HashMap<>();
+            for (WebLocator webLocator : webLocators) {
+                Object[] locatorArgs = PageScripts.locatorArgsOf(webLocator);
+                if (locatorArgs == null) {
+                    throw new RuntimeException(String.format("Cannot read state of element located by %s: the locator has no condition"
+                            + ", set at least one on it before reading it, for ex: id, xpath, cssSelector or innerText", webLocator));
+                }
+                WebLocator sameKeyLocator = locatorsByKey.putIfAbsent(keyOf(webLocator), webLocator);
+                if (sameKeyLocator != null) {
+                    throw new RuntimeException(String.format("Cannot read states of elements located by %s and by %s: both are keyed by '%s' in the result"
+                            + ", give them distinct aliases", sameKeyLocator, webLocator, keyOf(webLocator)));
+                }
+                specs.add(Arrays.asList(locatorArgs));
+            }
+            List<?> states = (List<?>) executeJavascript(PageScripts.JS_READ_ELEMENT_STATES, specs, Arrays.asList(attributeNames));
+
+            Map<String, ElementState> result = new LinkedHashMap<>();
+            for (int i = 0; i < webLocators.size(); i++) {
+                List<?> state = (List<?>) states.get(i);
+                ElementState elementState = ElementState.ABSENT;
+                if (state != null) {
+                    Map<String, String> attributes = new HashMap<>();
+                    ((Map<?, ?>) state.get(2)).forEach((name, value) -> attributes.put((String) name, value == null ? null : value.toString()));
+                    elementState = new ElementState(true, Boolean.TRUE.equals(state.get(0)), (String) state.get(1), Collections.unmodifiableMap(attributes));
+                }
+                result.put(keyOf(webLocators.get(i)), elementState);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Read visible text of all web elements located by <code>webLocators</code> in one script call, see {@link #readElementStates(List, String...)}
+     * @return visible text keyed by alias, <code>null</code> for an element which doesn't exist
+     */
+    public static Map<String, String> getTexts(List<WebLocator> webLocators) {
+        Map<String, String> texts = new LinkedHashMap<>();
+        readElementStates(webLocators).forEach((key, state) -> texts.put(key, state.getText()));
+        return texts;
+    }
+
+    /**
+     * Read attribute <code>attributeName</code> of all web elements located by <code>webLocators</code> in one script call, see {@link #readElementStates(List, String...)}
+     * @return attribute value keyed by alias, <code>null</code> for an element which doesn't exist or doesn't have this attribute
+     */
+    public static Map<String, String> getAttributes(List<WebLocator> webLocators, String attributeName) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        readElementStates(webLocators, attributeName).forEach((key, state) -> attributes.put(key, state.getAttribute(attributeName)));
+        return attributes;
+    }
+
+    /**
+     * Check visibility of all web elements located by <code>webLocators</code> in one script call, see {@link #readElementStates(List, String...)}
+     * @return visibility keyed by alias, false for an element which doesn't exist
+     */
+    public static Map<String, Boolean> areVisible(List<WebLocator> webLocators) {
+        Map<String, Boolean> visibilities = new LinkedHashMap<>();
+        readElementStates(webLocators).forEach((key, state) -> visibilities.put(key, state.isVisible()));
+        return visibilities;
+    }
+
+    /**
+     * Check existence of all web elements located by <code>webLocators</code> in one script call, see {@link #readElementStates(List, String...)}
+     * @return existence in the page keyed by alias
+     */
+    public static Map<String, Boolean> exist(List<WebLocator> webLocators) {
+        Map<String, Boolean> existences = new LinkedHashMap<>();
+        readElementStates(webLocators).forEach((key, state) -> existences.put(key, state.exists()));
+        return existences;
+    }
+
+    /**
+     * Start a batch of steps run with as few WebDriver round trips as possible, for ex:<br/>
+     * <code>WebUI.batch().setText(user, name).setText(password, secret).click(login).waitForVisible(welcome).run().throwIfFailed();</code>
+     * @return an empty {@link ActionBatch}
+     */
+    public static ActionBatch batch() {
+        return new ActionBatch();
     }
 
     /*Start of retry disabled actions in Selenium WebDriver*/
@@ -124,14 +270,20 @@ public class WebUI {
      * @param timeout maximum time allowed to wait for iframe to be visible
      */
     public static void switchToFrame(WebLocator webLocator, long timeout) {
-        webDriver.switchTo().frame(waitForElementVisible(webLocator, timeout));
+        ActionProbe.run("switchToFrame", webLocator, () -> {
+            currentSession().recordInteraction();
+            currentWebDriver().switchTo().frame(waitForElementVisible(webLocator, timeout));
+        });
     }
 
     /**
      * Switch out of current iframe to default HTML DOM (normally parent of iframe - original web page)
      */
     public static void switchOutOfFrame() {
-        webDriver.switchTo().defaultContent();
+        ActionProbe.run("switchOutOfFrame", () -> {
+            currentSession().recordInteraction();
+            currentWebDriver().switchTo().defaultContent();
+        });
     }
 
     /**
@@ -139,10 +291,14 @@ public class WebUI {
      * For example, from left to right, if your current tab index is 2nd, then it will switch to 3rd tab
      */
     public static void switchToNextTab() {
-        List<String> windows = webDriver.getWindowHandles().stream().collect(Collectors.toList());
-        String currentWindow = webDriver.getWindowHandle();
-        int currentIndex = windows.indexOf(currentWindow);
-        webDriver.switchTo().window(windows.get(currentIndex + 1));
+        ActionProbe.run("switchToNextTab", () -> {
+            currentSession().recordInteraction();
+            WebDriver webDriver = currentWebDriver();
+            List<String> windows = webDriver.getWindowHandles().stream().collect(Collectors.toList());
+            String currentWindow = webDriver.getWindowHandle();
+            int currentIndex = windows.indexOf(currentWindow);
+            webDriver.switchTo().window(windows.get(currentIndex + 1));
+        });
     }
 
     /**
@@ -150,10 +306,14 @@ public class WebUI {
      * For example, from left to right, if your current tab index is 2nd, then it will switch to 1st tab
      */
     public static void switchToPrevTab() {
-        List<String> windows = webDriver.getWindowHandles().stream().collect(Collectors.toList());
-        String currentWindow = webDriver.getWindowHandle();
-        int currentIndex = windows.indexOf(currentWindow);
-        webDriver.switchTo().window(windows.get(currentIndex - 1));
+        ActionProbe.run("switchToPrevTab", () -> {
+            currentSession().recordInteraction();
+            WebDriver webDriver = currentWebDriver();
+            List<String> windows = webDriver.getWindowHandles().stream().collect(Collectors.toList());
+            String currentWindow = webDriver.getWindowHandle();
+            int currentIndex = windows.indexOf(currentWindow);
+            webDriver.switchTo().window(windows.get(currentIndex - 1));
+        });
     }
 
     /**
@@ -161,7 +321,10 @@ public class WebUI {
      * @param url url to be opened
      */
     public static void openUrlInNewTab(String url) {
-        executeJavascript(String.format("window.open('%s', '_blank');", url));
+        ActionProbe.run("openUrlInNewTab", () -> {
+            currentSession().recordInteraction();
+            executeJavascript(PageScripts.JS_OPEN_IN_NEW_TAB, url);
+        });
     }
 
     /**
@@ -169,11 +332,16 @@ public class WebUI {
      * @param webLocator {@link WebLocator} instance to locate web element
      */
     public static void scrollToElement(WebLocator webLocator) {
-        if (webLocator.toXpath() == null) {
-            throw new RuntimeException("Cannot generate xpath from input webLocator");
-        }
-        String script = String.format(SeleniumConstants.JS_FIND_ELEMENT_BY_XPATH, webLocator.toXpath()) + ".scrollIntoView();";
-        executeJavascript(script);
+        ActionProbe.run("scrollToElement", webLocator, () -> {
+            if (webLocator.isScoped()) {
+                executeJavascript(PageScripts.JS_SCROLL_INTO_VIEW, LocatorConditions.findElement(currentWebDriver(), webLocator));
+                return;
+            }
+            if (webLocator.toXpath() == null) {
+                throw new RuntimeException("Cannot generate xpath from input webLocator");
+            }
+            executeJavascript(PageScripts.JS_SCROLL_XPATH_INTO_VIEW, webLocator.toXpath());
+        });
     }
     /*End of retry disabled actions in Selenium WebDriver*/
 
@@ -203,22 +371,6 @@ public class WebUI {
         sendKeys(webLocator, text, timeout, true);
     }
 
-    /**
-     * Wait for element located by <code>webLocator</code> to be visible with <code>timeout</code> then append <code>text</code> to this element.<br/><br/>
-     * This method is controlled with retryPreviousAction = <code>retryEnabled</code>.<br/><br/>
-     * In case <code>retryEnabled</code> = true, if {@link TimeoutException} is thrown out when wait for element to be visible, it will retry with registered previous action.<br/>
-     * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
-     * In case <code>retryEnabled</code> = false, then none mentioned above is applied.<br/><br/>
-     * After web element is visible, this method will try {@link WebElement#sendKeys(CharSequence... text)} first, if there is any exception thrown out then it will retry with {@link Actions#sendKeys(WebElement webElement, CharSequence... text)}
-     * @param webLocator {@link WebLocator} instance to locate web element
-     * @param text text to be appended to web element
-     * @param timeout maximum time allowed to wait for web element to be visible
-     * @param retryEnabled control if this method is execute with retryPreviousAction enabled or not
-     */
-    public static void sendKeys(WebLocator webLocator, String text, Long timeout, Boolean retryEnabled) {
-        sendKeys(webLocator, text, timeout.longValue(), retryEnabled.booleanValue());
-    }
-
     /**
      * Wait for element located by <code>webLocator</code> to be visible with <code>timeout</code> then append <code>text</code> to this element.<br/><br/>
      * This method is controlled with retryPreviousAction = <code>retryEnabled</code>.<br/><br/>
@@ -232,23 +384,24 @@ public class WebUI {
      * @param retryEnabled control if this method is execute with retryPreviousAction enabled or not
      */
     public static void sendKeys(WebLocator webLocator, String text, long timeout, boolean retryEnabled) {
-        performActionWithRetry(retryEnabled, () -> {
-            Actions builder = new Actions(webDriver);
+        performActionWithRetry(retryEnabled, JournaledAction.sendKeys(webLocator, text, timeout), () -> {
+            Actions builder = new Actions(currentWebDriver());
             WebElement webElement = waitForElementVisible(webLocator, timeout);
             try {
                 webElement.sendKeys(text);
             } catch (Exception ex) {
-                LOGGER.error(String.format("WARNING: Cannot perform webElement.sendKeys() for element(%s), start retrying with Action.sendKeys().perform()", webElement.toString()));
+                LOGGER.error("WARNING: Cannot perform webElement.sendKeys() for element({}), start retrying with Action.sendKeys().perform()", webElement);
                 builder.sendKeys(webElement, text).perform();
             }
-        }, "sendKeys", webLocator, text, timeout, false);
+        });
     }
 
     /**
      * Wait for element located by <code>webLocator</code> to be visible with timeout is {@link #defaultWaitUntilTimeout} then overwrite <code>text</code> to this element.<br/><br/>
      * This method is controlled with retryPreviousAction enabled, that means if {@link TimeoutException} is thrown out when wait for element to be visible, it will retry with registered previous action.<br/><br/>
      * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
-     * After web element is visible, this method will call {@link WebElement#clear()}.<br/>
+     * After web element is visible, if <code>text</code> is at least {@link #setFastTextThreshold(int)} characters long, it is set by script (see {@link #fillForm(Map, long, boolean)}).<br/>
+     * Otherwise this method will call {@link WebElement#clear()}.<br/>
      * Then it will try {@link WebElement#sendKeys(CharSequence... text)} first, if there is any exception thrown out then it will retry with {@link Actions#sendKeys(WebElement webElement, CharSequence... text)}
      * @param webLocator {@link WebLocator} instance to locate web element
      * @param text text to be overwritten to web element
@@ -261,7 +414,8 @@ public class WebUI {
      * Wait for element located by <code>webLocator</code> to be visible with <code>timeout</code> then overwrite <code>text</code> to this element.<br/><br/>
      * This method is controlled with retryPreviousAction enabled, that means if {@link TimeoutException} is thrown out when wait for element to be visible, it will retry with registered previous action.<br/><br/>
      * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
-     * After web element is visible, this method will call {@link WebElement#clear()}.<br/>
+     * After web element is visible, if <code>text</code> is at least {@link #setFastTextThreshold(int)} characters long, it is set by script (see {@link #fillForm(Map, long, boolean)}).<br/>
+     * Otherwise this method will call {@link WebElement#clear()}.<br/>
      * Then it will try {@link WebElement#sendKeys(CharSequence... text)} first, if there is any exception thrown out then it will retry with {@link Actions#sendKeys(WebElement webElement, CharSequence... text)}
      * @param webLocator {@link WebLocator} instance to locate web element
      * @param text text to be overwritten to web element
@@ -277,24 +431,8 @@ public class WebUI {
      * In case <code>retryEnabled</code> = true, if {@link TimeoutException} is thrown out when wait for element to be visible, it will retry with registered previous action.<br/>
      * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
      * In case <code>retryEnabled</code> = false, then none mentioned above is applied.<br/><br/>
-     * After web element is visible, this method will call {@link WebElement#clear()}.<br/>
-     * Then it will try {@link WebElement#sendKeys(CharSequence... text)} first, if there is any exception thrown out then it will retry with {@link Actions#sendKeys(WebElement webElement, CharSequence... text)}
-     * @param webLocator {@link WebLocator} instance to locate web element
-     * @param text text to be overwritten to web element
-     * @param timeout maximum time allowed to wait for web element to be visible
-     * @param retryEnabled control if this method is execute with retryPreviousAction enabled or not
-     */
-    public static void setText(WebLocator webLocator, String text, Long timeout, Boolean retryEnabled) {
-        setText(webLocator, text, timeout.longValue(), retryEnabled.booleanValue());
-    }
-
-    /**
-     * Wait for element located by <code>webLocator</code> to be visible with <code>timeout</code> then overwrite <code>text</code> to this element.<br/><br/>
-     * This method is controlled with retryPreviousAction = <code>retryEnabled</code>.<br/><br/>
-     * In case <code>retryEnabled</code> = true, if {@link TimeoutException} is thrown out when wait for element to be visible, it will retry with registered previous action.<br/>
-     * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
-     * In case <code>retryEnabled</code> = false, then none mentioned above is applied.<br/><br/>
-     * After web element is visible, this method will call {@link WebElement#clear()}.<br/>
+     * After web element is visible, if <code>text</code> is at least {@link #setFastTextThreshold(int)} characters long, it is set by script (see {@link #fillForm(Map, long, boolean)}).<br/>
+     * Otherwise this method will call {@link WebElement#clear()}.<br/>
      * Then it will try {@link WebElement#sendKeys(CharSequence... text)} first, if there is any exception thrown out then it will retry with {@link Actions#sendKeys(WebElement webElement, CharSequence... text)}
      * @param webLocator {@link WebLocator} instance to locate web element
      * @param text text to be overwritten to web element
@@ -302,17 +440,95 @@ public class WebUI {
      * @param retryEnabled control if this method is execute with retryPreviousAction enabled or not
      */
     public static void setText(WebLocator webLocator, String text, long timeout, boolean retryEnabled) {
-        performActionWithRetry(retryEnabled, () -> {
-            Actions builder = new Actions(webDriver);
+        performActionWithRetry(retryEnabled, JournaledAction.setText(webLocator, text, timeout), () -> {
+            Actions builder = new Actions(currentWebDriver());
             WebElement webElement = waitForElementVisible(webLocator, timeout);
+            if (isSetByScript(webLocator, text)) {
+                List<?> results = (List<?>) executeJavascript(PageScripts.JS_SET_VALUES, Collections.singletonList(webElement), Collections.singletonList(text));
+                if (VALUE_SET.equals(results.get(0))) {
+                    return;
+                }
+            }
             try {
                 webElement.clear();
                 webElement.sendKeys(text);
             } catch (Exception ex) {
-                LOGGER.error(String.format("WARNING: Cannot perform webElement.sendKeys() for element(%s), start retrying with Action.sendKeys().perform()", webElement.toString()));
+                LOGGER.error("WARNING: Cannot perform webElement.sendKeys() for element({}), start retrying with Action.sendKeys().perform()", webElement);
                 builder.sendKeys(webElement, text).perform();
             }
-        }, "setText", webLocator, text, timeout, false);
+        });
+    }
+
+    /**
+     * Overwrite the value of several form fields with timeout is {@link #defaultWaitUntilTimeout}, see {@link #fillForm(Map, long, boolean)}
+     * @param fields text to be overwritten to each field, by field locator
+     */
+    public static void fillForm(Map<WebLocator, String> fields) {
+        fillForm(fields, defaultWaitUntilTimeout);
+    }
+
+    /**
+     * Overwrite the value of several form fields, see {@link #fillForm(Map, long, boolean)}
+     * @param fields text to be overwritten to each field, by field locator
+     * @param timeout maximum time allowed to wait for a field to be visible
+     */
+    public static void fillForm(Map<WebLocator, String> fields, long timeout) {
+        fillForm(fields, timeout, true);
+    }
+
+    /**
+     * Overwrite the value of several form fields.<br/><br/>
+     * This method is controlled with retryPreviousAction = <code>retryEnabled</code>, as {@link #setText(WebLocator, String, long, boolean)}.<br/><br/>
+     * Fields are filled in the order of <code>fields</code>. Consecutive visible input, textarea and contenteditable fields are set in one script,
+     * which sets their value through the native setter (so frameworks tracking the value notice the change) then dispatches <code>input</code> and <code>change</code> events.<br/>
+     * Fields flagged with {@link WebLocator#keyEventsRequired(boolean)} are set with {@link #setText(WebLocator, String, long, boolean)} in their turn.
+     * Fields which are not visible yet and fields which cannot be set by script (for ex: disabled, or a value rejected by the field)
+     * are also set with {@link #setText(WebLocator, String, long, boolean)}, right after the script setting their consecutive fields.
+     * @param fields text to be overwritten to each field, by field locator
+     * @param timeout maximum time allowed to wait for a field to be visible
+     * @param retryEnabled control if this method is execute with retryPreviousAction enabled or not
+     */
+    public static void fillForm(Map<WebLocator, String> fields, long timeout, boolean retryEnabled) {
+        JournaledAction action = JournaledAction.fillForm(fields, timeout);
+        // The copy of the journal, so the caller changing its map meanwhile changes neither this call nor its replays
+        Map<WebLocator, String> formFields = action.getFields();
+        performActionWithRetry(retryEnabled, action, () -> {
+            List<WebLocator> scriptedLocators = new ArrayList<>();
+            List<Object> specs = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            for (Map.Entry<WebLocator, String> field : formFields.entrySet()) {
+                Object[] locatorArgs = field.getKey().isKeyEventsRequired() ? null : PageScripts.locatorArgsOf(field.getKey());
+                if (locatorArgs == null) {
+                    // Fields are filled in the given order: the fields before it are set first
+                    setValues(scriptedLocators, specs, values, timeout);
+                    setText(field.getKey(), field.getValue(), timeout, false);
+                } else {
+                    scriptedLocators.add(field.getKey());
+                    specs.add(Arrays.asList(locatorArgs));
+                    values.add(field.getValue());
+                }
+            }
+            setValues(scriptedLocators, specs, values, timeout);
+        });
+    }
+
+    /**
+     * Set the consecutive fields of {@link #fillForm(Map, long, boolean)} gathered so far in one script, type into those which cannot be set by script, then forget them
+     */
+    private static void setValues(List<WebLocator> scriptedLocators, List<Object> specs, List<String> values, long timeout) {
+        if (specs.isEmpty()) {
+            return;
+        }
+        List<?> results = (List<?>) executeJavascript(PageScripts.JS_SET_VALUES, specs, values);
+        for (int i = 0; i < results.size(); i++) {
+            if (!VALUE_SET.equals(results.get(i))) {
+                LOGGER.debug("Field {} cannot be set by script ({}), type into it instead", scriptedLocators.get(i), results.get(i));
+                setText(scriptedLocators.get(i), values.get(i), timeout, false);
+            }
+        }
+        scriptedLocators.clear();
+        specs.clear();
+        values.clear();
     }
 
     /**
@@ -361,11 +577,11 @@ public class WebUI {
     }
 
     /**
-     * Wait for element located by <code>webLocator</code> to be clickable with timeout is {@link #defaultWaitUntilTimeout} then sleep for {@link SeleniumConstants#DEFAULT_SLEEP_THEN_ACTION_TIME} before trying to click on this element <br/><br/>
+     * Wait for element located by <code>webLocator</code> to be clickable with timeout is {@link #defaultWaitUntilTimeout} then wait for it to settle (see {@link StabilityWait}), at most {@link SeleniumConstants#DEFAULT_SLEEP_THEN_ACTION_TIME}, before trying to click on this element <br/><br/>
      * This method is controlled with retryPreviousAction enabled, that means if {@link TimeoutException} is thrown out when wait for element to be clickable, it will retry with registered previous action.<br/><br/>
      * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
      * After web element is clickable, this method will call {@link WebElement#click()} first.<br/>
-     * If {@link ElementClickInterceptedException} is thrown out then it will retry by clicking on element repeatably on every {@link SeleniumConstants#DEFAULT_RETRY_ACTION_INTERVAL} seconds with timeout is {@link SeleniumConstants#DEFAULT_RETRY_ACTION_TIMEOUT}.<br/>
+     * If {@link ElementClickInterceptedException} is thrown out then it will retry clicking on element with backoff as configured by {@link #setRetryPolicy(RetryPolicy)}.<br/>
      * If still not success then it will perform last retry by using {@link Actions#click(WebElement webElement)}.
      * @param webLocator {@link WebLocator} instance to locate web element
      */
@@ -374,11 +590,11 @@ public class WebUI {
     }
 
     /**
-     * Wait for element located by <code>webLocator</code> to be clickable with timeout is <code>timeout</code> then sleep for {@link SeleniumConstants#DEFAULT_SLEEP_THEN_ACTION_TIME} before trying to click on this element <br/><br/>
+     * Wait for element located by <code>webLocator</code> to be clickable with timeout is <code>timeout</code> then wait for it to settle (see {@link StabilityWait}), at most {@link SeleniumConstants#DEFAULT_SLEEP_THEN_ACTION_TIME}, before trying to click on this element <br/><br/>
      * This method is controlled with retryPreviousAction enabled, that means if {@link TimeoutException} is thrown out when wait for element to be clickable, it will retry with registered previous action.<br/><br/>
      * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
      * After web element is clickable, this method will call {@link WebElement#click()} first.<br/>
-     * If {@link ElementClickInterceptedException} is thrown out then it will retry by clicking on element repeatably on every {@link SeleniumConstants#DEFAULT_RETRY_ACTION_INTERVAL} seconds with timeout is {@link SeleniumConstants#DEFAULT_RETRY_ACTION_TIMEOUT}.<br/>
+     * If {@link ElementClickInterceptedException} is thrown out then it will retry clicking on element with backoff as configured by {@link #setRetryPolicy(RetryPolicy)}.<br/>
      * If still not success then it will perform last retry by using {@link Actions#click(WebElement webElement)}.
      * @param webLocator {@link WebLocator} instance to locate web element
      * @param timeout maximum time allowed to wait for web element to be clickable
@@ -388,45 +604,24 @@ public class WebUI {
     }
 
     /**
-     * Wait for element located by <code>webLocator</code> to be clickable with timeout is <code>timeout</code> then sleep for {@link SeleniumConstants#DEFAULT_SLEEP_THEN_ACTION_TIME} before trying to click on this element <br/><br/>
+     * Wait for element located by <code>webLocator</code> to be clickable with timeout is <code>timeout</code> then wait for it to settle (see {@link StabilityWait}), at most {@link SeleniumConstants#DEFAULT_SLEEP_THEN_ACTION_TIME}, before trying to click on this element <br/><br/>
      * This method is controlled with retryPreviousAction = <code>retryEnabled</code>.<br/><br/>
      * In case <code>retryEnabled</code> = true, if {@link TimeoutException} is thrown out when wait for element to be clickable, it will retry with registered previous action.<br/>
      * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
      * In case <code>retryEnabled</code> = false, then none mentioned above is applied.<br/><br/>
      * After web element is clickable, this method will call {@link WebElement#click()} first.<br/>
-     * If {@link ElementClickInterceptedException} is thrown out then it will retry by clicking on element repeatably on every {@link SeleniumConstants#DEFAULT_RETRY_ACTION_INTERVAL} seconds with timeout is {@link SeleniumConstants#DEFAULT_RETRY_ACTION_TIMEOUT}.<br/>
-     * If still not success then it will perform last retry by using {@link Actions#click(WebElement webElement)}.
-     * @param webLocator {@link WebLocator} instance to locate web element
-     * @param timeout maximum time allowed to wait for web element to be clickable
-     * @param retryEnabled control if this method is execute with retryPreviousAction enabled or not
-     */
-    public static void sleepThenClick(WebLocator webLocator, Long timeout, Boolean retryEnabled) {
-        sleepThenClick(webLocator, timeout.longValue(), retryEnabled.booleanValue());
-    }
-
-    /**
-     * Wait for element located by <code>webLocator</code> to be clickable with timeout is <code>timeout</code> then sleep for {@link SeleniumConstants#DEFAULT_SLEEP_THEN_ACTION_TIME} before trying to click on this element <br/><br/>
-     * This method is controlled with retryPreviousAction = <code>retryEnabled</code>.<br/><br/>
-     * In case <code>retryEnabled</code> = true, if {@link TimeoutException} is thrown out when wait for element to be clickable, it will retry with registered previous action.<br/>
-     * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
-     * In case <code>retryEnabled</code> = false, then none mentioned above is applied.<br/><br/>
-     * After web element is clickable, this method will call {@link WebElement#click()} first.<br/>
-     * If {@link ElementClickInterceptedException} is thrown out then it will retry by clicking on element repeatably on every {@link SeleniumConstants#DEFAULT_RETRY_ACTION_INTERVAL} seconds with timeout is {@link SeleniumConstants#DEFAULT_RETRY_ACTION_TIMEOUT}.<br/>
+     * If {@link ElementClickInterceptedException} is thrown out then it will retry clicking on element with backoff as configured by {@link #setRetryPolicy(RetryPolicy)}.<br/>
      * If still not success then it will perform last retry by using {@link Actions#click(WebElement webElement)}.
      * @param webLocator {@link WebLocator} instance to locate web element
      * @param timeout maximum time allowed to wait for web element to be clickable
      * @param retryEnabled control if this method is execute with retryPreviousAction enabled or not
      */
     public static void sleepThenClick(WebLocator webLocator, long timeout, boolean retryEnabled) {
-        performActionWithRetry(retryEnabled, () -> {
+        performActionWithRetry(retryEnabled, JournaledAction.sleepThenClick(webLocator, timeout), () -> {
             WebElement webElement = waitForElementClickable(webLocator, timeout);
-            try {
-                Thread.sleep(DEFAULT_SLEEP_THEN_ACTION_TIME * 1000L);
-            } catch (InterruptedException e) {
-                LOGGER.error("InterruptedException", e);
-            }
+            StabilityWait.waitForStable(currentSession(), webElement, DEFAULT_SLEEP_THEN_ACTION_TIME * 1000L);
             performClick(webElement);
-        }, "sleepThenClick", webLocator, timeout, false);
+        });
     }
 
     /**
@@ -434,7 +629,7 @@ public class WebUI {
      * This method is controlled with retryPreviousAction enabled, that means if {@link TimeoutException} is thrown out when wait for element to be clickable, it will retry with registered previous action.<br/><br/>
      * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
      * After web element is clickable, this method will call {@link WebElement#click()} first.<br/>
-     * If {@link ElementClickInterceptedException} is thrown out then it will retry by clicking on element repeatably on every {@link SeleniumConstants#DEFAULT_RETRY_ACTION_INTERVAL} seconds with timeout is {@link SeleniumConstants#DEFAULT_RETRY_ACTION_TIMEOUT}.<br/>
+     * If {@link ElementClickInterceptedException} is thrown out then it will retry clicking on element with backoff as configured by {@link #setRetryPolicy(RetryPolicy)}.<br/>
      * If still not success then it will perform last retry by using {@link Actions#click(WebElement webElement)}.
      * @param webLocator {@link WebLocator} instance to locate web element
      */
@@ -447,7 +642,7 @@ public class WebUI {
      * This method is controlled with retryPreviousAction enabled, that means if {@link TimeoutException} is thrown out when wait for element to be clickable, it will retry with registered previous action.<br/><br/>
      * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
      * After web element is clickable, this method will call {@link WebElement#click()} first.<br/>
-     * If {@link ElementClickInterceptedException} is thrown out then it will retry by clicking on element repeatably on every {@link SeleniumConstants#DEFAULT_RETRY_ACTION_INTERVAL} seconds with timeout is {@link SeleniumConstants#DEFAULT_RETRY_ACTION_TIMEOUT}.<br/>
+     * If {@link ElementClickInterceptedException} is thrown out then it will retry clicking on element with backoff as configured by {@link #setRetryPolicy(RetryPolicy)}.<br/>
      * If still not success then it will perform last retry by using {@link Actions#click(WebElement webElement)}.
      * @param webLocator {@link WebLocator} instance to locate web element
      * @param timeout maximum time allowed to wait for web element to be clickable
@@ -463,34 +658,17 @@ public class WebUI {
      * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
      * In case <code>retryEnabled</code> = false, then none mentioned above is applied.<br/><br/>
      * After web element is clickable, this method will call {@link WebElement#click()} first.<br/>
-     * If {@link ElementClickInterceptedException} is thrown out then it will retry by clicking on element repeatably on every {@link SeleniumConstants#DEFAULT_RETRY_ACTION_INTERVAL} seconds with timeout is {@link SeleniumConstants#DEFAULT_RETRY_ACTION_TIMEOUT}.<br/>
-     * If still not success then it will perform last retry by using {@link Actions#click(WebElement webElement)}.
-     * @param webLocator {@link WebLocator} instance to locate web element
-     * @param timeout maximum time allowed to wait for web element to be clickable
-     * @param retryEnabled control if this method is execute with retryPreviousAction enabled or not
-     */
-    public static void click(WebLocator webLocator, Long timeout, Boolean retryEnabled) {
-        click(webLocator, timeout.longValue(), retryEnabled.booleanValue());
-    }
-
-    /**
-     * Wait for element located by <code>webLocator</code> to be clickable with timeout is <code>timeout</code> then try to click on this element <br/><br/>
-     * This method is controlled with retryPreviousAction = <code>retryEnabled</code>.<br/><br/>
-     * In case <code>retryEnabled</code> = true, if {@link TimeoutException} is thrown out when wait for element to be clickable, it will retry with registered previous action.<br/>
-     * Method which is controlled with retryPreviousAction enabled is also registered as previousAction when it is completed.<br/><br/>
-     * In case <code>retryEnabled</code> = false, then none mentioned above is applied.<br/><br/>
-     * After web element is clickable, this method will call {@link WebElement#click()} first.<br/>
-     * If {@link ElementClickInterceptedException} is thrown out then it will retry by clicking on element repeatably on every {@link SeleniumConstants#DEFAULT_RETRY_ACTION_INTERVAL} seconds with timeout is {@link SeleniumConstants#DEFAULT_RETRY_ACTION_TIMEOUT}.<br/>
+     * If {@link ElementClickInterceptedException} is thrown out then it will retry clicking on element with backoff as configured by {@link #setRetryPolicy(RetryPolicy)}.<br/>
      * If still not success then it will perform last retry by using {@link Actions#click(WebElement webElement)}.
      * @param webLocator {@link WebLocator} instance to locate web element
      * @param timeout maximum time allowed to wait for web element to be clickable
      * @param retryEnabled control if this method is execute with retryPreviousAction enabled or not
      */
     public static void click(WebLocator webLocator, long timeout, boolean retryEnabled) {
-        performActionWithRetry(retryEnabled, () -> {
+        performActionWithRetry(retryEnabled, JournaledAction.click(webLocator, timeout), () -> {
             WebElement webElement = waitForElementClickable(webLocator, timeout);
             performClick(webElement);
-        }, "click", webLocator, timeout, false);
+        });
     }
     /*End of retry enabled actions in Selenium WebDriver*/
 
@@ -510,35 +688,152 @@ public class WebUI {
      * @param timeout maximum time allowed to wait for <code>message</code> to be visible
      */
     public static void verifyMessageAppear(String message, long timeout) {
-        waitForElementVisible(new WebLocator().innerText(message), timeout);
-    }
-
-    public static void initializeNewSession() {
-        switch (selectWebBrowser) {
-            case "chrome":
-                webDriver = new ChromeDriver();
-                break;
-            case "firefox":
-                webDriver = new FirefoxDriver();
-                break;
-            case "edge":
-                webDriver = new EdgeDriver();
-                break;
-//            case "safari":
-//                webDriver = new SafariDriver();
-//                break;
-            default:
-                throw new RuntimeException(String.format("Browser %s is not supported", selectWebBrowser));
-        }
+        ActionProbe.run("verifyMessageAppear", () -> {
+            waitForElementVisible(new WebLocator().innerText(message), timeout);
+        });
+    }
+
+    /**
+     * Start a new browser session of {@link #getSelectWebBrowser()} type and bind it to the current thread.<br/><br/>
+     * All other methods of this class operate on the session bound to the calling thread, so TestNG can run test methods/classes in parallel, each thread with its own browser.
+     * If there is already a session bound to the current thread, it is quit first.<br/><br/>
+     * When {@link #getSessionPool()} is enabled, an already launched browser is taken from the pool instead of launching a new one.
+     * @return the newly created {@link WebSession}
+     */
+    public static WebSession initializeNewSession() {
+        return ActionProbe.call("initializeNewSession", () -> {
+            WebSession previousSession = CURRENT_SESSION.get();
+            if (previousSession != null) {
+                LOGGER.warn("Session {} is still bound to current thread, quit it before starting a new one", previousSession);
+                quitSession();
+            }
+            WebSession session = SESSION_POOL.isEnabled()
+                    ? SESSION_POOL.acquire(selectWebBrowser)
+                    : new WebSession(WebDriverFactory.createWebDriver(selectWebBrowser), selectWebBrowser);
+            CURRENT_SESSION.set(session);
+            ActionProbe.bindRecorder(session.getFlightRecorder());
+            return session;
+        });
     }
 
+    /**
+     * Quit the session bound to the current thread (if any) and unbind it.<br/><br/>
+     * A session taken from {@link #getSessionPool()} is cleaned up and released to the pool instead of being quit.
+     */
     public static void quitSession() {
-        webDriver.quit();
-        webDriver = null;
+        ActionProbe.run("quitSession", () -> {
+            WebSession session = CURRENT_SESSION.get();
+            if (session == null) {
+                return;
+            }
+            CURRENT_SESSION.remove();
+            ActionProbe.bindRecorder(null);
+            if (session.isPooled()) {
+                SESSION_POOL.release(session);
+            } else {
+                session.getWebDriver().quit();
+            }
+        });
+    }
+
+    public static WaitMode getWaitMode() {
+        return waitMode;
+    }
+
+    /**
+     * @param waitMode how element waits are performed, {@link WaitMode#OBSERVER} resolves waits inside the page as soon as the DOM changes
+     */
+    public static void setWaitMode(WaitMode waitMode) {
+        WebUI.waitMode = waitMode;
+    }
+
+    public static int getFlightRecorderCapacity() {
+        return flightRecorderCapacity;
+    }
+
+    /**
+     * @param flightRecorderCapacity number of last actions kept by each session created from now on, see {@link #dumpFlightRecorder(ITestResult, String)}, 0 to disable
+     */
+    public static void setFlightRecorderCapacity(int flightRecorderCapacity) {
+        WebUI.flightRecorderCapacity = flightRecorderCapacity;
+    }
+
+    public static int getRetryReplayDepth() {
+        return retryReplayDepth;
+    }
+
+    /**
+     * @param retryReplayDepth number of previous actions replayed (oldest first) before the current action when it times out, at most {@link WebSession#ACTION_JOURNAL_CAPACITY}, 0 to replay none
+     * @throws RuntimeException if <code>retryReplayDepth</code> is out of this range
+     */
+    public static void setRetryReplayDepth(int retryReplayDepth) {
+        if (retryReplayDepth < 0 || retryReplayDepth > WebSession.ACTION_JOURNAL_CAPACITY) {
+            throw new RuntimeException(String.format("Retry replay depth must be between 0 and %d, got %d", WebSession.ACTION_JOURNAL_CAPACITY, retryReplayDepth));
+        }
+        WebUI.retryReplayDepth = retryReplayDepth;
+    }
+
+    public static RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * @param retryPolicy policy used both to replay previous actions after a timeout and to re-click an element covered by another one
+     */
+    public static void setRetryPolicy(RetryPolicy retryPolicy) {
+        WebUI.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @return true if {@link #setText(WebLocator, String, long, boolean)} sets <code>text</code> by script rather than typing it
+     */
+    static boolean isSetByScript(WebLocator webLocator, String text) {
+        return fastTextThreshold > 0 && text.length() >= fastTextThreshold && !webLocator.isKeyEventsRequired();
+    }
+
+    public static int getFastTextThreshold() {
+        return fastTextThreshold;
     }
 
+    /**
+     * @param fastTextThreshold minimum length of a text which {@link #setText(WebLocator, String, long, boolean)} sets by script instead of typing it, 0 to always type
+     */
+    public static void setFastTextThreshold(int fastTextThreshold) {
+        WebUI.fastTextThreshold = fastTextThreshold;
+    }
+
+    public static WebSessionPool getSessionPool() {
+        return SESSION_POOL;
+    }
+
+    /**
+     * @return {@link WebDriver} of the session bound to the current thread, <code>null</code> if there is no session
+     */
     public static WebDriver getWebDriver() {
-        return webDriver;
+        WebSession session = CURRENT_SESSION.get();
+        return session == null ? null : session.getWebDriver();
+    }
+
+    /**
+     * @return the session bound to the current thread, <code>null</code> if there is no session
+     */
+    public static WebSession getCurrentSession() {
+        return CURRENT_SESSION.get();
+    }
+
+    /**
+     * Bind an existing <code>session</code> to the current thread, for example to drive a session created by another thread.<br/><br/>
+     * A session must not be driven by two threads at the same time.
+     * @param session session to be bound, <code>null</code> to unbind current session without quitting it
+     */
+    public static void bindSession(WebSession session) {
+        if (session == null) {
+            CURRENT_SESSION.remove();
+            ActionProbe.bindRecorder(null);
+        } else {
+            CURRENT_SESSION.set(session);
+            ActionProbe.bindRecorder(session.getFlightRecorder());
+        }
     }
 
     public static String getSelectWebBrowser() {
@@ -557,94 +852,114 @@ public class WebUI {
         WebUI.defaultWaitUntilTimeout = defaultWaitUntilTimeout;
     }
 
+    private static WebSession currentSession() {
+        WebSession session = CURRENT_SESSION.get();
+        if (session == null) {
+            throw new RuntimeException(String.format("There is no session bound to thread %s, call WebUI.initializeNewSession() first", Thread.currentThread().getName()));
+        }
+        return session;
+    }
+
+    private static WebDriver currentWebDriver() {
+        return currentSession().getWebDriver();
+    }
+
     private static void performClick(WebElement webElement) {
-        Actions builder = new Actions(webDriver);
+        Actions builder = new Actions(currentWebDriver());
         try {
             webElement.click();
         } catch (ElementClickInterceptedException ex) {
-            LOGGER.error(String.format("WARNING: ElementClickInterceptedException appeared, likely that other element has covered the clicking element (%s), start perform retrying"
-                    , webElement.toString()));
+            LOGGER.error("WARNING: ElementClickInterceptedException appeared, likely that other element has covered the clicking element ({}), start perform retrying"
+                    , webElement);
 
             // Retry click until no more ElementClickInterceptedException
-            long currentTimestamp = Calendar.getInstance().getTimeInMillis();
-            boolean isSuccess = false;
-            while ((Calendar.getInstance().getTimeInMillis() - currentTimestamp) <= SeleniumConstants.DEFAULT_RETRY_ACTION_TIMEOUT * 1000L) {
-                try {
-                    Thread.sleep(SeleniumConstants.DEFAULT_RETRY_ACTION_INTERVAL * 1000L);
+            try {
+                retryPolicy.retry("click intercepted", ElementClickInterceptedException.class, ex, () -> {
                     webElement.click();
-                    isSuccess = true;
-                } catch (ElementClickInterceptedException e) {
-                    // do nothing
-                } catch (InterruptedException e) {
-                    LOGGER.error("InterruptedException", e);
-                }
-                if (isSuccess) {
-                    break;
-                }
-            }
-            if (!isSuccess) {
+                    return null;
+                }, retrySignal());
+            } catch (RetryPolicy.ExhaustedException e) {
                 builder.click(webElement).perform();
             }
         } catch (Exception ex) {
-            LOGGER.error(String.format("WARNING: Cannot perform webElement.click() for element(%s), start retrying with Action.click().perform()", webElement.toString()));
+            LOGGER.error("WARNING: Cannot perform webElement.click() for element({}), start retrying with Action.click().perform()", webElement);
             builder.click(webElement).perform();
         }
     }
 
-    private static void performActionWithRetry(boolean retryEnabled, Function function, String methodName, Object... currentParams) {
-        Method currentAction = null;
-        try {
-            Class[] currentParamClasses = new Class[currentParams.length];
-            for (int i = 0; i < currentParams.length; i++) {
-                currentParamClasses[i] = currentParams[i].getClass();
+    private static void performActionWithRetry(boolean retryEnabled, JournaledAction currentAction, Function function) {
+        ActionProbe.run(currentAction.getType().getOperation(), currentAction.getWebLocator(), () -> {
+            WebSession session = currentSession();
+            session.recordInteraction();
+            try {
+                function.apply();
+            } catch (TimeoutException te) {
+                if (retryEnabled) {
+                    LOGGER.error("TimeoutException", te);
+                    retryPreviousActions(currentAction, session.getActionJournal().lastActions(retryReplayDepth), te);
+                } else {
+                    throw te;
+                }
             }
-            currentAction = WebUI.class.getMethod(methodName, currentParamClasses);
-            function.apply();
-        } catch (NoSuchMethodException nme) {
-            LOGGER.error("NoSuchMethodException", nme);
-        } catch (TimeoutException te) {
             if (retryEnabled) {
-                LOGGER.error("TimeoutException", te);
-                retryPreviousAction(currentAction
-                        , currentParams
-                        , previousAction
-                        , previousActionParams);
-            } else {
-                throw te;
+                session.getActionJournal().record(currentAction);
             }
-        }
-        if (retryEnabled) {
-            previousAction = currentAction;
-            previousActionParams = currentParams;
-        }
+        });
     }
 
-    private static void retryPreviousAction(Method currentAction, Object[] currentParams, Method previousAction, Object[] previousParams) {
-        LOGGER.info(String.format("Start retry previous action with currentAction: %s, currentParams: %s, previousAction: %s, previousParams: %s"
-                , currentAction.toGenericString(), Arrays.asList(currentParams).toString(), previousAction.toGenericString(), Arrays.asList(previousParams).toString()));
-        long currentTimestamp = Calendar.getInstance().getTimeInMillis();
-        boolean isSuccess = false;
-        Exception lastException = new RuntimeException("Something wrong");
-        while ((Calendar.getInstance().getTimeInMillis() - currentTimestamp) <= SeleniumConstants.DEFAULT_RETRY_ACTION_TIMEOUT * 1000L) {
-            try {
-                Thread.sleep(SeleniumConstants.DEFAULT_RETRY_ACTION_INTERVAL * 1000L);
-                previousAction.invoke(null, previousParams);
-                currentAction.invoke(null, currentParams);
-                isSuccess = true;
-            } catch (Exception e) {
-                lastException = e;
+    private static void retryPreviousActions(JournaledAction currentAction, List<JournaledAction> previousActions, TimeoutException firstFailure) {
+        LOGGER.info("Start retry previous actions with currentAction: {}, previousActions: {}", currentAction, previousActions);
+        retryPolicy.retry("replay previous actions", Exception.class, firstFailure, () -> {
+            for (JournaledAction previousAction : previousActions) {
+                previousAction.replay();
             }
-            if (isSuccess) {
-                return;
+            currentAction.replay();
+            return null;
+        }, retrySignal());
+    }
+
+    /**
+     * @return regions covered by all visible elements located by <code>webLocators</code>, in screenshot pixels
+     */
+    private static List<Rectangle> regionsOf(List<WebLocator> webLocators) {
+        List<Object> specs = new ArrayList<>(webLocators.size());
+        for (WebLocator webLocator : webLocators) {
+            Object[] locatorArgs = PageScripts.locatorArgsOf(webLocator);
+            if (locatorArgs == null) {
+                throw new RuntimeException(String.format("Cannot read region of elements located by %s: the locator has no condition"
+                        + ", set at least one on it before reading it, for ex: id, xpath, cssSelector or innerText", webLocator));
             }
+            specs.add(Arrays.asList(locatorArgs));
+        }
+        List<Rectangle> regions = new ArrayList<>();
+        for (Object region : (List<?>) executeJavascript(PageScripts.JS_READ_REGIONS, specs)) {
+            List<?> bounds = (List<?>) region;
+            regions.add(new Rectangle(((Number) bounds.get(0)).intValue(), ((Number) bounds.get(1)).intValue()
+                    , ((Number) bounds.get(2)).intValue(), ((Number) bounds.get(3)).intValue()));
         }
-        throw new RuntimeException(lastException);
+        return regions;
     }
 
-    private static void executeJavascript(String script) {
-        JavascriptExecutor js = (JavascriptExecutor) webDriver;
-        LOGGER.info(script);
-        js.executeScript(script);
+    private static String keyOf(WebLocator webLocator) {
+        return webLocator.getAlias() != null ? webLocator.getAlias() : webLocator.toString();
+    }
+
+    private static RetrySignal retrySignal() {
+        return retryPolicy.isWaitForDomChange() ? new DomChangeSignal(currentSession()) : RetrySignal.SLEEP;
+    }
+
+    /**
+     * Execute <code>script</code> in the current page of the session bound to the current thread
+     * @param script JavaScript body, arguments are available as <code>arguments[i]</code>
+     * @param args script arguments, {@link WebElement}s are passed as DOM elements
+     * @return value returned by the script, converted as per {@link JavascriptExecutor#executeScript(String, Object...)}
+     */
+    public static Object executeJavascript(String script, Object... args) {
+        return ActionProbe.call("executeJavascript", () -> {
+            JavascriptExecutor js = (JavascriptExecutor) currentWebDriver();
+            LOGGER.debug("Execute script: {}", script);
+            return js.executeScript(script, args);
+        });
     }
 
 //    public static void scrollBy(String x, String y) {
@@ -688,7 +1003,7 @@ public class WebUI {
 
     public static void sleepThread(long sleepTimeInSeconds) {
         try {
-            Thread.sleep(sleepTimeInSeconds * 1000L);
+            ActionProbe.sleep("sleepThread", sleepTimeInSeconds * 1000L);
         } catch (InterruptedException e) {
             LOGGER.error("InterruptedException", e);
         }
@@ -696,26 +1011,128 @@ public class WebUI {
 
     /**
      * Take screenshot of current screen and store the picture in designated folder.<br/><br/>
-     * For example if testCaseName is testXyz then the picture with suffix of timestamp will be in <code>screenshots/testXyz</code> folder
+     * For example if testCaseName is testXyz then the picture will be listed in <code>screenshots/testXyz/index.tsv</code>,
+     * the picture itself being stored once by content in <code>screenshots/blobs</code> (see {@link ScreenshotStore}).
+     * When the writer is not content-addressed, the picture with suffix of timestamp will be in <code>screenshots/testXyz</code> folder.<br/>
+     * The test thread only pays for the capture, the file is written in background by {@link #getScreenshotWriter()}.
+     * @param testContext context of the running test
      * @param testCaseName directory name for screenshot picture to be stored
      */
     public static void takeScreenshot(ITestContext testContext, String testCaseName){
-//        Screenshot screenshot=new AShot().shootingStrategy(ShootingStrategies.viewportPasting(1000)).takeScreenshot(webDriver);
-        File file = ((TakesScreenshot) webDriver).getScreenshotAs(OutputType.FILE);
-        File parentDir = new File(testContext.getOutputDirectory() + "/screenshots/" + testCaseName);
-        if (!parentDir.exists()) {
-            parentDir.mkdirs();
+        ActionProbe.run("takeScreenshot", () -> {
+            byte[] png = ((TakesScreenshot) currentWebDriver()).getScreenshotAs(OutputType.BYTES);
+            Path screenshotsDirectory = Paths.get(testContext.getOutputDirectory(), "screenshots");
+            String description = String.format("screenshot of %s", testCaseName);
+            if (SCREENSHOT_WRITER.isContentAddressed()) {
+                ScreenshotStore store = SCREENSHOT_WRITER.storeOf(screenshotsDirectory);
+                SCREENSHOT_WRITER.submit(description, () -> store.put(testCaseName, png));
+            } else {
+                Path directory = screenshotsDirectory.resolve(testCaseName);
+                SCREENSHOT_WRITER.submit(description, () -> SCREENSHOT_WRITER.writeNewFile(directory, "png", png));
+            }
+        });
+    }
+
+    /**
+     * Take screenshot of the whole page, scrolling through it, and store the picture like {@link #takeScreenshot(ITestContext, String)}.<br/><br/>
+     * The test thread only scrolls and captures each viewport, the picture is assembled and encoded row by row in background (see {@link FullPageScreenshot}),
+     * so memory stays bounded whatever the height of the page.
+     * @param testContext context of the running test
+     * @param testCaseName directory name for screenshot picture to be stored
+     */
+    public static void takeFullPageScreenshot(ITestContext testContext, String testCaseName) {
+        ActionProbe.run("takeFullPageScreenshot", () -> {
+            FullPageScreenshot screenshot = FullPageScreenshot.capture(currentWebDriver(), fullPageScrollPause, SeleniumConstants.FULL_PAGE_SCREENSHOT_MAX_TILES);
+            Path screenshotsDirectory = Paths.get(testContext.getOutputDirectory(), "screenshots");
+            String description = String.format("full page screenshot of %s", testCaseName);
+            if (SCREENSHOT_WRITER.isContentAddressed()) {
+                ScreenshotStore store = SCREENSHOT_WRITER.storeOf(screenshotsDirectory);
+                SCREENSHOT_WRITER.submit(description, () -> store.put(testCaseName, screenshot));
+            } else {
+                Path directory = screenshotsDirectory.resolve(testCaseName);
+                SCREENSHOT_WRITER.submit(description, () -> SCREENSHOT_WRITER.writeNewFile(directory, "png", screenshot));
+            }
+        });
+    }
+
+    public static long getFullPageScrollPause() {
+        return fullPageScrollPause;
+    }
+
+    /**
+     * @param fullPageScrollPause time left to the page to render after each scroll of {@link #takeFullPageScreenshot(ITestContext, String)}, in milliseconds
+     */
+    public static void setFullPageScrollPause(long fullPageScrollPause) {
+        WebUI.fullPageScrollPause = fullPageScrollPause;
+    }
+
+    /**
+     * Compare a screenshot of the current page with its baseline named <code>name</code>, see {@link VisualBaselines}.<br/><br/>
+     * A screenshot without baseline becomes its baseline. On mismatch, the screenshot and its diff image are written under
+     * <code>&lt;test output directory&gt;/visual</code> before failing.
+     * @param testContext context of the running test
+     * @param name name of the baseline
+     * @param ignoredLocators {@link WebLocator} instances of elements not compared (for ex: clock, ads), all elements located by each of them are ignored
+     * @return result of the comparison
+     */
+    public static VisualDiffResult verifyScreenshot(ITestContext testContext, String name, WebLocator... ignoredLocators) {
+        return ActionProbe.call("verifyScreenshot", name, () -> {
+            List<Rectangle> ignoredRegions = ignoredLocators.length == 0 ? Collections.<Rectangle>emptyList() : regionsOf(Arrays.asList(ignoredLocators));
+            byte[] png = ((TakesScreenshot) currentWebDriver()).getScreenshotAs(OutputType.BYTES);
+            VisualDiffResult result;
+            try {
+                result = VISUAL_BASELINES.verify(name, png, ignoredRegions, Paths.get(testContext.getOutputDirectory()), SCREENSHOT_WRITER);
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Cannot compare screenshot %s with its baseline", name), e);
+            }
+            if (!result.isMatch() && !result.isBaselineCreated()) {
+                throw new RuntimeException(String.format("Screenshot %s differs from its baseline: %s", name, result));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Write the last actions recorded by the session bound to the current thread (see {@link WebSession#getFlightRecorder()}) to a new file of
+     * <code>&lt;test output directory&gt;/flight-recorder/&lt;test class&gt;.&lt;test method&gt;</code>, headed by <code>reason</code> and the failure of the test.<br/><br/>
+     * A test result is dumped only once, later calls return the same file.
+     * @param testResult result of the test which failed or is retried
+     * @param reason why the recording is dumped, for ex: <code>failure</code>
+     * @return the written file, <code>null</code> if there is no session or no recorder
+     */
+    public static Path dumpFlightRecorder(ITestResult testResult, String reason) {
+        Object dumpedFile = testResult.getAttribute(FLIGHT_RECORDING_ATTRIBUTE);
+        if (dumpedFile != null) {
+            return (Path) dumpedFile;
+        }
+        WebSession session = CURRENT_SESSION.get();
+        if (session == null || session.getFlightRecorder() == null) {
+            return null;
         }
+        String testName = testResult.getTestClass().getRealClass().getSimpleName() + "." + testResult.getMethod().getMethodName();
+        StringWriter recording = new StringWriter();
         try {
-            File outputFile = new File(parentDir, String.format("%s.png", DateTimeUtil.obtainCurrentDateTimeInMiliSecond()));
-//            ImageIO.write(screenshot.getImage(), "PNG", outputFile);
-            Files.copy(file.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            recording.write(String.format("# %s of %s in session %s: %s%n", reason, testName, session, testResult.getThrowable()));
+            session.getFlightRecorder().dump(recording);
+            Path file = SCREENSHOT_WRITER.writeNewFile(Paths.get(testResult.getTestContext().getOutputDirectory(), "flight-recorder", testName), "log"
+                    , recording.toString().getBytes(StandardCharsets.UTF_8));
+            testResult.setAttribute(FLIGHT_RECORDING_ATTRIBUTE, file);
+            LOGGER.info("Last actions of {} written to {}", testName, file);
+            return file;
         } catch (IOException e) {
-            LOGGER.error("IOException", e);
-            throw new RuntimeException("Cannot copy screenshot to configured destination folder");
+            LOGGER.error("Cannot write last actions of {}", testName, e);
+            return null;
         }
     }
 
+    public static VisualBaselines getVisualBaselines() {
+        return VISUAL_BASELINES;
+    }
+
+    public static ScreenshotWriter getScreenshotWriter() {
+        return SCREENSHOT_WRITER;
+    }
+
     private static String decryptStr(String encryptedStr) {
         byte[] decodedByteArr = Base64.getDecoder().decode(encryptedStr.getBytes());
         return new String(decodedByteArr);
@@ -726,18 +1143,16 @@ public class WebUI {
     }
 
     public static class DefaultRetryControl implements IRetryAnalyzer {
-        private static Map<String, Integer> testMethod2NumOfRetryMap = new HashMap<>();
+        private static Map<String, Integer> testMethod2NumOfRetryMap = new ConcurrentHashMap<>();
 
         @Override
         public boolean retry(ITestResult result) {
             String testMethod = result.getTestClass() + "." + result.getMethod().getMethodName();
-            Integer currentNumOfRetry = 1;
-            if (testMethod2NumOfRetryMap.containsKey(testMethod)) {
-                currentNumOfRetry = testMethod2NumOfRetryMap.get(testMethod) + 1;
-            }
-            testMethod2NumOfRetryMap.put(testMethod, currentNumOfRetry);
+            Integer currentNumOfRetry = testMethod2NumOfRetryMap.merge(testMethod, 1, Integer::sum);
 
             if (currentNumOfRetry <= SeleniumConstants.DEFAULT_TEST_CASE_RETRY_NUM) {
+                LOGGER.info("Retry {} ({} of {}), last actions in {}", testMethod, currentNumOfRetry, SeleniumConstants.DEFAULT_TEST_CASE_RETRY_NUM
+                        , dumpFlightRecorder(result, "retry"));
                 return true;
             } else {
                 return false;
@@ -0,0 +1,404 @@
+package org.my.automationtest.service.fake;
+
+import org.openqa.selenium.InvalidSelectorException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CSS selector evaluated against a W3C DOM, covering what locators and page objects use:
+ * type, universal, <code>#id</code>, <code>.class</code>, attribute selectors (<code>= ~= |= ^= $= *=</code>, quoted values with escapes),
+ * <code>:first-child</code>, <code>:last-child</code>, <code>:nth-child(n)</code>, <code>:checked</code>, <code>:disabled</code>, <code>:enabled</code>, <code>:not(...)</code>,
+ * the four combinators and selector lists.<br/><br/>
+ * Any other syntax throws {@link InvalidSelectorException}, as a browser does for an invalid selector.
+ */
+final class CssSelector {
+
+    private final String selector;
+    // One alternative per selector of the list, each as its compounds from right to left with the combinator on their left
+    private final List<List<Compound>> alternatives;
+
+    private CssSelector(String selector, List<List<Compound>> alternatives) {
+        this.selector = selector;
+        this.alternatives = alternatives;
+    }
+
+    static CssSelector compile(String selector) {
+        return new Parser(selector).parseList();
+    }
+
+    /**
+     * @return true if <code>element</code> is matched by one of the selectors of the list
+     */
+    boolean matches(Element element) {
+        for (List<Compound> compounds : alternatives) {
+            if (matches(element, compounds, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return descendants of <code>context</code> matched by this selector, in document order
+     */
+    List<Element> select(Node context) {
+        List<Element> found = new ArrayList<>();
+        for (Node child = context.getFirstChild(); child != null; child = child.getNextSibling()) {
+            collect(child, found);
+        }
+        return found;
+    }
+
+    private void collect(Node node, List<Element> found) {
+        if (node.getNodeType() != Node.ELEMENT_NODE) {
+            return;
+        }
+        if (matches((Element) node)) {
+            found.add((Element) node);
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            collect(child, found);
+        }
+    }
+
+    private static boolean matches(Element element, List<Compound> compounds, int index) {
+        Compound compound = compounds.get(index);
+        if (!compound.matches(element)) {
+            return false;
+        }
+        if (index == compounds.size() - 1) {
+            return true;
+        }
+        switch (compound.combinator) {
+            case '>':
+                Element parent = parentOf(element);
+                return parent != null && matches(parent, compounds, index + 1);
+            case '+':
+                Element previous = previousSiblingOf(element);
+                return previous != null && matches(previous, compounds, index + 1);
+            case '~':
+                for (Element sibling = previousSiblingOf(element); sibling != null; sibling = previousSiblingOf(sibling)) {
+                    if (matches(sibling, compounds, index + 1)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                for (Element ancestor = parentOf(element); ancestor != null; ancestor = parentOf(ancestor)) {
+                    if (matches(ancestor, compounds, index + 1)) {
+                        return true;
+                    }
+                }
+                return false;
+        }
+    }
+
+    private static Element parentOf(Element element) {
+        Node parent = element.getParentNode();
+        return parent != null && parent.getNodeType() == Node.ELEMENT_NODE ? (Element) parent : null;
+    }
+
+    private static Element previousSiblingOf(Element element) {
+        for (Node sibling = element.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+            if (sibling.getNodeType() == Node.ELEMENT_NODE) {
+                return (Element) sibling;
+            }
+        }
+        return null;
+    }
+
+    private static Element nextSiblingOf(Element element) {
+        for (Node sibling = element.getNextSibling(); sibling != null; sibling = sibling.getNextSibling()) {
+            if (sibling.getNodeType() == Node.ELEMENT_NODE) {
+                return (Element) sibling;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return selector;
+    }
+
+    private interface Condition {
+        boolean matches(Element element);
+    }
+
+    private static final class Compound {
+        private final List<Condition> conditions = new ArrayList<>();
+        // Combinator between this compound and the one on its left: ' ', '>', '+' or '~'
+        private char combinator = ' ';
+
+        private boolean matches(Element element) {
+            for (Condition condition : conditions) {
+                if (!condition.matches(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Parser {
+        private final String selector;
+        private int position;
+
+        private Parser(String selector) {
+            this.selector = selector;
+        }
+
+        private CssSelector parseList() {
+            List<List<Compound>> alternatives = new ArrayList<>();
+            do {
+                alternatives.add(parseComplex());
+            } while (consume(','));
+            if (position < selector.length()) {
+                throw invalid();
+            }
+            return new CssSelector(selector, alternatives);
+        }
+
+        private List<Compound> parseComplex() {
+            List<Compound> compounds = new ArrayList<>();
+            skipWhitespace();
+            compounds.add(0, parseCompound());
+            while (true) {
+                boolean whitespace = skipWhitespace();
+                if (position >= selector.length() || peek() == ',' || peek() == ')') {
+                    break;
+                }
+                char combinator = ' ';
+                if (peek() == '>' || peek() == '+' || peek() == '~') {
+                    combinator = selector.charAt(position++);
+                    skipWhitespace();
+                } else if (!whitespace) {
+                    throw invalid();
+                }
+                Compound compound = parseCompound();
+                compound.combinator = combinator;
+                compounds.add(0, compound);
+            }
+            return compounds;
+        }
+
+        private Compound parseCompound() {
+            Compound compound = new Compound();
+            boolean universal = false;
+            if (position < selector.length() && peek() == '*') {
+                position++;
+                universal = true;
+            } else if (position < selector.length() && isIdentifierStart(peek())) {
+                String tag = parseIdentifier().toLowerCase();
+                compound.conditions.add(element -> element.getTagName().equals(tag));
+            }
+            while (position < selector.length()) {
+                char c = peek();
+                if (c == '#') {
+                    position++;
+                    String id = parseIdentifier();
+                    compound.conditions.add(element -> id.equals(element.getAttribute("id")));
+                } else if (c == '.') {
+                    position++;
+                    String className = parseIdentifier();
+                    compound.conditions.add(element -> containsWord(element.getAttribute("class"), className));
+                } else if (c == '[') {
+                    position++;
+                    compound.conditions.add(parseAttribute());
+                } else if (c == ':') {
+                    position++;
+                    compound.conditions.add(parsePseudoClass());
+                } else {
+                    break;
+                }
+            }
+            if (compound.conditions.isEmpty() && !universal) {
+                throw invalid();
+            }
+            return compound;
+        }
+
+        private Condition parseAttribute() {
+            skipWhitespace();
+            String name = parseIdentifier().toLowerCase();
+            skipWhitespace();
+            if (consume(']')) {
+                return element -> element.hasAttribute(name);
+            }
+            String operator;
+            if (consume('=')) {
+                operator = "=";
+            } else if (position + 1 < selector.length() && "~|^$*".indexOf(peek()) >= 0 && selector.charAt(position + 1) == '=') {
+                operator = selector.substring(position, position + 2);
+                position += 2;
+            } else {
+                throw invalid();
+            }
+            skipWhitespace();
+            String value = position < selector.length() && (peek() == '"' || peek() == '\'') ? parseString() : parseIdentifier();
+            skipWhitespace();
+            if (!consume(']')) {
+                throw invalid();
+            }
+            switch (operator) {
+                case "=":
+                    return element -> element.hasAttribute(name) && element.getAttribute(name).equals(value);
+                case "~=":
+                    return element -> containsWord(element.getAttribute(name), value);
+                case "|=":
+                    return element -> element.getAttribute(name).equals(value) || element.getAttribute(name).startsWith(value + "-");
+                case "^=":
+                    return element -> !value.isEmpty() && element.getAttribute(name).startsWith(value);
+                case "$=":
+                    return element -> !value.isEmpty() && element.getAttribute(name).endsWith(value);
+                default:
+                    return element -> !value.isEmpty() && element.getAttribute(name).contains(value);
+            }
+        }
+
+        private Condition parsePseudoClass() {
+            String name = parseIdentifier().toLowerCase();
+            switch (name) {
+                case "first-child":
+                    return element -> previousSiblingOf(element) == null;
+                case "last-child":
+                    return element -> nextSiblingOf(element) == null;
+                case "checked":
+                    return element -> element.hasAttribute("checked") || element.hasAttribute("selected");
+                case "disabled":
+                    return element -> element.hasAttribute("disabled");
+                case "enabled":
+                    return element -> !element.hasAttribute("disabled");
+                case "nth-child": {
+                    int close = selector.indexOf(')', position);
+                    if (!consume('(') || close < 0) {
+                        throw invalid();
+                    }
+                    int n;
+                    try {
+                        n = Integer.parseInt(selector.substring(position, close).trim());
+                    } catch (NumberFormatException e) {
+                        throw invalid();
+                    }
+                    position = close + 1;
+                    return element -> {
+                        int index = 1;
+                        for (Element sibling = previousSiblingOf(element); sibling != null; sibling = previousSiblingOf(sibling)) {
+                            index++;
+                        }
+                        return index == n;
+                    };
+                }
+                case "not": {
+                    if (!consume('(')) {
+                        throw invalid();
+                    }
+                    List<Compound> negated = parseComplex();
+                    if (!consume(')')) {
+                        throw invalid();
+                    }
+                    return element -> !CssSelector.matches(element, negated, 0);
+                }
+                default:
+                    throw invalid();
+            }
+        }
+
+        private String parseIdentifier() {
+            StringBuilder sb = new StringBuilder();
+            while (position < selector.length()) {
+                char c = peek();
+                if (c == '\\') {
+                    sb.append(parseEscape());
+                } else if (isIdentifierChar(c)) {
+                    sb.append(c);
+                    position++;
+                } else {
+                    break;
+                }
+            }
+            if (sb.length() == 0) {
+                throw invalid();
+            }
+            return sb.toString();
+        }
+
+        private String parseString() {
+            char quote = selector.charAt(position++);
+            StringBuilder sb = new StringBuilder();
+            while (position < selector.length()) {
+                char c = peek();
+                if (c == quote) {
+                    position++;
+                    return sb.toString();
+                } else if (c == '\\') {
+                    sb.append(parseEscape());
+                } else {
+                    sb.append(c);
+                    position++;
+                }
+            }
+            throw invalid();
+        }
+
+        // Backslash followed by up to 6 hex digits (and an optional whitespace) or by the escaped character
+        private String parseEscape() {
+            position++;
+            if (position >= selector.length()) {
+                throw invalid();
+            }
+            int start = position;
+            while (position < selector.length() && position - start < 6 && Character.digit(peek(), 16) >= 0) {
+                position++;
+            }
+            if (position == start) {
+                return String.valueOf(selector.charAt(position++));
+            }
+            int codePoint = Integer.parseInt(selector.substring(start, position), 16);
+            if (position < selector.length() && Character.isWhitespace(peek())) {
+                position++;
+            }
+            return new String(Character.toChars(codePoint));
+        }
+
+        private boolean skipWhitespace() {
+            int start = position;
+            while (position < selector.length() && Character.isWhitespace(peek())) {
+                position++;
+            }
+            return position > start;
+        }
+
+        private boolean consume(char c) {
+            if (position < selector.length() && peek() == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private char peek() {
+            return selector.charAt(position);
+        }
+
+        private InvalidSelectorException invalid() {
+            return new InvalidSelectorException(String.format("Invalid or unsupported CSS selector at position %d: %s", position, selector));
+        }
+
+        private static boolean isIdentifierStart(char c) {
+            return Character.isLetter(c) || c == '_' || c == '-' || c == '\\';
+        }
+
+        private static boolean isIdentifierChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c > 0x7F;
+        }
+    }
+
+    private static boolean containsWord(String text, String word) {
+        return text != null && !word.isEmpty() && Arrays.asList(text.trim().split("\\s+")).contains(word);
+    }
+}
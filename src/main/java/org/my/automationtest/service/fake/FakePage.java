@@ -0,0 +1,333 @@
+package org.my.automationtest.service.fake;
+
+import org.w3c.dom.Comment;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Page loaded in a window of {@link FakeWebDriver}: its DOM, the elements still to appear and the rules deciding what is displayed.<br/><br/>
+ * Elements with {@link FakeWebDriver#PRESENT_AFTER_ATTRIBUTE} are taken out of the DOM when the page loads, and put back in place
+ * (counted as a DOM mutation) at the first command after their delay.
+ */
+final class FakePage {
+
+    private static final Set<String> HIDDEN_TAGS = new HashSet<>(Arrays.asList(
+            "head", "script", "style", "title", "meta", "link", "base", "template", "noscript"));
+    private static final Set<String> BLOCK_TAGS = new HashSet<>(Arrays.asList(
+            "address", "article", "aside", "blockquote", "dd", "div", "dl", "dt", "fieldset", "figcaption", "figure", "footer", "form",
+            "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "li", "main", "nav", "ol", "option", "p", "pre", "section", "table", "tr", "ul"));
+    private static final String VISIBLE_KEY = "fake.visible";
+    private static final int SEARCH_CACHE_SIZE = 4096;
+
+    private final String url;
+    private final String source;
+    private final Document document;
+    private final long loadNanos = System.nanoTime();
+    private final List<PendingElement> pendingElements = new ArrayList<>();
+    private final Set<Element> observedTables = new HashSet<>();
+    // Results of the searches since the DOM last changed, by context node and selector
+    private final Map<Node, Map<String, List<Element>>> searchCache = new HashMap<>();
+    private int searchCacheSize;
+    private long mutationCount;
+    private long domVersion;
+    private long searchCacheVersion;
+    private Element focusedElement;
+
+    FakePage(String url, String source) {
+        this.url = url;
+        this.source = source;
+        this.document = HtmlParser.parse(source);
+        NodeList delayed = document.getElementsByTagName("*");
+        List<Element> elements = new ArrayList<>();
+        for (int i = 0; i < delayed.getLength(); i++) {
+            Element element = (Element) delayed.item(i);
+            if (element.hasAttribute(FakeWebDriver.PRESENT_AFTER_ATTRIBUTE)) {
+                elements.add(element);
+            }
+        }
+        for (Element element : elements) {
+            delayPresence(element, millisOf(element, FakeWebDriver.PRESENT_AFTER_ATTRIBUTE));
+        }
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    Document getDocument() {
+        return document;
+    }
+
+    String getTitle() {
+        NodeList titles = document.getElementsByTagName("title");
+        return titles.getLength() == 0 ? "" : titles.item(0).getTextContent().trim();
+    }
+
+    /**
+     * @return milliseconds since the page was loaded
+     */
+    long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadNanos);
+    }
+
+    /**
+     * @return number of times the DOM tree or text changed since the page was loaded, the version read by {@link FakeScripts} for div tables
+     */
+    long getMutationCount() {
+        return mutationCount;
+    }
+
+    void mutated() {
+        mutationCount++;
+        domVersion++;
+    }
+
+    /**
+     * Attributes changed: searches must run again, but it is not a mutation observed by the div tables
+     */
+    void attributesChanged() {
+        domVersion++;
+    }
+
+    /**
+     * @return elements found by <code>search</code> from <code>context</code>, computed again only if the DOM changed since the same search
+     * (evaluating an xpath walks the whole document, which would dominate the cost of a wait on large pages)
+     */
+    List<Element> search(Node context, String selector, Function<Node, List<Element>> search) {
+        if (searchCacheVersion != domVersion || searchCacheSize >= SEARCH_CACHE_SIZE) {
+            searchCache.clear();
+            searchCacheSize = 0;
+            searchCacheVersion = domVersion;
+        }
+        Map<String, List<Element>> results = searchCache.computeIfAbsent(context, node -> new HashMap<>());
+        List<Element> found = results.get(selector);
+        if (found == null) {
+            found = Collections.unmodifiableList(search.apply(context));
+            results.put(selector, found);
+            searchCacheSize++;
+        }
+        return found;
+    }
+
+    Element getFocusedElement() {
+        return focusedElement != null && isAttached(focusedElement) ? focusedElement : body();
+    }
+
+    void focus(Element element) {
+        focusedElement = element;
+    }
+
+    Set<Element> getObservedTables() {
+        return observedTables;
+    }
+
+    /**
+     * Put back in place the delayed elements which are due
+     */
+    void tick() {
+        if (pendingElements.isEmpty()) {
+            return;
+        }
+        long elapsedMillis = elapsedMillis();
+        Iterator<PendingElement> iterator = pendingElements.iterator();
+        while (iterator.hasNext()) {
+            PendingElement pending = iterator.next();
+            if (pending.dueMillis <= elapsedMillis) {
+                iterator.remove();
+                pending.placeholder.getParentNode().replaceChild(pending.element, pending.placeholder);
+                mutated();
+            }
+        }
+    }
+
+    /**
+     * Take <code>element</code> out of the DOM until <code>delayMillis</code> after the page was loaded
+     */
+    void delayPresence(Element element, long delayMillis) {
+        Node parent = element.getParentNode();
+        if (parent == null) {
+            return;
+        }
+        Comment placeholder = document.createComment("fake: delayed element");
+        parent.replaceChild(placeholder, element);
+        pendingElements.add(new PendingElement(element, placeholder, delayMillis));
+        mutated();
+    }
+
+    /**
+     * @param visible <code>true</code> or <code>false</code> to force whether <code>element</code> itself is displayed, <code>null</code> to apply the page rules again
+     */
+    void setVisible(Element element, Boolean visible) {
+        element.setUserData(VISIBLE_KEY, visible, null);
+    }
+
+    boolean isAttached(Node node) {
+        Node current = node;
+        while (current.getParentNode() != null) {
+            current = current.getParentNode();
+        }
+        return current == document;
+    }
+
+    /**
+     * Approximation of WebDriver's displayed check: the element and all its ancestors are rendered.
+     * Only inline styles are read, there is no style sheet nor layout.
+     */
+    boolean isDisplayed(Element element) {
+        if (!isAttached(element)) {
+            return false;
+        }
+        for (Node node = element; node != null && node.getNodeType() == Node.ELEMENT_NODE; node = node.getParentNode()) {
+            if (isHidden((Element) node)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return text of <code>element</code> as WebDriver reads it: only displayed descendants, one line per block, whitespace collapsed
+     */
+    String visibleText(Element element) {
+        if (!isDisplayed(element)) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        appendVisibleText(element, sb);
+        return normalize(sb.toString());
+    }
+
+    /**
+     * @return <code>innerText</code> of <code>element</code> as read by page scripts: its visible text, or all its text if it is not displayed
+     */
+    String innerText(Element element) {
+        return isDisplayed(element) ? visibleText(element) : normalize(element.getTextContent());
+    }
+
+    Map<String, String> styleOf(Element element) {
+        Map<String, String> style = new HashMap<>();
+        for (String declaration : element.getAttribute("style").split(";")) {
+            int colon = declaration.indexOf(':');
+            if (colon > 0) {
+                style.put(declaration.substring(0, colon).trim().toLowerCase(), declaration.substring(colon + 1).trim().toLowerCase());
+            }
+        }
+        return style;
+    }
+
+    private boolean isHidden(Element element) {
+        Object visible = element.getUserData(VISIBLE_KEY);
+        if (visible != null) {
+            return !((Boolean) visible);
+        }
+        if (HIDDEN_TAGS.contains(element.getTagName()) || element.hasAttribute("hidden")
+                || ("input".equals(element.getTagName()) && "hidden".equalsIgnoreCase(element.getAttribute("type")))) {
+            return true;
+        }
+        if (element.hasAttribute(FakeWebDriver.VISIBLE_AFTER_ATTRIBUTE) && elapsedMillis() < millisOf(element, FakeWebDriver.VISIBLE_AFTER_ATTRIBUTE)) {
+            return true;
+        }
+        if (element.hasAttribute(FakeWebDriver.HIDDEN_AFTER_ATTRIBUTE) && elapsedMillis() >= millisOf(element, FakeWebDriver.HIDDEN_AFTER_ATTRIBUTE)) {
+            return true;
+        }
+        if (!element.hasAttribute("style")) {
+            return false;
+        }
+        Map<String, String> style = styleOf(element);
+        return "none".equals(style.get("display")) || "hidden".equals(style.get("visibility")) || "collapse".equals(style.get("visibility"))
+                || "0".equals(style.get("opacity"));
+    }
+
+    private void appendVisibleText(Node node, StringBuilder sb) {
+        if (node.getNodeType() == Node.TEXT_NODE) {
+            sb.append(node.getNodeValue());
+            return;
+        }
+        if (node.getNodeType() != Node.ELEMENT_NODE || isHidden((Element) node)) {
+            return;
+        }
+        String tag = ((Element) node).getTagName();
+        if ("br".equals(tag)) {
+            sb.append('\n');
+            return;
+        }
+        boolean block = BLOCK_TAGS.contains(tag);
+        if (block) {
+            sb.append('\n');
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            appendVisibleText(child, sb);
+        }
+        if (block) {
+            sb.append('\n');
+        } else if ("td".equals(tag) || "th".equals(tag)) {
+            sb.append(' ');
+        }
+    }
+
+    private Element body() {
+        NodeList bodies = document.getElementsByTagName("body");
+        return (Element) bodies.item(0);
+    }
+
+    private static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        // Pending separator before the next word: 0 none, ' ' space, '\n' line break
+        char separator = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                separator = '\n';
+            } else if (Character.isWhitespace(c) || c == '\u00a0') {
+                if (separator == 0) {
+                    separator = ' ';
+                }
+            } else {
+                if (separator != 0 && sb.length() > 0) {
+                    sb.append(separator);
+                }
+                separator = 0;
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    static long millisOf(Element element, String attribute) {
+        try {
+            return Long.parseLong(element.getAttribute(attribute).trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException(String.format("Invalid %s=\"%s\" on <%s>, expecting milliseconds", attribute, element.getAttribute(attribute), element.getTagName()), e);
+        }
+    }
+
+    private static final class PendingElement {
+        private final Element element;
+        private final Comment placeholder;
+        private final long dueMillis;
+
+        private PendingElement(Element element, Comment placeholder, long dueMillis) {
+            this.element = element;
+            this.placeholder = placeholder;
+            this.dueMillis = dueMillis;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.my.automationtest.service.fake;
+
+import org.my.automationtest.locator.helper.DivTableHelper;
+import org.my.automationtest.locator.helper.TableSnapshot;
+import org.my.automationtest.service.ActionBatch;
+import org.my.automationtest.service.PageScripts;
+import org.my.automationtest.service.WebSessionPool;
+import org.my.automationtest.service.screenshot.FullPageScreenshot;
+import org.openqa.selenium.InvalidSelectorException;
+import org.openqa.selenium.JavascriptException;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Java emulation of the scripts the library injects in the page, looked up by the constant each script is defined with (see {@link PageScripts#define(String)}).<br/><br/>
+ * Results are those of the scripts in a browser, except that there is no layout: displayed elements all have the same bounds,
+ * and the div table script doesn't fall back to comparing the bounds of cells.
+ */
+final class FakeScripts {
+
+    private static final Set<String> UNSUPPORTED_INPUT_TYPES = new HashSet<>(Arrays.asList(
+            "checkbox", "radio", "file", "button", "submit", "reset", "image", "color", "range"));
+    private static final Map<String, FakeWebDriver.ScriptHandler> HANDLERS = new HashMap<>();
+
+    static {
+        // Scripts of WebUI
+        HANDLERS.put(PageScripts.JS_SCROLL_INTO_VIEW, (webDriver, args) -> null);
+        HANDLERS.put(PageScripts.JS_SCROLL_XPATH_INTO_VIEW, (webDriver, args) -> null);
+        HANDLERS.put(PageScripts.JS_OPEN_IN_NEW_TAB, (webDriver, args) -> {
+            webDriver.openWindowInBackground((String) args[0]);
+            return null;
+        });
+        HANDLERS.put(PageScripts.JS_READ_ELEMENT_STATES, FakeScripts::readElementStates);
+        HANDLERS.put(PageScripts.JS_SET_VALUES, FakeScripts::setValues);
+        HANDLERS.put(PageScripts.JS_READ_REGIONS, FakeScripts::readRegions);
+        HANDLERS.put(ActionBatch.JS_PREPARE_SEGMENT, (webDriver, args) -> {
+            // Needs hit testing, ActionBatch runs the steps one by one instead
+            throw new JavascriptException("FakeWebDriver does not prepare batches of steps in one script");
+        });
+        // Scripts of TableSnapshot and DivTableHelper
+        HANDLERS.put(TableSnapshot.JS_READ_TABLE_INDEX, FakeScripts::readTableIndex);
+        HANDLERS.put(TableSnapshot.JS_READ_TABLE_VERSION, FakeScripts::readTableVersion);
+        HANDLERS.put(TableSnapshot.JS_READ_TABLE_ROWS, FakeScripts::readTableRows);
+        HANDLERS.put(DivTableHelper.JS_READ_DIV_TABLE, FakeScripts::readDivTable);
+        // Scripts of WebSessionPool and FullPageScreenshot
+        HANDLERS.put(WebSessionPool.JS_CLEAR_STORAGE, (webDriver, args) -> null);
+        HANDLERS.put(FullPageScreenshot.JS_PAGE_METRICS, (webDriver, args) -> {
+            // The page is never taller than the window
+            long height = webDriver.windowSize().getHeight();
+            return Arrays.asList(height, height, 0L, 0L);
+        });
+        HANDLERS.put(FullPageScreenshot.JS_SCROLL_TO, (webDriver, args) -> 0L);
+    }
+
+    private FakeScripts() {
+    }
+
+    /**
+     * @return emulation of <code>script</code>, <code>null</code> if it is not a script of the library
+     * @throws UnsupportedCommandException if <code>script</code> is a script of the library which is not emulated, so it doesn't silently go unanswered
+     */
+    static FakeWebDriver.ScriptHandler handlerOf(String script) {
+        FakeWebDriver.ScriptHandler handler = HANDLERS.get(script);
+        if (handler == null && PageScripts.isLibraryScript(script)) {
+            throw new UnsupportedCommandException(String.format("FakeWebDriver does not emulate this script of the library, add it to FakeScripts: %s",
+                    script.length() > 200 ? script.substring(0, 200) + "..." : script));
+        }
+        return handler;
+    }
+
+    // arguments: [xpath, css selector, context element] of each element, names of the attributes to read
+    private static Object readElementStates(FakeWebDriver webDriver, Object... args) {
+        FakePage page = webDriver.currentPage();
+        List<Object> states = new ArrayList<>();
+        for (Object spec : (List<?>) args[0]) {
+            Element element = find(webDriver, (List<?>) spec);
+            if (element == null) {
+                states.add(null);
+                continue;
+            }
+            boolean visible = page.isDisplayed(element);
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            for (Object name : (List<?>) args[1]) {
+                attributes.put((String) name, element.hasAttribute((String) name) ? element.getAttribute((String) name) : null);
+            }
+            states.add(Arrays.asList(visible, visible ? page.innerText(element).trim() : "", attributes));
+        }
+        return states;
+    }
+
+    // arguments: [xpath, css selector, context element] or element of each field, value of each field
+    private static Object setValues(FakeWebDriver webDriver, Object... args) {
+        FakePage page = webDriver.currentPage();
+        List<?> specs = (List<?>) args[0];
+        List<?> values = (List<?>) args[1];
+        List<Object> results = new ArrayList<>();
+        for (int i = 0; i < specs.size(); i++) {
+            Element element;
+            try {
+                element = specs.get(i) instanceof List ? find(webDriver, (List<?>) specs.get(i)) : elementOf(specs.get(i));
+            } catch (RuntimeException e) {
+                element = null;
+            }
+            if (element == null || !page.isDisplayed(element)) {
+                results.add("missing");
+            } else {
+                results.add(setValue(page, element, (String) values.get(i)));
+            }
+        }
+        return results;
+    }
+
+    private static String setValue(FakePage page, Element element, String value) {
+        String tag = element.getTagName();
+        if (element.hasAttribute("disabled") || (("input".equals(tag) || "textarea".equals(tag)) && element.hasAttribute("readonly"))) {
+            return "unsupported";
+        }
+        if ("input".equals(tag) || "textarea".equals(tag)) {
+            if (UNSUPPORTED_INPUT_TYPES.contains(element.getAttribute("type").toLowerCase())) {
+                return "unsupported";
+            }
+            String typed = value;
+            try {
+                int maxLength = Integer.parseInt(element.getAttribute("maxlength").trim());
+                if (maxLength > 0 && typed.length() > maxLength) {
+                    typed = typed.substring(0, maxLength);
+                }
+            } catch (NumberFormatException e) {
+                // No maxlength
+            }
+            page.focus(element);
+            FakeWebElement.setValueOf(element, typed);
+        } else if (FakeWebElement.isContentEditable(element)) {
+            page.focus(element);
+            element.setTextContent(value);
+            page.mutated();
+        } else {
+            return "unsupported";
+        }
+        return "set";
+    }
+
+    // arguments: [xpath, css, context] of each locator
+    private static Object readRegions(FakeWebDriver webDriver, Object... args) {
+        FakePage page = webDriver.currentPage();
+        List<Object> regions = new ArrayList<>();
+        for (Object spec : (List<?>) args[0]) {
+            List<?> locator = (List<?>) spec;
+            List<Element> elements;
+            try {
+                Node context = contextOf(webDriver, locator.get(2));
+                elements = locator.get(1) != null
+                        ? webDriver.searchCss(context, (String) locator.get(1))
+                        : webDriver.searchXPath(context, (String) locator.get(0));
+            } catch (InvalidSelectorException e) {
+                elements = Collections.emptyList();
+            }
+            for (Element element : elements) {
+                if (page.isDisplayed(element)) {
+                    regions.add(Arrays.asList(0L, 0L, (long) FakeWebElement.DISPLAYED_SIZE.getWidth(), (long) FakeWebElement.DISPLAYED_SIZE.getHeight()));
+                }
+            }
+        }
+        return regions;
+    }
+
+    // arguments: table element, number of columns
+    private static Object readTableIndex(FakeWebDriver webDriver, Object... args) {
+        FakePage page = webDriver.currentPage();
+        Element table = elementOf(args[0]);
+        int columns = ((Number) args[1]).intValue();
+        page.getObservedTables().add(table);
+        List<String> headers = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        long count = 0;
+        for (Element cell : cellsOf(table)) {
+            if (count < columns || count % columns == 0) {
+                String text = page.innerText(cell).trim();
+                if (count < columns) {
+                    headers.add(text);
+                }
+                if (count % columns == 0) {
+                    keys.add(text);
+                }
+            }
+            count++;
+        }
+        Map<String, Object> index = new LinkedHashMap<>();
+        // The mutations of the whole page stand for those of the table
+        index.put("version", page.getMutationCount());
+        index.put("count", count);
+        index.put("headers", headers);
+        index.put("keys", keys);
+        return index;
+    }
+
+    // arguments: table xpath
+    private static Object readTableVersion(FakeWebDriver webDriver, Object... args) {
+        FakePage page = webDriver.currentPage();
+        List<Element> tables = webDriver.searchXPath(page.getDocument(), (String) args[0]);
+        return tables.isEmpty() || !page.getObservedTables().contains(tables.get(0)) ? -1L : page.getMutationCount();
+    }
+
+    // arguments: table xpath or element, number of columns, first row, number of rows
+    private static Object readTableRows(FakeWebDriver webDriver, Object... args) {
+        FakePage page = webDriver.currentPage();
+        Element table;
+        if (args[0] instanceof String) {
+            List<Element> tables = webDriver.searchXPath(page.getDocument(), (String) args[0]);
+            table = tables.isEmpty() ? null : tables.get(0);
+        } else {
+            table = elementOf(args[0]);
+        }
+        if (table == null) {
+            return null;
+        }
+        int columns = ((Number) args[1]).intValue();
+        long first = ((Number) args[2]).longValue() * columns;
+        long last = first + ((Number) args[3]).longValue() * columns;
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row = null;
+        long count = 0;
+        for (Node cell = table.getFirstChild(); cell != null && count < last; cell = cell.getNextSibling()) {
+            if (cell.getNodeType() != Node.ELEMENT_NODE || !"div".equals(cell.getNodeName())) {
+                continue;
+            }
+            if (count >= first) {
+                if ((count - first) % columns == 0) {
+                    row = new ArrayList<>();
+                    rows.add(row);
+                }
+                row.add(page.innerText((Element) cell).trim());
+            }
+            count++;
+        }
+        return rows;
+    }
+
+    // arguments: table element, elements to be located in the table
+    private static Object readDivTable(FakeWebDriver webDriver, Object... args) {
+        FakePage page = webDriver.currentPage();
+        List<Element> divs = cellsOf(elementOf(args[0]));
+        List<String> cells = new ArrayList<>(divs.size());
+        for (Element div : divs) {
+            cells.add(page.innerText(div).trim());
+        }
+        List<Long> indexes = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            Element target = elementOf(args[i]);
+            long index = -1;
+            for (int j = 0; j < divs.size() && index < 0; j++) {
+                for (Node node = target; node != null; node = node.getParentNode()) {
+                    if (node == divs.get(j)) {
+                        index = j;
+                        break;
+                    }
+                }
+            }
+            indexes.add(index);
+        }
+        Map<String, Object> table = new LinkedHashMap<>();
+        table.put("cells", cells);
+        table.put("indexes", indexes);
+        return table;
+    }
+
+    /**
+     * @return element of <code>find(xpath, css, context)</code>: first one matching the css selector if any, the xpath otherwise, <code>null</code> if none or invalid
+     */
+    private static Element find(FakeWebDriver webDriver, List<?> spec) {
+        try {
+            Node context = contextOf(webDriver, spec.get(2));
+            List<Element> found = spec.get(1) != null
+                    ? webDriver.searchCss(context, (String) spec.get(1))
+                    : webDriver.searchXPath(context, (String) spec.get(0));
+            return found.isEmpty() ? null : found.get(0);
+        } catch (InvalidSelectorException e) {
+            return null;
+        }
+    }
+
+    private static Node contextOf(FakeWebDriver webDriver, Object context) {
+        return context == null ? webDriver.currentPage().getDocument() : elementOf(context);
+    }
+
+    private static Element elementOf(Object arg) {
+        if (arg instanceof FakeWebElement) {
+            ((FakeWebElement) arg).checkAttached();
+            return ((FakeWebElement) arg).getDomElement();
+        }
+        return (Element) arg;
+    }
+
+    // Child divs of a div table, in document order
+    private static List<Element> cellsOf(Element table) {
+        List<Element> cells = new ArrayList<>();
+        for (Node child = table.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE && "div".equals(child.getNodeName())) {
+                cells.add((Element) child);
+            }
+        }
+        return cells;
+    }
+}
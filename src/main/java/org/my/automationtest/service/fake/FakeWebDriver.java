@@ -0,0 +1,1099 @@
+package org.my.automationtest.service.fake;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.InvalidSelectorException;
+import org.openqa.selenium.JavascriptException;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoAlertPresentException;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.NoSuchFrameException;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.Interactive;
+import org.openqa.selenium.interactions.Sequence;
+import org.openqa.selenium.logging.Logs;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.ImageIO;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-memory {@link WebDriver} serving HTML fixtures, to run page objects and {@link org.my.automationtest.service.WebUI} without a browser:
+ * offline tests of the library and of locators, and benchmarks measuring the client-side cost only.<br/><br/>
+ * Pages are parsed into a DOM, searched with XPath 1.0 and the usual CSS selectors. There is no layout nor style sheet:
+ * an element is displayed unless it or one of its ancestors is hidden by a tag, an attribute or an inline style,
+ * and timing is simulated with {@link #PRESENT_AFTER_ATTRIBUTE}, {@link #VISIBLE_AFTER_ATTRIBUTE} and {@link #HIDDEN_AFTER_ATTRIBUTE} in fixtures,
+ * or with {@link #delayPresence(By, long)}, {@link #delayVisibility(By, long)} and {@link #hideAfter(By, long)} on the loaded page.<br/><br/>
+ * JavaScript is not run: the scripts {@link org.my.automationtest.service.WebUI} injects are emulated in Java,
+ * other scripts must be answered by {@link #onScript(String, ScriptHandler)}, and asynchronous scripts are unsupported so waits fall back to polling.
+ * Every command takes {@link #setCommandLatency(long)} to simulate the round trip to a browser.
+ * One instance must only be driven by one thread.
+ */
+public class FakeWebDriver implements WebDriver, JavascriptExecutor, TakesScreenshot, Interactive {
+
+    /**
+     * Attribute of a fixture element taken out of the page when it loads and inserted back after the given milliseconds
+     */
+    public static final String PRESENT_AFTER_ATTRIBUTE = "data-fake-present-after";
+    /**
+     * Attribute of a fixture element which is not displayed until the given milliseconds after the page loads
+     */
+    public static final String VISIBLE_AFTER_ATTRIBUTE = "data-fake-visible-after";
+    /**
+     * Attribute of a fixture element which is no longer displayed from the given milliseconds after the page loads
+     */
+    public static final String HIDDEN_AFTER_ATTRIBUTE = "data-fake-hidden-after";
+
+    public static final String BLANK_URL = "about:blank";
+    public static final String HTML_URL = "about:fixture";
+
+    private static final String BLANK_PAGE = "<html><head></head><body></body></html>";
+    private static final Dimension DEFAULT_WINDOW_SIZE = new Dimension(1280, 800);
+    private static final long IMPLICIT_WAIT_POLLING_MILLIS = 10;
+    private static final int XPATH_CACHE_SIZE = 256;
+
+    private static volatile long defaultCommandLatency = 0;
+    private static volatile Path defaultFixtureDirectory = null;
+
+    /**
+     * Answer of a script run by {@link #executeScript(String, Object...)}
+     */
+    @FunctionalInterface
+    public interface ScriptHandler {
+        /**
+         * @param webDriver driver running the script, its page is read or changed with {@link #getDocument()} and {@link #updatePage(Consumer)}
+         * @param args arguments of the script, web elements being {@link FakeWebElement}
+         * @return value of the script: <code>null</code>, Boolean, Number, String, {@link WebElement} or {@link Element}, or a List or Map of those
+         */
+        Object execute(FakeWebDriver webDriver, Object... args);
+    }
+
+    private final Map<String, String> pages = new HashMap<>();
+    private final Map<String, ScriptHandler> scriptHandlers = new LinkedHashMap<>();
+    private final List<ClickHandler> clickHandlers = new ArrayList<>();
+    private final Map<String, FakeWindow> windows = new LinkedHashMap<>();
+    private final Map<String, Cookie> cookies = new LinkedHashMap<>();
+    private final XPath xpath = XPathFactory.newInstance().newXPath();
+    private final Map<String, XPathExpression> xpathCache = new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+            return size() > XPATH_CACHE_SIZE;
+        }
+    };
+    private FakeWindow currentWindow;
+    private int windowCount;
+    private long commandLatencyMillis = defaultCommandLatency;
+    private Path fixtureDirectory = defaultFixtureDirectory;
+    private long implicitWaitMillis;
+    private Dimension windowSize = DEFAULT_WINDOW_SIZE;
+    private Point windowPosition = new Point(0, 0);
+    private long commandCount;
+    private int findFailures;
+    private int clickFailures;
+    private boolean quit;
+
+    public FakeWebDriver() {
+        currentWindow = openWindow(new FakePage(BLANK_URL, BLANK_PAGE));
+    }
+
+    public static long getDefaultCommandLatency() {
+        return defaultCommandLatency;
+    }
+
+    /**
+     * @param millis latency of each command of drivers created from now on, see {@link #setCommandLatency(long)}
+     */
+    public static void setDefaultCommandLatency(long millis) {
+        defaultCommandLatency = Math.max(0, millis);
+    }
+
+    public static Path getDefaultFixtureDirectory() {
+        return defaultFixtureDirectory;
+    }
+
+    /**
+     * @param directory directory of the fixture files of drivers created from now on, see {@link #setFixtureDirectory(Path)}
+     */
+    public static void setDefaultFixtureDirectory(Path directory) {
+        defaultFixtureDirectory = directory;
+    }
+
+    public long getCommandLatency() {
+        return commandLatencyMillis;
+    }
+
+    /**
+     * @param millis time each command sleeps before running, 0 for commands answering instantly
+     */
+    public FakeWebDriver setCommandLatency(long millis) {
+        this.commandLatencyMillis = Math.max(0, millis);
+        return this;
+    }
+
+    public Path getFixtureDirectory() {
+        return fixtureDirectory;
+    }
+
+    /**
+     * @param directory directory searched for a page which is not registered with {@link #addPage(String, String)}:
+     *                  the path of its URL is resolved against it, <code>index.html</code> for an empty path, <code>.html</code> being added when there is no extension
+     */
+    public FakeWebDriver setFixtureDirectory(Path directory) {
+        this.fixtureDirectory = directory;
+        return this;
+    }
+
+    /**
+     * @return number of commands received by this driver and its elements
+     */
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Serve <code>html</code> at <code>url</code>. Without a registered page, <code>data:text/html,</code>, <code>classpath:</code> and <code>file:</code> URLs
+     * are loaded as such, other URLs from the fixture directory.
+     */
+    public FakeWebDriver addPage(String url, String html) {
+        pages.put(url, html);
+        return this;
+    }
+
+    /**
+     * Load <code>html</code> in the current window, at {@link #HTML_URL}
+     */
+    public FakeWebDriver loadHtml(String html) {
+        currentWindow().open(new FakePage(HTML_URL, html));
+        return this;
+    }
+
+    /**
+     * Answer the scripts containing <code>fragment</code> with <code>handler</code>, before the scripts emulated by this driver
+     */
+    public FakeWebDriver onScript(String fragment, ScriptHandler handler) {
+        scriptHandlers.put(fragment, handler);
+        return this;
+    }
+
+    /**
+     * Change the page when an element matched by <code>by</code>, or one of its descendants, is clicked, as a click listener would
+     */
+    public FakeWebDriver onClick(By by, Consumer<Document> action) {
+        clickHandlers.add(new ClickHandler(by, action));
+        return this;
+    }
+
+    /**
+     * @param failures number of next lookups failing at once: <code>findElement</code> throws {@link NoSuchElementException}, <code>findElements</code> finds nothing
+     */
+    public FakeWebDriver failNextFinds(int failures) {
+        this.findFailures = failures;
+        return this;
+    }
+
+    /**
+     * @param failures number of next clicks throwing {@link org.openqa.selenium.ElementClickInterceptedException}
+     */
+    public FakeWebDriver interceptNextClicks(int failures) {
+        this.clickFailures = failures;
+        return this;
+    }
+
+    /**
+     * Take the elements matched by <code>by</code> out of the current page, and insert them back <code>millis</code> from now
+     */
+    public FakeWebDriver delayPresence(By by, long millis) {
+        FakePage page = currentPage();
+        for (Element element : elementsOf(by)) {
+            page.delayPresence(element, page.elapsedMillis() + millis);
+        }
+        return this;
+    }
+
+    /**
+     * Hide the elements matched by <code>by</code> in the current page until <code>millis</code> from now
+     */
+    public FakeWebDriver delayVisibility(By by, long millis) {
+        FakePage page = currentPage();
+        for (Element element : elementsOf(by)) {
+            element.setAttribute(VISIBLE_AFTER_ATTRIBUTE, String.valueOf(page.elapsedMillis() + millis));
+        }
+        page.attributesChanged();
+        return this;
+    }
+
+    /**
+     * Hide the elements matched by <code>by</code> in the current page from <code>millis</code> from now
+     */
+    public FakeWebDriver hideAfter(By by, long millis) {
+        FakePage page = currentPage();
+        for (Element element : elementsOf(by)) {
+            element.setAttribute(HIDDEN_AFTER_ATTRIBUTE, String.valueOf(page.elapsedMillis() + millis));
+        }
+        page.attributesChanged();
+        return this;
+    }
+
+    /**
+     * @param visible <code>true</code> or <code>false</code> to force whether the elements matched by <code>by</code> are displayed themselves,
+     *                <code>null</code> to apply the page rules again
+     */
+    public FakeWebDriver setVisible(By by, Boolean visible) {
+        FakePage page = currentPage();
+        for (Element element : elementsOf(by)) {
+            page.setVisible(element, visible);
+        }
+        return this;
+    }
+
+    /**
+     * @return DOM of the current page, to be changed only through {@link #updatePage(Consumer)}
+     */
+    public Document getDocument() {
+        return currentPage().getDocument();
+    }
+
+    /**
+     * Change the DOM of the current page, as the page would on its own. The change is counted as a mutation by the table observers.
+     */
+    public FakeWebDriver updatePage(Consumer<Document> update) {
+        FakePage page = currentPage();
+        page.tick();
+        update.accept(page.getDocument());
+        page.mutated();
+        return this;
+    }
+
+    @Override
+    public void get(String url) {
+        command();
+        navigateTo(url);
+    }
+
+    @Override
+    public String getCurrentUrl() {
+        command();
+        return currentPage().getUrl();
+    }
+
+    @Override
+    public String getTitle() {
+        command();
+        return currentPage().getTitle();
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        command();
+        return find(currentPage().getDocument(), by, false);
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        command();
+        return find(currentPage().getDocument(), by, true).get(0);
+    }
+
+    /**
+     * @return source of the current page as it was loaded, changes made since are not serialized
+     */
+    @Override
+    public String getPageSource() {
+        command();
+        return currentPage().getSource();
+    }
+
+    @Override
+    public void close() {
+        command();
+        windows.remove(currentWindow().handle);
+        currentWindow = null;
+        if (windows.isEmpty()) {
+            quit = true;
+        }
+    }
+
+    @Override
+    public void quit() {
+        quit = true;
+        windows.clear();
+        currentWindow = null;
+    }
+
+    @Override
+    public Set<String> getWindowHandles() {
+        command();
+        return new LinkedHashSet<>(windows.keySet());
+    }
+
+    @Override
+    public String getWindowHandle() {
+        command();
+        return currentWindow().handle;
+    }
+
+    @Override
+    public TargetLocator switchTo() {
+        return new FakeTargetLocator();
+    }
+
+    @Override
+    public Navigation navigate() {
+        return new FakeNavigation();
+    }
+
+    @Override
+    public Options manage() {
+        return new FakeOptions();
+    }
+
+    @Override
+    public Object executeScript(String script, Object... args) {
+        command();
+        for (Map.Entry<String, ScriptHandler> entry : scriptHandlers.entrySet()) {
+            if (script.contains(entry.getKey())) {
+                Object value = normalize(entry.getValue().execute(this, args));
+                // The handler may have changed attributes of the page
+                currentPage().attributesChanged();
+                return value;
+            }
+        }
+        ScriptHandler handler = FakeScripts.handlerOf(script);
+        if (handler == null) {
+            throw new JavascriptException(String.format("FakeWebDriver cannot run this script, answer it with onScript(): %s",
+                    script.length() > 200 ? script.substring(0, 200) + "..." : script));
+        }
+        return normalize(handler.execute(this, args));
+    }
+
+    /**
+     * Asynchronous scripts are not supported, callers fall back to polling as they do with drivers lacking the command
+     */
+    @Override
+    public Object executeAsyncScript(String script, Object... args) {
+        command();
+        throw new UnsupportedCommandException("FakeWebDriver does not run asynchronous scripts");
+    }
+
+    /**
+     * @return blank white screenshot of the window size, there is no rendering
+     */
+    @Override
+    public <X> X getScreenshotAs(OutputType<X> target) {
+        command();
+        return target.convertFromPngBytes(blankPng(windowSize.getWidth(), windowSize.getHeight()));
+    }
+
+    /**
+     * Replay the actions tick by tick: a pointer pressed and released over an element clicks it, keys are typed into the focused element
+     */
+    @Override
+    public void perform(Collection<Sequence> actions) {
+        command();
+        List<List<?>> sequences = new ArrayList<>();
+        int ticks = 0;
+        for (Sequence sequence : actions) {
+            List<?> encoded = (List<?>) sequence.toJson().get("actions");
+            sequences.add(encoded);
+            ticks = Math.max(ticks, encoded.size());
+        }
+        FakeWebElement pointerTarget = null;
+        FakeWebElement pressedTarget = null;
+        for (int tick = 0; tick < ticks; tick++) {
+            for (List<?> sequence : sequences) {
+                if (tick >= sequence.size()) {
+                    continue;
+                }
+                Map<?, ?> action = (Map<?, ?>) sequence.get(tick);
+                Object type = action.get("type");
+                if ("pointerMove".equals(type) && action.get("origin") instanceof FakeWebElement) {
+                    pointerTarget = (FakeWebElement) action.get("origin");
+                } else if ("pointerDown".equals(type)) {
+                    pressedTarget = pointerTarget;
+                } else if ("pointerUp".equals(type)) {
+                    if (pressedTarget != null && pressedTarget.equals(pointerTarget)) {
+                        pressedTarget.checkAttached();
+                        pressedTarget.performClick();
+                    }
+                    pressedTarget = null;
+                } else if ("keyDown".equals(type)) {
+                    wrap(currentPage().getFocusedElement()).performType(String.valueOf(action.get("value")));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void resetInputState() {
+        command();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FakeWebDriver (%s)", currentWindow == null ? "no window" : currentWindow.handle + ": " + currentWindow.page().getUrl());
+    }
+
+    /**
+     * Start a command: fail if the session is over, simulate the round trip, then insert the delayed elements which are due
+     */
+    void command() {
+        if (quit) {
+            throw new NoSuchSessionException("Session ID is null. Using WebDriver after calling quit()?");
+        }
+        commandCount++;
+        if (commandLatencyMillis > 0) {
+            sleep(commandLatencyMillis);
+        }
+        if (currentWindow != null) {
+            currentWindow.page().tick();
+        }
+    }
+
+    FakePage currentPage() {
+        return currentWindow().page();
+    }
+
+    Dimension windowSize() {
+        return windowSize;
+    }
+
+    FakeWebElement wrap(Element element) {
+        return new FakeWebElement(this, currentPage(), element);
+    }
+
+    boolean consumeClickFailure() {
+        if (clickFailures > 0) {
+            clickFailures--;
+            return true;
+        }
+        return false;
+    }
+
+    void runClickHandlers(Element clicked) {
+        for (ClickHandler handler : clickHandlers) {
+            List<Element> matched = elementsOf(handler.by);
+            for (Node node = clicked; node != null; node = node.getParentNode()) {
+                if (matched.contains(node)) {
+                    updatePage(handler.action);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Look for the elements matched by <code>by</code> from <code>context</code>, polling until the implicit wait elapses
+     * @param single true to throw {@link NoSuchElementException} when nothing is found
+     */
+    List<WebElement> find(Node context, By by, boolean single) {
+        if (findFailures > 0) {
+            findFailures--;
+            if (single) {
+                throw new NoSuchElementException(String.format("Injected failure of %s", by));
+            }
+            return Collections.emptyList();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(implicitWaitMillis);
+        while (true) {
+            List<WebElement> found = wrapAll(search(context, by));
+            if (!found.isEmpty() || System.nanoTime() >= deadline) {
+                if (single && found.isEmpty()) {
+                    throw new NoSuchElementException(String.format("Unable to locate element: %s", by));
+                }
+                return single ? Collections.singletonList(found.get(0)) : found;
+            }
+            sleep(IMPLICIT_WAIT_POLLING_MILLIS);
+            currentPage().tick();
+        }
+    }
+
+    /**
+     * Look up the DOM without running a command. The locators of {@link By} are evaluated here from their kind and their value,
+     * any other locator is handed a search context coming back here for each locator it looks up with {@link SearchContext#findElements(By)}.
+     * Locators calling the locators of {@link By} on the context directly, for ex: {@link org.openqa.selenium.support.pagefactory.ByChained}, are not supported.
+     */
+    private List<Element> search(Node context, By by) {
+        if (by instanceof By.ByXPath) {
+            return searchXPath(context, valueOf(by));
+        }
+        if (by instanceof By.ByCssSelector) {
+            return searchCss(context, valueOf(by));
+        }
+        if (by instanceof By.ById) {
+            return searchXPath(context, String.format(".//*[@id = %s]", xpathLiteral(valueOf(by))));
+        }
+        if (by instanceof By.ByName) {
+            return searchXPath(context, String.format(".//*[@name = %s]", xpathLiteral(valueOf(by))));
+        }
+        if (by instanceof By.ByClassName) {
+            return searchXPath(context, String.format(".//*[contains(concat(' ', normalize-space(@class), ' '), %s)]", xpathLiteral(" " + valueOf(by) + " ")));
+        }
+        if (by instanceof By.ByTagName) {
+            return searchCss(context, valueOf(by));
+        }
+        if (by instanceof By.ByLinkText) {
+            return searchLinks(context, valueOf(by), false);
+        }
+        if (by instanceof By.ByPartialLinkText) {
+            return searchLinks(context, valueOf(by), true);
+        }
+        List<Element> elements = new ArrayList<>();
+        for (WebElement element : by.findElements(new Searcher(context))) {
+            elements.add(((FakeWebElement) element).getDomElement());
+        }
+        return elements;
+    }
+
+    private List<Element> searchLinks(Node context, String text, boolean partial) {
+        FakePage page = currentPage();
+        List<Element> links = new ArrayList<>();
+        for (Element link : searchCss(context, "a[href]")) {
+            String linkText = page.visibleText(link);
+            if (partial ? linkText.contains(text) : linkText.equals(text.trim())) {
+                links.add(link);
+            }
+        }
+        return links;
+    }
+
+    // The locators of By only expose their value in toString(), for ex: "By.xpath: //div"
+    private static String valueOf(By by) {
+        String description = by.toString();
+        return description.substring(description.indexOf(": ") + 2);
+    }
+
+    private static String xpathLiteral(String value) {
+        if (!value.contains("'")) {
+            return "'" + value + "'";
+        }
+        if (!value.contains("\"")) {
+            return "\"" + value + "\"";
+        }
+        return "concat('" + value.replace("'", "', \"'\", '") + "')";
+    }
+
+    private List<WebElement> wrapAll(List<Element> elements) {
+        List<WebElement> wrapped = new ArrayList<>(elements.size());
+        for (Element element : elements) {
+            wrapped.add(wrap(element));
+        }
+        return wrapped;
+    }
+
+    List<Element> searchXPath(Node context, String expression) {
+        return currentPage().search(context, "xpath:" + expression, node -> evaluateXPath(node, expression));
+    }
+
+    List<Element> searchCss(Node context, String selector) {
+        return currentPage().search(context, "css:" + selector, node -> CssSelector.compile(selector).select(node));
+    }
+
+    private List<Element> evaluateXPath(Node context, String expression) {
+        NodeList nodes;
+        try {
+            XPathExpression compiled = xpathCache.get(expression);
+            if (compiled == null) {
+                compiled = xpath.compile(expression);
+                xpathCache.put(expression, compiled);
+            }
+            nodes = (NodeList) compiled.evaluate(context, XPathConstants.NODESET);
+        } catch (XPathExpressionException e) {
+            throw new InvalidSelectorException(String.format("Invalid or unsupported xpath expression: %s", expression), e);
+        }
+        List<Element> elements = new ArrayList<>(nodes.getLength());
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node.getNodeType() != Node.ELEMENT_NODE) {
+                throw new InvalidSelectorException(String.format("The result of the xpath expression %s is not an element", expression));
+            }
+            elements.add((Element) node);
+        }
+        return elements;
+    }
+
+    /**
+     * Load <code>url</code> in the current window, as a link or a form would
+     */
+    void navigateTo(String url) {
+        currentWindow().open(new FakePage(url, sourceOf(url)));
+    }
+
+    /**
+     * @return <code>href</code> resolved against the URL of the current page
+     */
+    String resolve(String href) {
+        String base = currentPage().getUrl();
+        if (base.startsWith("classpath:") && !href.contains(":")) {
+            int slash = base.lastIndexOf('/');
+            return (slash > 0 ? base.substring(0, slash + 1) : "classpath:") + href;
+        }
+        try {
+            return URI.create(base).resolve(href).toString();
+        } catch (IllegalArgumentException e) {
+            return href;
+        }
+    }
+
+    /**
+     * Open <code>url</code> in a new window staying in the background, as <code>window.open(url, '_blank')</code>
+     */
+    void openWindowInBackground(String url) {
+        openWindow(new FakePage(url, sourceOf(url)));
+    }
+
+    private FakeWindow openWindow(FakePage page) {
+        FakeWindow window = new FakeWindow("fake-window-" + (++windowCount));
+        window.open(page);
+        windows.put(window.handle, window);
+        return window;
+    }
+
+    private FakeWindow currentWindow() {
+        if (currentWindow == null) {
+            throw new NoSuchWindowException("The current window is closed, switch to another window first");
+        }
+        return currentWindow;
+    }
+
+    private List<Element> elementsOf(By by) {
+        return search(currentPage().getDocument(), by);
+    }
+
+    private String sourceOf(String url) {
+        String html = pages.get(url);
+        if (html != null) {
+            return html;
+        }
+        if (BLANK_URL.equals(url)) {
+            return BLANK_PAGE;
+        }
+        try {
+            if (url.startsWith("data:text/html")) {
+                // '+' is a plus sign in a data URL, not an encoded space
+                return URLDecoder.decode(url.substring(url.indexOf(',') + 1).replace("+", "%2B"), StandardCharsets.UTF_8.name());
+            }
+            if (url.startsWith("classpath:")) {
+                String name = url.substring("classpath:".length()).replaceFirst("^/+", "");
+                InputStream input = Thread.currentThread().getContextClassLoader().getResourceAsStream(name);
+                if (input != null) {
+                    try (InputStream in = input) {
+                        return readFully(in);
+                    }
+                }
+            } else if (url.startsWith("file:")) {
+                return new String(Files.readAllBytes(Paths.get(URI.create(url))), StandardCharsets.UTF_8);
+            } else if (fixtureDirectory != null) {
+                Path fixture = fixtureOf(url);
+                if (fixture != null && Files.isRegularFile(fixture)) {
+                    return new String(Files.readAllBytes(fixture), StandardCharsets.UTF_8);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw new WebDriverException(String.format("Cannot load %s", url), e);
+        }
+        throw new WebDriverException(String.format("FakeWebDriver has no page at %s, register it with addPage() or add it to the fixture directory", url));
+    }
+
+    private Path fixtureOf(String url) {
+        String path;
+        try {
+            path = URI.create(url).getPath();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        path = path == null ? "" : path.replaceFirst("^/+", "");
+        if (path.isEmpty() || path.endsWith("/")) {
+            path += "index.html";
+        } else if (!path.substring(path.lastIndexOf('/') + 1).contains(".")) {
+            path += ".html";
+        }
+        return fixtureDirectory.resolve(path);
+    }
+
+    private Object normalize(Object value) {
+        if (value == null || value instanceof Boolean || value instanceof String || value instanceof WebElement) {
+            return value;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof CharSequence) {
+            return value.toString();
+        }
+        if (value instanceof Element) {
+            return wrap((Element) value);
+        }
+        if (value instanceof Collection) {
+            List<Object> list = new ArrayList<>();
+            for (Object item : (Collection<?>) value) {
+                list.add(normalize(item));
+            }
+            return list;
+        }
+        if (value instanceof Object[]) {
+            List<Object> list = new ArrayList<>();
+            for (Object item : (Object[]) value) {
+                list.add(normalize(item));
+            }
+            return list;
+        }
+        if (value instanceof Map) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                map.put(String.valueOf(entry.getKey()), normalize(entry.getValue()));
+            }
+            return map;
+        }
+        throw new JavascriptException(String.format("Script value of %s cannot be returned to WebDriver", value.getClass().getName()));
+    }
+
+    static byte[] blankPng(int width, int height) {
+        BufferedImage image = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(java.awt.Color.WHITE);
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new WebDriverException("Cannot encode screenshot", e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebDriverException("Interrupted while sleeping", e);
+        }
+    }
+
+    /**
+     * Search context handed to the locators which are not those of {@link By}, looking up the DOM without running a command
+     */
+    private final class Searcher implements SearchContext {
+        private final Node context;
+
+        private Searcher(Node context) {
+            this.context = context;
+        }
+
+        @Override
+        public List<WebElement> findElements(By by) {
+            return wrapAll(search(context, by));
+        }
+
+        @Override
+        public WebElement findElement(By by) {
+            List<WebElement> found = findElements(by);
+            if (found.isEmpty()) {
+                throw new NoSuchElementException(String.format("Unable to locate element: %s", by));
+            }
+            return found.get(0);
+        }
+    }
+
+    private static final class ClickHandler {
+        private final By by;
+        private final Consumer<Document> action;
+
+        private ClickHandler(By by, Consumer<Document> action) {
+            this.by = by;
+            this.action = action;
+        }
+    }
+
+    /**
+     * Window and its history, going back or forward loads the page again from its source
+     */
+    private static final class FakeWindow {
+        private final String handle;
+        private final List<FakePage> history = new ArrayList<>();
+        private int index = -1;
+
+        private FakeWindow(String handle) {
+            this.handle = handle;
+        }
+
+        private FakePage page() {
+            return history.get(index);
+        }
+
+        private void open(FakePage page) {
+            history.subList(index + 1, history.size()).clear();
+            history.add(page);
+            index++;
+        }
+
+        private void move(int offset) {
+            int target = index + offset;
+            if (target >= 0 && target < history.size()) {
+                index = target;
+                reload();
+            }
+        }
+
+        private void reload() {
+            FakePage page = page();
+            history.set(index, new FakePage(page.getUrl(), page.getSource()));
+        }
+    }
+
+    private final class FakeNavigation implements Navigation {
+        @Override
+        public void back() {
+            command();
+            currentWindow().move(-1);
+        }
+
+        @Override
+        public void forward() {
+            command();
+            currentWindow().move(1);
+        }
+
+        @Override
+        public void to(String url) {
+            get(url);
+        }
+
+        @Override
+        public void to(URL url) {
+            get(url.toString());
+        }
+
+        @Override
+        public void refresh() {
+            command();
+            currentWindow().reload();
+        }
+    }
+
+    private final class FakeTargetLocator implements TargetLocator {
+        @Override
+        public WebDriver frame(int index) {
+            command();
+            throw new NoSuchFrameException("FakeWebDriver does not support frames");
+        }
+
+        @Override
+        public WebDriver frame(String nameOrId) {
+            return frame(0);
+        }
+
+        @Override
+        public WebDriver frame(WebElement frameElement) {
+            return frame(0);
+        }
+
+        @Override
+        public WebDriver parentFrame() {
+            command();
+            return FakeWebDriver.this;
+        }
+
+        @Override
+        public WebDriver window(String nameOrHandle) {
+            command();
+            FakeWindow window = windows.get(nameOrHandle);
+            if (window == null) {
+                throw new NoSuchWindowException(String.format("No window with handle %s", nameOrHandle));
+            }
+            currentWindow = window;
+            return FakeWebDriver.this;
+        }
+
+        @Override
+        public WebDriver defaultContent() {
+            command();
+            return FakeWebDriver.this;
+        }
+
+        @Override
+        public WebElement activeElement() {
+            command();
+            return wrap(currentPage().getFocusedElement());
+        }
+
+        @Override
+        public org.openqa.selenium.Alert alert() {
+            command();
+            throw new NoAlertPresentException("FakeWebDriver has no alert");
+        }
+    }
+
+    private final class FakeOptions implements Options {
+        @Override
+        public void addCookie(Cookie cookie) {
+            command();
+            cookies.put(cookie.getName(), cookie);
+        }
+
+        @Override
+        public void deleteCookieNamed(String name) {
+            command();
+            cookies.remove(name);
+        }
+
+        @Override
+        public void deleteCookie(Cookie cookie) {
+            deleteCookieNamed(cookie.getName());
+        }
+
+        @Override
+        public void deleteAllCookies() {
+            command();
+            cookies.clear();
+        }
+
+        @Override
+        public Set<Cookie> getCookies() {
+            command();
+            return new LinkedHashSet<>(cookies.values());
+        }
+
+        @Override
+        public Cookie getCookieNamed(String name) {
+            command();
+            return cookies.get(name);
+        }
+
+        @Override
+        public Timeouts timeouts() {
+            return new FakeTimeouts();
+        }
+
+        @Override
+        public ImeHandler ime() {
+            throw new UnsupportedCommandException("FakeWebDriver has no input method");
+        }
+
+        @Override
+        public Window window() {
+            return new FakeWindowOptions();
+        }
+
+        @Override
+        public Logs logs() {
+            throw new UnsupportedCommandException("FakeWebDriver has no logs");
+        }
+    }
+
+    private final class FakeTimeouts implements Timeouts {
+        @Override
+        public Timeouts implicitlyWait(long time, TimeUnit unit) {
+            command();
+            implicitWaitMillis = unit.toMillis(time);
+            return this;
+        }
+
+        // Scripts run synchronously and pages load at once, these timeouts never elapse
+        @Override
+        public Timeouts setScriptTimeout(long time, TimeUnit unit) {
+            command();
+            return this;
+        }
+
+        @Override
+        public Timeouts pageLoadTimeout(long time, TimeUnit unit) {
+            command();
+            return this;
+        }
+    }
+
+    private final class FakeWindowOptions implements Window {
+        @Override
+        public void setSize(Dimension targetSize) {
+            command();
+            windowSize = targetSize;
+        }
+
+        @Override
+        public void setPosition(Point targetPosition) {
+            command();
+            windowPosition = targetPosition;
+        }
+
+        @Override
+        public Dimension getSize() {
+            command();
+            return windowSize;
+        }
+
+        @Override
+        public Point getPosition() {
+            command();
+            return windowPosition;
+        }
+
+        @Override
+        public void maximize() {
+            command();
+            windowPosition = new Point(0, 0);
+        }
+
+        @Override
+        public void fullscreen() {
+            maximize();
+        }
+    }
+}
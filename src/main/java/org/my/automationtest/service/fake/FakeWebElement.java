@@ -0,0 +1,479 @@
+package org.my.automationtest.service.fake;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.ElementClickInterceptedException;
+import org.openqa.selenium.ElementNotInteractableException;
+import org.openqa.selenium.InvalidElementStateException;
+import org.openqa.selenium.Keys;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsDriver;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Element of a page of {@link FakeWebDriver}. Each call is a command of the driver, and fails with {@link StaleElementReferenceException}
+ * once the page is left or the element is removed from it.<br/><br/>
+ * Clicks and keys have the default effect of the browser: checkboxes, radios and options are selected, links and submit buttons navigate,
+ * text is typed into inputs, text areas and editable elements. Page behaviors are added with {@link FakeWebDriver#onClick(By, java.util.function.Consumer)}.
+ */
+public class FakeWebElement implements WebElement, WrapsDriver {
+
+    // Size reported for a displayed element, there is no layout
+    static final Dimension DISPLAYED_SIZE = new Dimension(100, 20);
+    private static final Set<String> BOOLEAN_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "checked", "selected", "disabled", "readonly", "required", "multiple", "hidden", "autofocus"));
+    private static final Set<String> TEXT_INPUT_TYPES = new HashSet<>(Arrays.asList(
+            "", "text", "password", "email", "search", "tel", "url", "number", "date", "time", "datetime-local", "month", "week", "file"));
+    private static final String VALUE_KEY = "fake.value";
+
+    private final FakeWebDriver webDriver;
+    private final FakePage page;
+    private final Element element;
+
+    FakeWebElement(FakeWebDriver webDriver, FakePage page, Element element) {
+        this.webDriver = webDriver;
+        this.page = page;
+        this.element = element;
+    }
+
+    /**
+     * @return DOM element behind this web element, for page changes made by {@link FakeWebDriver.ScriptHandler}
+     */
+    public Element getDomElement() {
+        return element;
+    }
+
+    @Override
+    public WebDriver getWrappedDriver() {
+        return webDriver;
+    }
+
+    @Override
+    public void click() {
+        command();
+        performClick();
+    }
+
+    @Override
+    public void submit() {
+        command();
+        Element form = formOf(element);
+        if (form == null) {
+            throw new UnsupportedOperationException("To submit an element, it must be nested inside a form element");
+        }
+        submitForm(form);
+    }
+
+    @Override
+    public void sendKeys(CharSequence... keysToSend) {
+        command();
+        StringBuilder sb = new StringBuilder();
+        for (CharSequence keys : keysToSend) {
+            sb.append(keys);
+        }
+        performType(sb.toString());
+    }
+
+    @Override
+    public void clear() {
+        command();
+        checkEditable();
+        if (isContentEditable(element)) {
+            element.setTextContent("");
+            page.mutated();
+        } else if (isTextField()) {
+            element.setUserData(VALUE_KEY, "", null);
+        } else {
+            throw new InvalidElementStateException(String.format("Element %s must be user-editable in order to clear it", this));
+        }
+    }
+
+    @Override
+    public String getTagName() {
+        command();
+        return element.getTagName();
+    }
+
+    /**
+     * @return value of the property or attribute <code>name</code>, as WebDriver reads it: <code>"true"</code> or <code>null</code> for boolean attributes,
+     * the current value of fields
+     */
+    @Override
+    public String getAttribute(String name) {
+        command();
+        String attribute = name.toLowerCase();
+        if ("value".equals(attribute)) {
+            return valueOf(element);
+        }
+        if ("selected".equals(attribute) || "checked".equals(attribute)) {
+            return isChecked() ? "true" : null;
+        }
+        if (BOOLEAN_ATTRIBUTES.contains(attribute)) {
+            return element.hasAttribute(attribute) ? "true" : null;
+        }
+        if ("classname".equals(attribute)) {
+            return element.getAttribute("class");
+        }
+        if ("innertext".equals(attribute)) {
+            return page.innerText(element);
+        }
+        if ("textcontent".equals(attribute)) {
+            return element.getTextContent();
+        }
+        if (("href".equals(attribute) || "src".equals(attribute)) && element.hasAttribute(attribute)) {
+            return webDriver.resolve(element.getAttribute(attribute));
+        }
+        return element.hasAttribute(attribute) ? element.getAttribute(attribute) : null;
+    }
+
+    @Override
+    public boolean isSelected() {
+        command();
+        return isChecked();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        command();
+        return !isDisabled();
+    }
+
+    @Override
+    public String getText() {
+        command();
+        return page.visibleText(element);
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        command();
+        return webDriver.find(element, by, false);
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        command();
+        return webDriver.find(element, by, true).get(0);
+    }
+
+    @Override
+    public boolean isDisplayed() {
+        command();
+        return page.isDisplayed(element);
+    }
+
+    /**
+     * @return top left corner of the page, there is no layout
+     */
+    @Override
+    public Point getLocation() {
+        command();
+        return new Point(0, 0);
+    }
+
+    /**
+     * @return same size for all displayed elements and an empty size for the others, there is no layout
+     */
+    @Override
+    public Dimension getSize() {
+        command();
+        return page.isDisplayed(element) ? DISPLAYED_SIZE : new Dimension(0, 0);
+    }
+
+    @Override
+    public Rectangle getRect() {
+        command();
+        Dimension size = page.isDisplayed(element) ? DISPLAYED_SIZE : new Dimension(0, 0);
+        return new Rectangle(0, 0, size.getHeight(), size.getWidth());
+    }
+
+    /**
+     * @return value of the property in the inline style of the element, an empty string if it is not set there
+     */
+    @Override
+    public String getCssValue(String propertyName) {
+        command();
+        String value = page.styleOf(element).get(propertyName.toLowerCase());
+        return value == null ? "" : value;
+    }
+
+    @Override
+    public <X> X getScreenshotAs(OutputType<X> target) {
+        command();
+        Dimension size = page.isDisplayed(element) ? DISPLAYED_SIZE : new Dimension(0, 0);
+        return target.convertFromPngBytes(FakeWebDriver.blankPng(size.getWidth(), size.getHeight()));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FakeWebElement && ((FakeWebElement) o).element == element;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(element);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[FakeWebDriver] -> <").append(element.getTagName());
+        for (String attribute : Arrays.asList("id", "name", "class")) {
+            if (element.hasAttribute(attribute)) {
+                sb.append(' ').append(attribute).append("=\"").append(element.getAttribute(attribute)).append('"');
+            }
+        }
+        return sb.append('>').toString();
+    }
+
+    /**
+     * Click without starting a command, as {@link #click()} and the actions of {@link FakeWebDriver#perform(java.util.Collection)} do
+     */
+    void performClick() {
+        if (!page.isDisplayed(element)) {
+            throw new ElementNotInteractableException(String.format("Element %s is not displayed", this));
+        }
+        if (webDriver.consumeClickFailure()) {
+            throw new ElementClickInterceptedException(String.format("Element %s is not clickable, other element would receive the click (injected failure)", this));
+        }
+        page.focus(element);
+        webDriver.runClickHandlers(element);
+        if (!page.isAttached(element) || isDisabled()) {
+            return;
+        }
+        String tag = element.getTagName();
+        String type = element.getAttribute("type").toLowerCase();
+        if ("input".equals(tag) && "checkbox".equals(type)) {
+            toggle("checked", !element.hasAttribute("checked"));
+        } else if ("input".equals(tag) && "radio".equals(type)) {
+            for (Element radio : webDriver.searchCss(page.getDocument(), "input[type=radio]")) {
+                if (radio != element && !element.getAttribute("name").isEmpty() && radio.getAttribute("name").equals(element.getAttribute("name"))) {
+                    radio.removeAttribute("checked");
+                }
+            }
+            toggle("checked", true);
+        } else if ("option".equals(tag)) {
+            Node select = element.getParentNode();
+            while (select != null && !"select".equals(select.getNodeName())) {
+                select = select.getParentNode();
+            }
+            if (select != null && !((Element) select).hasAttribute("multiple")) {
+                for (Element option : webDriver.searchCss(select, "option")) {
+                    option.removeAttribute("selected");
+                }
+                toggle("selected", true);
+            } else {
+                toggle("selected", !element.hasAttribute("selected"));
+            }
+        } else if (isSubmitButton()) {
+            Element form = formOf(element);
+            if (form != null) {
+                submitForm(form);
+            }
+        } else {
+            for (Node node = element; node != null && node.getNodeType() == Node.ELEMENT_NODE; node = node.getParentNode()) {
+                Element link = (Element) node;
+                if ("a".equals(link.getTagName()) && link.hasAttribute("href")) {
+                    String href = link.getAttribute("href").trim();
+                    if (!href.isEmpty() && !href.startsWith("#") && !href.startsWith("javascript:")) {
+                        webDriver.navigateTo(webDriver.resolve(href));
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Type <code>keys</code> without starting a command: characters are appended to the value,
+     * {@link Keys#BACK_SPACE} deletes the last one, {@link Keys#ENTER} submits the form of an input, other keys are ignored
+     */
+    void performType(String keys) {
+        if (!page.isDisplayed(element)) {
+            throw new ElementNotInteractableException(String.format("Element %s is not displayed", this));
+        }
+        checkEditable();
+        page.focus(element);
+        boolean editableContent = isContentEditable(element);
+        if (!editableContent && !isTextField()) {
+            return;
+        }
+        StringBuilder value = new StringBuilder(editableContent ? element.getTextContent() : valueOf(element));
+        for (char c : keys.toCharArray()) {
+            if (c == Keys.BACK_SPACE.charAt(0)) {
+                if (value.length() > 0) {
+                    value.setLength(value.length() - 1);
+                }
+            } else if (c == Keys.ENTER.charAt(0) || c == Keys.RETURN.charAt(0) || c == '\n') {
+                if ("textarea".equals(element.getTagName()) || editableContent) {
+                    value.append('\n');
+                } else {
+                    setValue(value.toString(), editableContent);
+                    Element form = formOf(element);
+                    if (form != null) {
+                        submitForm(form);
+                        return;
+                    }
+                }
+            } else if (c < '\uE000' || c > '\uF8FF') {
+                // Keys are characters of the private use area: modifiers, arrows and function keys don't change the value
+                if (!exceedsMaxLength(value)) {
+                    value.append(c);
+                }
+            }
+        }
+        setValue(value.toString(), editableContent);
+    }
+
+    private void command() {
+        webDriver.command();
+        if (webDriver.currentPage() != page || !page.isAttached(element)) {
+            throw new StaleElementReferenceException(String.format("Element %s is no longer attached to the DOM", this));
+        }
+    }
+
+    /**
+     * Check this element belongs to the current page, as a script argument must
+     */
+    void checkAttached() {
+        if (webDriver.currentPage() != page || !page.isAttached(element)) {
+            throw new StaleElementReferenceException(String.format("Element %s is no longer attached to the DOM", this));
+        }
+    }
+
+    private void checkEditable() {
+        if (isDisabled() || element.hasAttribute("readonly")) {
+            throw new InvalidElementStateException(String.format("Element %s is disabled or read-only", this));
+        }
+    }
+
+    private void setValue(String value, boolean editableContent) {
+        if (editableContent) {
+            element.setTextContent(value);
+            page.mutated();
+        } else {
+            element.setUserData(VALUE_KEY, value, null);
+        }
+    }
+
+    private boolean exceedsMaxLength(StringBuilder value) {
+        if (!element.hasAttribute("maxlength")) {
+            return false;
+        }
+        try {
+            return value.length() >= Integer.parseInt(element.getAttribute("maxlength").trim());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void toggle(String attribute, boolean on) {
+        if (on) {
+            element.setAttribute(attribute, attribute);
+        } else {
+            element.removeAttribute(attribute);
+        }
+        page.attributesChanged();
+    }
+
+    private void submitForm(Element form) {
+        String action = form.getAttribute("action").trim();
+        if (!action.isEmpty() && !action.startsWith("javascript:")) {
+            webDriver.navigateTo(webDriver.resolve(action));
+        }
+    }
+
+    private boolean isChecked() {
+        return element.hasAttribute("checked") || element.hasAttribute("selected");
+    }
+
+    private boolean isDisabled() {
+        for (Node node = element; node != null && node.getNodeType() == Node.ELEMENT_NODE; node = node.getParentNode()) {
+            String tag = node.getNodeName();
+            if (((Element) node).hasAttribute("disabled") && (node == element || "fieldset".equals(tag) || "select".equals(tag) || "optgroup".equals(tag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isTextField() {
+        String tag = element.getTagName();
+        return "textarea".equals(tag) || ("input".equals(tag) && TEXT_INPUT_TYPES.contains(element.getAttribute("type").toLowerCase()));
+    }
+
+    static boolean isContentEditable(Element element) {
+        for (Node node = element; node != null && node.getNodeType() == Node.ELEMENT_NODE; node = node.getParentNode()) {
+            Element current = (Element) node;
+            if (current.hasAttribute("contenteditable")) {
+                return !"false".equalsIgnoreCase(current.getAttribute("contenteditable"));
+            }
+        }
+        return false;
+    }
+
+    private boolean isSubmitButton() {
+        String tag = element.getTagName();
+        String type = element.getAttribute("type").toLowerCase();
+        return ("button".equals(tag) && (type.isEmpty() || "submit".equals(type)))
+                || ("input".equals(tag) && ("submit".equals(type) || "image".equals(type)));
+    }
+
+    private static Element formOf(Element element) {
+        for (Node node = element; node != null && node.getNodeType() == Node.ELEMENT_NODE; node = node.getParentNode()) {
+            if ("form".equals(node.getNodeName())) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return current value of a field as the <code>value</code> property reads it
+     */
+    static String valueOf(Element element) {
+        Object typed = element.getUserData(VALUE_KEY);
+        if (typed != null) {
+            return (String) typed;
+        }
+        String tag = element.getTagName();
+        if ("textarea".equals(tag)) {
+            return element.getTextContent();
+        }
+        if ("option".equals(tag)) {
+            return element.hasAttribute("value") ? element.getAttribute("value") : element.getTextContent().trim();
+        }
+        if ("select".equals(tag)) {
+            NodeList options = element.getElementsByTagName("option");
+            for (int i = 0; i < options.getLength(); i++) {
+                if (((Element) options.item(i)).hasAttribute("selected")) {
+                    return valueOf((Element) options.item(i));
+                }
+            }
+            // Without a selected option, a single select shows its first one
+            return options.getLength() == 0 || element.hasAttribute("multiple") ? "" : valueOf((Element) options.item(0));
+        }
+        if ("input".equals(tag)) {
+            return element.getAttribute("value");
+        }
+        return element.hasAttribute("value") ? element.getAttribute("value") : null;
+    }
+
+    /**
+     * Set the value of a field as a script assigning its <code>value</code> property would
+     */
+    static void setValueOf(Element element, String value) {
+        element.setUserData(VALUE_KEY, value, null);
+    }
+}
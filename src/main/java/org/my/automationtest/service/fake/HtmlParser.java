@@ -0,0 +1,407 @@
+package org.my.automationtest.service.fake;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lenient HTML parser building a W3C {@link Document}, so pages can be searched with <code>javax.xml.xpath</code> as a browser would.<br/><br/>
+ * Handles what hand-written fixtures contain: void and unclosed elements, unquoted and boolean attributes, character references,
+ * raw text of <code>script</code> and <code>style</code>. Tag and attribute names are lower-cased, attributes which are not valid XML names are dropped.
+ * The document always has <code>html</code> as root and a <code>body</code>.
+ */
+final class HtmlParser {
+
+    private static final Set<String> VOID_ELEMENTS = new HashSet<>(Arrays.asList(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param", "source", "track", "wbr"));
+    private static final Set<String> RAW_TEXT_ELEMENTS = new HashSet<>(Arrays.asList("script", "style", "textarea", "title"));
+    // Opening one of these closes an open p, as browsers do
+    private static final Set<String> CLOSING_P = new HashSet<>(Arrays.asList(
+            "address", "article", "aside", "blockquote", "div", "dl", "fieldset", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6",
+            "header", "hr", "main", "nav", "ol", "p", "pre", "section", "table", "ul"));
+    private static final Map<String, Set<String>> IMPLIED_END = new HashMap<>();
+    private static final Map<String, String> ENTITIES = new HashMap<>();
+
+    static {
+        IMPLIED_END.put("li", new HashSet<>(Arrays.asList("li")));
+        IMPLIED_END.put("dt", new HashSet<>(Arrays.asList("dt", "dd")));
+        IMPLIED_END.put("dd", new HashSet<>(Arrays.asList("dt", "dd")));
+        IMPLIED_END.put("option", new HashSet<>(Arrays.asList("option")));
+        IMPLIED_END.put("tr", new HashSet<>(Arrays.asList("tr", "td", "th")));
+        IMPLIED_END.put("td", new HashSet<>(Arrays.asList("td", "th")));
+        IMPLIED_END.put("th", new HashSet<>(Arrays.asList("td", "th")));
+
+        ENTITIES.put("amp", "&");
+        ENTITIES.put("lt", "<");
+        ENTITIES.put("gt", ">");
+        ENTITIES.put("quot", "\"");
+        ENTITIES.put("apos", "'");
+        ENTITIES.put("nbsp", "\u00a0");
+        ENTITIES.put("copy", "\u00a9");
+        ENTITIES.put("reg", "\u00ae");
+        ENTITIES.put("hellip", "\u2026");
+        ENTITIES.put("ndash", "\u2013");
+        ENTITIES.put("mdash", "\u2014");
+        ENTITIES.put("laquo", "\u00ab");
+        ENTITIES.put("raquo", "\u00bb");
+        ENTITIES.put("times", "\u00d7");
+        ENTITIES.put("euro", "\u20ac");
+    }
+
+    private final String html;
+    private final Document document;
+    private final Element root;
+    private final Deque<Element> openElements = new ArrayDeque<>();
+    private int position;
+
+    private HtmlParser(String html) {
+        this.html = html;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            this.document = factory.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException("Cannot create DOM document", e);
+        }
+        this.root = document.createElement("html");
+        document.appendChild(root);
+        openElements.push(root);
+    }
+
+    /**
+     * @param html page source, does not need to be well-formed
+     * @return the parsed page
+     */
+    static Document parse(String html) {
+        HtmlParser parser = new HtmlParser(html);
+        parser.parseContent();
+        parser.ensureBody();
+        return parser.document;
+    }
+
+    private void parseContent() {
+        StringBuilder text = new StringBuilder();
+        while (position < html.length()) {
+            char c = html.charAt(position);
+            if (c == '<' && position + 1 < html.length()) {
+                char next = html.charAt(position + 1);
+                if (next == '!' || next == '?') {
+                    flushText(text);
+                    skipDeclaration();
+                    continue;
+                } else if (next == '/') {
+                    flushText(text);
+                    parseEndTag();
+                    continue;
+                } else if (Character.isLetter(next)) {
+                    flushText(text);
+                    parseStartTag();
+                    continue;
+                }
+            }
+            text.append(c);
+            position++;
+        }
+        flushText(text);
+    }
+
+    private void skipDeclaration() {
+        if (html.startsWith("<!--", position)) {
+            int end = html.indexOf("-->", position + 4);
+            position = end < 0 ? html.length() : end + 3;
+        } else {
+            int end = html.indexOf('>', position);
+            position = end < 0 ? html.length() : end + 1;
+        }
+    }
+
+    private void parseEndTag() {
+        int end = html.indexOf('>', position);
+        String tag = (end < 0 ? html.substring(position + 2) : html.substring(position + 2, end)).trim().toLowerCase();
+        position = end < 0 ? html.length() : end + 1;
+        // Close up to the matching open element, ignore a stray end tag
+        for (Element element : openElements) {
+            if (element.getTagName().equals(tag)) {
+                while (openElements.peek() != element) {
+                    openElements.pop();
+                }
+                if (element != root) {
+                    openElements.pop();
+                }
+                return;
+            }
+        }
+    }
+
+    private void parseStartTag() {
+        position++;
+        int nameStart = position;
+        while (position < html.length() && isNameChar(html.charAt(position))) {
+            position++;
+        }
+        String tag = html.substring(nameStart, position).toLowerCase();
+        Map<String, String> attributes = new LinkedHashMap<>();
+        boolean selfClosing = parseAttributes(attributes);
+
+        if ("html".equals(tag)) {
+            setAttributes(root, attributes);
+            return;
+        } else if ("body".equals(tag)) {
+            // The body may already be implied by content before it
+            Element body = ensureBody();
+            setAttributes(body, attributes);
+            if (!openElements.contains(body)) {
+                openElements.clear();
+                openElements.push(root);
+                openElements.push(body);
+            }
+            return;
+        }
+        closeImplied(tag);
+        Element element;
+        try {
+            element = document.createElement(tag);
+        } catch (DOMException e) {
+            // Not a valid XML name, keep its content only
+            return;
+        }
+        setAttributes(element, attributes);
+        parentFor(tag).appendChild(element);
+
+        if (RAW_TEXT_ELEMENTS.contains(tag)) {
+            int end = indexOfIgnoreCase("</" + tag, position);
+            String content = end < 0 ? html.substring(position) : html.substring(position, end);
+            if (!content.isEmpty()) {
+                element.appendChild(document.createTextNode("script".equals(tag) || "style".equals(tag) ? content : decode(content)));
+            }
+            position = end < 0 ? html.length() : end;
+            if (end >= 0) {
+                int close = html.indexOf('>', end);
+                position = close < 0 ? html.length() : close + 1;
+            }
+        } else if (!selfClosing && !VOID_ELEMENTS.contains(tag)) {
+            openElements.push(element);
+        }
+    }
+
+    /**
+     * @return true if the tag ends with <code>/&gt;</code>
+     */
+    private boolean parseAttributes(Map<String, String> attributes) {
+        while (position < html.length()) {
+            char c = html.charAt(position);
+            if (c == '>') {
+                position++;
+                return false;
+            } else if (c == '/' && position + 1 < html.length() && html.charAt(position + 1) == '>') {
+                position += 2;
+                return true;
+            } else if (Character.isWhitespace(c) || c == '/') {
+                position++;
+                continue;
+            }
+            int nameStart = position;
+            while (position < html.length() && !Character.isWhitespace(html.charAt(position)) && "=>/".indexOf(html.charAt(position)) < 0) {
+                position++;
+            }
+            String name = html.substring(nameStart, position).toLowerCase();
+            skipWhitespace();
+            String value = "";
+            if (position < html.length() && html.charAt(position) == '=') {
+                position++;
+                skipWhitespace();
+                value = parseAttributeValue();
+            }
+            attributes.putIfAbsent(name, value);
+        }
+        return false;
+    }
+
+    private String parseAttributeValue() {
+        if (position >= html.length()) {
+            return "";
+        }
+        char quote = html.charAt(position);
+        int start;
+        int end;
+        if (quote == '"' || quote == '\'') {
+            start = position + 1;
+            end = html.indexOf(quote, start);
+            end = end < 0 ? html.length() : end;
+            position = Math.min(html.length(), end + 1);
+        } else {
+            start = position;
+            while (position < html.length() && !Character.isWhitespace(html.charAt(position)) && html.charAt(position) != '>') {
+                position++;
+            }
+            end = position;
+        }
+        return decode(html.substring(start, end));
+    }
+
+    private void setAttributes(Element element, Map<String, String> attributes) {
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            try {
+                element.setAttribute(attribute.getKey(), attribute.getValue());
+            } catch (DOMException e) {
+                // For ex: framework bindings such as @click or :value, which are not valid XML names
+            }
+        }
+    }
+
+    private void closeImplied(String tag) {
+        Set<String> closed = IMPLIED_END.get(tag);
+        if (CLOSING_P.contains(tag)) {
+            closeIfOpen(new HashSet<>(Arrays.asList("p")), tag);
+        }
+        if (closed != null) {
+            closeIfOpen(closed, tag);
+        }
+    }
+
+    // Close the nearest open element among closedTags, unless a container of tag (list, table, select) is opened in between
+    private void closeIfOpen(Set<String> closedTags, String tag) {
+        Iterator<Element> iterator = openElements.iterator();
+        while (iterator.hasNext()) {
+            Element element = iterator.next();
+            String openTag = element.getTagName();
+            if (closedTags.contains(openTag)) {
+                while (openElements.peek() != element) {
+                    openElements.pop();
+                }
+                openElements.pop();
+                return;
+            }
+            if (isScopeBoundary(openTag, tag)) {
+                return;
+            }
+        }
+    }
+
+    private static boolean isScopeBoundary(String openTag, String tag) {
+        switch (tag) {
+            case "li":
+                return "ul".equals(openTag) || "ol".equals(openTag);
+            case "dt":
+            case "dd":
+                return "dl".equals(openTag);
+            case "option":
+                return "select".equals(openTag) || "datalist".equals(openTag) || "optgroup".equals(openTag);
+            case "tr":
+                return "table".equals(openTag) || "tbody".equals(openTag) || "thead".equals(openTag) || "tfoot".equals(openTag);
+            case "td":
+            case "th":
+                return "tr".equals(openTag);
+            default:
+                return "div".equals(openTag) || "body".equals(openTag) || "html".equals(openTag) || "td".equals(openTag) || "th".equals(openTag);
+        }
+    }
+
+    private Node parentFor(String tag) {
+        Element parent = openElements.peek();
+        if (parent == root && !"head".equals(tag) && !"body".equals(tag)) {
+            Element body = ensureBody();
+            openElements.push(body);
+            return body;
+        }
+        return parent;
+    }
+
+    private Element ensureBody() {
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && "body".equals(((Element) child).getTagName())) {
+                return (Element) child;
+            }
+        }
+        Element body = document.createElement("body");
+        root.appendChild(body);
+        return body;
+    }
+
+    private void flushText(StringBuilder text) {
+        if (text.length() == 0) {
+            return;
+        }
+        String content = decode(text.toString());
+        text.setLength(0);
+        if (openElements.peek() == root) {
+            if (content.trim().isEmpty()) {
+                return;
+            }
+            Element body = ensureBody();
+            openElements.push(body);
+        }
+        openElements.peek().appendChild(document.createTextNode(content));
+    }
+
+    private void skipWhitespace() {
+        while (position < html.length() && Character.isWhitespace(html.charAt(position))) {
+            position++;
+        }
+    }
+
+    private int indexOfIgnoreCase(String target, int from) {
+        for (int i = from; i <= html.length() - target.length(); i++) {
+            if (html.regionMatches(true, i, target, 0, target.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == ':' || c == '.';
+    }
+
+    /**
+     * Replace character references, for ex: <code>&amp;amp;</code>, <code>&amp;#39;</code>, <code>&amp;#x27;</code>
+     */
+    static String decode(String text) {
+        int ampersand = text.indexOf('&');
+        if (ampersand < 0) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        int start = 0;
+        while (ampersand >= 0) {
+            sb.append(text, start, ampersand);
+            int semicolon = text.indexOf(';', ampersand);
+            String replacement = null;
+            if (semicolon > ampersand + 1 && semicolon - ampersand <= 10) {
+                String name = text.substring(ampersand + 1, semicolon);
+                try {
+                    if (name.startsWith("#x") || name.startsWith("#X")) {
+                        replacement = new String(Character.toChars(Integer.parseInt(name.substring(2), 16)));
+                    } else if (name.startsWith("#")) {
+                        replacement = new String(Character.toChars(Integer.parseInt(name.substring(1))));
+                    } else {
+                        replacement = ENTITIES.get(name);
+                    }
+                } catch (IllegalArgumentException e) {
+                    replacement = null;
+                }
+            }
+            if (replacement == null) {
+                sb.append('&');
+                start = ampersand + 1;
+            } else {
+                sb.append(replacement);
+                start = semicolon + 1;
+            }
+            ampersand = text.indexOf('&', start);
+        }
+        return sb.append(text, start, text.length()).toString();
+    }
+}
@@ -0,0 +1,366 @@
+package org.my.automationtest.service.probe;
+
+import org.my.automationtest.locator.WebLocator;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Latency instrumentation of {@link org.my.automationtest.service.WebUI} actions and waits, retry attempts and sleeps.<br/><br/>
+ * Each operation is recorded in a {@link LatencyHistogram} of its own, and in one per locator alias (or per retried operation, per sleep reason).
+ * Nested operations are all recorded, for ex: the wait inside a click is recorded both as the wait and as part of the click.
+ * Operations are also recorded as events in the {@link FlightRecorder} bound to the thread (see {@link #bindRecorder(FlightRecorder)}), whether the probe is enabled or not,
+ * and emitted as Java Flight Recorder events while a JFR recording is running (see {@link JfrSupport}).<br/>
+ * Usage around an operation:<br/>
+ * <code>long probeStart = ActionProbe.start("sleep"); try { ... } finally { ActionProbe.stop("sleep", reason, probeStart); }</code><br/>
+ * Usage around a {@link org.my.automationtest.service.WebUI} action, which also makes it the current action of the thread (see {@link #currentAction()}):<br/>
+ * <code>return ActionProbe.call("click", webLocator, () -&gt; { ... });</code> or <code>ActionProbe.run("getUrl", () -&gt; { ... });</code>,
+ * which stand for <code>long probeStart = ActionProbe.begin("click"); try { ... } finally { ActionProbe.end("click", webLocator, probeStart); }</code><br/>
+ * Sessions bind a flight recorder to their thread by default (see {@link org.my.automationtest.service.WebUI#setFlightRecorderCapacity(int)}),
+ * so each operation then costs two {@link System#nanoTime()} calls and one write to the recorder's ring buffer.
+ * With a flight recorder capacity of 0 and neither the probe, {@link CommandTracer} nor a JFR recording enabled, {@link #start(String)} and {@link #begin(String)}
+ * are two volatile reads and one thread-local read, and the stop methods return immediately.
+ */
+public final class ActionProbe {
+
+    public static final String SLEEP = "sleep";
+    public static final String RETRY = "retry";
+    public static final String JSON_FILE = "action-latency.json";
+    public static final String CSV_FILE = "action-latency.csv";
+
+    // Detail of the histogram of all calls of an operation
+    private static final String ALL = "";
+
+    private static volatile boolean enabled = false;
+    // Whether actions are tracked as current action of their thread, see CommandTracer
+    private static volatile boolean scoped = false;
+
+    private static final ThreadLocal<ActionScope> CURRENT_ACTION = ThreadLocal.withInitial(ActionScope::new);
+    private static final ThreadLocal<FlightRecorder> RECORDER = new ThreadLocal<>();
+
+    private static final Map<String, Map<String, LatencyHistogram>> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private ActionProbe() {
+    }
+
+    /**
+     * @param operation name of the operation, for ex: {@link #SLEEP}
+     * @return start time of an operation to be passed to {@link #stop(String, WebLocator, long)}, 0 when disabled
+     */
+    public static long start(String operation) {
+        if (!enabled && RECORDER.get() == null && !JfrSupport.isRecording()) {
+            return 0;
+        }
+        long startNanos = System.nanoTime();
+        JfrSupport.begin(operation, startNanos);
+        return startNanos;
+    }
+
+    /**
+     * Start a {@link org.my.automationtest.service.WebUI} action, to be ended by {@link #end(String, WebLocator, long)} (or another <code>end</code> method).<br/><br/>
+     * Unless it is nested in another action, it becomes the current action of the thread until it ends,
+     * and the round trip budget of the running test is checked first (see {@link CommandTracer#setBudgetMode(CommandTracer.BudgetMode)}).
+     * @return start time of the action, 0 when neither the probe nor {@link CommandTracer} is enabled
+     */
+    public static long begin(String operation) {
+        if (scoped) {
+            ActionScope scope = CURRENT_ACTION.get();
+            if (scope.depth == 0) {
+                CommandTracer.checkBudget();
+                scope.operation = operation;
+            }
+            scope.depth++;
+            long startNanos = System.nanoTime();
+            JfrSupport.begin(operation, startNanos);
+            return startNanos;
+        }
+        return start(operation);
+    }
+
+    /**
+     * Run <code>action</code> between {@link #begin(String)} and the matching <code>end</code> method
+     * @param operation name of the action, for ex: <code>click</code>
+     * @param detail {@link WebLocator} the action acted on (see {@link #stop(String, WebLocator, long)}) or other detail (see {@link #stop(String, String, long)}),
+     * may be <code>null</code>
+     * @return value returned by <code>action</code>
+     */
+    public static <T> T call(String operation, Object detail, Supplier<T> action) {
+        long probeStart = begin(operation);
+        try {
+            return action.get();
+        } finally {
+            end(operation, detail, probeStart);
+        }
+    }
+
+    /**
+     * Same as {@link #call(String, Object, Supplier)} without detail
+     */
+    public static <T> T call(String operation, Supplier<T> action) {
+        return call(operation, null, action);
+    }
+
+    /**
+     * Same as {@link #call(String, Object, Supplier)} for an action which returns nothing
+     */
+    public static void run(String operation, Object detail, Runnable action) {
+        long probeStart = begin(operation);
+        try {
+            action.run();
+        } finally {
+            end(operation, detail, probeStart);
+        }
+    }
+
+    /**
+     * Same as {@link #call(String, Object, Supplier)} for an action which returns nothing, without detail
+     */
+    public static void run(String operation, Runnable action) {
+        run(operation, null, action);
+    }
+
+    /**
+     * End an action started by {@link #begin(String)} and record it like {@link #stop(String, WebLocator, long)}
+     */
+    public static void end(String operation, WebLocator webLocator, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        endScope();
+        stop(operation, webLocator, startNanos);
+    }
+
+    /**
+     * End an action started by {@link #begin(String)} and record it like {@link #stop(String, String, long)}
+     */
+    public static void end(String operation, String detail, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        endScope();
+        stop(operation, detail, startNanos);
+    }
+
+    /**
+     * End an action started by {@link #begin(String)} and record it like {@link #stop(String, long)}
+     */
+    public static void end(String operation, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        endScope();
+        stop(operation, startNanos);
+    }
+
+    /**
+     * @return the outermost {@link org.my.automationtest.service.WebUI} action running in the current thread, <code>null</code> if none
+     * (or if {@link CommandTracer} is disabled)
+     */
+    public static String currentAction() {
+        return CURRENT_ACTION.get().operation;
+    }
+
+    /**
+     * Record an operation started by {@link #start(String)}
+     * @param operation name of the operation, for ex: <code>getUrl</code>
+     * @param startNanos value returned by {@link #start(String)}
+     */
+    public static void stop(String operation, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        record(operation, null, null, startNanos);
+    }
+
+    /**
+     * Record an operation started by {@link #start(String)}
+     * @param operation name of the operation, for ex: <code>click</code>
+     * @param webLocator locator the operation acted on, its alias (if any) gets a histogram of its own, may be <code>null</code>
+     * @param startNanos value returned by {@link #start(String)}
+     */
+    public static void stop(String operation, WebLocator webLocator, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        record(operation, webLocator == null ? null : webLocator.getAlias(), webLocator, startNanos);
+    }
+
+    /**
+     * Record an operation started by {@link #start(String)}
+     * @param operation name of the operation
+     * @param detail what the operation was about (for ex: retried operation, sleep reason), gets a histogram of its own, may be <code>null</code>
+     * @param startNanos value returned by {@link #start(String)}
+     */
+    public static void stop(String operation, String detail, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        record(operation, detail, detail, startNanos);
+    }
+
+    /**
+     * {@link Thread#sleep(long)}, recorded as operation {@link #SLEEP} with <code>reason</code> as detail
+     */
+    public static void sleep(String reason, long millis) throws InterruptedException {
+        long probeStart = start(SLEEP);
+        try {
+            Thread.sleep(millis);
+        } finally {
+            stop(SLEEP, reason, probeStart);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        ActionProbe.enabled = enabled;
+    }
+
+    static void setScoped(boolean scoped) {
+        ActionProbe.scoped = scoped;
+    }
+
+    /**
+     * @param recorder flight recorder receiving the operations of the current thread from now on, <code>null</code> to stop recording them
+     */
+    public static void bindRecorder(FlightRecorder recorder) {
+        if (recorder == null) {
+            RECORDER.remove();
+        } else {
+            RECORDER.set(recorder);
+        }
+    }
+
+    /**
+     * @return histograms by operation then by detail, the histogram of all calls of an operation having detail <code>""</code>
+     */
+    public static Map<String, Map<String, LatencyHistogram>> getHistograms() {
+        return HISTOGRAMS;
+    }
+
+    public static void reset() {
+        HISTOGRAMS.clear();
+    }
+
+    /**
+     * Write all histograms to {@link #JSON_FILE} and {@link #CSV_FILE} in <code>directory</code>, one row per operation and detail
+     */
+    public static void export(Path directory) throws IOException {
+        export(directory, JSON_FILE, CSV_FILE, "operation", "detail", HISTOGRAMS);
+    }
+
+    /**
+     * Write <code>histograms</code> as JSON and CSV, one row per key and sub-key
+     * @param keyColumn name of the column holding the key of <code>histograms</code>
+     * @param subKeyColumn name of the column holding the sub-key
+     */
+    static void export(Path directory, String jsonFile, String csvFile, String keyColumn, String subKeyColumn
+            , Map<String, Map<String, LatencyHistogram>> histograms) throws IOException {
+        List<Map<String, Object>> rows = rows(keyColumn, subKeyColumn, histograms);
+        Files.createDirectories(directory);
+        try (Writer writer = Files.newBufferedWriter(directory.resolve(jsonFile), StandardCharsets.UTF_8)) {
+            writer.write(new Json().toJson(rows));
+        }
+        try (Writer writer = Files.newBufferedWriter(directory.resolve(csvFile), StandardCharsets.UTF_8)) {
+            writer.write(String.join(",", columns(keyColumn, subKeyColumn)));
+            writer.write(System.lineSeparator());
+            for (Map<String, Object> row : rows) {
+                List<String> values = new ArrayList<>();
+                row.values().forEach(value -> values.add(csvValue(value)));
+                writer.write(String.join(",", values));
+                writer.write(System.lineSeparator());
+            }
+        }
+    }
+
+    private static void end(String operation, Object detail, long startNanos) {
+        if (detail instanceof WebLocator) {
+            end(operation, (WebLocator) detail, startNanos);
+        } else {
+            end(operation, detail == null ? null : detail.toString(), startNanos);
+        }
+    }
+
+    private static void endScope() {
+        if (scoped) {
+            ActionScope scope = CURRENT_ACTION.get();
+            if (scope.depth > 0 && --scope.depth == 0) {
+                scope.operation = null;
+            }
+        }
+    }
+
+    private static void record(String operation, String histogramDetail, Object eventDetail, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        JfrSupport.end(operation, eventDetail, startNanos);
+        FlightRecorder recorder = RECORDER.get();
+        if (recorder != null) {
+            recorder.record(operation, eventDetail, nanos);
+        }
+        if (enabled) {
+            record(operation, histogramDetail, nanos);
+        }
+    }
+
+    private static void record(String operation, String detail, long nanos) {
+        Map<String, LatencyHistogram> histograms = HISTOGRAMS.computeIfAbsent(operation, key -> new ConcurrentHashMap<>());
+        histograms.computeIfAbsent(ALL, key -> new LatencyHistogram()).record(nanos);
+        if (detail != null && !detail.isEmpty()) {
+            histograms.computeIfAbsent(detail, key -> new LatencyHistogram()).record(nanos);
+        }
+    }
+
+    private static List<Map<String, Object>> rows(String keyColumn, String subKeyColumn, Map<String, Map<String, LatencyHistogram>> histograms) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        new TreeMap<>(histograms).forEach((key, subHistograms) -> new TreeMap<>(subHistograms).forEach((subKey, histogram) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put(keyColumn, key);
+            row.put(subKeyColumn, subKey);
+            row.put("count", histogram.getCount());
+            row.put("totalMs", round(histogram.getTotalMillis()));
+            row.put("meanMs", round(histogram.getMeanMillis()));
+            row.put("p50Ms", round(histogram.getPercentileMillis(50)));
+            row.put("p90Ms", round(histogram.getPercentileMillis(90)));
+            row.put("p99Ms", round(histogram.getPercentileMillis(99)));
+            row.put("maxMs", round(histogram.getMaxMillis()));
+            rows.add(row);
+        }));
+        return rows;
+    }
+
+    private static List<String> columns(String keyColumn, String subKeyColumn) {
+        return Arrays.asList(keyColumn, subKeyColumn, "count", "totalMs", "meanMs", "p50Ms", "p90Ms", "p99Ms", "maxMs");
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 1000) / 1000.0;
+    }
+
+    private static String csvValue(Object value) {
+        String text = String.valueOf(value);
+        if (text.contains(",") || text.contains("\"") || text.contains("\n")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+
+    // Outermost action running in a thread and depth of the actions nested in it
+    private static final class ActionScope {
+        private String operation;
+        private int depth;
+    }
+}
@@ -0,0 +1,183 @@
+package org.my.automationtest.service.probe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Round trips of the WebDriver sessions wrapped in {@link TracingCommandExecutor}: each command is counted and timed by command name,
+ * by current {@link org.my.automationtest.service.WebUI} action (see {@link ActionProbe#currentAction()}) and by running TestNG method.<br/><br/>
+ * A test making more than {@link #getRoundTripBudget()} round trips is logged, or failed at its next action when {@link #getBudgetMode()} is {@link BudgetMode#FAIL}.
+ * Failing inside the command itself would be swallowed by the waits and retries catching {@link org.openqa.selenium.WebDriverException}.
+ */
+public final class CommandTracer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandTracer.class);
+
+    public enum BudgetMode {
+        /**
+         * Log a warning once per test going over its budget
+         */
+        WARN,
+        /**
+         * Fail the test at its first action after going over its budget
+         */
+        FAIL
+    }
+
+    public static final String JSON_FILE = "round-trips.json";
+    public static final String CSV_FILE = "round-trips.csv";
+    public static final String BY_COMMAND = "command";
+    public static final String BY_ACTION = "action";
+    public static final String BY_TEST = "test";
+    // Commands sent outside of any WebUI action (for ex: WebDriver used directly) or outside of any TestNG method
+    public static final String NONE = "(none)";
+
+    private static final String ROUND_TRIPS_ATTRIBUTE = CommandTracer.class.getName() + ".roundTrips";
+
+    private static volatile boolean enabled = false;
+    private static volatile int roundTripBudget = 0;
+    private static volatile BudgetMode budgetMode = BudgetMode.WARN;
+
+    private static final Map<String, Map<String, LatencyHistogram>> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private CommandTracer() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled true to wrap the sessions created from now on in {@link TracingCommandExecutor}
+     */
+    public static void setEnabled(boolean enabled) {
+        CommandTracer.enabled = enabled;
+        ActionProbe.setScoped(enabled);
+    }
+
+    public static int getRoundTripBudget() {
+        return roundTripBudget;
+    }
+
+    /**
+     * @param roundTripBudget maximum number of WebDriver commands per test method, 0 for no budget
+     */
+    public static void setRoundTripBudget(int roundTripBudget) {
+        CommandTracer.roundTripBudget = roundTripBudget;
+    }
+
+    public static BudgetMode getBudgetMode() {
+        return budgetMode;
+    }
+
+    public static void setBudgetMode(BudgetMode budgetMode) {
+        CommandTracer.budgetMode = budgetMode;
+    }
+
+    /**
+     * @return number of WebDriver commands sent so far by the test <code>testResult</code>
+     */
+    public static int getRoundTrips(ITestResult testResult) {
+        Object roundTrips = testResult.getAttribute(ROUND_TRIPS_ATTRIBUTE);
+        return roundTrips == null ? 0 : ((RoundTrips) roundTrips).count.get();
+    }
+
+    /**
+     * @return histograms by {@link #BY_COMMAND}, {@link #BY_ACTION} and {@link #BY_TEST}, then by name
+     */
+    public static Map<String, Map<String, LatencyHistogram>> getHistograms() {
+        return HISTOGRAMS;
+    }
+
+    public static void reset() {
+        HISTOGRAMS.clear();
+    }
+
+    /**
+     * Write all histograms to {@link #JSON_FILE} and {@link #CSV_FILE} in <code>directory</code>, one row per command, action and test
+     */
+    public static void export(Path directory) throws IOException {
+        ActionProbe.export(directory, JSON_FILE, CSV_FILE, "by", "name", HISTOGRAMS);
+    }
+
+    static void record(String command, long nanos) {
+        String action = ActionProbe.currentAction();
+        ITestResult testResult = Reporter.getCurrentTestResult();
+        histogramOf(BY_COMMAND, command).record(nanos);
+        histogramOf(BY_ACTION, action == null ? NONE : action).record(nanos);
+        histogramOf(BY_TEST, testResult == null ? NONE : testNameOf(testResult)).record(nanos);
+
+        if (testResult == null || !testResult.getMethod().isTest()) {
+            return;
+        }
+        RoundTrips roundTrips = roundTripsOf(testResult);
+        int count = roundTrips.count.incrementAndGet();
+        int budget = roundTripBudget;
+        if (budget > 0 && count > budget && !roundTrips.warned) {
+            roundTrips.warned = true;
+            LOGGER.warn("Test {} went over its budget of {} WebDriver round trips, at command {} of action {}"
+                    , testNameOf(testResult), budget, command, action == null ? NONE : action);
+        }
+    }
+
+    /**
+     * Fail the running test if it went over its round trip budget and {@link #getBudgetMode()} is {@link BudgetMode#FAIL}, only once per test
+     */
+    static void checkBudget() {
+        checkBudget(Reporter.getCurrentTestResult());
+    }
+
+    /**
+     * Fail the test of <code>testResult</code> if it went over its round trip budget and {@link #getBudgetMode()} is {@link BudgetMode#FAIL}, only once per test.<br/><br/>
+     * The budget is checked at the start of each action, call this method when the test ends to also catch the round trips made by its last action.
+     * @param testResult result of the test method, not of a configuration method
+     * @throws RuntimeException if the test is over its budget
+     */
+    public static void checkBudget(ITestResult testResult) {
+        int budget = roundTripBudget;
+        if (budget <= 0 || budgetMode != BudgetMode.FAIL) {
+            return;
+        }
+        if (testResult == null || !testResult.getMethod().isTest()) {
+            return;
+        }
+        RoundTrips roundTrips = roundTripsOf(testResult);
+        if (roundTrips.count.get() > budget && !roundTrips.failed) {
+            roundTrips.failed = true;
+            throw new RuntimeException(String.format("Test %s made %d WebDriver round trips, over its budget of %d"
+                    , testNameOf(testResult), roundTrips.count.get(), budget));
+        }
+    }
+
+    private static LatencyHistogram histogramOf(String by, String name) {
+        return HISTOGRAMS.computeIfAbsent(by, key -> new ConcurrentHashMap<>()).computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    private static RoundTrips roundTripsOf(ITestResult testResult) {
+        Object roundTrips = testResult.getAttribute(ROUND_TRIPS_ATTRIBUTE);
+        if (roundTrips == null) {
+            roundTrips = new RoundTrips();
+            testResult.setAttribute(ROUND_TRIPS_ATTRIBUTE, roundTrips);
+        }
+        return (RoundTrips) roundTrips;
+    }
+
+    private static String testNameOf(ITestResult testResult) {
+        return testResult.getTestClass().getRealClass().getSimpleName() + "." + testResult.getMethod().getMethodName();
+    }
+
+    // Round trips of one test invocation, which runs in a single thread
+    private static final class RoundTrips {
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile boolean warned;
+        private volatile boolean failed;
+    }
+}
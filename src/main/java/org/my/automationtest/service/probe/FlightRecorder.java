@@ -0,0 +1,150 @@
+package org.my.automationtest.service.probe;
+
+import org.my.automationtest.locator.WebLocator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free ring buffer of the last actions, waits, retries and sleeps of one session, recorded by {@link ActionProbe} as compact events.<br/><br/>
+ * Recording is one atomic increment and one array write, nothing is formatted until the buffer is dumped
+ * (for ex: when a test fails), so the happy path pays no logging cost. Once full, each event overwrites the oldest one.
+ */
+public class FlightRecorder {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final int MAX_DETAIL_LENGTH = 200;
+
+    private final AtomicReferenceArray<Event> events;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+    // Sequence of the first event recorded after the last clear()
+    private volatile long floor;
+
+    /**
+     * @param capacity number of events kept, rounded up to a power of two
+     */
+    public FlightRecorder(int capacity) {
+        if (capacity <= 0) {
+            throw new RuntimeException(String.format("Flight recorder capacity must be positive, got %d", capacity));
+        }
+        int size = Integer.highestOneBit(capacity);
+        size = size < capacity ? size << 1 : size;
+        this.events = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @param operation name of the operation, for ex: <code>click</code>
+     * @param detail what the operation acted on (for ex: {@link WebLocator}), only turned to text when dumped, may be <code>null</code>
+     * @param nanos duration of the operation
+     */
+    public void record(String operation, Object detail, long nanos) {
+        long eventSequence = sequence.getAndIncrement();
+        events.set((int) (eventSequence & mask), new Event(eventSequence, System.currentTimeMillis(), nanos, operation, detail, Thread.currentThread().getName()));
+    }
+
+    /**
+     * @return recorded events still in the buffer, oldest first
+     */
+    public List<Event> snapshot() {
+        long end = sequence.get();
+        long start = Math.max(floor, end - events.length());
+        List<Event> snapshot = new ArrayList<>((int) (end - start));
+        for (long eventSequence = start; eventSequence < end; eventSequence++) {
+            Event event = events.get((int) (eventSequence & mask));
+            // Skip a slot not written yet or already overwritten by a newer event
+            if (event != null && event.sequence == eventSequence) {
+                snapshot.add(event);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Forget all recorded events, for ex: before a pooled session is handed out to another test
+     */
+    public void clear() {
+        floor = sequence.get();
+    }
+
+    public int getCapacity() {
+        return events.length();
+    }
+
+    /**
+     * Write all recorded events to <code>writer</code>, one line each, oldest first
+     */
+    public void dump(Writer writer) throws IOException {
+        for (Event event : snapshot()) {
+            writer.write(event.toString());
+            writer.write(System.lineSeparator());
+        }
+    }
+
+    public static final class Event {
+        private final long sequence;
+        private final long timeMillis;
+        private final long nanos;
+        private final String operation;
+        private final Object detail;
+        private final String threadName;
+
+        private Event(long sequence, long timeMillis, long nanos, String operation, Object detail, String threadName) {
+            this.sequence = sequence;
+            this.timeMillis = timeMillis;
+            this.nanos = nanos;
+            this.operation = operation;
+            this.detail = detail;
+            this.threadName = threadName;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return time the operation ended, in milliseconds since epoch
+         */
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public String getDetail() {
+            if (detail == null) {
+                return null;
+            }
+            String text = detail instanceof WebLocator && ((WebLocator) detail).getAlias() != null
+                    ? ((WebLocator) detail).getAlias()
+                    : String.valueOf(detail);
+            return text.length() > MAX_DETAIL_LENGTH ? text.substring(0, MAX_DETAIL_LENGTH) + "..." : text;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        @Override
+        public String toString() {
+            String detailText = getDetail();
+            return String.format("%s [%s] %-24s %6d ms%s", TIME_FORMATTER.format(Instant.ofEpochMilli(timeMillis)), threadName, operation
+                    , getElapsedMillis(), detailText == null ? "" : "  " + detailText);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.my.automationtest.service.probe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Guard of the JFR events: they are only emitted on a JVM which has <code>jdk.jfr</code> (Java 11+, 8u262+), when the library is built with them
+ * (<code>src/jfr/java</code>, compiled by the <code>compile-jfr</code> execution of the default build) and while a recording is running.<br/><br/>
+ * With no recording, {@link ActionProbe} pays two volatile reads per operation.
+ */
+final class JfrSupport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JfrSupport.class);
+    private static final String EVENTS_CLASS = "org.my.automationtest.service.probe.JfrEvents";
+
+    /**
+     * Events of the JVM flight recorder, implemented against <code>jdk.jfr</code> which is not part of the Java 8 API
+     */
+    interface Events {
+        /**
+         * Listen to the recordings of the JVM to update {@link JfrSupport#setRecording(boolean)}
+         */
+        void register();
+
+        void begin(String operation, long startNanos);
+
+        void end(String operation, Object detail, long startNanos);
+    }
+
+    // null when JFR events cannot be emitted, then recording stays false and no event is ever begun
+    private static final Events EVENTS;
+
+    private static volatile boolean recording = false;
+    // Events begun and not ended yet in all threads, so ending an operation costs nothing when there is none
+    private static final AtomicInteger OPEN_EVENTS = new AtomicInteger();
+
+    // After the fields above, which Events.register() may update
+    static {
+        EVENTS = loadEvents();
+    }
+
+    private JfrSupport() {
+    }
+
+    static boolean isRecording() {
+        return recording;
+    }
+
+    static void setRecording(boolean recording) {
+        JfrSupport.recording = recording;
+    }
+
+    static void begin(String operation, long startNanos) {
+        if (recording) {
+            EVENTS.begin(operation, startNanos);
+        }
+    }
+
+    static void end(String operation, Object detail, long startNanos) {
+        if (OPEN_EVENTS.get() > 0) {
+            EVENTS.end(operation, detail, startNanos);
+        }
+    }
+
+    static void opened() {
+        OPEN_EVENTS.incrementAndGet();
+    }
+
+    static void closed() {
+        OPEN_EVENTS.decrementAndGet();
+    }
+
+    private static Events loadEvents() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+        } catch (ClassNotFoundException e) {
+            LOGGER.debug("Java Flight Recorder is not available, WebUI events are not emitted");
+            return null;
+        }
+        Class<?> eventsClass;
+        try {
+            eventsClass = Class.forName(EVENTS_CLASS);
+        } catch (ClassNotFoundException e) {
+            LOGGER.debug("Library built without JFR events, WebUI events are not emitted");
+            return null;
+        }
+        try {
+            Events events = (Events) eventsClass.getDeclaredConstructor().newInstance();
+            events.register();
+            return events;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            LOGGER.warn("Cannot listen to Java Flight Recorder recordings, WebUI events are not emitted", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.my.automationtest.service.probe;
+
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.Response;
+
+import java.io.IOException;
+
+/**
+ * {@link CommandExecutor} decorator timing every WebDriver command (one round trip to the driver each) and handing it to {@link CommandTracer}
+ */
+public class TracingCommandExecutor implements CommandExecutor {
+
+    private final CommandExecutor delegate;
+
+    public TracingCommandExecutor(CommandExecutor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response execute(Command command) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            return delegate.execute(command);
+        } finally {
+            CommandTracer.record(command.getName(), System.nanoTime() - startTime);
+        }
+    }
+
+    public CommandExecutor getDelegate() {
+        return delegate;
+    }
+}
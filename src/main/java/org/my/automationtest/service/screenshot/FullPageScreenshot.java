@@ -0,0 +1,216 @@
+package org.my.automationtest.service.screenshot;
+
+import org.my.automationtest.service.PageScripts;
+import org.my.automationtest.service.probe.ActionProbe;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Screenshot of the whole page, taken as viewport tiles while scrolling (like AShot <code>viewportPasting</code>)
+ * but never stitched into one {@link java.awt.image.BufferedImage}.<br/><br/>
+ * {@link #capture(WebDriver, long, int)} runs on the test thread and only keeps the PNG bytes returned by WebDriver for each tile.
+ * {@link #writeTo(OutputStream)}, meant to run on a {@link ScreenshotWriter} thread, decodes one tile at a time and streams its rows
+ * through a {@link StreamingPngEncoder}, so memory stays bounded by one viewport whatever the height of the page.
+ */
+public class FullPageScreenshot implements PngContent {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FullPageScreenshot.class);
+
+    private static final int BACKGROUND = 0xffffff;
+
+    // returns [page height, viewport height, vertical scroll, horizontal scroll] in CSS pixels
+    public static final String JS_PAGE_METRICS = PageScripts.define(""
+            + "var d = document.documentElement, b = document.body;"
+            + "return [Math.max(d.scrollHeight, b ? b.scrollHeight : 0), window.innerHeight, window.pageYOffset, window.pageXOffset];");
+
+    // arguments: x, y in CSS pixels
+    // returns vertical scroll actually reached, the page cannot scroll past its bottom
+    public static final String JS_SCROLL_TO = PageScripts.define("window.scrollTo(arguments[0], arguments[1]); return window.pageYOffset;");
+
+    private final List<Tile> tiles;
+    private final long pageHeight;
+    private final long viewportHeight;
+    private volatile Long perceptualHash;
+
+    private FullPageScreenshot(List<Tile> tiles, long pageHeight, long viewportHeight) {
+        this.tiles = tiles;
+        this.pageHeight = pageHeight;
+        this.viewportHeight = viewportHeight;
+    }
+
+    /**
+     * Scroll through the page from top to bottom, capturing one screenshot per viewport, then scroll back to where the page was
+     * @param webDriver driver of the page
+     * @param scrollPauseMillis time left to the page to render after each scroll, in milliseconds
+     * @param maxTiles maximum number of viewports captured, the bottom of longer pages (for ex: infinite scrolling) is left out
+     */
+    public static FullPageScreenshot capture(WebDriver webDriver, long scrollPauseMillis, int maxTiles) {
+        JavascriptExecutor js = (JavascriptExecutor) webDriver;
+        List<?> metrics = (List<?>) js.executeScript(JS_PAGE_METRICS);
+        long viewportHeight = Math.max(1, ((Number) metrics.get(1)).longValue());
+        long pageHeight = Math.max(viewportHeight, ((Number) metrics.get(0)).longValue());
+        Number initialScrollY = (Number) metrics.get(2);
+        Number initialScrollX = (Number) metrics.get(3);
+
+        List<Tile> tiles = new ArrayList<>();
+        try {
+            long scrollY = -1;
+            for (long y = 0; tiles.size() < Math.max(1, maxTiles) && y < pageHeight; y += viewportHeight) {
+                long reachedY = ((Number) js.executeScript(JS_SCROLL_TO, initialScrollX, y)).longValue();
+                if (reachedY <= scrollY) {
+                    // Bottom of the page reached earlier than its height said
+                    break;
+                }
+                scrollY = reachedY;
+                pause(scrollPauseMillis);
+                tiles.add(new Tile(scrollY, ((TakesScreenshot) webDriver).getScreenshotAs(OutputType.BYTES)));
+            }
+        } finally {
+            js.executeScript(JS_SCROLL_TO, initialScrollX, initialScrollY);
+        }
+        if (tiles.size() == Math.max(1, maxTiles) && tiles.get(tiles.size() - 1).scrollY + viewportHeight < pageHeight) {
+            LOGGER.warn("Full page screenshot stopped after {} viewports, page height is {} px", tiles.size(), pageHeight);
+        }
+        return new FullPageScreenshot(tiles, pageHeight, viewportHeight);
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        Tile first = tiles.get(0);
+        int width = first.width();
+        // Screenshot pixels per CSS pixel, device pixel ratio included
+        double scale = (double) first.height() / viewportHeight;
+        Tile last = tiles.get(tiles.size() - 1);
+        int height = (int) Math.min(Math.round(pageHeight * scale), Math.round(last.scrollY * scale) + last.height());
+
+        StreamingPngEncoder encoder = new StreamingPngEncoder(out, width, height);
+        PerceptualHash.Accumulator accumulator = new PerceptualHash.Accumulator(width, height);
+        int[] row = new int[width];
+        int nextRow = 0;
+        for (Tile tile : tiles) {
+            int top = (int) Math.round(tile.scrollY * scale);
+            int to = Math.min(top + tile.height(), height);
+            while (nextRow < Math.min(top, to)) {
+                writeBackgroundRow(encoder, accumulator, row);
+                nextRow++;
+            }
+            if (nextRow >= to) {
+                continue;
+            }
+            BufferedImage rows = tile.readRows(nextRow - top, to - nextRow, width);
+            for (int y = 0; y < rows.getHeight(); y++) {
+                Arrays.fill(row, BACKGROUND);
+                rows.getRGB(0, y, Math.min(width, rows.getWidth()), 1, row, 0, width);
+                encoder.writeRow(row, 0);
+                accumulator.addRow(row, 0);
+                nextRow++;
+            }
+        }
+        while (nextRow < height) {
+            writeBackgroundRow(encoder, accumulator, row);
+            nextRow++;
+        }
+        encoder.finish();
+        perceptualHash = accumulator.hash();
+    }
+
+    @Override
+    public Long getPerceptualHash() {
+        return perceptualHash;
+    }
+
+    public int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * @return size of the captured tiles as returned by WebDriver, which is all this screenshot holds in memory
+     */
+    public long getCapturedBytes() {
+        long bytes = 0;
+        for (Tile tile : tiles) {
+            bytes += tile.png.length;
+        }
+        return bytes;
+    }
+
+    private static void writeBackgroundRow(StreamingPngEncoder encoder, PerceptualHash.Accumulator accumulator, int[] row) throws IOException {
+        Arrays.fill(row, BACKGROUND);
+        encoder.writeRow(row, 0);
+        accumulator.addRow(row, 0);
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            ActionProbe.sleep("full page scroll pause", millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while taking full page screenshot", e);
+        }
+    }
+
+    private static final class Tile {
+        private final long scrollY;
+        private final byte[] png;
+
+        private Tile(long scrollY, byte[] png) {
+            this.scrollY = scrollY;
+            this.png = png;
+        }
+
+        // Size is read from the PNG header (IHDR), without decoding the image
+        private int width() {
+            return readInt(16);
+        }
+
+        private int height() {
+            return readInt(20);
+        }
+
+        private int readInt(int offset) {
+            return ((png[offset] & 0xff) << 24) | ((png[offset + 1] & 0xff) << 16) | ((png[offset + 2] & 0xff) << 8) | (png[offset + 3] & 0xff);
+        }
+
+        /**
+         * Decode only rows <code>[from, from + count)</code> of the tile
+         */
+        private BufferedImage readRows(int from, int count, int maxWidth) throws IOException {
+            try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(png))) {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+                if (!readers.hasNext()) {
+                    throw new IOException("Screenshot tile is not a readable image");
+                }
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(input, true, true);
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    param.setSourceRegion(new Rectangle(0, from, Math.min(maxWidth, reader.getWidth(0)), count));
+                    return reader.read(0, param);
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.my.automationtest.service.screenshot;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Difference hash (dHash) of an image: the image is reduced to 9x8 gray cells, each bit tells whether a cell is brighter than its right neighbour.<br/><br/>
+ * Images which look alike have hashes at a small Hamming distance, whatever their encoding. Small localized changes (for ex: a short error message)
+ * may not change the hash at all, so deduplicating on it trades exactness for disk space.
+ */
+public final class PerceptualHash {
+
+    private static final int WIDTH = 9;
+    private static final int HEIGHT = 8;
+
+    private PerceptualHash() {
+    }
+
+    public static long dHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Accumulator accumulator = new Accumulator(width, height);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            accumulator.addRow(row, 0);
+        }
+        return accumulator.hash();
+    }
+
+    public static int distance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
+    }
+
+    /**
+     * dHash computed row by row, for images which are never held whole in memory (see {@link StreamingPngEncoder})
+     */
+    public static final class Accumulator {
+        private final int width;
+        private final int height;
+        private final long[] sums = new long[WIDTH * HEIGHT];
+        private final long[] counts = new long[WIDTH * HEIGHT];
+        private int y;
+
+        public Accumulator(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Add the next row of the image
+         * @param argb pixels in {@link BufferedImage#getRGB(int, int)} format
+         * @param offset index of the first pixel of the row in <code>argb</code>
+         */
+        public void addRow(int[] argb, int offset) {
+            int cellY = (int) ((long) y * HEIGHT / height);
+            for (int x = 0; x < width; x++) {
+                int cell = cellY * WIDTH + (int) ((long) x * WIDTH / width);
+                int rgb = argb[offset + x];
+                // Integer approximation of luma
+                sums[cell] += (((rgb >> 16) & 0xff) * 299 + ((rgb >> 8) & 0xff) * 587 + (rgb & 0xff) * 114) / 1000;
+                counts[cell]++;
+            }
+            y++;
+        }
+
+        public long hash() {
+            long hash = 0;
+            for (int cellY = 0; cellY < HEIGHT; cellY++) {
+                for (int x = 0; x < WIDTH - 1; x++) {
+                    int left = cellY * WIDTH + x;
+                    long leftMean = counts[left] == 0 ? 0 : sums[left] / counts[left];
+                    long rightMean = counts[left + 1] == 0 ? 0 : sums[left + 1] / counts[left + 1];
+                    hash = (hash << 1) | (leftMean > rightMean ? 1 : 0);
+                }
+            }
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.my.automationtest.service.screenshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * PNG image written as a stream, for images too big to be held as a byte array (see {@link FullPageScreenshot})
+ */
+public interface PngContent {
+
+    void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * @return {@link PerceptualHash} of the image computed by the last {@link #writeTo(OutputStream)}, null if not computed
+     */
+    default Long getPerceptualHash() {
+        return null;
+    }
+}
@@ -0,0 +1,316 @@
+package org.my.automationtest.service.screenshot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content-addressed screenshot store: each distinct PNG is written once under <code>&lt;root&gt;/blobs/&lt;2 first hex digits&gt;/&lt;sha-256&gt;.png</code>,
+ * and each test folder only holds an <code>index.tsv</code> file listing its screenshots in order:<br/>
+ * <code>capture name &lt;TAB&gt; blob path relative to root &lt;TAB&gt; NEW | DUPLICATE | SIMILAR</code><br/><br/>
+ * A screenshot identical to a stored one (same sha-256) is a DUPLICATE and costs no write.
+ * With perceptual deduplication enabled, a screenshot whose {@link PerceptualHash} is within the configured distance of one already stored
+ * for the same test is SIMILAR and points to that blob instead of being written.
+ */
+public class ScreenshotStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScreenshotStore.class);
+
+    public static final String BLOBS_DIRECTORY = "blobs";
+    public static final String INDEX_FILE = "index.tsv";
+
+    public enum Entry {
+        NEW,
+        DUPLICATE,
+        SIMILAR
+    }
+
+    private final Path root;
+    private final ScreenshotWriter writer;
+    private final boolean perceptualDedup;
+    private final int perceptualThreshold;
+
+    // Blob written under each hash, completed with null when nothing was written under it (similar content or failed write)
+    private final Map<String, CompletableFuture<Path>> knownBlobs = new ConcurrentHashMap<>();
+    private final Map<String, List<PerceptualEntry>> perceptualEntriesByTest = new ConcurrentHashMap<>();
+    private final Map<String, Object> indexLocks = new ConcurrentHashMap<>();
+
+    private final LongAdder newBlobs = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder similars = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**
+     * @param root folder holding the blobs and one folder per test
+     * @param writer writer creating the folders
+     * @param perceptualDedup true to deduplicate screenshots which look alike, not only identical ones
+     * @param perceptualThreshold maximum Hamming distance between the {@link PerceptualHash}es of two screenshots considered alike
+     */
+    ScreenshotStore(Path root, ScreenshotWriter writer, boolean perceptualDedup, int perceptualThreshold) {
+        this.root = root;
+        this.writer = writer;
+        this.perceptualDedup = perceptualDedup;
+        this.perceptualThreshold = perceptualThreshold;
+    }
+
+    /**
+     * Store <code>png</code> as a screenshot of <code>testName</code>, to be called from a writer thread
+     * @return how the screenshot was stored
+     */
+    public Entry put(String testName, byte[] png) throws IOException {
+        String hash = sha256(png);
+        StoredBlob stored = storeOnce(hash, target -> {
+            Long perceptualHash = perceptualDedup ? perceptualHashOf(png) : null;
+            Path similarBlob = perceptualHash == null ? null : findSimilar(testName, perceptualHash);
+            if (similarBlob != null) {
+                return new StoredBlob(similarBlob, Entry.SIMILAR);
+            }
+            writeBlob(target, png);
+            if (perceptualHash != null) {
+                perceptualEntriesOf(testName).add(new PerceptualEntry(perceptualHash, target));
+            }
+            return new StoredBlob(target, Entry.NEW);
+        });
+        record(stored.entry, png.length);
+        appendToIndex(testName, stored.blob, stored.entry);
+        return stored.entry;
+    }
+
+    /**
+     * Store the streamed <code>content</code> as a screenshot of <code>testName</code>, to be called from a writer thread.<br/><br/>
+     * The hash is only known once the content is written, so it is streamed to a temporary file first, which is dropped if the blob already exists.
+     * Perceptual deduplication uses {@link PngContent#getPerceptualHash()}, the content is never decoded by the store.
+     * @return how the screenshot was stored
+     */
+    public Entry put(String testName, PngContent content) throws IOException {
+        Path blobsDirectory = root.resolve(BLOBS_DIRECTORY);
+        writer.ensureDirectory(blobsDirectory);
+        Path tempFile = Files.createTempFile(blobsDirectory, "blob", ".tmp");
+        try {
+            MessageDigest digest = newSha256();
+            try (OutputStream out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)), digest)) {
+                content.writeTo(out);
+            }
+            long size = Files.size(tempFile);
+            String hash = toHex(digest.digest());
+            StoredBlob stored = storeOnce(hash, target -> {
+                Long perceptualHash = perceptualDedup ? content.getPerceptualHash() : null;
+                Path similarBlob = perceptualHash == null ? null : findSimilar(testName, perceptualHash);
+                if (similarBlob != null) {
+                    return new StoredBlob(similarBlob, Entry.SIMILAR);
+                }
+                writer.ensureDirectory(target.getParent());
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+                if (perceptualHash != null) {
+                    perceptualEntriesOf(testName).add(new PerceptualEntry(perceptualHash, target));
+                }
+                return new StoredBlob(target, Entry.NEW);
+            });
+            record(stored.entry, size);
+            appendToIndex(testName, stored.blob, stored.entry);
+            return stored.entry;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public long getNewBlobs() {
+        return newBlobs.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    public long getSimilars() {
+        return similars.sum();
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes.sum();
+    }
+
+    /**
+     * @return bytes not written thanks to deduplication
+     */
+    public long getSavedBytes() {
+        return savedBytes.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ScreenshotStore(%s: new=%d, duplicates=%d, similar=%d, written=%d bytes, saved=%d bytes)"
+                , root, getNewBlobs(), getDuplicates(), getSimilars(), getWrittenBytes(), getSavedBytes());
+    }
+
+    /**
+     * Store the content hashed <code>hash</code>: a DUPLICATE of the blob already written under <code>hash</code> (by this store or a previous run),
+     * otherwise what <code>store</code> does with it.<br/><br/>
+     * <code>hash</code> only points to content actually written under it: a SIMILAR result or a failed write leaves nothing behind,
+     * so the next screenshot with the same content is checked again for its own test.
+     * Threads storing the same content meanwhile wait for the first one, which writes outside of the map so other hashes are never held up.
+     * @param store writes the content at the given blob path, or finds a similar blob of the same test
+     */
+    private StoredBlob storeOnce(String hash, BlobWrite store) throws IOException {
+        while (true) {
+            CompletableFuture<Path> written = new CompletableFuture<>();
+            CompletableFuture<Path> known = knownBlobs.putIfAbsent(hash, written);
+            if (known != null) {
+                Path blob = known.join();
+                if (blob != null) {
+                    return new StoredBlob(blob, Entry.DUPLICATE);
+                }
+                continue; // Nothing was written under this hash, store the content again
+            }
+            StoredBlob stored = null;
+            try {
+                Path target = blobPathOf(hash);
+                // The blob may have been stored by a previous run
+                stored = Files.exists(target) ? new StoredBlob(target, Entry.DUPLICATE) : store.write(target);
+                return stored;
+            } finally {
+                if (stored == null || stored.entry == Entry.SIMILAR) {
+                    knownBlobs.remove(hash, written);
+                    written.complete(null);
+                } else {
+                    written.complete(stored.blob);
+                }
+            }
+        }
+    }
+
+    Path blobPathOf(String hash) {
+        return root.resolve(BLOBS_DIRECTORY).resolve(hash.substring(0, 2)).resolve(hash + ".png");
+    }
+
+    void record(Entry entry, long size) {
+        switch (entry) {
+            case NEW:
+                newBlobs.increment();
+                writtenBytes.add(size);
+                break;
+            case DUPLICATE:
+                duplicates.increment();
+                savedBytes.add(size);
+                break;
+            default:
+                similars.increment();
+                savedBytes.add(size);
+        }
+    }
+
+    void appendToIndex(String testName, Path blob, Entry entry) throws IOException {
+        Path testDirectory = root.resolve(testName);
+        writer.ensureDirectory(testDirectory);
+        String line = String.format("%s\t%s\t%s%n", ScreenshotWriter.newFileName("png"), root.relativize(blob).toString().replace('\\', '/'), entry);
+        synchronized (indexLocks.computeIfAbsent(testName, key -> new Object())) {
+            Files.write(testDirectory.resolve(INDEX_FILE), line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Write the blob to a temporary file first and move it in place, so a blob file is either complete or absent
+     */
+    private void writeBlob(Path blob, byte[] png) throws IOException {
+        writer.ensureDirectory(blob.getParent());
+        Path tempFile = Files.createTempFile(blob.getParent(), "blob", ".tmp");
+        try {
+            Files.write(tempFile, png);
+            Files.move(tempFile, blob, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private Path findSimilar(String testName, long perceptualHash) {
+        for (PerceptualEntry perceptualEntry : perceptualEntriesOf(testName)) {
+            if (PerceptualHash.distance(perceptualEntry.hash, perceptualHash) <= perceptualThreshold) {
+                return perceptualEntry.blob;
+            }
+        }
+        return null;
+    }
+
+    private List<PerceptualEntry> perceptualEntriesOf(String testName) {
+        return perceptualEntriesByTest.computeIfAbsent(testName, key -> new CopyOnWriteArrayList<>());
+    }
+
+    private static Long perceptualHashOf(byte[] png) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+            return image == null ? null : PerceptualHash.dHash(image);
+        } catch (IOException e) {
+            LOGGER.debug("Cannot decode screenshot for perceptual hash", e);
+            return null;
+        }
+    }
+
+    static String sha256(byte[] content) {
+        return toHex(newSha256().digest(content));
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private interface BlobWrite {
+        StoredBlob write(Path blob) throws IOException;
+    }
+
+    private static final class StoredBlob {
+        private final Path blob;
+        private final Entry entry;
+
+        private StoredBlob(Path blob, Entry entry) {
+            this.blob = blob;
+            this.entry = entry;
+        }
+    }
+
+    private static final class PerceptualEntry {
+        private final long hash;
+        private final Path blob;
+
+        private PerceptualEntry(long hash, Path blob) {
+            this.hash = hash;
+            this.blob = blob;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package org.my.automationtest.service.screenshot;
+
+import org.my.automationtest.utils.DateTimeUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background writer of screenshots: the test thread only captures the screenshot and queues it, worker threads write it to disk.<br/><br/>
+ * The queue is bounded: when the writer falls behind, {@link #submit(String, WriteJob)} blocks until a slot is free (back-pressure),
+ * so captured screenshots waiting to be written never exceed {@link #setQueueCapacity(int)}.
+ * Call {@link #flush(long)} before reading the written files, for ex: at suite end.
+ */
+public class ScreenshotWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScreenshotWriter.class);
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private volatile int queueCapacity = 32;
+    private volatile int writerThreads = 1;
+    private volatile boolean contentAddressed = false;
+    private volatile boolean perceptualDedup = false;
+    private volatile int perceptualThreshold = 4;
+
+    private BlockingQueue<Job> queue;
+    private final Set<Path> createdDirectories = ConcurrentHashMap.newKeySet();
+    private final Map<Path, ScreenshotStore> stores = new ConcurrentHashMap<>();
+    private final Object pendingLock = new Object();
+    private long pendingJobs;
+
+    private final LongAdder writtenJobs = new LongAdder();
+    private final LongAdder failedJobs = new LongAdder();
+    private final LongAdder blockedSubmits = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+
+    /**
+     * Queue <code>job</code> to be run by a writer thread, block while the queue is full
+     * @param description what is written, for logging
+     * @param job the write itself, failures are logged and counted, they don't reach the test thread
+     */
+    public void submit(String description, WriteJob job) {
+        BlockingQueue<Job> jobs = startIfNeeded();
+        synchronized (pendingLock) {
+            pendingJobs++;
+        }
+        Job queued = new Job(description, job);
+        if (!jobs.offer(queued)) {
+            blockedSubmits.increment();
+            long startTime = System.nanoTime();
+            try {
+                jobs.put(queued);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                jobDone();
+                throw new RuntimeException(String.format("Interrupted while queuing %s", description), e);
+            } finally {
+                blockedNanos.add(System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    /**
+     * Wait until all queued screenshots are written
+     * @param timeoutMillis maximum time allowed to wait, in milliseconds
+     * @return true if everything was written, false if the timeout elapsed first
+     */
+    public boolean flush(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (pendingLock) {
+            while (pendingJobs > 0) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    LOGGER.warn("{} screenshots are still not written after {} ms", pendingJobs, timeoutMillis);
+                    return false;
+                }
+                try {
+                    pendingLock.wait(remainingMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create <code>directory</code> unless this writer already did
+     */
+    public void ensureDirectory(Path directory) throws IOException {
+        if (!createdDirectories.contains(directory)) {
+            Files.createDirectories(directory);
+            createdDirectories.add(directory);
+        }
+    }
+
+    /**
+     * Write <code>content</code> to a new file of <code>directory</code>, named after the current time and a sequence number so parallel writers never collide
+     * @return the written file
+     */
+    public Path writeNewFile(Path directory, String extension, byte[] content) throws IOException {
+        return writeNewFile(directory, extension, out -> out.write(content));
+    }
+
+    /**
+     * Stream <code>content</code> to a new file of <code>directory</code>, see {@link #writeNewFile(Path, String, byte[])}
+     * @return the written file
+     */
+    public Path writeNewFile(Path directory, String extension, PngContent content) throws IOException {
+        ensureDirectory(directory);
+        while (true) {
+            Path file = directory.resolve(newFileName(extension));
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+                content.writeTo(out);
+                return file;
+            } catch (FileAlreadyExistsException e) {
+                // Left by a previous run or another process, take the next sequence number
+                LOGGER.debug("Screenshot file {} already exists", file);
+            }
+        }
+    }
+
+    /**
+     * Content-addressed store writing its blobs and indexes under <code>root</code>, created on first use with the current perceptual deduplication settings
+     */
+    public ScreenshotStore storeOf(Path root) {
+        return stores.computeIfAbsent(root, key -> new ScreenshotStore(key, this, perceptualDedup, perceptualThreshold));
+    }
+
+    public Collection<ScreenshotStore> getStores() {
+        return stores.values();
+    }
+
+    /**
+     * @return a file name unique within this JVM, for ex: <code>06151542.123-17.png</code>
+     */
+    public static String newFileName(String extension) {
+        return String.format("%s-%d.%s", DateTimeUtil.obtainCurrentDateTimeInMiliSecond(), SEQUENCE.incrementAndGet(), extension);
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @param queueCapacity maximum number of screenshots waiting to be written, applied when the writer starts (on first submit)
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    /**
+     * @param writerThreads number of threads writing screenshots, applied when the writer starts (on first submit)
+     */
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
+    public boolean isContentAddressed() {
+        return contentAddressed;
+    }
+
+    /**
+     * @param contentAddressed true to write screenshots to a {@link ScreenshotStore}, false (default) to write one file per screenshot.
+     * Tools reading the screenshot files of a test folder must then read its <code>index.tsv</code> to find the blobs instead
+     */
+    public void setContentAddressed(boolean contentAddressed) {
+        this.contentAddressed = contentAddressed;
+    }
+
+    public boolean isPerceptualDedup() {
+        return perceptualDedup;
+    }
+
+    /**
+     * @param perceptualDedup true for stores to also deduplicate screenshots which look alike, applied to stores created afterwards
+     */
+    public void setPerceptualDedup(boolean perceptualDedup) {
+        this.perceptualDedup = perceptualDedup;
+    }
+
+    public int getPerceptualThreshold() {
+        return perceptualThreshold;
+    }
+
+    /**
+     * @param perceptualThreshold maximum number of differing bits (out of 64) between the perceptual hashes of screenshots considered alike
+     */
+    public void setPerceptualThreshold(int perceptualThreshold) {
+        this.perceptualThreshold = perceptualThreshold;
+    }
+
+    public long getWrittenJobs() {
+        return writtenJobs.sum();
+    }
+
+    public long getFailedJobs() {
+        return failedJobs.sum();
+    }
+
+    /**
+     * @return number of submits which had to wait for a free slot in the queue
+     */
+    public long getBlockedSubmits() {
+        return blockedSubmits.sum();
+    }
+
+    /**
+     * @return total time test threads waited for a free slot in the queue, in milliseconds
+     */
+    public long getBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(blockedNanos.sum());
+    }
+
+    /**
+     * @return total time spent writing by the writer threads, in milliseconds
+     */
+    public long getWriteMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writeNanos.sum());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("written=%d, failed=%d, blockedSubmits=%d, blocked=%d ms, writing=%d ms"
+                , getWrittenJobs(), getFailedJobs(), getBlockedSubmits(), getBlockedMillis(), getWriteMillis());
+    }
+
+    private synchronized BlockingQueue<Job> startIfNeeded() {
+        if (queue == null) {
+            queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+            for (int i = 0; i < Math.max(1, writerThreads); i++) {
+                Thread worker = new Thread(this::work, "screenshot-writer-" + i);
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+        return queue;
+    }
+
+    private void work() {
+        while (true) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long startTime = System.nanoTime();
+            try {
+                job.writeJob.write();
+                writtenJobs.increment();
+            } catch (Exception e) {
+                failedJobs.increment();
+                LOGGER.error("Cannot write {}", job.description, e);
+            } finally {
+                writeNanos.add(System.nanoTime() - startTime);
+                jobDone();
+            }
+        }
+    }
+
+    private void jobDone() {
+        synchronized (pendingLock) {
+            pendingJobs--;
+            pendingLock.notifyAll();
+        }
+    }
+
+    public interface WriteJob {
+        void write() throws Exception;
+    }
+
+    private static final class Job {
+        private final String description;
+        private final WriteJob writeJob;
+
+        private Job(String description, WriteJob writeJob) {
+            this.description = description;
+            this.writeJob = writeJob;
+        }
+    }
+}
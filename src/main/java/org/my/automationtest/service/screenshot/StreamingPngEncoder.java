@@ -0,0 +1,225 @@
+package org.my.automationtest.service.screenshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * PNG encoder fed one row at a time, so an image of any height is written holding only two rows in memory.<br/><br/>
+ * Writes 8 bit RGB, each row filtered with the PNG filter giving the smallest sum of absolute values (as libpng does),
+ * compressed data being split in IDAT chunks of {@link #CHUNK_SIZE} bytes.
+ * Usage: call {@link #writeRow(int[], int)} exactly <code>height</code> times, then {@link #finish()}.
+ */
+public class StreamingPngEncoder {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int BYTES_PER_PIXEL = 3;
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final IdatOutputStream idatStream;
+    private final DeflaterOutputStream idat;
+    private final Deflater deflater;
+
+    private byte[] previousRow;
+    private byte[] currentRow;
+    private final byte[][] filteredRows;
+    private int writtenRows;
+
+    /**
+     * Write the PNG signature and header to <code>out</code>
+     * @param out stream receiving the PNG, not closed by this encoder
+     */
+    public StreamingPngEncoder(OutputStream out, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new RuntimeException(String.format("Invalid PNG size %dx%d", width, height));
+        }
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        int rowLength = width * BYTES_PER_PIXEL;
+        previousRow = new byte[rowLength];
+        currentRow = new byte[rowLength];
+        filteredRows = new byte[5][rowLength + 1];
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; // bit depth
+        header[9] = 2; // color type: RGB
+        writeChunk(out, "IHDR", header, header.length);
+        deflater = new Deflater(Deflater.BEST_SPEED);
+        idatStream = new IdatOutputStream(out);
+        idat = new DeflaterOutputStream(idatStream, deflater, CHUNK_SIZE);
+    }
+
+    /**
+     * Append the next row of the image
+     * @param argb pixels in {@link java.awt.image.BufferedImage#getRGB(int, int)} format, alpha is ignored
+     * @param offset index of the first pixel of the row in <code>argb</code>
+     */
+    public void writeRow(int[] argb, int offset) throws IOException {
+        if (writtenRows >= height) {
+            throw new RuntimeException(String.format("PNG already has its %d rows", height));
+        }
+        for (int x = 0, i = 0; x < width; x++) {
+            int pixel = argb[offset + x];
+            currentRow[i++] = (byte) (pixel >> 16);
+            currentRow[i++] = (byte) (pixel >> 8);
+            currentRow[i++] = (byte) pixel;
+        }
+        byte[] filtered = filter();
+        idat.write(filtered, 0, filtered.length);
+        byte[] swap = previousRow;
+        previousRow = currentRow;
+        currentRow = swap;
+        writtenRows++;
+    }
+
+    /**
+     * Flush compressed data and write the end of the PNG
+     */
+    public void finish() throws IOException {
+        if (writtenRows != height) {
+            throw new RuntimeException(String.format("PNG has %d rows out of %d", writtenRows, height));
+        }
+        idat.finish();
+        deflater.end();
+        idatStream.flushChunk();
+        writeChunk(out, "IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    private byte[] filter() {
+        int length = currentRow.length;
+        byte[] best = null;
+        long bestSum = Long.MAX_VALUE;
+        for (int type = 0; type < 5; type++) {
+            byte[] filtered = filteredRows[type];
+            filtered[0] = (byte) type;
+            long sum = 0;
+            for (int i = 0; i < length; i++) {
+                int raw = currentRow[i] & 0xff;
+                int left = i >= BYTES_PER_PIXEL ? currentRow[i - BYTES_PER_PIXEL] & 0xff : 0;
+                int up = previousRow[i] & 0xff;
+                int upLeft = i >= BYTES_PER_PIXEL ? previousRow[i - BYTES_PER_PIXEL] & 0xff : 0;
+                int value;
+                switch (type) {
+                    case 0:
+                        value = raw;
+                        break;
+                    case 1:
+                        value = raw - left;
+                        break;
+                    case 2:
+                        value = raw - up;
+                        break;
+                    case 3:
+                        value = raw - ((left + up) >> 1);
+                        break;
+                    default:
+                        value = raw - paeth(left, up, upLeft);
+                }
+                byte b = (byte) value;
+                filtered[i + 1] = b;
+                sum += Math.abs((int) b);
+                if (sum >= bestSum) {
+                    break;
+                }
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = filtered;
+            }
+        }
+        return best;
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int p = left + up - upLeft;
+        int distanceLeft = Math.abs(p - left);
+        int distanceUp = Math.abs(p - up);
+        int distanceUpLeft = Math.abs(p - upLeft);
+        if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft) {
+            return left;
+        }
+        return distanceUp <= distanceUpLeft ? up : upLeft;
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] lengthBytes = new byte[4];
+        putInt(lengthBytes, 0, length);
+        out.write(lengthBytes);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        byte[] crcBytes = new byte[4];
+        putInt(crcBytes, 0, (int) crc.getValue());
+        out.write(crcBytes);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Buffers compressed data and writes it as IDAT chunks of {@link #CHUNK_SIZE} bytes
+     */
+    private static final class IdatOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int count;
+
+        private IdatOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+                int copied = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, copied);
+                count += copied;
+                offset += copied;
+                length -= copied;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (count > 0) {
+                writeChunk(out, "IDAT", buffer, count);
+                count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.my.automationtest.service.visual;
+
+import org.my.automationtest.service.screenshot.ScreenshotWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Baseline screenshots, one PNG per name under {@link #getDirectory()}, and their comparison with new screenshots.<br/><br/>
+ * A screenshot without baseline becomes its baseline (as all screenshots do in update mode).
+ * On mismatch, the screenshot and its diff image are written in background next to the test output, as
+ * <code>visual/&lt;name&gt;.actual.png</code> and <code>visual/&lt;name&gt;.diff.png</code>.
+ */
+public class VisualBaselines {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VisualBaselines.class);
+
+    public static final String OUTPUT_DIRECTORY = "visual";
+
+    private volatile Path directory = Paths.get("baselines");
+    private volatile VisualDiff visualDiff = VisualDiff.builder().build();
+    private volatile boolean updateBaselines = false;
+
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final LongAdder createdBaselines = new LongAdder();
+    private final LongAdder compareNanos = new LongAdder();
+
+    /**
+     * Compare <code>actualPng</code> with the baseline named <code>name</code>
+     * @param name name of the baseline, may contain <code>/</code> to group baselines in folders
+     * @param actualPng the new screenshot
+     * @param ignoredRegions regions not compared, in pixels of the screenshot
+     * @param outputDirectory folder receiving the screenshot and diff image on mismatch
+     * @param writer writer of the screenshot and diff image
+     */
+    public VisualDiffResult verify(String name, byte[] actualPng, List<Rectangle> ignoredRegions, Path outputDirectory, ScreenshotWriter writer) throws IOException {
+        Path baselineFile = directory.resolve(name + ".png");
+        if (updateBaselines || !Files.exists(baselineFile)) {
+            writeBaseline(baselineFile, actualPng);
+            createdBaselines.increment();
+            LOGGER.info("Baseline {} written", baselineFile);
+            return VisualDiffResult.baselineCreated(readInt(actualPng, 16), readInt(actualPng, 20));
+        }
+        BufferedImage baseline = read(Files.readAllBytes(baselineFile), baselineFile.toString());
+        BufferedImage actual = read(actualPng, name);
+        VisualDiff diff = visualDiff;
+        VisualDiffResult result = diff.compare(baseline, actual, ignoredRegions, true);
+        byte[] diffPng = null;
+        if (!result.isComplete()) {
+            // Exited early: the diff image is written now to count and locate all differences for the report, in one pass over the pixels
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long earlyExitNanos = result.getElapsedNanos();
+            result = diff.writeDiffImage(baseline, actual, ignoredRegions, out);
+            result = result.withElapsedNanos(earlyExitNanos + result.getElapsedNanos());
+            diffPng = out.toByteArray();
+        }
+        comparisons.increment();
+        compareNanos.add(result.getElapsedNanos());
+        if (!result.isMatch()) {
+            mismatches.increment();
+            Path visualDirectory = outputDirectory.resolve(OUTPUT_DIRECTORY);
+            Path actualFile = visualDirectory.resolve(name + ".actual.png");
+            Path diffFile = visualDirectory.resolve(name + ".diff.png");
+            byte[] writtenDiffPng = diffPng;
+            writer.submit(String.format("visual diff of %s", name), () -> {
+                writer.ensureDirectory(actualFile.getParent());
+                Files.write(actualFile, actualPng);
+                if (writtenDiffPng != null) {
+                    Files.write(diffFile, writtenDiffPng);
+                    return;
+                }
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(diffFile))) {
+                    diff.writeDiffImage(baseline, actual, ignoredRegions, out);
+                }
+            });
+        }
+        return result;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    public VisualDiff getVisualDiff() {
+        return visualDiff;
+    }
+
+    public void setVisualDiff(VisualDiff visualDiff) {
+        this.visualDiff = visualDiff;
+    }
+
+    public boolean isUpdateBaselines() {
+        return updateBaselines;
+    }
+
+    /**
+     * @param updateBaselines true to replace baselines by new screenshots instead of comparing them, for ex: after an intended UI change
+     */
+    public void setUpdateBaselines(boolean updateBaselines) {
+        this.updateBaselines = updateBaselines;
+    }
+
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+    public long getMismatches() {
+        return mismatches.sum();
+    }
+
+    public long getCreatedBaselines() {
+        return createdBaselines.sum();
+    }
+
+    /**
+     * @return total time spent comparing pixels, decoding excluded, in milliseconds
+     */
+    public long getCompareMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(compareNanos.sum());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("comparisons=%d, mismatches=%d, createdBaselines=%d, comparing=%d ms"
+                , getComparisons(), getMismatches(), getCreatedBaselines(), getCompareMillis());
+    }
+
+    private static void writeBaseline(Path baselineFile, byte[] png) throws IOException {
+        Files.createDirectories(baselineFile.getParent());
+        Path tempFile = Files.createTempFile(baselineFile.getParent(), "baseline", ".tmp");
+        try {
+            Files.write(tempFile, png);
+            Files.move(tempFile, baselineFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static BufferedImage read(byte[] png, String description) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        if (image == null) {
+            throw new IOException(String.format("%s is not a readable image", description));
+        }
+        return image;
+    }
+
+    // Big-endian int of the PNG header (IHDR), width at 16 and height at 20
+    private static int readInt(byte[] png, int offset) {
+        return ((png[offset] & 0xff) << 24) | ((png[offset + 1] & 0xff) << 16) | ((png[offset + 2] & 0xff) << 8) | (png[offset + 3] & 0xff);
+    }
+}
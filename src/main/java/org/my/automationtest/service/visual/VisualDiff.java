@@ -0,0 +1,391 @@
+package org.my.automationtest.service.visual;
+
+import org.my.automationtest.service.screenshot.StreamingPngEncoder;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pixel comparison of a screenshot against its baseline.<br/><br/>
+ * Images are split in square tiles compared in parallel on a {@link ForkJoinPool}. Pixels inside ignored regions are not compared.
+ * Two pixels differ when one of their color channels differs by more than the channel tolerance,
+ * the images match when at most <code>maxDiffRatio</code> of their pixels differ.<br/>
+ * With early exit, tiles stop being compared as soon as the allowed number of different pixels is exceeded:
+ * a mismatch is then known quickly but the result is incomplete, {@link #writeDiffImage(BufferedImage, BufferedImage, List, OutputStream)} locates all differences.
+ * Instances are immutable and can be shared by test threads, instances with the same parallelism share one pool.
+ */
+public class VisualDiff {
+
+    private static final int DIFFERENT_COLOR = 0xff0000;
+    private static final int IGNORED_COLOR = 0x4060ff;
+    // Pools by parallelism, kept for the JVM lifetime: their threads are daemons and end when idle
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private final int tileSize;
+    private final int channelTolerance;
+    private final double maxDiffRatio;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    private VisualDiff(Builder builder) {
+        this.tileSize = builder.tileSize;
+        this.channelTolerance = builder.channelTolerance;
+        this.maxDiffRatio = builder.maxDiffRatio;
+        this.parallelism = builder.parallelism;
+        this.pool = builder.parallelism > 0 ? POOLS.computeIfAbsent(builder.parallelism, ForkJoinPool::new) : ForkJoinPool.commonPool();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a builder initialized with the settings of this instance
+     */
+    public Builder toBuilder() {
+        return new Builder()
+                .tileSize(tileSize)
+                .channelTolerance(channelTolerance)
+                .maxDiffRatio(maxDiffRatio)
+                .parallelism(parallelism);
+    }
+
+    /**
+     * Compare <code>actual</code> with <code>baseline</code>
+     * @param ignoredRegions regions not compared, in pixels of the images
+     * @param earlyExit true to stop comparing once the images are known not to match
+     */
+    public VisualDiffResult compare(BufferedImage baseline, BufferedImage actual, List<Rectangle> ignoredRegions, boolean earlyExit) {
+        long startTime = System.nanoTime();
+        int width = Math.min(baseline.getWidth(), actual.getWidth());
+        int height = Math.min(baseline.getHeight(), actual.getHeight());
+        int maxWidth = Math.max(baseline.getWidth(), actual.getWidth());
+        int maxHeight = Math.max(baseline.getHeight(), actual.getHeight());
+        long allowedDifferentPixels = allowedDifferentPixels(maxWidth, maxHeight);
+        // Pixels present in one image only always differ
+        long outsidePixels = (long) maxWidth * maxHeight - (long) width * height;
+
+        Comparison comparison = new Comparison(pixelsOf(baseline), baseline.getWidth(), pixelsOf(actual), actual.getWidth(), width, height,
+                ignoredRegions == null ? Collections.emptyList() : ignoredRegions, earlyExit ? allowedDifferentPixels : Long.MAX_VALUE);
+        comparison.differentPixels.addAndGet(outsidePixels);
+        if (comparison.differentPixels.get() > comparison.stopAbove) {
+            comparison.stopped.set(true);
+        } else {
+            int tileCount = comparison.columns * comparison.rows;
+            pool.invoke(comparison.new TileTask(0, tileCount));
+        }
+
+        List<Rectangle> differentTiles = new ArrayList<>(comparison.differentTiles);
+        differentTiles.sort((r1, r2) -> r1.y != r2.y ? Integer.compare(r1.y, r2.y) : Integer.compare(r1.x, r2.x));
+        return new VisualDiffResult(maxWidth, maxHeight, baseline.getWidth() != actual.getWidth() || baseline.getHeight() != actual.getHeight()
+                , comparison.differentPixels.get(), comparison.comparedPixels.get() + outsidePixels, allowedDifferentPixels
+                , !comparison.stopped.get(), differentTiles, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Stream the diff image of <code>actual</code> against <code>baseline</code> to <code>out</code> as PNG, one row at a time:
+     * different pixels in red, ignored regions tinted in blue, other pixels faded
+     * @return complete result of the comparison, counted while writing the image, for ex: to complete the result of a comparison which exited early
+     */
+    public VisualDiffResult writeDiffImage(BufferedImage baseline, BufferedImage actual, List<Rectangle> ignoredRegions, OutputStream out) throws IOException {
+        long startTime = System.nanoTime();
+        int width = Math.max(baseline.getWidth(), actual.getWidth());
+        int height = Math.max(baseline.getHeight(), actual.getHeight());
+        int comparedWidth = Math.min(baseline.getWidth(), actual.getWidth());
+        int comparedHeight = Math.min(baseline.getHeight(), actual.getHeight());
+        int[] baselinePixels = pixelsOf(baseline);
+        int[] actualPixels = pixelsOf(actual);
+        List<Rectangle> ignored = ignoredRegions == null ? Collections.<Rectangle>emptyList() : ignoredRegions;
+        long differentPixels = 0;
+        long comparedPixels = 0;
+        List<Rectangle> differentTiles = new ArrayList<>();
+        // Tiles of the current row of tiles having a different pixel
+        boolean[] differentTileColumns = new boolean[(comparedWidth + tileSize - 1) / tileSize];
+        StreamingPngEncoder encoder = new StreamingPngEncoder(out, width, height);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean inBaseline = x < baseline.getWidth() && y < baseline.getHeight();
+                boolean inActual = x < actual.getWidth() && y < actual.getHeight();
+                if (!inBaseline || !inActual) {
+                    row[x] = DIFFERENT_COLOR;
+                    differentPixels++;
+                    comparedPixels++;
+                    continue;
+                }
+                int actualPixel = actualPixels[y * actual.getWidth() + x];
+                if (isIgnored(ignored, x, y)) {
+                    row[x] = blend(actualPixel, IGNORED_COLOR);
+                } else if (differs(baselinePixels[y * baseline.getWidth() + x], actualPixel)) {
+                    row[x] = DIFFERENT_COLOR;
+                    differentPixels++;
+                    comparedPixels++;
+                    differentTileColumns[x / tileSize] = true;
+                } else {
+                    row[x] = blend(actualPixel, 0xffffff);
+                    comparedPixels++;
+                }
+            }
+            encoder.writeRow(row, 0);
+            if (y < comparedHeight && (y % tileSize == tileSize - 1 || y == comparedHeight - 1)) {
+                int tileY = y - y % tileSize;
+                for (int column = 0; column < differentTileColumns.length; column++) {
+                    if (differentTileColumns[column]) {
+                        int tileX = column * tileSize;
+                        differentTiles.add(new Rectangle(tileX, tileY, Math.min(tileSize, comparedWidth - tileX), y + 1 - tileY));
+                        differentTileColumns[column] = false;
+                    }
+                }
+            }
+        }
+        encoder.finish();
+        return new VisualDiffResult(width, height, baseline.getWidth() != actual.getWidth() || baseline.getHeight() != actual.getHeight()
+                , differentPixels, comparedPixels, allowedDifferentPixels(width, height), true, differentTiles, System.nanoTime() - startTime);
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getChannelTolerance() {
+        return channelTolerance;
+    }
+
+    public double getMaxDiffRatio() {
+        return maxDiffRatio;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    private long allowedDifferentPixels(int width, int height) {
+        return (long) Math.floor(maxDiffRatio * width * height);
+    }
+
+    private boolean differs(int pixel1, int pixel2) {
+        int difference = (pixel1 ^ pixel2) & 0xffffff;
+        if (difference == 0) {
+            return false;
+        }
+        if (channelTolerance == 0) {
+            return true;
+        }
+        return Math.abs(((pixel1 >> 16) & 0xff) - ((pixel2 >> 16) & 0xff)) > channelTolerance
+                || Math.abs(((pixel1 >> 8) & 0xff) - ((pixel2 >> 8) & 0xff)) > channelTolerance
+                || Math.abs((pixel1 & 0xff) - (pixel2 & 0xff)) > channelTolerance;
+    }
+
+    private static boolean isIgnored(List<Rectangle> regions, int x, int y) {
+        for (int i = 0; i < regions.size(); i++) {
+            if (regions.get(i).contains(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int blend(int pixel, int color) {
+        int r = (((pixel >> 16) & 0xff) + ((color >> 16) & 0xff) * 3) >> 2;
+        int g = (((pixel >> 8) & 0xff) + ((color >> 8) & 0xff) * 3) >> 2;
+        int b = ((pixel & 0xff) + (color & 0xff) * 3) >> 2;
+        return (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * @return RGB pixels of <code>image</code>, row by row, without copy when the image is already stored that way
+     */
+    static int[] pixelsOf(BufferedImage image) {
+        if ((image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB)
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt
+                && image.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel
+                && ((SinglePixelPackedSampleModel) image.getRaster().getSampleModel()).getScanlineStride() == image.getWidth()
+                && image.getRaster().getParent() == null) {
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        // Decoded PNGs are usually byte based, drawing converts them with the optimized loops of Java2D
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = converted.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return ((DataBufferInt) converted.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * State of one comparison, shared by its tile tasks
+     */
+    private final class Comparison {
+        private final int[] baseline;
+        private final int baselineWidth;
+        private final int[] actual;
+        private final int actualWidth;
+        private final int width;
+        private final int height;
+        private final int columns;
+        private final int rows;
+        private final List<Rectangle> ignoredRegions;
+        private final long stopAbove;
+
+        private final AtomicLong differentPixels = new AtomicLong();
+        private final AtomicLong comparedPixels = new AtomicLong();
+        private final AtomicBoolean stopped = new AtomicBoolean();
+        private final ConcurrentLinkedQueue<Rectangle> differentTiles = new ConcurrentLinkedQueue<>();
+
+        private Comparison(int[] baseline, int baselineWidth, int[] actual, int actualWidth, int width, int height, List<Rectangle> ignoredRegions, long stopAbove) {
+            this.baseline = baseline;
+            this.baselineWidth = baselineWidth;
+            this.actual = actual;
+            this.actualWidth = actualWidth;
+            this.width = width;
+            this.height = height;
+            this.columns = (width + tileSize - 1) / tileSize;
+            this.rows = (height + tileSize - 1) / tileSize;
+            this.ignoredRegions = ignoredRegions;
+            this.stopAbove = stopAbove;
+        }
+
+        private void compareTile(int tileIndex) {
+            if (stopped.get()) {
+                return;
+            }
+            Rectangle tile = new Rectangle((tileIndex % columns) * tileSize, (tileIndex / columns) * tileSize, tileSize, tileSize)
+                    .intersection(new Rectangle(0, 0, width, height));
+            List<Rectangle> ignored = new ArrayList<>();
+            for (Rectangle region : ignoredRegions) {
+                if (region.contains(tile)) {
+                    return;
+                }
+                if (region.intersects(tile)) {
+                    ignored.add(region);
+                }
+            }
+            long different = 0;
+            long compared = 0;
+            for (int y = tile.y; y < tile.y + tile.height; y++) {
+                int baselineIndex = y * baselineWidth + tile.x;
+                int actualIndex = y * actualWidth + tile.x;
+                if (ignored.isEmpty()) {
+                    for (int x = 0; x < tile.width; x++) {
+                        if (differs(baseline[baselineIndex + x], actual[actualIndex + x])) {
+                            different++;
+                        }
+                    }
+                    compared += tile.width;
+                } else {
+                    for (int x = 0; x < tile.width; x++) {
+                        if (!isIgnored(ignored, tile.x + x, y)) {
+                            compared++;
+                            if (differs(baseline[baselineIndex + x], actual[actualIndex + x])) {
+                                different++;
+                            }
+                        }
+                    }
+                }
+                if (different > 0 && stopAbove != Long.MAX_VALUE && differentPixels.get() + different > stopAbove) {
+                    stopped.set(true);
+                    break;
+                }
+            }
+            comparedPixels.addAndGet(compared);
+            if (different > 0) {
+                differentPixels.addAndGet(different);
+                differentTiles.add(tile);
+            }
+        }
+
+        private final class TileTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final int from;
+            private final int to;
+
+            private TileTask(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (stopped.get()) {
+                    return;
+                }
+                if (to - from <= 1) {
+                    if (to > from) {
+                        compareTile(from);
+                    }
+                    return;
+                }
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(from, middle), new TileTask(middle, to));
+            }
+        }
+    }
+
+    public static class Builder {
+        private int tileSize = 64;
+        private int channelTolerance = 0;
+        private double maxDiffRatio = 0;
+        private int parallelism = 0;
+
+        private Builder() {
+            // Use VisualDiff.builder()
+        }
+
+        /**
+         * @param tileSize side of the square tiles compared in parallel, in pixels
+         */
+        public Builder tileSize(int tileSize) {
+            this.tileSize = tileSize;
+            return this;
+        }
+
+        /**
+         * @param channelTolerance maximum difference of a color channel (0 to 255) between two pixels considered equal, for ex: to absorb anti-aliasing
+         */
+        public Builder channelTolerance(int channelTolerance) {
+            this.channelTolerance = channelTolerance;
+            return this;
+        }
+
+        /**
+         * @param maxDiffRatio maximum ratio of different pixels of matching images, 0 for none
+         */
+        public Builder maxDiffRatio(double maxDiffRatio) {
+            this.maxDiffRatio = maxDiffRatio;
+            return this;
+        }
+
+        /**
+         * @param parallelism number of threads comparing tiles, 0 to use the common fork-join pool
+         */
+        public Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public VisualDiff build() {
+            if (tileSize <= 0) {
+                throw new RuntimeException(String.format("Invalid tile size %d", tileSize));
+            }
+            return new VisualDiff(this);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.my.automationtest.service.visual;
+
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a {@link VisualDiff} comparison
+ */
+public class VisualDiffResult {
+
+    private final int width;
+    private final int height;
+    private final boolean sizeMismatch;
+    private final long differentPixels;
+    private final long comparedPixels;
+    private final long allowedDifferentPixels;
+    private final boolean complete;
+    private final List<Rectangle> differentTiles;
+    private final long elapsedNanos;
+    private final boolean baselineCreated;
+
+    VisualDiffResult(int width, int height, boolean sizeMismatch, long differentPixels, long comparedPixels, long allowedDifferentPixels
+            , boolean complete, List<Rectangle> differentTiles, long elapsedNanos) {
+        this(width, height, sizeMismatch, differentPixels, comparedPixels, allowedDifferentPixels, complete, differentTiles, elapsedNanos, false);
+    }
+
+    private VisualDiffResult(int width, int height, boolean sizeMismatch, long differentPixels, long comparedPixels, long allowedDifferentPixels
+            , boolean complete, List<Rectangle> differentTiles, long elapsedNanos, boolean baselineCreated) {
+        this.width = width;
+        this.height = height;
+        this.sizeMismatch = sizeMismatch;
+        this.differentPixels = differentPixels;
+        this.comparedPixels = comparedPixels;
+        this.allowedDifferentPixels = allowedDifferentPixels;
+        this.complete = complete;
+        this.differentTiles = Collections.unmodifiableList(differentTiles);
+        this.elapsedNanos = elapsedNanos;
+        this.baselineCreated = baselineCreated;
+    }
+
+    /**
+     * @return result of a screenshot which had no baseline and became it
+     */
+    static VisualDiffResult baselineCreated(int width, int height) {
+        return new VisualDiffResult(width, height, false, 0, 0, 0, true, Collections.<Rectangle>emptyList(), 0, true);
+    }
+
+    /**
+     * @return copy of this result taking <code>elapsedNanos</code>, for ex: the time of the comparison which exited early plus the time completing it
+     */
+    VisualDiffResult withElapsedNanos(long elapsedNanos) {
+        return new VisualDiffResult(width, height, sizeMismatch, differentPixels, comparedPixels, allowedDifferentPixels
+                , complete, differentTiles, elapsedNanos, baselineCreated);
+    }
+
+    /**
+     * @return true if both images have the same size and at most the allowed number of pixels differ
+     */
+    public boolean isMatch() {
+        return !sizeMismatch && differentPixels <= allowedDifferentPixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isSizeMismatch() {
+        return sizeMismatch;
+    }
+
+    /**
+     * @return number of different pixels found, a lower bound when the comparison is not complete
+     */
+    public long getDifferentPixels() {
+        return differentPixels;
+    }
+
+    public long getComparedPixels() {
+        return comparedPixels;
+    }
+
+    public long getAllowedDifferentPixels() {
+        return allowedDifferentPixels;
+    }
+
+    public double getDifferenceRatio() {
+        return comparedPixels == 0 ? 0 : (double) differentPixels / comparedPixels;
+    }
+
+    /**
+     * @return false if the comparison exited early, once the images were known not to match
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return tiles having at least one different pixel, top to bottom then left to right
+     */
+    public List<Rectangle> getDifferentTiles() {
+        return differentTiles;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public boolean isBaselineCreated() {
+        return baselineCreated;
+    }
+
+    @Override
+    public String toString() {
+        if (baselineCreated) {
+            return String.format("VisualDiffResult(baseline created, %dx%d)", width, height);
+        }
+        return String.format("VisualDiffResult(%s, %dx%d%s, %d/%d different pixels, %d allowed, %d different tiles%s, %d ms)"
+                , isMatch() ? "match" : "mismatch", width, height, sizeMismatch ? " size mismatch" : "", differentPixels, comparedPixels
+                , allowedDifferentPixels, differentTiles.size(), complete ? "" : ", exited early", getElapsedMillis());
+    }
+}
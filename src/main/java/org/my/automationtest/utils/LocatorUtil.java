@@ -0,0 +1,94 @@
+package org.my.automationtest.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LocatorUtil {
+
+    /**
+     * Split <code>expression</code> at each <code>separator</code> which is not inside a string literal, brackets or parentheses,
+     * for ex: the branches of XPath union <code>//a[@x='|'] | (//b | //c)[1]</code> split at <code>|</code>, or the selectors of CSS group <code>a, b:is(c, d)</code> split at <code>,</code>
+     * @param expression XPath expression or CSS selector
+     * @param separator <code>|</code> for XPath, <code>,</code> for CSS
+     * @return trimmed parts of <code>expression</code>, only one if it has no top level <code>separator</code>
+     */
+    public static List<String> splitTopLevel(String expression, char separator) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        char quote = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '\\' && separator == ',') {
+                i++; // CSS escape, a backslash is a plain character in XPath
+            } else if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (c == separator && depth == 0) {
+                parts.add(expression.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        parts.add(expression.substring(start).trim());
+        return parts;
+    }
+
+    /**
+     * Quote <code>value</code> as an XPath string literal.<br/><br/>
+     * XPath 1.0 has no escape sequence, so a value containing both <code>'</code> and <code>"</code> is built with <code>concat()</code>,
+     * for ex: <code>it's "quoted"</code> becomes <code>concat('it', "'", 's "quoted"')</code>
+     * @param value value to be quoted
+     * @return XPath expression evaluating to <code>value</code>
+     */
+    public static String toXpathLiteral(String value) {
+        if (value.indexOf('\'') < 0) {
+            return "'" + value + "'";
+        }
+        if (value.indexOf('"') < 0) {
+            return "\"" + value + "\"";
+        }
+        StringBuilder sb = new StringBuilder("concat(");
+        int start = 0;
+        int quoteIndex;
+        while ((quoteIndex = value.indexOf('\'', start)) >= 0) {
+            if (quoteIndex > start) {
+                sb.append('\'').append(value, start, quoteIndex).append("', ");
+            }
+            sb.append("\"'\", ");
+            start = quoteIndex + 1;
+        }
+        if (start < value.length()) {
+            sb.append('\'').append(value.substring(start)).append("', ");
+        }
+        sb.setLength(sb.length() - 2);
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Quote <code>value</code> as a double quoted CSS string, for ex: to be used in attribute selector <code>[name="value"]</code>
+     * @param value value to be quoted
+     * @return CSS string evaluating to <code>value</code>
+     */
+    public static String toCssStringLiteral(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20 || c == 0x7F) {
+                // Control characters must be escaped as code points, followed by a space to terminate the escape
+                sb.append('\\').append(Integer.toHexString(c)).append(' ');
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
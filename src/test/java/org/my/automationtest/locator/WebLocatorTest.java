@@ -0,0 +1,89 @@
+package org.my.automationtest.locator;
+
+import org.my.automationtest.service.fake.FakeWebDriver;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+/**
+ * The xpath and css selector compiled from a locator find the same elements, whichever {@link LocatorStrategy} picks
+ */
+public class WebLocatorTest {
+
+    private static final String PAGE = "<html><body>"
+            + "<form id='login' name='login'>"
+            + "<input id='user' name='user' type='text' class='field'>"
+            + "<input id='password' name='password' type='password' class='field'>"
+            + "<input id='remember' name='remember' type='checkbox' class='field option'>"
+            + "<button id='submit' type='submit' class='btn'>Sign in</button>"
+            + "</form>"
+            + "<a id='help' href='/help' class='link'>Help</a>"
+            + "<a id='terms' href='/terms' class='link'>Terms</a>"
+            + "<div id='it&apos;s' class='quote'>Quoted</div>"
+            + "</body></html>";
+
+    private FakeWebDriver webDriver;
+
+    @BeforeClass
+    public void loadPage() {
+        webDriver = new FakeWebDriver();
+        webDriver.loadHtml(PAGE);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void quitDriver() {
+        webDriver.quit();
+    }
+
+    @DataProvider
+    public Object[][] locators() {
+        return new Object[][]{
+                {new WebLocator().id("user")},
+                {new WebLocator().tag("input").name("password")},
+                {new WebLocator().tag("input").className("field")},
+                {new WebLocator().className("field option")},
+                {new WebLocator().type("submit")},
+                {new WebLocator().tag("a").href("/terms")},
+                {new WebLocator().id("it's")},
+                {new WebLocator().tag("input").type("checkbox").name("remember")},
+                {new WebLocator().tag("a")},
+                {new WebLocator().cssSelector("input.field").id("password")},
+                {new WebLocator().cssSelector("a").className("link").href("/help")},
+                {new WebLocator().cssSelector("form input").tag("button")},
+        };
+    }
+
+    @Test(dataProvider = "locators")
+    public void xpathAndCssSelectorFindTheSameElements(WebLocator webLocator) {
+        String xpath = webLocator.toXpath();
+        String cssSelector = webLocator.toCssSelector();
+        List<String> foundByXpath = idsOf(webDriver.findElements(By.xpath(xpath)));
+        assertFalse(foundByXpath.isEmpty(), xpath);
+        if (cssSelector != null) {
+            assertEquals(idsOf(webDriver.findElements(By.cssSelector(cssSelector))), foundByXpath, xpath + " / " + cssSelector);
+        }
+        assertEquals(idsOf(webDriver.findElements(webLocator.toBy())), foundByXpath, webLocator.toBy().toString());
+    }
+
+    @Test
+    public void rawCssSelectorWithElementAttributesHasNoCssForm() {
+        WebLocator webLocator = new WebLocator().cssSelector("input").id("user");
+        assertNull(webLocator.toCssSelector());
+        assertEquals(webLocator.toXpath(), "//*[@id='user']");
+        assertEquals(new WebLocator().cssSelector("input.field").toCssSelector(), "input.field");
+    }
+
+    private static List<String> idsOf(List<WebElement> elements) {
+        return elements.stream().map(element -> element.getAttribute("id")).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,174 @@
+package org.my.automationtest.service.fake;
+
+import org.my.automationtest.locator.WebLocator;
+import org.my.automationtest.locator.helper.DivTableHelper;
+import org.my.automationtest.locator.helper.TableSnapshot;
+import org.my.automationtest.service.WebDriverFactory;
+import org.my.automationtest.service.WebSession;
+import org.my.automationtest.service.WebUI;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebElement;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * WebUI waits, clicks and div tables run against {@link FakeWebDriver}, with no browser
+ */
+public class FakeWebDriverTest {
+
+    private static final String HOME_URL = "http://app/";
+    private static final String HOME_PAGE = "<html><head><title>Home</title></head><body>"
+            + "<input id='user' name='user' maxlength='5'>"
+            + "<input id='check' type='checkbox'>"
+            + "<button id='go' class='btn-primary'>Go</button>"
+            + "<div id='late' data-fake-present-after='300'>Late</div>"
+            + "<div id='shy' data-fake-visible-after='200'>Shy</div>"
+            + "<div id='gone' data-fake-hidden-after='200'>Gone</div>"
+            + "<div id='hidden' style='display:none'>Hidden</div>"
+            + "<a id='next' href='next'>Next page</a>"
+            + "<div id='people'><div>Name</div><div>Age</div>"
+            + "<div>Ann</div><div><span>31</span></div>"
+            + "<div>Bob</div><div><span>42</span></div>"
+            + "<div>Cid</div><div><span>27</span></div>"
+            + "</div></body></html>";
+
+    private FakeWebDriver webDriver;
+
+    @BeforeMethod
+    public void openHomePage() {
+        webDriver = new FakeWebDriver();
+        webDriver.addPage(HOME_URL, HOME_PAGE);
+        webDriver.addPage(HOME_URL + "next", "<html><head><title>Next</title></head><body><p id='done'>Done</p></body></html>");
+        WebUI.bindSession(new WebSession(webDriver, WebDriverFactory.FAKE_BROWSER));
+        WebUI.getUrl(HOME_URL);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void quitDriver() {
+        WebUI.bindSession(null);
+        webDriver.quit();
+    }
+
+    @Test
+    public void findsElementsByEveryLocatorOfBy() {
+        assertEquals(webDriver.findElement(By.id("go")).getText(), "Go");
+        assertEquals(webDriver.findElement(By.name("user")).getAttribute("id"), "user");
+        assertEquals(webDriver.findElement(By.className("btn-primary")).getAttribute("id"), "go");
+        assertEquals(webDriver.findElements(By.tagName("input")).size(), 2);
+        assertEquals(webDriver.findElement(By.linkText("Next page")).getAttribute("id"), "next");
+        assertEquals(webDriver.findElement(By.partialLinkText("Next")).getAttribute("id"), "next");
+        assertEquals(webDriver.findElement(By.cssSelector("#people > div:nth-child(3)")).getText(), "Ann");
+        assertEquals(webDriver.findElement(By.xpath("//div[@id='people']/div[5]")).getText(), "Bob");
+        assertEquals(webDriver.findElement(By.id("people")).findElements(By.tagName("span")).size(), 3);
+        By lastSpan = new By() {
+            @Override
+            public List<WebElement> findElements(SearchContext context) {
+                List<WebElement> spans = context.findElements(By.tagName("span"));
+                return spans.subList(spans.size() - 1, spans.size());
+            }
+        };
+        assertEquals(webDriver.findElement(lastSpan).getText(), "27");
+    }
+
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void findElementThrowsWhenNothingMatches() {
+        webDriver.findElement(By.id("missing"));
+    }
+
+    @Test
+    public void waitsForDelayedElements() {
+        WebUI.waitForElementVisible(new WebLocator().id("late"), 5);
+        WebUI.waitForElementVisible(new WebLocator().id("shy"), 5);
+        WebUI.waitForElementInvisible(new WebLocator().id("gone"), 5);
+        assertTrue(webDriver.findElement(By.id("late")).isDisplayed());
+        assertFalse(webDriver.findElement(By.id("gone")).isDisplayed());
+    }
+
+    @Test(expectedExceptions = TimeoutException.class)
+    public void waitTimesOutOnHiddenElement() {
+        WebUI.waitForElementVisible(new WebLocator().id("hidden"), 1);
+    }
+
+    @Test
+    public void clicksFollowLinksAndToggleCheckboxes() {
+        WebUI.click(new WebLocator().id("check"));
+        assertTrue(webDriver.findElement(By.id("check")).isSelected());
+        WebUI.click(new WebLocator().id("next"));
+        assertEquals(webDriver.getCurrentUrl(), HOME_URL + "next");
+        assertEquals(webDriver.getTitle(), "Next");
+    }
+
+    @Test
+    public void clickIsRetriedWhenIntercepted() {
+        webDriver.onClick(By.id("go"), document -> elementById(document, "go").setAttribute("data-clicked", "true"));
+        webDriver.interceptNextClicks(2);
+        WebUI.click(new WebLocator().className("btn-primary"));
+        assertEquals(webDriver.findElement(By.id("go")).getAttribute("data-clicked"), "true");
+    }
+
+    @Test
+    public void setTextIsCutAtMaxLength() {
+        WebUI.setText(new WebLocator().id("user"), "abcdefgh");
+        assertEquals(webDriver.findElement(By.id("user")).getAttribute("value"), "abcde");
+    }
+
+    @Test
+    public void locatesCellsOfDivTable() {
+        WebLocator age = DivTableHelper.findByColumnAndRowNames("Age", "Bob", new WebLocator().tag("span"), 2);
+        assertEquals(WebUI.waitForElementVisible(age).getText(), "42");
+
+        WebLocator cell = DivTableHelper.findByColumnAndRows(new WebLocator().xpath("//div[text()='Age']"),
+                new WebLocator().xpath("//div[text()='Cid']"), new WebLocator().tag("span"), 2);
+        assertEquals(WebUI.waitForElementVisible(cell).getText(), "27");
+    }
+
+    @Test
+    public void divTableSnapshotFollowsPageChanges() {
+        TableSnapshot snapshot = DivTableHelper.snapshotOf("Age", 2);
+        assertEquals(snapshot.getColumnNames(), Arrays.asList("Name", "Age"));
+        assertEquals(snapshot.getRowCount(), 4);
+        List<String> names = snapshot.rows().map(row -> row.get(0)).collect(Collectors.toList());
+        assertEquals(names, Arrays.asList("Ann", "Bob", "Cid"));
+
+        webDriver.updatePage(document -> {
+            Element table = elementById(document, "people");
+            Element name = document.createElement("div");
+            name.setTextContent("Dee");
+            table.appendChild(name);
+            Element age = document.createElement("div");
+            age.appendChild(document.createElement("span")).setTextContent("55");
+            table.appendChild(age);
+        });
+        // The row is not in the snapshot, so the table is indexed again
+        WebLocator age = DivTableHelper.findByColumnAndRowNames("Age", "Dee", new WebLocator().tag("span"), 2);
+        WebElement cell = WebUI.waitForElementVisible(age);
+        assertEquals(cell.getText(), "55");
+    }
+
+    // The DOM of the fake driver has no DTD, so Document.getElementById() finds nothing
+    private static Element elementById(Document document, String id) {
+        NodeList elements = document.getElementsByTagName("*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            if (id.equals(element.getAttribute("id"))) {
+                return element;
+            }
+        }
+        throw new IllegalArgumentException(id);
+    }
+}